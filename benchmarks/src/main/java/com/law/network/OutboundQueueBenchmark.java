@@ -0,0 +1,158 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the socket handler's outbound queue: the old synchronized
+ * ArrayList with wait/notifyAll, against the lock-free {@link MpscQueue}
+ * with park/unpark, with 1, 8 and 64 producer threads feeding one consumer.
+ * 
+ * <p> Each invocation releases the producers to send {@link #LINES} lines
+ * between them, and takes them all on the benchmark thread; each operation
+ * is one line. In package com.law.network, as the queue is package private.
+ * 
+ * @author Lloyd
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OutboundQueueBenchmark {
+	
+	static final int LINES = 64000;
+	
+	@Param({"MONITOR", "LOCK_FREE"})
+	public String queue;
+	
+	@Param({"1", "8", "64"})
+	public int producers;
+	
+	private Outbound outbound;
+	private CyclicBarrier start;
+	private final List<Thread> threads = new ArrayList<Thread>();
+	
+	@Setup
+	public void setUp() {
+		outbound = queue.equals("MONITOR") ? new MonitorOutbound() : new LockFreeOutbound();
+		start = new CyclicBarrier(producers + 1);
+		final int perProducer = LINES / producers;
+		for (int p = 0; p < producers; p++) {
+			Thread producer = new Thread("outbound-producer-" + p) {
+				@Override
+				public void run() {
+					try {
+						for (;;) {
+							start.await();
+							for (int i = 0; i < perProducer; i++) {
+								outbound.send("line");
+							}
+						}
+					}
+					catch (InterruptedException e) {
+						// Torn down.
+					}
+					catch (BrokenBarrierException e) {
+						// Torn down.
+					}
+				}
+			};
+			producer.setDaemon(true);
+			producer.start();
+			threads.add(producer);
+		}
+	}
+	
+	@TearDown
+	public void tearDown() {
+		for (Thread producer : threads) {
+			producer.interrupt();
+		}
+		threads.clear();
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public String sendAndTake() throws Exception {
+		start.await();
+		String data = null;
+		for (int i = LINES / producers * producers; i > 0; i--) {
+			data = outbound.take();
+		}
+		return data;
+	}
+	
+	interface Outbound {
+		void send(String data);
+		String take() throws InterruptedException;
+	}
+	
+	/** The outbound buffer as it was: synchronized, wait/notifyAll, remove(0). */
+	static class MonitorOutbound implements Outbound {
+		private final List<String> buffer = new ArrayList<String>();
+		
+		synchronized public void send(String data) {
+			buffer.add(data);
+			notifyAll();
+		}
+		
+		synchronized public String take() throws InterruptedException {
+			while (buffer.isEmpty()) {
+				wait();
+			}
+			return buffer.remove(0);
+		}
+	}
+	
+	/** The outbound buffer as used by SocketHandler now. */
+	static class LockFreeOutbound implements Outbound {
+		private final MpscQueue<String> buffer = new MpscQueue<String>();
+		private volatile Thread waiting;
+		
+		public void send(String data) {
+			buffer.offer(data);
+			Thread t = waiting;
+			if (t != null) {
+				LockSupport.unpark(t);
+			}
+		}
+		
+		public String take() throws InterruptedException {
+			String data = buffer.poll();
+			while (data == null) {
+				waiting = Thread.currentThread();
+				data = buffer.poll();
+				if (data == null) {
+					LockSupport.park(this);
+					data = buffer.poll();
+				}
+				waiting = null;
+			}
+			return data;
+		}
+	}
+	
+}
@@ -0,0 +1,28 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler always on, so that every
+ * result also reports the bytes allocated per operation
+ * (gc.alloc.rate.norm). Takes the usual JMH command line options.
+ * 
+ * @author Lloyd
+ */
+public class Benchmarks {
+	
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		new Runner(new OptionsBuilder()
+				.parent(commandLine)
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+	
+}
@@ -0,0 +1,97 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.law.network.DataLine;
+
+/**
+ * DataLine numeric accessors: adding int, long and boolean fields, and
+ * reading them back from a line which arrived as text. The AsString
+ * benchmarks take the string path instead (Integer.toString() to add,
+ * parsing the info string to read), for comparison with the in place
+ * digit paths. The IntAndLong benchmarks reuse one data line and touch only
+ * the int and long fields, so their gc.alloc.rate.norm is the cost of the
+ * numeric fields alone, which should be 0.
+ * 
+ * @author Lloyd
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataLineBenchmark {
+	
+	private String line;
+	private DataLine reused;
+	private DataLine encoded;
+	
+	@Setup
+	public void setUp() {
+		line = new DataLine("TRADE").addInfo(42).addInfo(1234567890123L).addInfo(true).toString();
+		reused = new DataLine((String) null);
+		encoded = new DataLine((String) null);
+	}
+	
+	@Benchmark
+	public DataLine addNumericInfo() {
+		return new DataLine("TRADE").addInfo(42).addInfo(1234567890123L).addInfo(true);
+	}
+	
+	@Benchmark
+	public long getNumericInfo() {
+		DataLine dataLine = new DataLine(line);
+		return dataLine.getIntInfo(0) + dataLine.getLongInfo(1) + (dataLine.getBooleanInfo(2) ? 1 : 0);
+	}
+	
+	/** As addNumericInfo(), but formatting each number as a string first. */
+	@Benchmark
+	public DataLine addNumericInfoAsString() {
+		return new DataLine("TRADE").addInfo(Integer.toString(42)).addInfo(Long.toString(1234567890123L))
+				.addInfo(true);
+	}
+	
+	/** As getNumericInfo(), but parsing each info string. */
+	@Benchmark
+	public long getNumericInfoAsString() {
+		DataLine dataLine = new DataLine(line);
+		return Integer.parseInt(dataLine.getInfo(0)) + Long.parseLong(dataLine.getInfo(1))
+				+ (dataLine.getBooleanInfo(2) ? 1 : 0);
+	}
+	
+	/** As getNumericInfo(), but into one data line reset for each line. */
+	@Benchmark
+	public long getNumericInfoReused() {
+		DataLine dataLine = reused.reset(line);
+		return dataLine.getIntInfo(0) + dataLine.getLongInfo(1) + (dataLine.getBooleanInfo(2) ? 1 : 0);
+	}
+	
+	/** Reads only the int and long fields, from one data line reset for each line. */
+	@Benchmark
+	public long getIntAndLongInfoReused() {
+		DataLine dataLine = reused.reset(line);
+		return dataLine.getIntInfo(0) + dataLine.getLongInfo(1);
+	}
+	
+	/** Adds only an int and a long field, to one data line reset for each line. */
+	@Benchmark
+	public DataLine addIntAndLongInfoReused() {
+		return encoded.reset("TRADE").addInfo(42).addInfo(1234567890123L);
+	}
+	
+}
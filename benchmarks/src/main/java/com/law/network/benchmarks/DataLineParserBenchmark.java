@@ -0,0 +1,100 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.law.network.DataLine;
+import com.law.network.DataLineParser;
+
+/**
+ * DataLineParser construction, toString() and getInfo() on lines of three
+ * shapes: short (a name and two fields), wide (a name and 64 fields), and
+ * escape heavy (fields full of the "::" delimiter, which must be escaped).
+ * 
+ * @author Lloyd
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataLineParserBenchmark {
+	
+	@Param({"short", "wide", "escaped"})
+	public String shape;
+	
+	private String line;
+	private DataLineParser parser;
+	private int lastIndex;
+	
+	@Setup
+	public void setUp() {
+		DataLine dataLine = new DataLine("QUOTE");
+		if (shape.equals("short")) {
+			dataLine.addInfo("IBM").addInfo(12345);
+		}
+		else if (shape.equals("wide")) {
+			for (int i = 0; i < 64; i++) {
+				dataLine.addInfo("field" + i);
+			}
+		}
+		else {
+			for (int i = 0; i < 8; i++) {
+				dataLine.addInfo("a::b::c::d::" + i);
+			}
+		}
+		line = dataLine.toString();
+		parser = new DataLineParser(line);
+		lastIndex = parser.getInfoCount() - 1;
+	}
+	
+	/** Construction alone; fields are split lazily, so this is cheap. */
+	@Benchmark
+	public DataLineParser construct() {
+		return new DataLineParser(line);
+	}
+	
+	/** Construction and reading the last field, which splits the line. */
+	@Benchmark
+	public String constructAndGetLast() {
+		return new DataLineParser(line).getInfo(lastIndex);
+	}
+	
+	/** Reading every field of a fresh parser. */
+	@Benchmark
+	public int getEveryInfo() {
+		DataLineParser p = new DataLineParser(line);
+		int length = 0;
+		for (int i = 0; i <= lastIndex; i++) {
+			length += p.getInfo(i).length();
+		}
+		return length;
+	}
+	
+	/** Reading a field already read, which is cached. */
+	@Benchmark
+	public String getCachedInfo() {
+		return parser.getInfo(lastIndex);
+	}
+	
+	@Benchmark
+	public String toStringParsed() {
+		return parser.toString();
+	}
+	
+}
@@ -0,0 +1,141 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network.benchmarks;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.law.network.SocketHandler;
+import com.law.network.SocketReadProcessor;
+
+/**
+ * Loopback SocketHandler throughput and latency, covering all four modes:
+ * 
+ * <ul>
+ * <li> oneWay - A MODE_WRITE handler sends lines to a MODE_READ handler.
+ *          Each operation is one line, measured over batches of
+ *          {@link #BATCH} lines so that write batching takes effect.
+ * <li> requestResponse - A MODE_WRITE_READ handler sends a query to a
+ *          MODE_READ_WRITE handler and waits for its answer before the next
+ *          query. Each operation is one round trip.
+ * </ul>
+ * 
+ * Both report throughput, and the sample time mode gives the latency
+ * distribution.
+ * 
+ * @author Lloyd
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SocketRoundTripBenchmark {
+	
+	static final int BATCH = 1000;
+	static final String LINE = "QUOTE::IBM::12345::1234567890123";
+	
+	/**
+	 * A connected pair of started socket handlers, and a semaphore released
+	 * for each line which reaches the processor at the far end.
+	 */
+	static abstract class Connection {
+		
+		final Semaphore arrived = new Semaphore(0);
+		ServerSocket serverSocket;
+		SocketHandler client;
+		SocketHandler server;
+		
+		final SocketReadProcessor counter = new SocketReadProcessor() {
+			@Override
+			public String processDataFromSocket(String data, long fromId) {
+				arrived.release();
+				return data;
+			}
+		};
+		
+		void open(SocketHandler.Mode clientMode, SocketHandler.Mode serverMode,
+				SocketReadProcessor clientProcessor, SocketReadProcessor serverProcessor)
+		throws IOException {
+			serverSocket = new ServerSocket(0);
+			Socket clientSocket = new Socket("localhost", serverSocket.getLocalPort());
+			clientSocket.setTcpNoDelay(true);
+			Socket serverSide = serverSocket.accept();
+			serverSide.setTcpNoDelay(true);
+			client = new SocketHandler(clientSocket, clientMode, clientProcessor, null);
+			server = new SocketHandler(serverSide, serverMode, serverProcessor, null);
+			server.start();
+			client.start();
+		}
+		
+		@TearDown(Level.Trial)
+		public void close() throws IOException {
+			client.stopHandler();
+			server.stopHandler();
+			client.close();
+			server.close();
+			serverSocket.close();
+		}
+		
+	}
+	
+	@State(Scope.Benchmark)
+	public static class OneWay extends Connection {
+		
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			open(SocketHandler.Mode.MODE_WRITE, SocketHandler.Mode.MODE_READ, null, counter);
+		}
+		
+	}
+	
+	@State(Scope.Benchmark)
+	public static class RequestResponse extends Connection {
+		
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			SocketReadProcessor echo = new SocketReadProcessor() {
+				@Override
+				public String processDataFromSocket(String data, long fromId) {
+					return data;
+				}
+			};
+			open(SocketHandler.Mode.MODE_WRITE_READ, SocketHandler.Mode.MODE_READ_WRITE, counter, echo);
+		}
+		
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public void oneWay(OneWay connection) throws InterruptedException {
+		for (int i = 0; i < BATCH; i++) {
+			connection.client.send(LINE);
+		}
+		connection.arrived.acquire(BATCH);
+	}
+	
+	@Benchmark
+	public void requestResponse(RequestResponse connection) throws InterruptedException {
+		connection.client.send(LINE);
+		connection.arrived.acquire();
+	}
+	
+}
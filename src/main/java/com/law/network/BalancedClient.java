@@ -0,0 +1,476 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+import com.law.network.PipelinedClient.Correlation;
+import com.law.network.domain.HostMachine;
+
+/**
+ * Client which spreads queries over several identical servers, keeping a
+ * {@link PipelinedClient} connection open to each.
+ * 
+ * <p> Each query goes to the target with the fewest queries in flight, so
+ * that a server which slows down is given less work as its queries back up,
+ * rather than an equal share (see {@link Selection}).
+ * 
+ * <p> A target whose queries fail, time out, or take longer than the slow
+ * threshold the max failures times in a row is ejected: it is given no new
+ * queries for the ejection time, and then let back in (after dialing again,
+ * if its connection has closed). Queries already in flight on an ejected
+ * target are left to complete. If every target is ejected, queries go to any
+ * target which is still connected rather than failing outright.
+ * 
+ * <pre>
+ * BalancedClient client = new BalancedClient(hostMachines, 4444, Correlation.FIFO, 64,
+ *         5, TimeUnit.SECONDS, new SocketHandlerConfig())
+ *         .setEjection(3, 30, TimeUnit.SECONDS)
+ *         .setSlowThreshold(500, TimeUnit.MILLISECONDS);
+ * client.start();
+ * DataLine response = client.send(query).get();
+ * </pre>
+ * 
+ * @author Lloyd
+ */
+public class BalancedClient {
+	
+	/**
+	 * Ways of choosing the target for a query.
+	 */
+	static public enum Selection {
+		/** The target with the fewest queries in flight; ties are taken in
+		 *  turn. */
+		LEAST_IN_FLIGHT,
+		
+		/** The one of two targets picked at random which has fewer queries in
+		 *  flight. Looks at two targets rather than all of them, for a large
+		 *  number of targets. */
+		POWER_OF_TWO_CHOICES
+	}
+	
+	static private final ScheduledThreadPoolExecutor READMISSIONS = newReadmissionExecutor();
+	static private final ExecutorService CONNECTORS = newConnectorExecutor();
+	
+	private final List<Target> targets;
+	private final int port;
+	private final Correlation correlation;
+	private final int maxInFlight;
+	private final long timeoutNanos;
+	private final SocketHandlerConfig config;
+	private final AtomicInteger nextTarget = new AtomicInteger();
+	private final AtomicBoolean isClosed = new AtomicBoolean();
+	private volatile Selection selection = Selection.LEAST_IN_FLIGHT;
+	private volatile int maxFailures = 3;
+	private volatile long ejectionNanos = TimeUnit.SECONDS.toNanos(30);
+	private volatile long slowNanos = Long.MAX_VALUE;
+	private volatile int connectTimeoutMillis = 5000;
+	
+	/**
+	 * Construct a balanced client. It connects to nothing until started.
+	 * 
+	 * @param hosts - The target host machines. Each one's address is used if
+	 *  set, or else its name.
+	 * @param port - The port of every target.
+	 * @param correlation - How responses are matched to queries, on every
+	 *  connection.
+	 * @param maxInFlight - The most queries which may await a response at
+	 *  once, per target.
+	 * @param timeout - How long each query waits for its response.
+	 * @param unit - The unit of the timeout.
+	 * @param config - Settings for the connections' socket handlers.
+	 * 
+	 * @throws IllegalArgumentException if there are no hosts, a host has
+	 *  neither an address nor a name, or maxInFlight or timeout is not
+	 *  positive.
+	 */
+	public BalancedClient(Collection<HostMachine> hosts, int port, Correlation correlation, int maxInFlight,
+			long timeout, TimeUnit unit, SocketHandlerConfig config) {
+		if (hosts.isEmpty()) {
+			throw new IllegalArgumentException("No target hosts.");
+		}
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("Max in flight must be positive: " + maxInFlight);
+		}
+		if (timeout <= 0) {
+			throw new IllegalArgumentException("Timeout must be positive: " + timeout);
+		}
+		this.targets = new ArrayList<Target>(hosts.size());
+		for (HostMachine host : hosts) {
+			targets.add(new Target(host));
+		}
+		this.port = port;
+		this.correlation = correlation;
+		this.maxInFlight = maxInFlight;
+		this.timeoutNanos = unit.toNanos(timeout);
+		this.config = config;
+	}
+	
+	/**
+	 * Set how the target for each query is chosen. The default is
+	 * LEAST_IN_FLIGHT.
+	 * 
+	 * @param selection - The selection.
+	 * 
+	 * @return This client.
+	 */
+	public BalancedClient setSelection(Selection selection) {
+		if (selection == null) {
+			throw new NullPointerException("Selection must not be null.");
+		}
+		this.selection = selection;
+		return this;
+	}
+	
+	/**
+	 * Set when a target is ejected, and for how long. The defaults are 3
+	 * failures in a row, and 30 seconds.
+	 * 
+	 * @param maxFailures - The count of failed or slow queries in a row which
+	 *  ejects a target.
+	 * @param ejectionTime - How long an ejected target is given no queries.
+	 * @param unit - The unit of the ejection time.
+	 * 
+	 * @return This client.
+	 * 
+	 * @throws IllegalArgumentException if maxFailures or ejectionTime is not
+	 *  positive.
+	 */
+	public BalancedClient setEjection(int maxFailures, long ejectionTime, TimeUnit unit) {
+		if (maxFailures < 1 || ejectionTime <= 0) {
+			throw new IllegalArgumentException("Max failures and ejection time must be positive: "
+					+ maxFailures + ", " + ejectionTime);
+		}
+		this.maxFailures = maxFailures;
+		this.ejectionNanos = unit.toNanos(ejectionTime);
+		return this;
+	}
+	
+	/**
+	 * Set how long a response may take before its query counts as a failure
+	 * towards ejecting the target. By default only failures and timeouts
+	 * count.
+	 * 
+	 * @param slowThreshold - The slow threshold.
+	 * @param unit - The unit of the threshold.
+	 * 
+	 * @return This client.
+	 * 
+	 * @throws IllegalArgumentException if the threshold is not positive.
+	 */
+	public BalancedClient setSlowThreshold(long slowThreshold, TimeUnit unit) {
+		if (slowThreshold <= 0) {
+			throw new IllegalArgumentException("Slow threshold must be positive: " + slowThreshold);
+		}
+		this.slowNanos = unit.toNanos(slowThreshold);
+		return this;
+	}
+	
+	/**
+	 * Set the timeout for opening each connection. The default is 5 seconds.
+	 * 
+	 * @param connectTimeoutMillis - The timeout in milliseconds, or 0 to wait
+	 *  without limit.
+	 * 
+	 * @return This client.
+	 * 
+	 * @throws IllegalArgumentException if the timeout is negative.
+	 */
+	public BalancedClient setConnectTimeoutMillis(int connectTimeoutMillis) {
+		if (connectTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Connect timeout must not be negative: " + connectTimeoutMillis);
+		}
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		return this;
+	}
+	
+	/**
+	 * Connect to every target, on the calling thread. A target which cannot
+	 * be reached is ejected, and dialed again once its ejection time has
+	 * passed.
+	 */
+	public void start() {
+		for (Target target : targets) {
+			if (!connect(target)) {
+				eject(target);
+			}
+		}
+	}
+	
+	/**
+	 * Send a query to the chosen target. See {@link PipelinedClient#send(DataLine)}.
+	 * 
+	 * @param query - The query to send.
+	 * 
+	 * @return A future for the response, which completes exceptionally with
+	 *  an IOException if no target is connected.
+	 */
+	public CompletableFuture<DataLine> send(DataLine query) {
+		final Target target = choose();
+		if (target == null) {
+			CompletableFuture<DataLine> failed = new CompletableFuture<DataLine>();
+			failed.completeExceptionally(new IOException(isClosed.get() ? "Client closed." : "No target connected."));
+			return failed;
+		}
+		final long startNanos = System.nanoTime();
+		CompletableFuture<DataLine> future = target.client.send(query);
+		future.whenComplete(new BiConsumer<DataLine, Throwable>() {
+			@Override
+			public void accept(DataLine response, Throwable failure) {
+				queryDone(target, failure == null && System.nanoTime() - startNanos < slowNanos);
+			}
+		});
+		return future;
+	}
+	
+	/**
+	 * Get the count of targets.
+	 * 
+	 * @return The target count.
+	 */
+	public int getTargetCount() {
+		return targets.size();
+	}
+	
+	/**
+	 * Get the count of targets which are ejected.
+	 * 
+	 * @return The ejected count.
+	 */
+	public int getEjectedCount() {
+		int count = 0;
+		for (Target target : targets) {
+			if (target.isEjected.get()) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Get the count of queries awaiting responses, over all targets.
+	 * 
+	 * @return The in flight count.
+	 */
+	public int getInFlightCount() {
+		int count = 0;
+		for (Target target : targets) {
+			PipelinedClient client = target.client;
+			if (client != null) {
+				count += client.getInFlightCount();
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Close every connection, and stop dialing ejected targets. Queries still
+	 * awaiting responses complete exceptionally with an IOException.
+	 */
+	public void close() {
+		if (!isClosed.compareAndSet(false, true)) {
+			return;
+		}
+		for (Target target : targets) {
+			PipelinedClient client = target.client;
+			if (client != null) {
+				client.close();
+			}
+		}
+	}
+	
+	/**
+	 * Choose a target from those admitted, or failing that from those still
+	 * connected.
+	 * 
+	 * @return The target, or null if none is connected.
+	 */
+	private Target choose() {
+		if (isClosed.get()) {
+			return null;
+		}
+		Target target = choose(true);
+		return target != null ? target : choose(false);
+	}
+	
+	private Target choose(boolean isAdmittedOnly) {
+		int count = targets.size();
+		if (selection == Selection.POWER_OF_TWO_CHOICES && count > 2) {
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			int first = random.nextInt(count);
+			int second = random.nextInt(count - 1);
+			if (second >= first) {
+				second++;
+			}
+			Target target = fewerInFlight(fewerInFlight(null, targets.get(first), isAdmittedOnly),
+					targets.get(second), isAdmittedOnly);
+			if (target != null) {
+				return target;
+			}
+			// Neither is usable, so look at them all.
+		}
+		int start = (nextTarget.getAndIncrement() & Integer.MAX_VALUE) % count;
+		Target best = null;
+		for (int i = 0; i < count; i++) {
+			best = fewerInFlight(best, targets.get((start + i) % count), isAdmittedOnly);
+		}
+		return best;
+	}
+	
+	/**
+	 * Return whichever of two targets has fewer queries in flight, the first
+	 * on a tie, skipping the candidate if it is not usable.
+	 */
+	private Target fewerInFlight(Target best, Target candidate, boolean isAdmittedOnly) {
+		PipelinedClient client = candidate.client;
+		if (client != null && client.isClosed()) {
+			// Its connection closed while idle; eject it so that it is dialed again.
+			eject(candidate);
+			return best;
+		}
+		if (client == null || (isAdmittedOnly && candidate.isEjected.get())) {
+			return best;
+		}
+		if (best == null || client.getInFlightCount() < best.client.getInFlightCount()) {
+			return candidate;
+		}
+		return best;
+	}
+	
+	private void queryDone(Target target, boolean isSuccess) {
+		if (isSuccess) {
+			target.failures.set(0);
+		}
+		else if (target.failures.incrementAndGet() >= maxFailures || target.client.isClosed()) {
+			eject(target);
+		}
+	}
+	
+	/**
+	 * Stop giving queries to a target, and schedule its readmission. The
+	 * scheduler thread is shared by every balanced client, so it only hands
+	 * the readmission to a connector thread, as dialing can block for the
+	 * connect timeout.
+	 */
+	private void eject(final Target target) {
+		if (isClosed.get() || !target.isEjected.compareAndSet(false, true)) {
+			return;
+		}
+		final Runnable readmission = new Runnable() {
+			@Override
+			public void run() {
+				readmit(target);
+			}
+		};
+		READMISSIONS.schedule(new Runnable() {
+			@Override
+			public void run() {
+				CONNECTORS.execute(readmission);
+			}
+		}, ejectionNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Let a target back in once its ejection time has passed, dialing it
+	 * again first if its connection has closed.
+	 */
+	private void readmit(Target target) {
+		if (isClosed.get()) {
+			return;
+		}
+		PipelinedClient client = target.client;
+		if ((client == null || client.isClosed()) && !connect(target)) {
+			target.isEjected.set(false);
+			eject(target);
+			return;
+		}
+		target.failures.set(0);
+		target.isEjected.set(false);
+	}
+	
+	/**
+	 * Open a connection to a target.
+	 * 
+	 * @return True if connected.
+	 */
+	private boolean connect(Target target) {
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(target.host, port), connectTimeoutMillis);
+			PipelinedClient client = new PipelinedClient(socket, correlation, maxInFlight,
+					timeoutNanos, TimeUnit.NANOSECONDS, config);
+			client.start();
+			target.client = client;
+			if (isClosed.get()) {
+				// Closed while connecting.
+				client.close();
+				return false;
+			}
+			return true;
+		}
+		catch (IOException e) {
+			try { socket.close(); }
+			catch (IOException ce) {}
+			return false;
+		}
+	}
+	
+	static private ScheduledThreadPoolExecutor newReadmissionExecutor() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "balanced-client-readmissions");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
+	}
+	
+	static private ExecutorService newConnectorExecutor() {
+		return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "balanced-client-connector");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+	}
+	
+	/**
+	 * A server which queries are spread over.
+	 */
+	static private final class Target {
+		
+		final String host;
+		final AtomicInteger failures = new AtomicInteger();
+		final AtomicBoolean isEjected = new AtomicBoolean();
+		volatile PipelinedClient client;
+		
+		Target(HostMachine hostMachine) {
+			this.host = HostMachine.getAddressOrName(hostMachine);
+		}
+		
+	}
+	
+}
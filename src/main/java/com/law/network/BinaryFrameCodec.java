@@ -0,0 +1,202 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes and decodes data lines in the binary wire format.
+ * 
+ * <p> A frame is an int32 length (counting the bytes which follow it), an
+ * int32 field count, and then each field: a one byte type followed by the
+ * value. The first field is the name and is always a string. Values are
+ * encoded as follows (all integers big-endian):
+ * <ul>
+ * <li> FIELD_STRING - int32 length, then the UTF-8 bytes.
+ * <li> FIELD_INT - int32.
+ * <li> FIELD_LONG - int64.
+ * <li> FIELD_BOOLEAN - one byte, 1 or 0.
+ * <li> FIELD_BYTES - int32 length, then the bytes.
+ * </ul>
+ * 
+ * <p> Strings are not escaped, and bytes need not be base64'd. Decoded fields
+ * are stored in a {@link DataLineParser} in their text form, so a decoded
+ * data line reads the same as one parsed from a text line.
+ * 
+ * @author Lloyd
+ */
+final class BinaryFrameCodec {
+	
+	/** Size of the frame length which starts every frame. */
+	static final int HEADER_LENGTH = 4;
+	
+	/** The largest frame body which will be read. */
+	static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+	
+	private BinaryFrameCodec() {
+	}
+	
+	/**
+	 * Encode a data line as a frame.
+	 * 
+	 * @param parser - The fields of the data line.
+	 * 
+	 * @return The frame, including its length header.
+	 */
+	static byte[] encode(DataLineParser parser) {
+		int infoCount = parser.getInfoCount();
+		byte[][] strings = new byte[infoCount + 1][];
+		strings[0] = parser.getName().getBytes(StandardCharsets.UTF_8);
+		int length = 4 + 1 + 4 + strings[0].length;
+		for (int i = 0; i < infoCount; i++) {
+			switch (parser.getInfoType(i)) {
+			case DataLineParser.FIELD_INT:
+				length += 1 + 4;
+				break;
+			case DataLineParser.FIELD_LONG:
+				length += 1 + 8;
+				break;
+			case DataLineParser.FIELD_BOOLEAN:
+				length += 1 + 1;
+				break;
+			case DataLineParser.FIELD_BYTES:
+				byte[] raw = parser.getInfoBytes(i);
+				strings[i + 1] = raw != null ? raw : parser.getInfo(i).getBytes(StandardCharsets.UTF_8);
+				length += 1 + 4 + strings[i + 1].length;
+				break;
+			default:
+				strings[i + 1] = parser.getInfo(i).getBytes(StandardCharsets.UTF_8);
+				length += 1 + 4 + strings[i + 1].length;
+				break;
+			}
+		}
+		
+		ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + length);
+		frame.putInt(length);
+		frame.putInt(infoCount + 1);
+		putBytes(frame, DataLineParser.FIELD_STRING, strings[0]);
+		for (int i = 0; i < infoCount; i++) {
+			byte type = parser.getInfoType(i);
+			switch (type) {
+			case DataLineParser.FIELD_INT:
+				frame.put(type).putInt(parser.getIntInfo(i));
+				break;
+			case DataLineParser.FIELD_LONG:
+				frame.put(type).putLong(parser.getLongInfo(i));
+				break;
+			case DataLineParser.FIELD_BOOLEAN:
+				frame.put(type).put((byte) ("t".equals(parser.getInfo(i)) ? 1 : 0));
+				break;
+			default:
+				putBytes(frame, type, strings[i + 1]);
+				break;
+			}
+		}
+		return frame.array();
+	}
+	
+	static private void putBytes(ByteBuffer frame, byte type, byte[] bytes) {
+		frame.put(type).putInt(bytes.length).put(bytes);
+	}
+	
+	/**
+	 * Get the body length given by a frame header.
+	 * 
+	 * @param header - The bytes of the header.
+	 * 
+	 * @return The count of bytes which follow the header.
+	 * 
+	 * @throws IOException if the length is not valid.
+	 */
+	static int frameLength(byte[] header) throws IOException {
+		int length = ByteBuffer.wrap(header, 0, HEADER_LENGTH).getInt();
+		if (length < 4 || length > MAX_FRAME_LENGTH) {
+			throw new IOException("Bad frame length: " + length);
+		}
+		return length;
+	}
+	
+	/**
+	 * Decode the body of a frame.
+	 * 
+	 * @param body - The frame, not including its length header.
+	 * 
+	 * @return The fields of the data line.
+	 * 
+	 * @throws IOException if the frame is malformed.
+	 */
+	static DataLineParser decode(byte[] body) throws IOException {
+		DataLineParser parser = new DataLineParser(null);
+		decode(body, body.length, parser);
+		return parser;
+	}
+	
+	/**
+	 * Decode the body of a frame into the given parser, replacing its
+	 * contents.
+	 * 
+	 * @param body - The frame, not including its length header.
+	 * @param length - The length of the frame in the body array.
+	 * @param parser - The parser to decode into.
+	 * 
+	 * @throws IOException if the frame is malformed, in which case the
+	 *  parser's contents are undefined.
+	 */
+	static void decode(byte[] body, int length, DataLineParser parser) throws IOException {
+		try {
+			ByteBuffer frame = ByteBuffer.wrap(body, 0, length);
+			int fieldCount = frame.getInt();
+			if (fieldCount < 1) {
+				throw new IOException("Bad field count: " + fieldCount);
+			}
+			if (frame.get() != DataLineParser.FIELD_STRING) {
+				throw new IOException("Frame name is not a string.");
+			}
+			parser.reset(new String(getBytes(frame), StandardCharsets.UTF_8));
+			for (int i = 1; i < fieldCount; i++) {
+				byte type = frame.get();
+				switch (type) {
+				case DataLineParser.FIELD_STRING:
+					parser.addInfo(new String(getBytes(frame), StandardCharsets.UTF_8));
+					break;
+				case DataLineParser.FIELD_INT:
+					parser.addInfo(frame.getInt(), type);
+					break;
+				case DataLineParser.FIELD_LONG:
+					parser.addInfo(frame.getLong(), type);
+					break;
+				case DataLineParser.FIELD_BOOLEAN:
+					parser.addInfo(frame.get() != 0 ? "t" : "f", type);
+					break;
+				case DataLineParser.FIELD_BYTES:
+					byte[] raw = getBytes(frame);
+					parser.addInfo(new String(raw, StandardCharsets.UTF_8), raw);
+					break;
+				default:
+					throw new IOException("Unknown field type: " + type);
+				}
+			}
+			if (frame.hasRemaining()) {
+				throw new IOException("Frame has " + frame.remaining() + " trailing bytes.");
+			}
+		}
+		catch (BufferUnderflowException e) {
+			throw new IOException("Frame is truncated.", e);
+		}
+	}
+	
+	static private byte[] getBytes(ByteBuffer frame) throws IOException {
+		int length = frame.getInt();
+		if (length < 0 || length > frame.remaining()) {
+			throw new IOException("Bad field length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		frame.get(bytes);
+		return bytes;
+	}
+	
+}
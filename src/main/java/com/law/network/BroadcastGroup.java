@@ -0,0 +1,256 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.law.network.SocketHandler.WireFormat;
+
+/**
+ * A group of socket handlers which each line is sent to, as for a publisher
+ * with many subscribers.
+ * 
+ * <p> A broadcast line is encoded once, and the same immutable bytes are
+ * queued on every member (once per wire format and charset in use among the
+ * members), rather than each handler encoding its own copy. A data line's
+ * text is only built if a member uses the TEXT wire format, and a frame is
+ * only deflated once however many BINARY_DEFLATE members it is queued on.
+ * 
+ * <p> A broadcast never waits for a slow member, whatever the overflow
+ * policy of its out buffer. A member whose out buffer is full, or holds the
+ * group's maximum backlog, is dealt with by the group's
+ * {@link SlowMemberPolicy}. Members which are no longer open are removed.
+ * 
+ * <p> Members may be added and removed while other threads broadcast; the
+ * member list is copied on change, so it is best suited to groups which
+ * change far less often than they are sent to.
+ * 
+ * @author Lloyd
+ */
+public class BroadcastGroup {
+	
+	/**
+	 * What to do with a member which is too far behind to take a line.
+	 */
+	static public enum SlowMemberPolicy {
+		/** Drop the line for that member only. */
+		DROP,
+		
+		/** Remove the member from the group, and stop and close it. */
+		DISCONNECT
+	}
+	
+	private final CopyOnWriteArrayList<SocketConnection> members = new CopyOnWriteArrayList<SocketConnection>();
+	private final SlowMemberPolicy slowMemberPolicy;
+	private volatile int maxBacklog = Integer.MAX_VALUE;
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong disconnectedCount = new AtomicLong();
+	
+	/**
+	 * Construct a group which drops lines for slow members.
+	 */
+	public BroadcastGroup() {
+		this(SlowMemberPolicy.DROP);
+	}
+	
+	/**
+	 * Construct a group.
+	 * 
+	 * @param slowMemberPolicy - What to do with a member which is too far
+	 *  behind to take a line.
+	 */
+	public BroadcastGroup(SlowMemberPolicy slowMemberPolicy) {
+		if (slowMemberPolicy == null) {
+			throw new NullPointerException("Slow member policy must not be null.");
+		}
+		this.slowMemberPolicy = slowMemberPolicy;
+	}
+	
+	/**
+	 * Set the most lines a member may have waiting in its out buffer before
+	 * it is treated as slow. A member is also slow when its out buffer is
+	 * full.
+	 * 
+	 * @param maxBacklog - The most lines waiting. Default is no limit but the
+	 *  out buffer's own.
+	 * 
+	 * @return This group.
+	 * 
+	 * @throws IllegalArgumentException if the backlog is less than 1.
+	 */
+	public BroadcastGroup setMaxBacklog(int maxBacklog) {
+		if (maxBacklog < 1) {
+			throw new IllegalArgumentException("Max backlog must be at least 1: " + maxBacklog);
+		}
+		this.maxBacklog = maxBacklog;
+		return this;
+	}
+	
+	/**
+	 * Get the most lines a member may have waiting before it is slow.
+	 * 
+	 * @return The max backlog.
+	 */
+	public int getMaxBacklog() {
+		return maxBacklog;
+	}
+	
+	/**
+	 * Get the policy for slow members.
+	 * 
+	 * @return The policy.
+	 */
+	public SlowMemberPolicy getSlowMemberPolicy() {
+		return slowMemberPolicy;
+	}
+	
+	/**
+	 * Add a member, which may be a {@link SocketHandler} or an
+	 * {@link NioSocketHandler}. Its wire format should be settled, and it
+	 * should be in MODE_WRITE or MODE_WRITE_READ.
+	 * 
+	 * @param socketHandler - The socket handler.
+	 * 
+	 * @return True if added, false if it was already a member.
+	 * 
+	 * @throws IllegalArgumentException if it is neither a socket handler nor
+	 *  an NIO socket handler.
+	 */
+	public boolean add(SocketConnection socketHandler) {
+		if (socketHandler == null) {
+			throw new NullPointerException("Socket handler must not be null.");
+		}
+		SocketHandler.checkSupported(socketHandler);
+		return members.addIfAbsent(socketHandler);
+	}
+	
+	/**
+	 * Remove a member. The handler is not closed.
+	 * 
+	 * @param socketHandler - The socket handler.
+	 * 
+	 * @return True if removed, false if it was not a member.
+	 */
+	public boolean remove(SocketConnection socketHandler) {
+		return members.remove(socketHandler);
+	}
+	
+	/**
+	 * Get the count of members.
+	 * 
+	 * @return The member count.
+	 */
+	public int size() {
+		return members.size();
+	}
+	
+	/**
+	 * Send a line to every member.
+	 * 
+	 * @param line - The line.
+	 * 
+	 * @return The count of members the line was queued on.
+	 */
+	public int broadcast(String line) {
+		return broadcast(line, null);
+	}
+	
+	/**
+	 * Send a data line to every member. Members on a binary wire format get
+	 * the native encoding of its typed info.
+	 * 
+	 * @param line - The data line.
+	 * 
+	 * @return The count of members the line was queued on.
+	 */
+	public int broadcast(DataLine line) {
+		return broadcast(null, line);
+	}
+	
+	/**
+	 * Send a line, given as text or as a data line, to every member. Each form
+	 * is only made from the other if a member needs it.
+	 */
+	private int broadcast(String text, DataLine line) {
+		EncodedLine textLine = null;
+		EncodedLine frame = null;
+		int count = 0;
+		for (SocketConnection member : members) {
+			if (!member.isOpen()) {
+				members.remove(member);
+				continue;
+			}
+			EncodedLine encoded;
+			if (member.getWireFormat() != WireFormat.TEXT) {
+				if (frame == null) {
+					frame = EncodedLine.frame(line != null ? line.parser() : new DataLineParser(text));
+				}
+				encoded = frame;
+			}
+			else {
+				if (textLine == null) {
+					if (text == null) {
+						text = line.toString();
+					}
+					textLine = EncodedLine.text(text, member.getCharset());
+				}
+				// Members are expected to share a charset; any other gets its own copy.
+				encoded = textLine.charset.equals(member.getCharset())
+						? textLine
+						: EncodedLine.text(text, member.getCharset());
+			}
+			if (member.getOutboundCount() < maxBacklog && sendEncoded(member, encoded)) {
+				count++;
+			}
+			else {
+				slow(member);
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Queue an encoded line on a member, which add() has checked is one of
+	 * the two kinds of handler.
+	 */
+	static private boolean sendEncoded(SocketConnection member, EncodedLine encoded) {
+		return member instanceof NioSocketHandler
+				? ((NioSocketHandler) member).sendEncoded(encoded)
+				: ((SocketHandler) member).sendEncoded(encoded);
+	}
+	
+	private void slow(SocketConnection member) {
+		if (slowMemberPolicy == SlowMemberPolicy.DISCONNECT) {
+			if (members.remove(member)) {
+				disconnectedCount.incrementAndGet();
+				member.stopHandler();
+				// Also close here, as stopping does not wake a handler blocked reading.
+				member.close();
+			}
+		}
+		else {
+			droppedCount.incrementAndGet();
+		}
+	}
+	
+	/**
+	 * Get the count of lines dropped for slow members by the DROP policy.
+	 * 
+	 * @return The dropped line count.
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+	
+	/**
+	 * Get the count of members disconnected by the DISCONNECT policy.
+	 * 
+	 * @return The disconnected member count.
+	 */
+	public long getDisconnectedCount() {
+		return disconnectedCount.get();
+	}
+	
+}
@@ -0,0 +1,31 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import com.law.network.ReconnectingSocketHandler.ConnectionState;
+
+/**
+ * ConnectionStateListener is told each time a reconnecting socket handler's
+ * connection changes state, for example so that a caller can pause its
+ * producers while the link is down, or report a flapping link.
+ * 
+ * <p> Calls are made in order on the handler's connecting thread, which
+ * waits for each to return before dialing again, so implementations should
+ * be quick.
+ * 
+ * @see ReconnectingSocketHandler#setConnectionStateListener(ConnectionStateListener)
+ * 
+ * @author Lloyd
+ */
+public interface ConnectionStateListener {
+	
+	/**
+	 * Called when the connection enters a new state.
+	 * 
+	 * @param reconnectingHandler - The reconnecting socket handler.
+	 * @param state - The new state.
+	 */
+	void connectionStateChanged(ReconnectingSocketHandler reconnectingHandler, ConnectionState state);
+	
+}
@@ -7,6 +7,8 @@ package com.law.network;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 
+import com.law.network.domain.HostMachine;
+
 /**
  * High level representation of a line of data.
  * 
@@ -28,15 +30,16 @@ public class DataLine {
 	/**
 	 * Construct a data line by reading from the given socket handler.
 	 * 
-	 * <p> Calls {@link SocketHandler#readLine()} and passes the result to the
-	 * string constructor of this class.
+	 * <p> Reads a text line or a binary frame, depending on the socket
+	 * handler's wire format. At the end of the stream the data line is empty,
+	 * as if constructed from a null string.
 	 * 
 	 * @param socketHandler - The socket handler.
 	 * 
 	 * @throws IOException If the socket handler throws an IOException.
 	 */
 	public DataLine(SocketHandler socketHandler) throws IOException {
-		this(socketHandler.readLine());
+		this(socketHandler.readParser());
 	}
 	
 	/**
@@ -72,29 +75,31 @@ public class DataLine {
 	 * 
 	 * @return True if the name matches, or false if not.
 	 */
-	@SuppressWarnings("unchecked")
 	public <T extends Enum<T>> boolean isType(T enumVal) {
-		return enumVal == toType(enumVal.getClass());
+		return enumVal.name().equals(getName());
 	}
 	
 	/**
 	 * Get the enum value of the given enum type which corresponds the name
 	 * of this data line.
 	 * 
+	 * <p> Names are looked up in a table which is built once per enum type,
+	 * so a name which matches no value costs no more than one which does.
+	 * 
 	 * @param enumType - The type of enum to return.
 	 * 
 	 * @return The enum value, or null if it does not exist.
 	 */
 	public <T extends Enum<T>> T toType(Class<T> enumType) {
-		try { return Enum.valueOf(enumType, getName()); }
-		catch (Exception e) { return null; }
+		return EnumLookup.lookup(enumType, getName());
 	}
 	
 	/**
 	 * Send the string value of this data to the given socket handler.
 	 * 
-	 * <p> Calls {@link SocketHandler#send(String)} to send the data to
-	 * the socket.
+	 * <p> Calls {@link SocketHandler#send(DataLine)} to send the data to
+	 * the socket, as a text line or a binary frame depending on the socket
+	 * handler's wire format.
 	 * 
 	 * <p> The data will only be sent after the socket handler thread has been
 	 * started, and as long as it continues to run.
@@ -104,29 +109,76 @@ public class DataLine {
 	 * handler.
 	 * 
 	 * @see DataLine#toString()
-	 * @see SocketHandler#writeLine(String)
+	 * @see SocketHandler#send(DataLine)
 	 * 
 	 * @param socketHandler - The socket handler.
 	 */
 	public void sendTo(SocketHandler socketHandler) {
-		socketHandler.send(toString());
+		socketHandler.send(this);
 	}
 	
 	/**
 	 * Write the string value of this data to the given socket handler.
 	 * 
-	 * <p> Calls {@link SocketHandler#writeLine(String)} to write the data to
-	 * the socket's out stream writer.
+	 * <p> Calls {@link SocketHandler#writeLine(DataLine)} to write the data to
+	 * the socket's out stream.
 	 * 
 	 * @see DataLine#toString()
-	 * @see SocketHandler#writeLine(String)
+	 * @see SocketHandler#writeLine(DataLine)
 	 * 
 	 * @param socketHandler - The socket handler.
 	 * 
 	 * @throws IOException If the socket handler throws an IOException.
 	 */
 	public void writeTo(SocketHandler socketHandler) throws IOException {
-		socketHandler.writeLine(toString());
+		socketHandler.writeLine(this);
+	}
+	
+	/**
+	 * Send this data through a pooled socket handler for the given host and
+	 * port, opening a connection if the pool has none idle.
+	 * 
+	 * @see SocketHandlerPool#send(HostMachine, int, DataLine)
+	 * 
+	 * @param pool - The socket handler pool.
+	 * @param host - The host machine.
+	 * @param port - The port.
+	 * 
+	 * @throws IOException If a new connection could not be opened.
+	 */
+	public void sendTo(SocketHandlerPool pool, HostMachine host, int port) throws IOException {
+		pool.send(host, port, this);
+	}
+	
+	/**
+	 * Send this data to every member of a broadcast group, encoding it only
+	 * once.
+	 * 
+	 * @see BroadcastGroup#broadcast(DataLine)
+	 * 
+	 * @param group - The broadcast group.
+	 * 
+	 * @return The count of members the data was queued on.
+	 */
+	public int broadcastTo(BroadcastGroup group) {
+		return group.broadcast(this);
+	}
+	
+	/**
+	 * Write this data through a pooled socket handler for the given host and
+	 * port, opening a connection if the pool has none idle.
+	 * 
+	 * @see SocketHandlerPool#writeLine(HostMachine, int, DataLine)
+	 * 
+	 * @param pool - The socket handler pool.
+	 * @param host - The host machine.
+	 * @param port - The port.
+	 * 
+	 * @throws IOException If a new connection could not be opened, or the
+	 *  write failed.
+	 */
+	public void writeTo(SocketHandlerPool pool, HostMachine host, int port) throws IOException {
+		pool.writeLine(host, port, this);
 	}
 	
 	/**
@@ -179,7 +231,7 @@ public class DataLine {
 	 *  integer.
 	 */
 	public int getIntInfo(int index) {
-		return Integer.parseInt(parser.getInfo(index));
+		return parser.getIntInfo(index);
 	}
 	
 	/**
@@ -194,7 +246,7 @@ public class DataLine {
 	 *  long.
 	 */
 	public long getLongInfo(int index) {
-		return Long.parseLong(parser.getInfo(index));
+		return parser.getLongInfo(index);
 	}
 	
 	/**
@@ -222,6 +274,10 @@ public class DataLine {
 	 * @throws IndexOutOfBoundsException if no data exists at the given index.
 	 */
 	public byte[] getByteArrayInfo(int index) {
+		byte[] raw = parser.getInfoBytes(index);
+		if (raw != null) {
+			return raw.clone();
+		}
 		String byteStr = parser.getInfo(index);
 		return byteStr.getBytes();
 	}
@@ -266,7 +322,7 @@ public class DataLine {
 	 * @param i - The int to add.
 	 */
 	public DataLine addInfo(int i) {
-		parser.addInfo(Integer.toString(i));
+		parser.addInfo(i, DataLineParser.FIELD_INT);
 		return this;
 	}
 	
@@ -279,7 +335,7 @@ public class DataLine {
 	 * @param l - The long to add.
 	 */
 	public DataLine addInfo(long l) {
-		parser.addInfo(Long.toString(l));
+		parser.addInfo(l, DataLineParser.FIELD_LONG);
 		return this;
 	}
 	
@@ -293,7 +349,7 @@ public class DataLine {
 	 * @param b - The boolean to add.
 	 */
 	public DataLine addInfo(boolean b) {
-		parser.addInfo(b ? "t" : "f");
+		parser.addInfo(b ? "t" : "f", DataLineParser.FIELD_BOOLEAN);
 		return this;
 	}
 	
@@ -301,6 +357,9 @@ public class DataLine {
 	 * Add an info string respresentation of the given bytes. The bytes must be
 	 * encoded (e.g. base64) so that they can be cleanly converted into a string.
 	 * 
+	 * <p> On a binary wire format the bytes are sent as they are, and need not
+	 * be encoded.
+	 * 
 	 * <p> The info string count will increase by one, and the info string will
 	 * be added immediately following the previously last info string.
 	 * 
@@ -308,7 +367,7 @@ public class DataLine {
 	 */
 	public DataLine addInfo(byte[] bytes) {
 		try {
-			parser.addInfo(new String(bytes, "utf-8"));
+			parser.addInfo(new String(bytes, "utf-8"), bytes.clone());
 		}
 		catch (UnsupportedEncodingException e) {
 			e.printStackTrace();
@@ -322,8 +381,45 @@ public class DataLine {
 	 * @return This data line.
 	 */
 	public DataLine removeLastInfo() {
-		parser.removeLastInfo();
+		parser.dropLastInfo();
+		return this;
+	}
+	
+	/**
+	 * Replace the whole of this data line, as if it had been constructed from
+	 * the given string. The data line's buffers are reused, so a data line
+	 * can be recycled for each line rather than a new one made.
+	 * 
+	 * <p> See also {@link SocketHandler#readLine(DataLine)}, which reads the
+	 * next line from a socket into a data line.
+	 * 
+	 * @param s - The string to split into a data line; null is treated as "".
+	 * 
+	 * @return This data line.
+	 */
+	public DataLine reset(String s) {
+		parser.reset(s);
 		return this;
 	}
 	
+	/**
+	 * Make an independent copy of this data line. A data line which is going
+	 * to be reset, such as the one passed to a {@link DataLineProcessor}, must
+	 * be copied if its contents are to be kept.
+	 * 
+	 * @return The copy.
+	 */
+	public DataLine copy() {
+		return new DataLine(parser.copy());
+	}
+	
+	/**
+	 * Get the parser which holds this data line's fields.
+	 * 
+	 * @return The parser.
+	 */
+	DataLineParser parser() {
+		return parser;
+	}
+	
 }
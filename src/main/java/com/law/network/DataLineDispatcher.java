@@ -0,0 +1,115 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Routes each data line to the processor registered for the enum value named
+ * by the line, in place of a chain of isType() checks.
+ * 
+ * <p> The line's name is looked up once (see {@link DataLine#toType(Class)}),
+ * and the processor is then found in an EnumMap, so the cost of a dispatch
+ * does not grow with the count of registered types. Lines whose name is not
+ * a value of the enum type, or whose value has no processor, go to the
+ * default processor if one is set.
+ * 
+ * <p> A dispatcher can be used as a socket handler's
+ * {@link DataLineProcessor}, or as its {@link SocketReadProcessor}. Register
+ * every processor before the dispatcher is first used; after that it may be
+ * called by many socket handlers at once.
+ * 
+ * <pre>
+ * DataLineDispatcher&lt;Command&gt; dispatcher = new DataLineDispatcher&lt;Command&gt;(Command.class)
+ *         .register(Command.QUOTE, quoteProcessor)
+ *         .register(Command.TRADE, tradeProcessor);
+ * socketHandler.setDataLineProcessor(dispatcher);
+ * </pre>
+ * 
+ * @author Lloyd
+ */
+public class DataLineDispatcher<T extends Enum<T>> implements DataLineProcessor, SocketReadProcessor {
+	
+	private final Class<T> enumType;
+	private final Map<T, DataLineProcessor> processors;
+	private DataLineProcessor defaultProcessor;
+	
+	/**
+	 * Construct a dispatcher with no processors registered.
+	 * 
+	 * @param enumType - The enum type whose values name the lines.
+	 */
+	public DataLineDispatcher(Class<T> enumType) {
+		this.enumType = enumType;
+		this.processors = new EnumMap<T, DataLineProcessor>(enumType);
+	}
+	
+	/**
+	 * Register the processor for lines named by the given enum value,
+	 * replacing any processor already registered for it.
+	 * 
+	 * @param type - The enum value.
+	 * @param processor - The processor for lines of that type.
+	 * 
+	 * @return This dispatcher.
+	 * 
+	 * @throws NullPointerException if either argument is null.
+	 */
+	public DataLineDispatcher<T> register(T type, DataLineProcessor processor) {
+		if (processor == null) {
+			throw new NullPointerException("Null processor.");
+		}
+		processors.put(type, processor);
+		return this;
+	}
+	
+	/**
+	 * Set the processor for lines which have no registered processor.
+	 * 
+	 * @param processor - The default processor, or null to ignore such lines.
+	 * 
+	 * @return This dispatcher.
+	 */
+	public DataLineDispatcher<T> setDefaultProcessor(DataLineProcessor processor) {
+		this.defaultProcessor = processor;
+		return this;
+	}
+	
+	/**
+	 * Pass the line to the processor registered for its type.
+	 * 
+	 * @param line - The line to dispatch.
+	 * @param fromId - The unique id of the socket handler.
+	 * 
+	 * @return The processor's response, or null if there is no processor for
+	 *  the line.
+	 */
+	@Override
+	public DataLine processDataLine(DataLine line, long fromId) {
+		T type = line.toType(enumType);
+		DataLineProcessor processor = type != null ? processors.get(type) : null;
+		if (processor == null) {
+			processor = defaultProcessor;
+		}
+		return processor != null ? processor.processDataLine(line, fromId) : null;
+	}
+	
+	/**
+	 * Parse the data into a line, and pass it to the processor registered
+	 * for its type.
+	 * 
+	 * @param data - The data that was read from the socket.
+	 * @param fromId - The unique id of the socket handler.
+	 * 
+	 * @return The string value of the processor's response, or "" if there is
+	 *  no response.
+	 */
+	@Override
+	public String processDataFromSocket(String data, long fromId) {
+		DataLine response = processDataLine(new DataLine(data), fromId);
+		return response != null ? response.toString() : "";
+	}
+	
+}
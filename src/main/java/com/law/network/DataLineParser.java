@@ -3,23 +3,54 @@
  */
 package com.law.network;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Low level representation of a line of data.
  * 
+ * <p> The line is kept as it would be sent, in a char buffer, along with the
+ * end offset of each field. Fields are only turned into strings (and
+ * unescaped) when they are asked for, and the strings are then cached, so a
+ * processor which only looks at the name and one or two info strings of a
+ * wide line does not pay for the rest.
+ * 
  * @author Lloyd
  */
 public final class DataLineParser {
 	
 	static private final String DELIM = "::";
-	static private final Pattern DELIMPATTERN = Pattern.compile(DELIM);
 	static private final String DELIM_REPLACEMENT = "[:]dR[:]";
 	
-	private String name;
-	private List<String> info;
+	/** Returned by parseDigits when the fast path cannot parse a field. */
+	static private final long NOT_PARSED = Long.MIN_VALUE;
+	
+	/** Field type hints, used by the binary wire format. */
+	static final byte FIELD_STRING = 0;
+	static final byte FIELD_INT = 1;
+	static final byte FIELD_LONG = 2;
+	static final byte FIELD_BOOLEAN = 3;
+	static final byte FIELD_BYTES = 4;
+	
+	/** The line, with escaped info strings, as it would be sent. */
+	private char[] buf;
+	private int length;
+	
+	/** End offset in buf of each field; field 0 is the name. */
+	private int[] ends;
+	private int fieldCount;
+	
+	/** Fields which have been turned into strings, or null if not yet. */
+	private String[] fields;
+	
+	/** The string value of buf, or null if not yet made. */
+	private String line;
+	
+	/** Type hint of each field, or null if every field is a string. */
+	private byte[] types;
+	
+	/** Raw value of each FIELD_BYTES field, or null if none. */
+	private byte[][] rawBytes;
 	
 	/**
 	 * Construct a data line parser.
@@ -36,16 +67,124 @@ public final class DataLineParser {
 		if (s == null) {
 			s = "";
 		}
-		String [] data = DELIMPATTERN.split(s, -1);
-		
-		name = data.length > 0 ? data[0] : "";
-		
-		if (data.length > 1) {
-			info = new ArrayList<String>(data.length - 1);
-			for (int i = 1; i < data.length; i++) {
-				info.add(data[i]);
+		length = s.length();
+		buf = new char[Math.max(length, 16)];
+		s.getChars(0, length, buf, 0);
+		line = s;
+		ends = new int[8];
+		scanFields();
+	}
+	
+	/**
+	 * Construct a copy of a data line parser.
+	 */
+	private DataLineParser(DataLineParser other) {
+		length = other.length;
+		buf = Arrays.copyOf(other.buf, Math.max(length, 16));
+		ends = Arrays.copyOf(other.ends, other.ends.length);
+		fieldCount = other.fieldCount;
+		line = other.line;
+		if (other.types != null) {
+			types = other.types.clone();
+		}
+		if (other.rawBytes != null) {
+			rawBytes = other.rawBytes.clone();
+		}
+	}
+	
+	/**
+	 * Make an independent copy of this parser.
+	 * 
+	 * @return The copy.
+	 */
+	DataLineParser copy() {
+		return new DataLineParser(this);
+	}
+	
+	/**
+	 * Replace the whole line, as if this parser had been constructed from the
+	 * given string, reusing this parser's buffers.
+	 * 
+	 * @param s - The string to split into a data line; null is treated as "".
+	 */
+	void reset(String s) {
+		if (s == null) {
+			s = "";
+		}
+		length = s.length();
+		ensureEmptyCapacity(length);
+		s.getChars(0, length, buf, 0);
+		line = s;
+		clearFields();
+		scanFields();
+	}
+	
+	/**
+	 * Replace the whole line with the given ASCII bytes, reusing this
+	 * parser's buffers. No string is made.
+	 * 
+	 * @param bytes - The bytes of the line, which must all be ASCII.
+	 * @param offset - The offset of the line's first byte.
+	 * @param count - The count of bytes in the line.
+	 */
+	void reset(byte[] bytes, int offset, int count) {
+		length = count;
+		ensureEmptyCapacity(length);
+		for (int i = 0; i < count; i++) {
+			buf[i] = (char) bytes[offset + i];
+		}
+		line = null;
+		clearFields();
+		scanFields();
+	}
+	
+	private void ensureEmptyCapacity(int capacity) {
+		if (capacity > buf.length) {
+			buf = new char[Math.max(buf.length * 2, capacity)];
+		}
+	}
+	
+	private void clearFields() {
+		if (fields != null) {
+			Arrays.fill(fields, null);
+		}
+		if (types != null) {
+			Arrays.fill(types, FIELD_STRING);
+		}
+		if (rawBytes != null) {
+			Arrays.fill(rawBytes, null);
+		}
+	}
+	
+	/**
+	 * Find the end of every field in a single pass over the buffer. Delimiters
+	 * are matched left to right without overlapping, as String.split() does.
+	 */
+	private void scanFields() {
+		fieldCount = 0;
+		int i = 0;
+		int last = length - 1;
+		while (i < last) {
+			if (buf[i] == ':' && buf[i + 1] == ':') {
+				addEnd(i);
+				i += 2;
+			}
+			else {
+				i++;
 			}
 		}
+		addEnd(length);
+	}
+	
+	private void addEnd(int end) {
+		if (fieldCount == ends.length) {
+			ends = Arrays.copyOf(ends, fieldCount * 2);
+		}
+		ends[fieldCount++] = end;
+	}
+	
+	private int start(int field) {
+		return field == 0 ? 0 : ends[field - 1] + DELIM.length();
 	}
 	
 	/**
@@ -57,19 +196,134 @@ public final class DataLineParser {
 	 * @param s - The info string to add.
 	 */
 	void addInfo(String s) {
-		if (info == null) {
-			info = new ArrayList<String>();
+		String escaped = escapeDelim(s);
+		int newLength = length + DELIM.length() + escaped.length();
+		ensureCapacity(newLength);
+		buf[length] = ':';
+		buf[length + 1] = ':';
+		escaped.getChars(0, escaped.length(), buf, length + DELIM.length());
+		length = newLength;
+		addEnd(length);
+		line = null;
+	}
+	
+	/**
+	 * Add an info string along with a hint of the type of value it holds.
+	 * 
+	 * @param s - The info string to add.
+	 * @param type - The type of the value, one of the FIELD constants.
+	 */
+	void addInfo(String s, byte type) {
+		addInfo(s);
+		if (type != FIELD_STRING) {
+			setType(fieldCount - 1, type);
 		}
-		info.add(escapeDelim(s));
+	}
+	
+	/**
+	 * Add the decimal string of an integer as an info string, writing the
+	 * digits straight into the line's buffer.
+	 * 
+	 * @param value - The value to add.
+	 * @param type - FIELD_INT or FIELD_LONG.
+	 */
+	void addInfo(long value, byte type) {
+		int size = stringSize(value);
+		int newLength = length + DELIM.length() + size;
+		ensureCapacity(newLength);
+		buf[length] = ':';
+		buf[length + 1] = ':';
+		// Work with the negative value, which also covers Long.MIN_VALUE.
+		long n = value < 0 ? value : -value;
+		int i = newLength;
+		do {
+			buf[--i] = (char) ('0' - (int) (n % 10));
+			n /= 10;
+		}
+		while (n != 0);
+		if (value < 0) {
+			buf[--i] = '-';
+		}
+		length = newLength;
+		addEnd(length);
+		line = null;
+		setType(fieldCount - 1, type);
+	}
+	
+	static private int stringSize(long value) {
+		int size = value < 0 ? 2 : 1;
+		long n = value < 0 ? value : -value;
+		while (n <= -10) {
+			n /= 10;
+			size++;
+		}
+		return size;
+	}
+	
+	/**
+	 * Add a FIELD_BYTES info string, keeping the raw bytes it was made from.
+	 * 
+	 * @param s - The info string to add.
+	 * @param raw - The bytes.
+	 */
+	void addInfo(String s, byte[] raw) {
+		addInfo(s, FIELD_BYTES);
+		int field = fieldCount - 1;
+		if (rawBytes == null) {
+			rawBytes = new byte[Math.max(fieldCount, 4)][];
+		}
+		else if (field >= rawBytes.length) {
+			rawBytes = Arrays.copyOf(rawBytes, Math.max(rawBytes.length * 2, field + 1));
+		}
+		rawBytes[field] = raw;
+	}
+	
+	private void setType(int field, byte type) {
+		if (types == null) {
+			types = new byte[Math.max(fieldCount, 4)];
+		}
+		else if (field >= types.length) {
+			types = Arrays.copyOf(types, Math.max(types.length * 2, field + 1));
+		}
+		types[field] = type;
 	}
 	
 	String removeLastInfo() {
-		if (info != null && info.size() > 0) {
-			return info.remove(info.size() - 1);
+		if (fieldCount > 1) {
+			int start = start(fieldCount - 1);
+			String removed = new String(buf, start, length - start);
+			dropLastInfo();
+			return removed;
 		}
 		return null;
 	}
 	
+	/**
+	 * Remove the last info string, if any, without making a string of it.
+	 */
+	void dropLastInfo() {
+		if (fieldCount > 1) {
+			if (fields != null) {
+				fields[fieldCount - 1] = null;
+			}
+			if (types != null && fieldCount - 1 < types.length) {
+				types[fieldCount - 1] = FIELD_STRING;
+			}
+			if (rawBytes != null && fieldCount - 1 < rawBytes.length) {
+				rawBytes[fieldCount - 1] = null;
+			}
+			fieldCount--;
+			length = ends[fieldCount - 1];
+			line = null;
+		}
+	}
+	
+	private void ensureCapacity(int capacity) {
+		if (capacity > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length * 2, capacity));
+		}
+	}
+	
 	private String escapeDelim(String s) {
 		return s.indexOf(DELIM) >= 0
 				? s.replace(DELIM, DELIM_REPLACEMENT)
@@ -82,13 +336,35 @@ public final class DataLineParser {
 				: s;
 	}
 	
+	/**
+	 * Get the string value of a field, making and caching it if need be.
+	 */
+	private String field(int field) {
+		if (fields == null) {
+			fields = new String[Math.max(fieldCount, 4)];
+		}
+		else if (field >= fields.length) {
+			fields = Arrays.copyOf(fields, Math.max(fields.length * 2, field + 1));
+		}
+		String value = fields[field];
+		if (value == null) {
+			int start = start(field);
+			value = new String(buf, start, ends[field] - start);
+			if (field > 0) {
+				value = unescapeDelim(value);
+			}
+			fields[field] = value;
+		}
+		return value;
+	}
+	
 	/**
 	 * Get the name of the data line. The name is generally a command id string.
 	 * 
 	 * @return The name, or "" if none.
 	 */
 	public String getName() {
-		return name;
+		return field(0);
 	}
 	
 	/**
@@ -101,15 +377,123 @@ public final class DataLineParser {
 	 * @throws IndexOutOfBoundsException if no data exists at the given index.
 	 */
 	public String getInfo(int index) {
-		if (info == null) {
+		checkInfoIndex(index);
+		return field(index + 1);
+	}
+	
+	private void checkInfoIndex(int index) {
+		if (fieldCount == 1) {
 			throw new IndexOutOfBoundsException(
 					"Attempt info read (index = " + index + ") but info is null.");
 		}
-		if (index >= info.size()) {
+		if (index < 0 || index >= fieldCount - 1) {
 			throw new IndexOutOfBoundsException("Out-of-bounds info read: index = " +
-					index + " but info.size() = " + info.size() + ".");
+					index + " but info.size() = " + (fieldCount - 1) + ".");
+		}
+	}
+	
+	/**
+	 * Parse the info string at the given index as an int, reading the digits
+	 * in place. Behaves exactly as Integer.parseInt(getInfo(index)).
+	 * 
+	 * @param index - Index of the info string to parse (0-based).
+	 * 
+	 * @return The int value.
+	 * 
+	 * @throws IndexOutOfBoundsException if no data exists at the given index.
+	 * @throws NumberFormatException if the string does not contain a parsable
+	 *  integer.
+	 */
+	int getIntInfo(int index) {
+		checkInfoIndex(index);
+		long value = parseDigits(index + 1, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		return value != NOT_PARSED ? (int) value : Integer.parseInt(field(index + 1));
+	}
+	
+	/**
+	 * Parse the info string at the given index as a long, reading the digits
+	 * in place. Behaves exactly as Long.parseLong(getInfo(index)).
+	 * 
+	 * @param index - Index of the info string to parse (0-based).
+	 * 
+	 * @return The long value.
+	 * 
+	 * @throws IndexOutOfBoundsException if no data exists at the given index.
+	 * @throws NumberFormatException if the string does not contain a parsable
+	 *  long.
+	 */
+	long getLongInfo(int index) {
+		checkInfoIndex(index);
+		long value = parseDigits(index + 1, Long.MIN_VALUE, Long.MAX_VALUE);
+		return value != NOT_PARSED ? value : Long.parseLong(field(index + 1));
+	}
+	
+	/**
+	 * Parse a field of ASCII digits, with an optional sign, in place.
+	 * 
+	 * @return The value, or NOT_PARSED if the field is empty, holds anything
+	 *  other than ASCII digits, or is out of range. The caller then parses the
+	 *  field string, which gives the proper NumberFormatException (or handles
+	 *  non-ASCII digits as the JDK does). Long.MIN_VALUE itself also takes
+	 *  that slower path.
+	 */
+	private long parseDigits(int field, long min, long max) {
+		int i = start(field);
+		int end = ends[field];
+		if (i == end) {
+			return NOT_PARSED;
+		}
+		boolean negative = buf[i] == '-';
+		if (negative || buf[i] == '+') {
+			if (++i == end) {
+				return NOT_PARSED;
+			}
+		}
+		long limit = negative ? min : -max;
+		long multmin = limit / 10;
+		long result = 0;
+		for (; i < end; i++) {
+			int digit = buf[i] - '0';
+			if (digit < 0 || digit > 9 || result < multmin) {
+				return NOT_PARSED;
+			}
+			result *= 10;
+			if (result < limit + digit) {
+				return NOT_PARSED;
+			}
+			result -= digit;
 		}
-		return info != null ? unescapeDelim(info.get(index)) : "";
+		return negative ? result : -result;
+	}
+	
+	/**
+	 * Get the type hint of the info string at the given index.
+	 * 
+	 * @param index - Index of the info string (0-based).
+	 * 
+	 * @return One of the FIELD constants; FIELD_STRING unless the info was
+	 *  added with a type.
+	 * 
+	 * @throws IndexOutOfBoundsException if no data exists at the given index.
+	 */
+	byte getInfoType(int index) {
+		checkInfoIndex(index);
+		return types != null && index + 1 < types.length ? types[index + 1] : FIELD_STRING;
+	}
+	
+	/**
+	 * Get the raw bytes of a FIELD_BYTES info string.
+	 * 
+	 * @param index - Index of the info string (0-based).
+	 * 
+	 * @return The bytes, which must not be changed, or null if the info
+	 *  string was not added from raw bytes.
+	 * 
+	 * @throws IndexOutOfBoundsException if no data exists at the given index.
+	 */
+	byte[] getInfoBytes(int index) {
+		checkInfoIndex(index);
+		return rawBytes != null && index + 1 < rawBytes.length ? rawBytes[index + 1] : null;
 	}
 	
 	/**
@@ -118,7 +502,51 @@ public final class DataLineParser {
 	 * @return The count of info strings.
 	 */
 	public int getInfoCount() {
-		return info != null ? info.size() : 0;
+		return fieldCount - 1;
+	}
+	
+	/**
+	 * Write the line, as it would be sent, followed by the line separator,
+	 * without making a string of it.
+	 * 
+	 * @param out - The line writer.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void writeLine(LineWriter out) throws IOException {
+		out.writeLine(buf, 0, length);
+	}
+	
+	/**
+	 * Test whether the name field is the given name, without making a string
+	 * of it.
+	 * 
+	 * @param name - The name, which must not need escaping.
+	 * 
+	 * @return True if the name matches.
+	 */
+	boolean hasName(String name) {
+		int end = ends[0];
+		if (end != name.length()) {
+			return false;
+		}
+		for (int i = 0; i < end; i++) {
+			if (buf[i] != name.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Append the line to a traffic journal, without making a string of it.
+	 * 
+	 * @param journal - The journal.
+	 * @param connectionId - The id of the socket handler.
+	 * @param isOutbound - True if the line was written, false if read.
+	 */
+	void journalTo(TrafficJournal journal, long connectionId, boolean isOutbound) {
+		journal.append(connectionId, isOutbound, buf, 0, length);
 	}
 	
 	/**
@@ -127,14 +555,10 @@ public final class DataLineParser {
 	 */
 	@Override
 	public String toString() {
-		StringBuffer result = new StringBuffer(name);
-		if (info != null) {
-			for (String s : info) {
-				result.append(DELIM);
-				result.append(s);
-			}
+		if (line == null) {
+			line = new String(buf, 0, length);
 		}
-		return result.toString();
+		return line;
 	}
 	
 }
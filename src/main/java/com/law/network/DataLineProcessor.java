@@ -0,0 +1,45 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+/**
+ * DataLineProcessor processes data lines from a socket and returns a response,
+ * without a new string or data line being made for each line read.
+ * 
+ * <p> A socket handler given a data line processor (see
+ * {@link SocketHandler#setDataLineProcessor(DataLineProcessor)}) reads every
+ * line into the one data line, which it resets for each line read, and
+ * calls this processor in place of its socket read processor.
+ * 
+ * <p> The data line belongs to the socket handler. It is only valid until
+ * this method returns, after which its contents are replaced by the next
+ * line read. A processor which keeps the line, or hands it to another
+ * thread, must keep a {@link DataLine#copy()} instead.
+ * 
+ * @author Lloyd
+ */
+public interface DataLineProcessor {
+	
+	/**
+	 * Process a data line and return a response.
+	 * 
+	 * <p> This method is called by a socket handler when a line is read from
+	 * its socket, in the same cases that
+	 * {@link SocketReadProcessor#processDataFromSocket(String, long)} would be.
+	 * If the handler is using MODE_READ_WRITE then the handler writes the
+	 * returned data line back to the socket before reading the next line, so
+	 * the processor may return a data line of its own which it reuses for
+	 * every response, or even the given line after changing it.
+	 * 
+	 * @param line - The line that was read from the socket. Valid only until
+	 *  this method returns.
+	 * @param fromId - The unique id of the socket handler.
+	 * 
+	 * @return A response which will be written back to the socket if the socket
+	 *  handler is using MODE_READ_WRITE, otherwise ignored. Null is written as
+	 *  an empty line.
+	 */
+	DataLine processDataLine(DataLine line, long fromId);
+	
+}
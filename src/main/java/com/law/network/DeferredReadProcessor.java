@@ -0,0 +1,15 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+/**
+ * Marks a socket read processor which only queues each line, and processes
+ * it after returning, so that it has no response to give. A socket handler
+ * refuses one in MODE_READ_WRITE, where each line must be answered.
+ * 
+ * @author Lloyd
+ */
+interface DeferredReadProcessor extends SocketReadProcessor {
+	
+}
@@ -0,0 +1,77 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.nio.charset.Charset;
+
+/**
+ * A line already encoded for the wire, which can be queued on any number of
+ * socket handlers using the same wire format (and, for text, the same
+ * charset), so that a line sent to many handlers is only encoded once.
+ * 
+ * <p> The bytes are shared by every handler the line is queued on, and must
+ * not be changed. So is a frame's compressed form, which the first
+ * BINARY_DEFLATE handler to write the frame keeps here for the others.
+ * 
+ * @author Lloyd
+ */
+final class EncodedLine {
+	
+	static private final String NEWLINE = System.getProperty("line.separator");
+	
+	/** The line's text, for the traffic journal. */
+	final String text;
+	
+	/** The text and line separator in the charset, or a whole binary frame. */
+	final byte[] bytes;
+	
+	/** The charset of a text line, or null for a frame. */
+	final Charset charset;
+	
+	/**
+	 * The frame as the BINARY_DEFLATE wire format sends it, or null until a
+	 * handler has compressed it. Handlers writing at the same time may each
+	 * compress it, but always to the same bytes.
+	 */
+	volatile byte[] compressed;
+	
+	private EncodedLine(String text, byte[] bytes, Charset charset) {
+		this.text = text;
+		this.bytes = bytes;
+		this.charset = charset;
+	}
+	
+	/**
+	 * Encode a line for the TEXT wire format.
+	 * 
+	 * @param line - The line.
+	 * @param charset - The charset of the handlers it will be queued on.
+	 * 
+	 * @return The encoded line.
+	 */
+	static EncodedLine text(String line, Charset charset) {
+		return new EncodedLine(line, (line + NEWLINE).getBytes(charset), charset);
+	}
+	
+	/**
+	 * Encode a line as a frame, for the binary wire formats.
+	 * 
+	 * @param parser - The line.
+	 * 
+	 * @return The encoded line.
+	 */
+	static EncodedLine frame(DataLineParser parser) {
+		return new EncodedLine(null, BinaryFrameCodec.encode(parser), null);
+	}
+	
+	/**
+	 * Test whether this is a binary frame rather than a text line.
+	 * 
+	 * @return True if a frame.
+	 */
+	boolean isFrame() {
+		return charset == null;
+	}
+	
+}
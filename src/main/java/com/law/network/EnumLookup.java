@@ -0,0 +1,57 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache of the name to constant table of each enum type, so that a name can
+ * be looked up without Enum.valueOf() throwing an exception for names which
+ * are not constants.
+ * 
+ * <p> Tables are built on first use, and are held per class with a
+ * ClassValue.
+ * 
+ * @author Lloyd
+ */
+final class EnumLookup {
+	
+	static private final ClassValue<Map<String, Enum<?>>> TABLES = new ClassValue<Map<String, Enum<?>>>() {
+		@Override
+		protected Map<String, Enum<?>> computeValue(Class<?> type) {
+			Object[] constants = type.getEnumConstants();
+			if (constants == null) {
+				return null;
+			}
+			Map<String, Enum<?>> table = new HashMap<String, Enum<?>>(constants.length * 2);
+			for (Object constant : constants) {
+				Enum<?> e = (Enum<?>) constant;
+				table.put(e.name(), e);
+			}
+			return table;
+		}
+	};
+	
+	private EnumLookup() {
+	}
+	
+	/**
+	 * Get the constant of the given enum type which has the given name.
+	 * 
+	 * @param enumType - The enum type.
+	 * @param name - The name of the constant.
+	 * 
+	 * @return The constant, or null if there is none of that name, or if the
+	 *  type is null or is not an enum type.
+	 */
+	static <T extends Enum<T>> T lookup(Class<T> enumType, String name) {
+		if (enumType == null || name == null) {
+			return null;
+		}
+		Map<String, Enum<?>> table = TABLES.get(enumType);
+		return table != null ? enumType.cast(table.get(name)) : null;
+	}
+	
+}
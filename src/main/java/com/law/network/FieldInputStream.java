@@ -0,0 +1,79 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The bytes of a streamed field, read straight from a socket handler's
+ * line reader, and ending after the field's length.
+ * 
+ * <p> Closing the stream skips whatever is left of the field, so the reader
+ * is left at the start of the next line.
+ * 
+ * @author Lloyd
+ */
+final class FieldInputStream extends InputStream {
+	
+	private final LineReader in;
+	private long remaining;
+	private boolean isClosed;
+	
+	/**
+	 * Construct a stream of the next bytes of a line reader.
+	 * 
+	 * @param in - The line reader.
+	 * @param length - The count of bytes in the field.
+	 */
+	FieldInputStream(LineReader in, long length) {
+		this.in = in;
+		this.remaining = length;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		byte[] b = new byte[1];
+		return read(b, 0, 1) < 0 ? -1 : b[0] & 0xff;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (isClosed) {
+			throw new IOException("Stream closed.");
+		}
+		if (remaining == 0) {
+			return -1;
+		}
+		int count = in.read(b, off, (int) Math.min(len, remaining));
+		if (count < 0) {
+			throw new EOFException("End of stream with " + remaining + " bytes of the field to come.");
+		}
+		remaining -= count;
+		return count;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		byte[] scratch = new byte[(int) Math.min(8192, Math.max(n, 1))];
+		long skipped = 0;
+		while (skipped < n && remaining > 0) {
+			skipped += read(scratch, 0, (int) Math.min(scratch.length, n - skipped));
+		}
+		return skipped;
+	}
+	
+	/**
+	 * Skip the rest of the field. The socket is not closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!isClosed) {
+			skip(remaining);
+			isClosed = true;
+		}
+	}
+	
+}
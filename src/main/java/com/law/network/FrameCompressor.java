@@ -0,0 +1,253 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses and decompresses binary frames for the BINARY_DEFLATE wire
+ * format, with one Deflater and one Inflater kept for the life of the
+ * connection.
+ * 
+ * <p> A frame whose body is shorter than the threshold, or which deflate
+ * does not make smaller, is sent as it is. A compressed frame has the top
+ * bit of its length header set; the length counts the bytes which follow,
+ * which are an int32 giving the length of the original body, and then the
+ * body deflated (without a zlib header). So small lines cost nothing, and
+ * the receiver can tell the two kinds of frame apart.
+ * 
+ * <p> Compression is only called by the thread holding the handler's write
+ * lock, and decompression only by the reading thread, so neither needs
+ * locking of its own. The CPU time of each is counted in the handler's
+ * metrics.
+ * 
+ * <p> The deflater and inflater are not ended when the handler closes, since
+ * another thread may be part way through a frame; their native memory is
+ * freed once the compressor is garbage collected.
+ * 
+ * @author Lloyd
+ */
+final class FrameCompressor {
+	
+	/** Flag set in the length header of a compressed frame. */
+	static final int COMPRESSED_FLAG = 0x80000000;
+	
+	static private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	static private final boolean isCpuTimeSupported = threads.isCurrentThreadCpuTimeSupported();
+	
+	private final int threshold;
+	private final int maxBodyLength;
+	private final SocketHandlerMetrics metrics;
+	private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+	private final Inflater inflater = new Inflater(true);
+	private byte[] deflated = new byte[4096];
+	private byte[] inflated = new byte[4096];
+	
+	/**
+	 * Construct a compressor.
+	 * 
+	 * @param threshold - The shortest frame body which is compressed.
+	 * @param maxBodyLength - The longest frame body which is inflated.
+	 * @param metrics - The metrics to count compression in.
+	 */
+	FrameCompressor(int threshold, int maxBodyLength, SocketHandlerMetrics metrics) {
+		this.threshold = threshold;
+		this.maxBodyLength = maxBodyLength;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Write a frame, compressing it if it is long enough and deflate makes it
+	 * smaller.
+	 * 
+	 * @param frame - The frame, including its length header.
+	 * @param out - The writer to write to.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void writeFrame(byte[] frame, LineWriter out) throws IOException {
+		int bodyLength = frame.length - BinaryFrameCodec.HEADER_LENGTH;
+		if (bodyLength < threshold) {
+			out.write(frame);
+			return;
+		}
+		long startNanos = cpuTime();
+		int length = deflate(frame, bodyLength);
+		if (length + 4 >= bodyLength) {
+			metrics.compressed(bodyLength, bodyLength, cpuTime() - startNanos);
+			out.write(frame);
+			return;
+		}
+		metrics.compressed(bodyLength, length + 4, cpuTime() - startNanos);
+		byte[] header = ByteBuffer.allocate(8)
+				.putInt(COMPRESSED_FLAG | (length + 4))
+				.putInt(bodyLength)
+				.array();
+		out.write(header);
+		out.write(deflated, 0, length);
+	}
+	
+	/**
+	 * Write a frame shared by many handlers, as for
+	 * {@link #writeFrame(byte[], LineWriter)}, but keep what is sent in the
+	 * line, so that the frame is only compressed once.
+	 * 
+	 * @param line - The frame.
+	 * @param out - The writer to write to.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void writeFrame(EncodedLine line, LineWriter out) throws IOException {
+		byte[] frame = line.bytes;
+		int bodyLength = frame.length - BinaryFrameCodec.HEADER_LENGTH;
+		if (bodyLength < threshold) {
+			out.write(frame);
+			return;
+		}
+		byte[] sent = line.compressed;
+		if (sent != null) {
+			metrics.compressed(bodyLength, sent.length - BinaryFrameCodec.HEADER_LENGTH, 0);
+		}
+		else {
+			long startNanos = cpuTime();
+			int length = deflate(frame, bodyLength);
+			if (length + 4 >= bodyLength) {
+				sent = frame;
+			}
+			else {
+				sent = ByteBuffer.allocate(8 + length)
+						.putInt(COMPRESSED_FLAG | (length + 4))
+						.putInt(bodyLength)
+						.put(deflated, 0, length)
+						.array();
+			}
+			metrics.compressed(bodyLength, sent.length - BinaryFrameCodec.HEADER_LENGTH, cpuTime() - startNanos);
+			line.compressed = sent;
+		}
+		out.write(sent);
+	}
+	
+	/**
+	 * Deflate a frame's body into the deflated buffer.
+	 * 
+	 * @return The count of deflated bytes.
+	 */
+	private int deflate(byte[] frame, int bodyLength) {
+		deflater.reset();
+		deflater.setInput(frame, BinaryFrameCodec.HEADER_LENGTH, bodyLength);
+		deflater.finish();
+		int length = 0;
+		while (!deflater.finished()) {
+			if (length == deflated.length) {
+				deflated = Arrays.copyOf(deflated, deflated.length * 2);
+			}
+			length += deflater.deflate(deflated, length, deflated.length - length);
+		}
+		return length;
+	}
+	
+	/**
+	 * Test whether a frame header is that of a compressed frame.
+	 * 
+	 * @param header - The bytes of the header.
+	 * 
+	 * @return True if the frame is compressed.
+	 */
+	static boolean isCompressed(byte[] header) {
+		return (header[0] & 0x80) != 0;
+	}
+	
+	/**
+	 * Get the length of a compressed frame's contents, as given by its
+	 * header.
+	 * 
+	 * @param header - The bytes of the header.
+	 * 
+	 * @return The count of bytes which follow the header.
+	 * 
+	 * @throws IOException if the length is not valid.
+	 */
+	static int compressedLength(byte[] header) throws IOException {
+		int length = ByteBuffer.wrap(header, 0, BinaryFrameCodec.HEADER_LENGTH).getInt() & ~COMPRESSED_FLAG;
+		if (length < 5 || length > BinaryFrameCodec.MAX_FRAME_LENGTH) {
+			throw new IOException("Bad compressed frame length: " + length);
+		}
+		return length;
+	}
+	
+	/**
+	 * Decompress the contents of a compressed frame into a buffer which is
+	 * reused by the next call (see {@link #inflated()}).
+	 * 
+	 * @param contents - The bytes which followed the frame's header.
+	 * @param length - The count of those bytes.
+	 * 
+	 * @return The length of the frame body.
+	 * 
+	 * @throws IOException if the contents are not valid, or inflate to more
+	 *  than the longest frame body.
+	 */
+	int inflate(byte[] contents, int length) throws IOException {
+		int bodyLength = ByteBuffer.wrap(contents, 0, 4).getInt();
+		if (bodyLength < 4 || bodyLength > BinaryFrameCodec.MAX_FRAME_LENGTH) {
+			throw new IOException("Bad frame length: " + bodyLength);
+		}
+		if (bodyLength > maxBodyLength) {
+			throw new IOException("Frame longer than " + maxBodyLength + " bytes.");
+		}
+		if (bodyLength > inflated.length) {
+			inflated = new byte[Math.max(inflated.length * 2, bodyLength)];
+		}
+		long startNanos = cpuTime();
+		inflater.reset();
+		inflater.setInput(contents, 4, length - 4);
+		int done = 0;
+		try {
+			while (done < bodyLength) {
+				int n = inflater.inflate(inflated, done, bodyLength - done);
+				done += n;
+				// A finished stream with input left over never needs more input, so
+				// stop on any call which makes no progress; the check below throws.
+				if (n == 0 || inflater.finished()) {
+					break;
+				}
+			}
+		}
+		catch (DataFormatException e) {
+			throw new IOException("Bad compressed frame.", e);
+		}
+		if (done != bodyLength) {
+			throw new IOException("Compressed frame inflated to " + done + " of " + bodyLength + " bytes.");
+		}
+		metrics.decompressed(cpuTime() - startNanos);
+		return bodyLength;
+	}
+	
+	/**
+	 * Get the buffer holding the frame body from the last call to
+	 * {@link #inflate(byte[], int)}.
+	 * 
+	 * @return The buffer.
+	 */
+	byte[] inflated() {
+		return inflated;
+	}
+	
+	/**
+	 * Get the current thread's CPU time, or the wall time where that is not
+	 * available (such as on a virtual thread).
+	 */
+	static private long cpuTime() {
+		long nanos = isCpuTimeSupported ? threads.getCurrentThreadCpuTime() : -1L;
+		return nanos >= 0 ? nanos : System.nanoTime();
+	}
+	
+}
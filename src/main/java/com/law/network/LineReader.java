@@ -0,0 +1,361 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads newline terminated lines from a byte stream.
+ * 
+ * <p> Bytes are read into a reusable buffer and scanned for '\n' directly,
+ * and only the bytes of each completed line are decoded. A line made up
+ * only of ASCII bytes skips the charset decoder altogether.
+ * 
+ * <p> A line ends at '\n', and a '\r' immediately before the '\n' is dropped.
+ * Unlike BufferedReader a lone '\r' does not end a line. The charset must be
+ * ASCII compatible (for example UTF-8 or ISO-8859-1), so that '\n' can be
+ * found without decoding.
+ * 
+ * <p> A line longer than the maximum line length is an error, found as soon
+ * as that many bytes have arrived without a '\n', so a peer cannot make the
+ * reader buffer an unbounded line.
+ * 
+ * <p> Not thread safe; one thread reads at a time.
+ * 
+ * @author Lloyd
+ */
+final class LineReader {
+	
+	static private final int DEFAULT_BUFFER_SIZE = 8192;
+	
+	private final InputStream in;
+	private final Charset charset;
+	private final LongAdder byteCount;
+	private final int maxLineLength;
+	private byte[] buf = new byte[DEFAULT_BUFFER_SIZE];
+	private int pos;
+	private int limit;
+	private int lineAscii;
+	
+	/**
+	 * Construct a line reader.
+	 * 
+	 * @param in - The stream to read.
+	 * @param charset - The ASCII compatible charset of the stream.
+	 * 
+	 * @throws IllegalArgumentException if the charset is not ASCII compatible.
+	 */
+	LineReader(InputStream in, Charset charset) {
+		this(in, charset, new LongAdder());
+	}
+	
+	/**
+	 * Construct a line reader which counts the bytes it reads.
+	 * 
+	 * @param in - The stream to read.
+	 * @param charset - The ASCII compatible charset of the stream.
+	 * @param byteCount - Counter to add each read from the stream to.
+	 * 
+	 * @throws IllegalArgumentException if the charset is not ASCII compatible.
+	 */
+	LineReader(InputStream in, Charset charset, LongAdder byteCount) {
+		this(in, charset, byteCount, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Construct a line reader which counts the bytes it reads, and limits
+	 * the length of a line.
+	 * 
+	 * @param in - The stream to read.
+	 * @param charset - The ASCII compatible charset of the stream.
+	 * @param byteCount - Counter to add each read from the stream to.
+	 * @param maxLineLength - The most bytes in a line, not counting its
+	 *  terminator.
+	 * 
+	 * @throws IllegalArgumentException if the charset is not ASCII compatible.
+	 */
+	LineReader(InputStream in, Charset charset, LongAdder byteCount, int maxLineLength) {
+		checkAsciiCompatible(charset);
+		this.in = in;
+		this.charset = charset;
+		this.byteCount = byteCount;
+		this.maxLineLength = maxLineLength;
+	}
+	
+	/**
+	 * Read a line. Blocks until a whole line has arrived.
+	 * 
+	 * @return The line, not including the line terminator, or null if the end
+	 *  of the stream has been reached. Bytes after the last '\n' are returned
+	 *  as a final line.
+	 * 
+	 * @throws IOException If an I/O error occurs, or the line is longer than
+	 *  the maximum line length.
+	 */
+	String readLine() throws IOException {
+		int end = findLine();
+		if (end < 0) {
+			return null;
+		}
+		String line = decode(pos, end, lineAscii);
+		pos = end < limit ? end + 1 : end;
+		return line;
+	}
+	
+	/**
+	 * Read a line into the given parser, replacing its contents. A line of
+	 * ASCII bytes is copied straight into the parser's buffer, so no string is
+	 * made for it.
+	 * 
+	 * @param target - The parser to read into.
+	 * 
+	 * @return True if a line was read, or false if the end of the stream has
+	 *  been reached, in which case the parser is unchanged.
+	 * 
+	 * @throws IOException If an I/O error occurs, or the line is longer than
+	 *  the maximum line length.
+	 */
+	boolean readLine(DataLineParser target) throws IOException {
+		int end = findLine();
+		if (end < 0) {
+			return false;
+		}
+		int lineEnd = end > pos && buf[end - 1] == '\r' ? end - 1 : end;
+		if ((lineAscii & 0x80) == 0) {
+			target.reset(buf, pos, lineEnd - pos);
+		}
+		else {
+			target.reset(new String(buf, pos, lineEnd - pos, charset));
+		}
+		pos = end < limit ? end + 1 : end;
+		return true;
+	}
+	
+	/**
+	 * Find the end of the next line, reading more bytes as needed. The line
+	 * starts at pos, and lineAscii is set to the OR of its bytes.
+	 * 
+	 * @return The offset of the line's '\n', or limit if the stream ended
+	 *  after a final line without one, or -1 if the stream has ended.
+	 */
+	private int findLine() throws IOException {
+		int scanned = pos;
+		int ascii = 0;
+		for (;;) {
+			for (int i = scanned; i < limit; i++) {
+				byte b = buf[i];
+				if (b == '\n') {
+					checkLineLength(i - pos - (i > pos && buf[i - 1] == '\r' ? 1 : 0));
+					lineAscii = ascii;
+					return i;
+				}
+				ascii |= b;
+			}
+			scanned = limit;
+			// Give up before buffering more, once no '\r' could bring it back in.
+			checkLineLength(limit - pos - 1);
+			int shift = fill();
+			if (shift < 0) {
+				lineAscii = ascii;
+				return pos == limit ? -1 : limit;
+			}
+			scanned -= shift;
+		}
+	}
+	
+	private void checkLineLength(int length) throws IOException {
+		if (length > maxLineLength) {
+			throw new IOException("Line longer than " + maxLineLength + " bytes.");
+		}
+	}
+	
+	/**
+	 * Read up to the given count of bytes, starting with any bytes already
+	 * buffered, and blocking only if none are. Used for streamed fields,
+	 * which are read straight into the caller's array.
+	 * 
+	 * @param b - The array to read into.
+	 * @param off - The offset in the array of the first byte.
+	 * @param len - The most bytes to read.
+	 * 
+	 * @return The count of bytes read, or -1 at the end of the stream.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (pos < limit) {
+			int n = Math.min(len, limit - pos);
+			System.arraycopy(buf, pos, b, off, n);
+			pos += n;
+			return n;
+		}
+		int count = in.read(b, off, len);
+		if (count > 0) {
+			byteCount.add(count);
+		}
+		return count;
+	}
+	
+	/**
+	 * Read exactly the given count of bytes, starting with any bytes already
+	 * buffered. Used for binary frames, which may follow a text handshake on
+	 * the same stream.
+	 * 
+	 * @param b - The array to read into.
+	 * @param off - The offset in the array of the first byte.
+	 * @param len - The count of bytes to read.
+	 * 
+	 * @return True if the bytes were read, or false if the end of the stream
+	 *  was reached before the first byte.
+	 * 
+	 * @throws EOFException if the end of the stream is reached part way.
+	 * @throws IOException If an I/O error occurs.
+	 */
+	boolean readFully(byte[] b, int off, int len) throws IOException {
+		int done = 0;
+		while (done < len) {
+			if (pos == limit) {
+				pos = 0;
+				limit = 0;
+				int count = in.read(buf, 0, buf.length);
+				if (count < 0) {
+					if (done == 0) {
+						return false;
+					}
+					throw new EOFException("End of stream after " + done + " of " + len + " bytes.");
+				}
+				limit = count;
+				byteCount.add(count);
+			}
+			int n = Math.min(len - done, limit - pos);
+			System.arraycopy(buf, pos, b, off + done, n);
+			pos += n;
+			done += n;
+		}
+		return true;
+	}
+	
+	/**
+	 * Read more bytes, first moving any partial line to the front of the
+	 * buffer, and growing the buffer if the partial line fills it.
+	 * 
+	 * @return How far the partial line moved back, or -1 at end of stream.
+	 */
+	private int fill() throws IOException {
+		int shift = pos;
+		if (pos > 0) {
+			System.arraycopy(buf, pos, buf, 0, limit - pos);
+			limit -= pos;
+			pos = 0;
+		}
+		if (limit == buf.length) {
+			buf = Arrays.copyOf(buf, buf.length * 2);
+		}
+		int count = in.read(buf, limit, buf.length - limit);
+		if (count < 0) {
+			return -1;
+		}
+		limit += count;
+		byteCount.add(count);
+		return shift;
+	}
+	
+	private String decode(int start, int end, int ascii) {
+		if (end > start && buf[end - 1] == '\r') {
+			end--;
+		}
+		return (ascii & 0x80) == 0
+				? new String(buf, start, end - start, StandardCharsets.ISO_8859_1)
+				: new String(buf, start, end - start, charset);
+	}
+	
+	/**
+	 * Decode a line which has already been framed, dropping a trailing '\r'.
+	 * 
+	 * @param bytes - The bytes of the line, without the '\n'.
+	 * @param start - The start offset of the line.
+	 * @param end - The end offset of the line.
+	 * @param charset - The ASCII compatible charset of the line.
+	 * 
+	 * @return The line.
+	 */
+	static String decodeLine(byte[] bytes, int start, int end, Charset charset) {
+		if (end > start && bytes[end - 1] == '\r') {
+			end--;
+		}
+		int ascii = 0;
+		for (int i = start; i < end; i++) {
+			ascii |= bytes[i];
+		}
+		return (ascii & 0x80) == 0
+				? new String(bytes, start, end - start, StandardCharsets.ISO_8859_1)
+				: new String(bytes, start, end - start, charset);
+	}
+	
+	/**
+	 * Decode a line which has already been framed into the given parser,
+	 * replacing its contents, and dropping a trailing '\r'. A line of ASCII
+	 * bytes is copied straight into the parser's buffer.
+	 * 
+	 * @param bytes - The bytes of the line, without the '\n'.
+	 * @param start - The start offset of the line.
+	 * @param end - The end offset of the line.
+	 * @param charset - The ASCII compatible charset of the line.
+	 * @param target - The parser to decode into.
+	 */
+	static void decodeLine(byte[] bytes, int start, int end, Charset charset, DataLineParser target) {
+		if (end > start && bytes[end - 1] == '\r') {
+			end--;
+		}
+		int ascii = 0;
+		for (int i = start; i < end; i++) {
+			ascii |= bytes[i];
+		}
+		if ((ascii & 0x80) == 0) {
+			target.reset(bytes, start, end - start);
+		}
+		else {
+			target.reset(new String(bytes, start, end - start, charset));
+		}
+	}
+	
+	/**
+	 * Close the stream.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void close() throws IOException {
+		in.close();
+	}
+	
+	/**
+	 * Check that the given charset encodes every ASCII character as that
+	 * single byte.
+	 * 
+	 * @param charset - The charset to check.
+	 * 
+	 * @throws IllegalArgumentException if the charset is not ASCII compatible.
+	 */
+	static void checkAsciiCompatible(Charset charset) {
+		char[] chars = new char[128];
+		byte[] expected = new byte[128];
+		for (int i = 0; i < 128; i++) {
+			chars[i] = (char) i;
+			expected[i] = (byte) i;
+		}
+		if (!Arrays.equals(expected, new String(chars).getBytes(charset))) {
+			throw new IllegalArgumentException("Charset is not ASCII compatible: " + charset);
+		}
+	}
+	
+}
@@ -0,0 +1,195 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Writes newline terminated lines, and raw frames, to a byte stream.
+ * 
+ * <p> Output is gathered in a reusable buffer and only written to the stream
+ * when the buffer fills or flush() is called. A line made up only of ASCII
+ * characters is copied straight into the buffer without the charset encoder.
+ * 
+ * <p> Not thread safe; callers hold the socket handler's write lock.
+ * 
+ * @author Lloyd
+ */
+final class LineWriter {
+	
+	static private final int DEFAULT_BUFFER_SIZE = 8192;
+	static private final String NEWLINE = System.getProperty("line.separator");
+	
+	private final OutputStream out;
+	private final Charset charset;
+	private final LongAdder byteCount;
+	private final byte[] buf = new byte[DEFAULT_BUFFER_SIZE];
+	private int count;
+	
+	/**
+	 * Construct a line writer.
+	 * 
+	 * @param out - The stream to write.
+	 * @param charset - The ASCII compatible charset of the stream.
+	 */
+	LineWriter(OutputStream out, Charset charset) {
+		this(out, charset, new LongAdder());
+	}
+	
+	/**
+	 * Construct a line writer which counts the bytes it writes.
+	 * 
+	 * @param out - The stream to write.
+	 * @param charset - The ASCII compatible charset of the stream.
+	 * @param byteCount - Counter to add each write to the stream to.
+	 */
+	LineWriter(OutputStream out, Charset charset, LongAdder byteCount) {
+		this.out = out;
+		this.charset = charset;
+		this.byteCount = byteCount;
+	}
+	
+	/**
+	 * Write a line followed by the line separator. Nothing is flushed.
+	 * 
+	 * @param line - The line to write.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void writeLine(String line) throws IOException {
+		if (!writeAscii(line)) {
+			write(line.getBytes(charset));
+		}
+		writeAscii(NEWLINE);
+	}
+	
+	/**
+	 * Write a line held in a char array, followed by the line separator.
+	 * Nothing is flushed.
+	 * 
+	 * @param chars - The chars of the line.
+	 * @param offset - The offset of the line's first char.
+	 * @param length - The count of chars in the line.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void writeLine(char[] chars, int offset, int length) throws IOException {
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			if (chars[i] >= 0x80) {
+				write(new String(chars, offset, length).getBytes(charset));
+				writeAscii(NEWLINE);
+				return;
+			}
+		}
+		int i = offset;
+		while (i < end) {
+			if (count == buf.length) {
+				flushBuffer();
+			}
+			int n = Math.min(end - i, buf.length - count);
+			for (int stop = i + n; i < stop; i++) {
+				buf[count++] = (byte) chars[i];
+			}
+		}
+		writeAscii(NEWLINE);
+	}
+	
+	/**
+	 * Copy the string into the buffer if it is all ASCII.
+	 * 
+	 * @return True if it was written, or false if it contains a non-ASCII
+	 *  character, in which case nothing was written.
+	 */
+	private boolean writeAscii(String s) throws IOException {
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			if (s.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+		int i = 0;
+		while (i < length) {
+			if (count == buf.length) {
+				flushBuffer();
+			}
+			int n = Math.min(length - i, buf.length - count);
+			for (int end = i + n; i < end; i++) {
+				buf[count++] = (byte) s.charAt(i);
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Write raw bytes. Nothing is flushed.
+	 * 
+	 * @param bytes - The bytes to write.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void write(byte[] bytes) throws IOException {
+		write(bytes, 0, bytes.length);
+	}
+	
+	/**
+	 * Write raw bytes. Nothing is flushed.
+	 * 
+	 * @param bytes - The bytes to write.
+	 * @param offset - The offset of the first byte to write.
+	 * @param length - The count of bytes to write.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void write(byte[] bytes, int offset, int length) throws IOException {
+		if (length >= buf.length) {
+			flushBuffer();
+			// Counted first, so the count never lags what the peer has seen.
+			byteCount.add(length);
+			out.write(bytes, offset, length);
+			return;
+		}
+		if (length > buf.length - count) {
+			flushBuffer();
+		}
+		System.arraycopy(bytes, offset, buf, count, length);
+		count += length;
+	}
+	
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			byteCount.add(count);
+			out.write(buf, 0, count);
+			count = 0;
+		}
+	}
+	
+	/**
+	 * Write everything buffered, and flush the stream.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+	
+	/**
+	 * Flush and close the stream.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	void close() throws IOException {
+		try {
+			flushBuffer();
+		}
+		finally {
+			out.close();
+		}
+	}
+	
+}
@@ -0,0 +1,119 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Unbounded lock-free queue for many producer threads and a single consumer
+ * thread.
+ * 
+ * <p> offer() may be called by any thread. poll(), peek(), isEmpty() and
+ * clear() must only be called by the one consumer thread. Items are returned
+ * in the order their offer() calls took effect, so items from any one
+ * producer are always returned in the order that producer offered them.
+ * 
+ * <p> Each offer() is a single atomic swap on the tail, and poll() never
+ * contends with producers, so neither side ever blocks the other.
+ * 
+ * @author Lloyd
+ */
+final class MpscQueue<E> {
+	
+	static private final class Node<E> {
+		E value;
+		volatile Node<E> next;
+		
+		Node(E value) {
+			this.value = value;
+		}
+	}
+	
+	@SuppressWarnings("rawtypes")
+	static private final AtomicReferenceFieldUpdater<Node, Node> NEXT =
+			AtomicReferenceFieldUpdater.newUpdater(Node.class, Node.class, "next");
+	
+	private final AtomicReference<Node<E>> tail;
+	private Node<E> head;
+	
+	MpscQueue() {
+		Node<E> stub = new Node<E>(null);
+		head = stub;
+		tail = new AtomicReference<Node<E>>(stub);
+	}
+	
+	/**
+	 * Add an item to the tail of the queue. Safe for any thread.
+	 * 
+	 * @param item - The item to add.
+	 * 
+	 * @throws NullPointerException if the item is null.
+	 */
+	void offer(E item) {
+		if (item == null) {
+			throw new NullPointerException("Null queue item.");
+		}
+		Node<E> node = new Node<E>(item);
+		Node<E> previous = tail.getAndSet(node);
+		NEXT.lazySet(previous, node);
+	}
+	
+	/**
+	 * Remove the item at the head of the queue. Consumer thread only.
+	 * 
+	 * @return The oldest item, or null if the queue is empty.
+	 */
+	E poll() {
+		Node<E> next = nextOfHead();
+		if (next == null) {
+			return null;
+		}
+		E item = next.value;
+		next.value = null;
+		head = next;
+		return item;
+	}
+	
+	/**
+	 * Get the item at the head of the queue without removing it. Consumer
+	 * thread only.
+	 * 
+	 * @return The oldest item, or null if the queue is empty.
+	 */
+	E peek() {
+		Node<E> next = nextOfHead();
+		return next != null ? next.value : null;
+	}
+	
+	/**
+	 * Determine whether the queue is empty. Consumer thread only.
+	 * 
+	 * @return True if the queue is empty.
+	 */
+	boolean isEmpty() {
+		return head.next == null && head == tail.get();
+	}
+	
+	/**
+	 * Remove every item. Consumer thread only.
+	 */
+	void clear() {
+		while (poll() != null) {
+		}
+	}
+	
+	private Node<E> nextOfHead() {
+		Node<E> current = head;
+		Node<E> next = current.next;
+		if (next == null && current != tail.get()) {
+			// A producer has swapped the tail but not yet linked its node.
+			while ((next = current.next) == null) {
+				Thread.yield();
+			}
+		}
+		return next;
+	}
+	
+}
@@ -0,0 +1,171 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single selector thread which services the channels registered with it.
+ * 
+ * <p> All channel I/O for a registered channel happens on this loop's thread.
+ * Other threads hand work to the loop with {@link #execute(Runnable)}.
+ * 
+ * <p> The loop owns one read buffer and one write buffer, which every channel
+ * registered with it shares, rather than each connection holding buffers of
+ * its own while it is idle.
+ * 
+ * @author Lloyd
+ */
+final class NioEventLoop implements Runnable {
+	
+	/**
+	 * Attachment for a selection key registered with an event loop.
+	 */
+	interface Selectable {
+		
+		/**
+		 * Called on the event loop thread when the key is ready.
+		 * 
+		 * @param key - The ready selection key.
+		 */
+		void selected(SelectionKey key);
+		
+		/**
+		 * Called on the event loop thread when the loop is shutting down.
+		 */
+		void loopClosing();
+	}
+	
+	static private final int READ_BUFFER_SIZE = 8192;
+	static private final int WRITE_BUFFER_SIZE = 64 * 1024;
+	
+	private final Selector selector;
+	private final Thread thread;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+	private final AtomicBoolean wakeupPending = new AtomicBoolean();
+	private volatile boolean isStopped = false;
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+	
+	NioEventLoop(String name) throws IOException {
+		selector = Selector.open();
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+	}
+	
+	void start() {
+		thread.start();
+	}
+	
+	Selector selector() {
+		return selector;
+	}
+	
+	/**
+	 * Get the read buffer shared by this loop's channels. For this loop's
+	 * thread only; a channel must take everything it reads out of the buffer
+	 * before returning to the loop.
+	 * 
+	 * @return The read buffer.
+	 */
+	ByteBuffer readBuffer() {
+		return readBuffer;
+	}
+	
+	/**
+	 * Get the write buffer shared by this loop's channels. For this loop's
+	 * thread only; a channel must copy out whatever it could not write, and
+	 * clear the buffer, before returning to the loop.
+	 * 
+	 * @return The write buffer.
+	 */
+	ByteBuffer writeBuffer() {
+		return writeBuffer;
+	}
+	
+	boolean inEventLoop() {
+		return Thread.currentThread() == thread;
+	}
+	
+	/**
+	 * Run the given task on this loop's thread.
+	 * 
+	 * <p> Tasks run in the order they were submitted.
+	 * 
+	 * @param task - The task to run.
+	 */
+	void execute(Runnable task) {
+		tasks.add(task);
+		if (!inEventLoop() && wakeupPending.compareAndSet(false, true)) {
+			selector.wakeup();
+		}
+	}
+	
+	/**
+	 * Stop the loop. Every registered channel is closed by the loop thread as
+	 * it exits.
+	 */
+	void shutdown() {
+		isStopped = true;
+		selector.wakeup();
+	}
+	
+	@Override
+	public void run() {
+		try {
+			while (!isStopped) {
+				wakeupPending.set(false);
+				if (tasks.isEmpty()) {
+					selector.select();
+				}
+				else {
+					selector.selectNow();
+				}
+				
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (key.isValid()) {
+						((Selectable) key.attachment()).selected(key);
+					}
+				}
+				
+				runTasks();
+			}
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+		finally {
+			runTasks();
+			for (SelectionKey key : selector.keys()) {
+				try { ((Selectable) key.attachment()).loopClosing(); }
+				catch (Exception e) {
+					// Eat any exception so that every channel gets closed.
+				}
+			}
+			try { selector.close(); }
+			catch (IOException e) {}
+		}
+	}
+	
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try { task.run(); }
+			catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,139 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.law.network.SocketHandler.Mode;
+
+/**
+ * A small fixed set of selector threads shared by many connections.
+ * 
+ * <p> Unlike a {@link SocketHandler}, which dedicates a thread to each
+ * connection, the handlers created by this group share the group's event
+ * loop threads. Each connection is bound to one loop for its whole life,
+ * so a connection's lines are always processed in order, by the same thread.
+ * 
+ * <p> Because the loop threads are shared, socket read processors used with
+ * this group must not block. A processor that blocks stalls every connection
+ * on the same loop.
+ * 
+ * @author Lloyd
+ */
+public class NioEventLoopGroup {
+	
+	private final NioEventLoop[] loops;
+	private final AtomicInteger nextLoop = new AtomicInteger();
+	
+	/**
+	 * Construct an event loop group, and start its threads.
+	 * 
+	 * @param loopCount - The number of event loop threads, typically the
+	 *  number of available processors.
+	 * 
+	 * @throws IOException if a selector cannot be opened.
+	 * @throws IllegalArgumentException if the loop count is less than one.
+	 */
+	public NioEventLoopGroup(int loopCount) throws IOException {
+		if (loopCount < 1) {
+			throw new IllegalArgumentException("Loop count must be positive: " + loopCount);
+		}
+		loops = new NioEventLoop[loopCount];
+		try {
+			for (int i = 0; i < loopCount; i++) {
+				loops[i] = new NioEventLoop("nio-event-loop-" + i);
+			}
+		}
+		catch (IOException e) {
+			for (NioEventLoop loop : loops) {
+				if (loop != null) {
+					try { loop.selector().close(); }
+					catch (IOException ce) {}
+				}
+			}
+			throw e;
+		}
+		for (NioEventLoop loop : loops) {
+			loop.start();
+		}
+	}
+	
+	/**
+	 * Construct a socket handler for the given connected channel. The
+	 * handler is bound to one of this group's event loops.
+	 * 
+	 * <p> The handler is returned unstarted. It has no blocking readLine()
+	 * or writeLine(), so any handshake must be done on the channel before
+	 * calling this, without reading past the end of the handshake.
+	 * 
+	 * @param channel - The connected channel to handle.
+	 * @param mode - The mode in which the channel will be handled.
+	 * @param readProcessor - Socket read processor to call when data is read
+	 *  from the channel; can be null. Not used when mode is MODE_WRITE.
+	 * @param shutdownListener - Listener for channel close event, or null for
+	 *  none.
+	 * 
+	 * @return The unstarted socket handler.
+	 * 
+	 * @throws IllegalArgumentException if the mode is MODE_READ_WRITE and the
+	 *  read processor gives no responses.
+	 */
+	public NioSocketHandler newHandler(SocketChannel channel, Mode mode,
+			SocketReadProcessor readProcessor, NioShutdownListener shutdownListener) {
+		return newHandler(channel, mode, readProcessor, shutdownListener, new SocketHandlerConfig());
+	}
+	
+	/**
+	 * Construct a socket handler for the given connected channel, with the
+	 * given settings. The handler is bound to one of this group's event loops.
+	 * 
+	 * <p> Settings which only apply to a thread based handler, such as the
+	 * execution mode and write batching, are ignored; an NIO handler always
+	 * gathers all pending lines into each channel write.
+	 * 
+	 * @param channel - The connected channel to handle.
+	 * @param mode - The mode in which the channel will be handled.
+	 * @param readProcessor - Socket read processor to call when data is read
+	 *  from the channel; can be null. Not used when mode is MODE_WRITE.
+	 * @param shutdownListener - Listener for channel close event, or null for
+	 *  none.
+	 * @param config - Settings for the handler.
+	 * 
+	 * @return The unstarted socket handler.
+	 * 
+	 * @throws IllegalArgumentException if the mode is MODE_READ_WRITE and the
+	 *  read processor gives no responses.
+	 */
+	public NioSocketHandler newHandler(SocketChannel channel, Mode mode,
+			SocketReadProcessor readProcessor, NioShutdownListener shutdownListener,
+			SocketHandlerConfig config) {
+		return new NioSocketHandler(channel, next(), mode, readProcessor, shutdownListener, config);
+	}
+	
+	/**
+	 * Stop every event loop in this group. Handlers still registered with the
+	 * group are closed, and their shutdown listeners are called.
+	 */
+	public void shutdown() {
+		for (NioEventLoop loop : loops) {
+			loop.shutdown();
+		}
+	}
+	
+	/**
+	 * Get the number of event loops in this group.
+	 * 
+	 * @return The loop count.
+	 */
+	public int getLoopCount() {
+		return loops.length;
+	}
+	
+	NioEventLoop next() {
+		return loops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+	}
+	
+}
@@ -0,0 +1,26 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+/**
+ * NioShutdownListener is called when an NIO socket handler is closing its
+ * channel. It is the {@link NioSocketHandler} counterpart of
+ * {@link SocketShutdownListener}.
+ * 
+ * @author Lloyd
+ */
+public interface NioShutdownListener {
+	
+	/**
+	 * This method is called on the handler's event loop immediately prior to
+	 * a started NIO socket handler closing its channel, so it must not block.
+	 * 
+	 * <p> This will happen whether the handler is closed intentionally, or
+	 * closes due to an exception.
+	 * 
+	 * @param nioHandler - The NIO socket handler that is closing.
+	 */
+	void channelClosing(NioSocketHandler nioHandler);
+	
+}
@@ -0,0 +1,810 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.law.network.SocketHandler.Mode;
+import com.law.network.SocketHandler.WireFormat;
+
+/**
+ * Socket handler which is driven by a shared {@link NioEventLoopGroup} event
+ * loop rather than by a thread of its own.
+ * 
+ * <p> The handler follows the same {@link SocketHandler.Mode} rules as a
+ * thread based socket handler, calls its socket read processor with the
+ * handler's id, and calls its shutdown listener before the channel is closed.
+ * The read processor is called on the event loop thread, so it must not block.
+ * 
+ * <p> Lines are sent and read as text only. There are no blocking readLine()
+ * and writeLine() methods: a handshake before the handler starts must be
+ * done on the channel itself, before the handler is made, without reading
+ * past the handshake. A peer which offers another wire format as its first
+ * line is answered with TEXT, and falls back to text. A field streamed by
+ * a peer's {@link SocketHandler#writeStream(DataLine, java.io.InputStream, long)}
+ * is skipped, as by a socket handler without a stream processor.
+ * 
+ * <p> The handler keeps no buffers of its own while it is idle. Reads and
+ * writes go through buffers shared by every handler on the same event loop;
+ * a handler only holds bytes of its own for a line which has not fully
+ * arrived, or for data the channel would not yet take.
+ * 
+ * @author Lloyd
+ */
+public class NioSocketHandler implements SocketConnection, NioEventLoop.Selectable {
+	
+	static private final byte[] NEWLINE = System.getProperty("line.separator").getBytes(StandardCharsets.US_ASCII);
+	
+	/** Ids count down from -1, so that they never clash with the thread ids of
+	 *  socket handlers. */
+	static private final AtomicLong lastId = new AtomicLong();
+	
+	private final long id = lastId.decrementAndGet();
+	private final SocketChannel channel;
+	private final NioEventLoop loop;
+	private final Mode mode;
+	private final SocketReadProcessor readProcessor;
+	private final NioShutdownListener shutdownListener;
+	private final Charset charset;
+	private final TrafficJournal journal;
+	private final int maxLineLength;
+	private final OutboundBuffer<Object> outQueue;
+	private final SocketHandlerMetrics metrics;
+	private final AtomicBoolean isStarted = new AtomicBoolean();
+	private final AtomicBoolean isClosed = new AtomicBoolean();
+	private final AtomicBoolean isShuttingDown = new AtomicBoolean();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+	private final CompletableFuture<Boolean> terminated = new CompletableFuture<Boolean>();
+	private volatile boolean isStopped = false;
+	private DataLineProcessor dataLineProcessor;
+	
+	// The remaining fields are only used on the event loop thread.
+	private SelectionKey key;
+	private byte[] lineBytes;
+	private int lineLength;
+	/** Bytes of a streamed field still to be skipped. */
+	private long skipLength;
+	private ByteBuffer unwritten;
+	private boolean awaitingResponse = false;
+	private DataLine receivedLine;
+	private boolean isFirstLineRead;
+	
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			flushScheduled.set(false);
+			flushOutbound();
+		}
+	};
+	
+	NioSocketHandler(SocketChannel channel, NioEventLoop loop, Mode mode,
+			SocketReadProcessor readProcessor, NioShutdownListener shutdownListener,
+			SocketHandlerConfig config) {
+		if (mode == Mode.MODE_READ_WRITE && readProcessor instanceof DeferredReadProcessor) {
+			throw new IllegalArgumentException(readProcessor.getClass().getSimpleName()
+					+ " gives no responses, so cannot be used in MODE_READ_WRITE.");
+		}
+		this.channel = channel;
+		this.loop = loop;
+		this.mode = mode;
+		this.readProcessor = readProcessor;
+		this.shutdownListener = shutdownListener;
+		this.charset = config.getCharset();
+		this.journal = config.getJournal();
+		this.maxLineLength = config.getMaxLineLength();
+		this.outQueue = new OutboundBuffer<Object>(this, config);
+		this.metrics = new SocketHandlerMetrics(this, config.isMBeanRegistered());
+	}
+	
+	/**
+	 * Get this handler's id. NIO socket handler ids are negative.
+	 * 
+	 * @return The id.
+	 */
+	@Override
+	public long getId() {
+		return id;
+	}
+	
+	@Override
+	public String getName() {
+		return "nio-socket-handler-" + -id;
+	}
+	
+	/**
+	 * Register the channel with this handler's event loop, and begin following
+	 * the rules of the handler's mode.
+	 * 
+	 * @throws IllegalThreadStateException if the handler was already started.
+	 */
+	@Override
+	public void start() {
+		if (!isStarted.compareAndSet(false, true)) {
+			throw new IllegalThreadStateException("Handler already started.");
+		}
+		metrics.open();
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				register();
+			}
+		});
+	}
+	
+	/**
+	 * Send data to the socket.
+	 * 
+	 * <p> As with {@link SocketHandler#send(String)} the data is only written
+	 * after this handler has been started, and in the order it was sent. Data
+	 * is only written in MODE_WRITE and MODE_WRITE_READ. The BLOCK overflow
+	 * policy must not be used if the event loop's own thread sends data, since
+	 * only the event loop can make room.
+	 * 
+	 * @param data - The data to send.
+	 */
+	@Override
+	public void send(String data) {
+		if (isClosed.get() || isShuttingDown.get() || (mode != Mode.MODE_WRITE && mode != Mode.MODE_WRITE_READ)) {
+			return;
+		}
+		if (!outQueue.offer(data)) {
+			return;
+		}
+		scheduleFlush();
+	}
+	
+	/**
+	 * Send a data line to the socket, as its text form.
+	 * 
+	 * @param line - The data line to send.
+	 */
+	@Override
+	public void send(DataLine line) {
+		send(line.toString());
+	}
+	
+	/**
+	 * Queue a line which is already encoded as text in this handler's
+	 * charset, without ever waiting for room. For {@link BroadcastGroup}.
+	 * 
+	 * @param line - The encoded line.
+	 * 
+	 * @return True if the line was queued, false if it was dropped.
+	 */
+	boolean sendEncoded(EncodedLine line) {
+		if (isClosed.get() || isShuttingDown.get() || (mode != Mode.MODE_WRITE && mode != Mode.MODE_WRITE_READ)) {
+			return false;
+		}
+		if (!outQueue.offerNow(line)) {
+			return false;
+		}
+		scheduleFlush();
+		return true;
+	}
+	
+	private void scheduleFlush() {
+		if (isStarted.get() && flushScheduled.compareAndSet(false, true)) {
+			loop.execute(flushTask);
+		}
+	}
+	
+	/**
+	 * Set a data line processor, which is then called for each line read in
+	 * place of the socket read processor. See
+	 * {@link SocketHandler#setDataLineProcessor(DataLineProcessor)}.
+	 * 
+	 * @param processor - The data line processor, or null to use the socket
+	 *  read processor.
+	 * 
+	 * @throws IllegalStateException if the handler has been started.
+	 */
+	@Override
+	public void setDataLineProcessor(DataLineProcessor processor) {
+		if (isStarted.get()) {
+			throw new IllegalStateException("Handler already started.");
+		}
+		this.dataLineProcessor = processor;
+	}
+	
+	@Override
+	public DataLineProcessor getDataLineProcessor() {
+		return dataLineProcessor;
+	}
+	
+	/**
+	 * Get the wire format in use, which is always TEXT.
+	 * 
+	 * @return The wire format.
+	 */
+	@Override
+	public WireFormat getWireFormat() {
+		return WireFormat.TEXT;
+	}
+	
+	@Override
+	public Charset getCharset() {
+		return charset;
+	}
+	
+	@Override
+	public int getOutboundCount() {
+		return outQueue.size();
+	}
+	
+	@Override
+	public long getDroppedCount() {
+		return outQueue.getDroppedCount();
+	}
+	
+	@Override
+	public boolean isOpen() {
+		return !isStopped && !isClosed.get() && channel.isOpen();
+	}
+	
+	@Override
+	public SocketHandlerMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Shut this handler down without losing the lines already sent to it, as
+	 * for {@link SocketHandler#shutdownGracefully(long, TimeUnit)}. The
+	 * handler drains on its event loop.
+	 * 
+	 * @param timeout - How long to allow.
+	 * @param unit - The unit of the timeout.
+	 * 
+	 * @return A future which completes when the handler has closed: with
+	 *  true if every line was written, or false if not.
+	 */
+	@Override
+	public CompletableFuture<Boolean> shutdownGracefully(long timeout, TimeUnit unit) {
+		return SocketHandler.shutdownGracefully(Collections.singletonList(this), timeout, unit);
+	}
+	
+	/**
+	 * Begin a graceful shutdown, if one has not already begun.
+	 * 
+	 * @return The future which completes when the handler has closed.
+	 */
+	CompletableFuture<Boolean> beginShutdown() {
+		if (isShuttingDown.compareAndSet(false, true)) {
+			drain();
+		}
+		return terminated;
+	}
+	
+	/**
+	 * On the event loop, stop reading, and write out what is left. The
+	 * channel's output is shut down and the channel closed once the out
+	 * queue is empty, and in MODE_WRITE_READ the last response has arrived.
+	 */
+	private void drain() {
+		if (!isStarted.get()) {
+			closeChannel();
+			return;
+		}
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (key == null) {
+					// Not registered yet; register() flushes, which finishes the shutdown.
+					return;
+				}
+				if (key.isValid() && mode != Mode.MODE_WRITE_READ) {
+					key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+				}
+				flushOutbound();
+			}
+		});
+	}
+	
+	private void finishShutdown() {
+		try { channel.shutdownOutput(); }
+		catch (IOException e) {}
+		terminated.complete(true);
+		closeChannel();
+	}
+	
+	/**
+	 * Stop the handler and close it at once, when a graceful shutdown has
+	 * run out of time.
+	 */
+	void forceShutdown() {
+		stopHandler();
+		// Also close the channel here, in case the event loop has stopped.
+		try { channel.close(); }
+		catch (IOException e) {}
+		if (!isStarted.get()) {
+			closeChannel();
+		}
+		terminated.complete(false);
+	}
+	
+	/**
+	 * Stop this socket handler from any further processing and close the
+	 * channel. The shutdown listener is called before the channel closes.
+	 */
+	@Override
+	public void stopHandler() {
+		isStopped = true;
+		if (!isStarted.get()) {
+			return;
+		}
+		loop.execute(new Runnable() {
+			@Override
+			public void run() {
+				closeChannel();
+			}
+		});
+	}
+	
+	/**
+	 * Close the channel.
+	 */
+	@Override
+	public void close() {
+		if (isStarted.get() && !loop.inEventLoop()) {
+			stopHandler();
+		}
+		else {
+			closeChannel();
+		}
+	}
+	
+	private void register() {
+		if (isStopped) {
+			closeChannel();
+			return;
+		}
+		try {
+			channel.configureBlocking(false);
+			int ops = mode == Mode.MODE_WRITE ? 0 : SelectionKey.OP_READ;
+			key = channel.register(loop.selector(), ops, this);
+			flushOutbound();
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+			closeChannel();
+		}
+	}
+	
+	@Override
+	public void selected(SelectionKey key) {
+		try {
+			if (key.isReadable()) {
+				readFromChannel();
+			}
+			if (key.isValid() && key.isWritable()) {
+				flushOutbound();
+			}
+		}
+		catch (RuntimeException e) {
+			e.printStackTrace();
+			closeChannel();
+		}
+	}
+	
+	@Override
+	public void loopClosing() {
+		closeChannel();
+	}
+	
+	/**
+	 * Read what the channel has into the loop's read buffer, and process each
+	 * whole line in it. A line which lies wholly in the buffer is decoded
+	 * from there; only the start of a line which has not fully arrived is
+	 * copied out, to the handler's own line bytes.
+	 */
+	private void readFromChannel() {
+		ByteBuffer readBuffer = loop.readBuffer();
+		readBuffer.clear();
+		int count;
+		try {
+			count = channel.read(readBuffer);
+		}
+		catch (IOException e) {
+			if (!isStopped) {
+				e.printStackTrace();
+			}
+			closeChannel();
+			return;
+		}
+		if (count < 0) {
+			if (lineLength > 0) {
+				int length = lineLength;
+				lineLength = 0;
+				lineRead(lineBytes, 0, length);
+			}
+			closeChannel();
+			return;
+		}
+		metrics.bytesIn.add(count);
+		
+		byte[] bytes = readBuffer.array();
+		int limit = readBuffer.position();
+		int start = skip(0, limit);
+		for (int i = start; i < limit && !isClosed.get(); i++) {
+			if (bytes[i] == '\n') {
+				if (lineLength == 0) {
+					if (!checkLineLength(i - start)) {
+						return;
+					}
+					lineRead(bytes, start, i);
+				}
+				else {
+					if (!appendLineBytes(bytes, start, i - start)) {
+						return;
+					}
+					int length = lineLength;
+					lineLength = 0;
+					lineRead(lineBytes, 0, length);
+				}
+				start = skip(i + 1, limit);
+				i = start - 1;
+			}
+		}
+		if (start < limit && !isClosed.get()) {
+			appendLineBytes(bytes, start, limit - start);
+		}
+	}
+	
+	/**
+	 * Skip what is left of a streamed field, as far as the end of the bytes
+	 * read.
+	 * 
+	 * @return The offset after the bytes skipped.
+	 */
+	private int skip(int offset, int limit) {
+		if (skipLength == 0) {
+			return offset;
+		}
+		int count = (int) Math.min(skipLength, limit - offset);
+		skipLength -= count;
+		return offset + count;
+	}
+	
+	/**
+	 * Close the channel if a line of the given length is longer than the max
+	 * line length.
+	 * 
+	 * @return False if the channel was closed.
+	 */
+	private boolean checkLineLength(long length) {
+		// One more byte than the max is allowed for the '\r' which may end the line.
+		if (length > maxLineLength + 1L) {
+			System.out.println("Socket handler " + getName() + " closing: line longer than " + maxLineLength + " bytes.");
+			closeChannel();
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Add bytes to the partial line, or close the channel if the line is
+	 * then longer than the max line length.
+	 * 
+	 * @return False if the channel was closed.
+	 */
+	private boolean appendLineBytes(byte[] bytes, int offset, int length) {
+		if (!checkLineLength((long) lineLength + length)) {
+			return false;
+		}
+		if (lineBytes == null) {
+			lineBytes = new byte[Math.max(256, length)];
+		}
+		else if (lineLength + length > lineBytes.length) {
+			lineBytes = Arrays.copyOf(lineBytes, Math.max(lineBytes.length * 2, lineLength + length));
+		}
+		System.arraycopy(bytes, offset, lineBytes, lineLength, length);
+		lineLength += length;
+		return true;
+	}
+	
+	/**
+	 * Decode and process one line, held in the given bytes without its '\n'.
+	 */
+	private void lineRead(byte[] bytes, int start, int end) {
+		String line = null;
+		if (dataLineProcessor != null) {
+			if (receivedLine == null) {
+				receivedLine = new DataLine((String) null);
+			}
+			LineReader.decodeLine(bytes, start, end, charset, receivedLine.parser());
+		}
+		else {
+			line = LineReader.decodeLine(bytes, start, end, charset);
+		}
+		metrics.lineRead();
+		if (journal != null) {
+			if (line != null) {
+				journal.append(id, false, line);
+			}
+			else {
+				receivedLine.parser().journalTo(journal, id, false);
+			}
+		}
+		
+		if (isStopped) {
+			return;
+		}
+		if (!isFirstLineRead) {
+			isFirstLineRead = true;
+			if (line != null ? SocketHandler.isWireFormatOffer(line) : SocketHandler.isWireFormatOffer(receivedLine)) {
+				// Answer, so that the peer falls back to text without waiting.
+				respond(SocketHandler.wireFormatRefusal());
+				return;
+			}
+		}
+		if (line != null ? SocketHandler.isStreamHeader(line) : SocketHandler.isStreamHeader(receivedLine)) {
+			skipStream(line != null ? line : receivedLine.toString());
+			return;
+		}
+		switch (mode) {
+		case MODE_READ:
+			processDataFromSocket(line);
+			break;
+			
+		case MODE_WRITE:
+			break;
+			
+		case MODE_READ_WRITE:
+			String response = processDataFromSocket(line);
+			respond(response != null ? response : "");
+			break;
+			
+		case MODE_WRITE_READ:
+			awaitingResponse = false;
+			processDataFromSocket(line);
+			flushOutbound();
+			break;
+		}
+	}
+	
+	/**
+	 * Skip the field which follows a stream header, answering the header as a
+	 * socket handler without a stream processor does. The channel is closed
+	 * if the header is not valid, since the bytes which follow it cannot then
+	 * be told apart from lines.
+	 */
+	private void skipStream(String header) {
+		try {
+			skipLength = SocketHandler.streamLength(header);
+		}
+		catch (IOException e) {
+			System.out.println("Socket handler " + getName() + " closing: " + e.getMessage());
+			closeChannel();
+			return;
+		}
+		switch (mode) {
+		case MODE_READ_WRITE:
+			respond("");
+			break;
+			
+		case MODE_WRITE_READ:
+			awaitingResponse = false;
+			flushOutbound();
+			break;
+			
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * Pass the line read to the data line processor if there is one, in which
+	 * case the line has been read into receivedLine, or else to the socket
+	 * read processor.
+	 */
+	private String processDataFromSocket(String dataReadFromSocket) {
+		long startNanos = System.nanoTime();
+		try {
+			if (dataLineProcessor != null) {
+				DataLine response = dataLineProcessor.processDataLine(receivedLine, id);
+				return response != null ? response.toString() : "";
+			}
+			return readProcessor != null
+					? readProcessor.processDataFromSocket(dataReadFromSocket, id)
+					: "";
+		}
+		finally {
+			metrics.processed(startNanos);
+		}
+	}
+	
+	/**
+	 * Write a response, which does not go through the out queue, after any
+	 * data the channel has not yet taken.
+	 */
+	private void respond(String response) {
+		if (key == null || isClosed.get()) {
+			return;
+		}
+		append(loop.writeBuffer(), response);
+		flushOutbound();
+	}
+	
+	/**
+	 * Write as much pending data as the channel will accept, taking more data
+	 * from the out queue as the mode allows. Data is gathered in the loop's
+	 * write buffer; if the channel will not accept all of it then the rest is
+	 * copied to a buffer of the handler's own, write interest is set, and the
+	 * rest is written when the channel becomes writable.
+	 * 
+	 * <p> The loop's write buffer may hold a response appended just before
+	 * this is called, and is always left clear.
+	 */
+	private void flushOutbound() {
+		ByteBuffer buffer = loop.writeBuffer();
+		try {
+			if (key == null || isClosed.get()) {
+				return;
+			}
+			for (;;) {
+				if (unwritten != null) {
+					write(unwritten);
+					if (unwritten.hasRemaining()) {
+						setWriteInterest(true);
+						return;
+					}
+					unwritten = null;
+				}
+				Object data;
+				while (unwritten == null && (data = nextToWrite()) != null) {
+					append(buffer, data);
+				}
+				if (unwritten != null) {
+					continue;
+				}
+				buffer.flip();
+				if (!buffer.hasRemaining()) {
+					setWriteInterest(false);
+					if (isShuttingDown.get() && !awaitingResponse && outQueue.size() == 0) {
+						finishShutdown();
+					}
+					return;
+				}
+				write(buffer);
+				if (buffer.hasRemaining()) {
+					unwritten = ByteBuffer.allocate(buffer.remaining());
+					unwritten.put(buffer);
+					unwritten.flip();
+					setWriteInterest(true);
+					return;
+				}
+				buffer.clear();
+			}
+		}
+		catch (IOException e) {
+			if (!isStopped) {
+				e.printStackTrace();
+			}
+			closeChannel();
+		}
+		finally {
+			buffer.clear();
+		}
+	}
+	
+	/**
+	 * Take the next line to write from the out queue, as the mode allows.
+	 * 
+	 * @return The line, or null if there is none to write now.
+	 */
+	private Object nextToWrite() {
+		if (mode == Mode.MODE_WRITE) {
+			return outQueue.poll();
+		}
+		if (mode == Mode.MODE_WRITE_READ && !awaitingResponse) {
+			Object query = outQueue.poll();
+			if (query != null) {
+				awaitingResponse = true;
+			}
+			return query;
+		}
+		return null;
+	}
+	
+	private void write(ByteBuffer buffer) throws IOException {
+		metrics.bytesOut.add(channel.write(buffer));
+		metrics.flushed();
+	}
+	
+	/**
+	 * Encode a line, with its line separator, into the loop's write buffer.
+	 * If the buffer has no room, or the handler still has data the channel
+	 * did not take, then the buffer's contents and the line are moved
+	 * behind that data, in a buffer of the handler's own.
+	 */
+	private void append(ByteBuffer buffer, Object data) {
+		String text;
+		byte[] bytes;
+		int needed;
+		if (data instanceof EncodedLine) {
+			// Already encoded, with its line separator.
+			text = ((EncodedLine) data).text;
+			bytes = ((EncodedLine) data).bytes;
+			needed = bytes.length;
+		}
+		else {
+			text = (String) data;
+			bytes = text.getBytes(charset);
+			needed = bytes.length + NEWLINE.length;
+		}
+		if (unwritten == null && buffer.remaining() >= needed) {
+			buffer.put(bytes);
+			if (needed > bytes.length) {
+				buffer.put(NEWLINE);
+			}
+		}
+		else {
+			buffer.flip();
+			int held = unwritten != null ? unwritten.remaining() : 0;
+			ByteBuffer larger = ByteBuffer.allocate(held + buffer.remaining() + needed);
+			if (unwritten != null) {
+				larger.put(unwritten);
+			}
+			larger.put(buffer);
+			larger.put(bytes);
+			if (needed > bytes.length) {
+				larger.put(NEWLINE);
+			}
+			larger.flip();
+			unwritten = larger;
+			buffer.clear();
+		}
+		metrics.lineWritten();
+		if (journal != null) {
+			journal.append(id, true, text);
+		}
+	}
+	
+	private void setWriteInterest(boolean isInterested) {
+		int ops = key.interestOps();
+		int newOps = isInterested ? ops | SelectionKey.OP_WRITE : ops & ~SelectionKey.OP_WRITE;
+		if (newOps != ops) {
+			key.interestOps(newOps);
+		}
+	}
+	
+	private void closeChannel() {
+		if (!isClosed.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			if (isStarted.get() && shutdownListener != null) {
+				try { shutdownListener.channelClosing(this); }
+				catch (Exception e) {
+					// Eat any exception so that the close always happens.
+				}
+			}
+		}
+		finally {
+			if (key != null) {
+				key.cancel();
+			}
+			try { channel.close(); }
+			catch (IOException e) {}
+			outQueue.close();
+			boolean isEmpty = outQueue.size() == 0 && unwritten == null;
+			outQueue.clear();
+			unwritten = null;
+			lineBytes = null;
+			metrics.close();
+			terminated.complete(isEmpty && !awaitingResponse);
+		}
+	}
+	
+}
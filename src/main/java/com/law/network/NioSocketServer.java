@@ -0,0 +1,163 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import com.law.network.SocketHandler.Mode;
+
+/**
+ * Server which accepts connections and hands each of them to an
+ * {@link NioSocketHandler} running on a shared {@link NioEventLoopGroup}.
+ * 
+ * <p> Every accepted connection is handled in the same mode, with the same
+ * socket read processor and shutdown listener. The read processor is called
+ * by several event loop threads, so it may need to be synchronized, and it
+ * must not block.
+ * 
+ * @author Lloyd
+ */
+public class NioSocketServer implements NioEventLoop.Selectable {
+	
+	private final NioEventLoopGroup group;
+	private final SocketAddress address;
+	private final Mode mode;
+	private final SocketReadProcessor readProcessor;
+	private final NioShutdownListener shutdownListener;
+	private final SocketHandlerConfig config;
+	private ServerSocketChannel serverChannel;
+	private NioEventLoop acceptLoop;
+	
+	/**
+	 * Construct a server which will listen on the given port of all local
+	 * addresses.
+	 * 
+	 * @param group - The event loop group which runs the accepted connections.
+	 * @param port - The port, or 0 for any free port.
+	 * @param mode - The mode in which each connection will be handled.
+	 * @param readProcessor - Socket read processor to call when data is read
+	 *  from a connection; can be null.
+	 * @param shutdownListener - Listener for connection close events, or null
+	 *  for none.
+	 */
+	public NioSocketServer(NioEventLoopGroup group, int port, Mode mode,
+			SocketReadProcessor readProcessor, NioShutdownListener shutdownListener) {
+		this(group, new InetSocketAddress(port), mode, readProcessor, shutdownListener);
+	}
+	
+	/**
+	 * Construct a server which will listen on the given address.
+	 * 
+	 * @param group - The event loop group which runs the accepted connections.
+	 * @param address - The address to bind to.
+	 * @param mode - The mode in which each connection will be handled.
+	 * @param readProcessor - Socket read processor to call when data is read
+	 *  from a connection; can be null.
+	 * @param shutdownListener - Listener for connection close events, or null
+	 *  for none.
+	 */
+	public NioSocketServer(NioEventLoopGroup group, SocketAddress address, Mode mode,
+			SocketReadProcessor readProcessor, NioShutdownListener shutdownListener) {
+		this(group, address, mode, readProcessor, shutdownListener, new SocketHandlerConfig());
+	}
+	
+	/**
+	 * Construct a server which will listen on the given address, and handle
+	 * connections with the given settings.
+	 * 
+	 * @param group - The event loop group which runs the accepted connections.
+	 * @param address - The address to bind to.
+	 * @param mode - The mode in which each connection will be handled.
+	 * @param readProcessor - Socket read processor to call when data is read
+	 *  from a connection; can be null.
+	 * @param shutdownListener - Listener for connection close events, or null
+	 *  for none.
+	 * @param config - Settings for each connection's handler.
+	 */
+	public NioSocketServer(NioEventLoopGroup group, SocketAddress address, Mode mode,
+			SocketReadProcessor readProcessor, NioShutdownListener shutdownListener,
+			SocketHandlerConfig config) {
+		this.group = group;
+		this.address = address;
+		this.mode = mode;
+		this.readProcessor = readProcessor;
+		this.shutdownListener = shutdownListener;
+		this.config = config;
+	}
+	
+	/**
+	 * Bind the server socket and begin accepting connections.
+	 * 
+	 * @throws IOException if the server socket cannot be opened or bound.
+	 */
+	public void start() throws IOException {
+		serverChannel = ServerSocketChannel.open();
+		try {
+			serverChannel.bind(address);
+			serverChannel.configureBlocking(false);
+		}
+		catch (IOException e) {
+			serverChannel.close();
+			throw e;
+		}
+		acceptLoop = group.next();
+		acceptLoop.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					serverChannel.register(acceptLoop.selector(), SelectionKey.OP_ACCEPT,
+							NioSocketServer.this);
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+					loopClosing();
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Stop accepting connections. Connections which were already accepted
+	 * are not affected.
+	 */
+	public void stop() {
+		if (serverChannel != null) {
+			try { serverChannel.close(); }
+			catch (IOException e) {}
+		}
+	}
+	
+	/**
+	 * Get the port the server is listening on.
+	 * 
+	 * @return The local port, or -1 if the server has not been started.
+	 */
+	public int getLocalPort() {
+		return serverChannel != null ? serverChannel.socket().getLocalPort() : -1;
+	}
+	
+	@Override
+	public void selected(SelectionKey key) {
+		try {
+			SocketChannel channel;
+			while ((channel = serverChannel.accept()) != null) {
+				group.newHandler(channel, mode, readProcessor, shutdownListener, config).start();
+			}
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	@Override
+	public void loopClosing() {
+		stop();
+	}
+	
+}
@@ -0,0 +1,325 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Socket read processor which hands each line to a pool of worker threads,
+ * so that a slow processor does not stop its socket handler from reading.
+ * 
+ * <p> Lines from the same socket handler (the same fromId) are processed one
+ * at a time, in the order they were read. Lines from different socket
+ * handlers are processed in parallel, so the wrapped processor only needs to
+ * be thread safe where connections share state, rather than synchronized as
+ * a whole.
+ * 
+ * <p> The count of lines waiting to be processed is bounded. When it is full
+ * a new line either waits for room, which holds up the socket handler's
+ * reading much as an inline processor would, or is rejected and counted (see
+ * {@link Overflow}).
+ * 
+ * <p> The wrapped processor's response is ignored, since it is produced after
+ * the socket handler has moved on, so a pool is for MODE_READ (or
+ * MODE_WRITE_READ) socket handlers; a MODE_READ_WRITE socket handler refuses
+ * it. A processor which answers should send its answer itself, for example
+ * through a MODE_WRITE socket handler on the same socket.
+ * 
+ * @author Lloyd
+ */
+public class OrderedProcessorPool implements DeferredReadProcessor {
+	
+	/**
+	 * What to do with a line when the pool's queue is full.
+	 */
+	static public enum Overflow {
+		/** Wait for room, holding up the socket handler which read the line. */
+		BLOCK,
+		
+		/** Drop the line and count it as rejected. */
+		REJECT
+	}
+	
+	/** Lines processed for one connection before its worker lets others run. */
+	static private final int MAX_LINES_PER_TURN = 64;
+	
+	static private final AtomicInteger poolCount = new AtomicInteger();
+	
+	private final SocketReadProcessor processor;
+	private final ExecutorService workers;
+	private final int capacity;
+	private final Overflow overflow;
+	private final Semaphore room;
+	private final ConcurrentMap<Long, Strand> strands = new ConcurrentHashMap<Long, Strand>();
+	private final AtomicLong processedCount = new AtomicLong();
+	private final AtomicLong rejectedCount = new AtomicLong();
+	
+	/**
+	 * Construct a pool.
+	 * 
+	 * @param processor - The processor to call on the worker threads.
+	 * @param threadCount - The count of worker threads.
+	 * @param capacity - The most lines which may wait to be processed.
+	 * @param overflow - What to do with a line when the queue is full.
+	 * 
+	 * @throws IllegalArgumentException if threadCount or capacity is not
+	 *  positive.
+	 */
+	public OrderedProcessorPool(SocketReadProcessor processor, int threadCount, int capacity,
+			Overflow overflow) {
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Thread count must be positive: " + threadCount);
+		}
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.processor = processor;
+		this.capacity = capacity;
+		this.overflow = overflow;
+		this.room = new Semaphore(capacity);
+		final int poolId = poolCount.incrementAndGet();
+		this.workers = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+			private final AtomicInteger threadNumber = new AtomicInteger();
+			
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "processor-pool-" + poolId + "-" + threadNumber.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Queue the data for processing on a worker thread, after any data
+	 * already queued from the same socket handler.
+	 * 
+	 * @param data - The data that was read from the socket.
+	 * @param fromId - The unique id of the socket handler.
+	 * 
+	 * @return Null; the wrapped processor's response is ignored.
+	 */
+	@Override
+	public String processDataFromSocket(String data, long fromId) {
+		if (workers.isShutdown() || !takeRoom()) {
+			rejectedCount.incrementAndGet();
+			return null;
+		}
+		for (;;) {
+			Strand strand = strands.get(fromId);
+			if (strand == null) {
+				Strand newStrand = new Strand(fromId);
+				strand = strands.putIfAbsent(fromId, newStrand);
+				if (strand == null) {
+					strand = newStrand;
+				}
+			}
+			if (strand.add(data)) {
+				return null;
+			}
+			// The strand emptied and retired between get() and add(); retry.
+		}
+	}
+	
+	private boolean takeRoom() {
+		if (overflow == Overflow.REJECT) {
+			return room.tryAcquire();
+		}
+		try {
+			room.acquire();
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * Get the count of lines waiting to be processed, or being processed.
+	 * 
+	 * @return The queue depth.
+	 */
+	public int getQueueDepth() {
+		return capacity - room.availablePermits();
+	}
+	
+	/**
+	 * Get the count of lines which have been processed.
+	 * 
+	 * @return The processed count.
+	 */
+	public long getProcessedCount() {
+		return processedCount.get();
+	}
+	
+	/**
+	 * Get the count of lines which were dropped, because the queue was full
+	 * (with {@link Overflow#REJECT}), because the socket handler was
+	 * interrupted while waiting for room, or because the pool was shut down.
+	 * 
+	 * @return The rejected count.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+	
+	/**
+	 * Stop the worker threads once the lines already queued have been
+	 * processed. Lines which arrive after this are rejected and counted, even
+	 * from a socket handler whose earlier lines are still being processed.
+	 */
+	public void shutdown() {
+		workers.shutdown();
+	}
+	
+	/**
+	 * Wait for the worker threads to finish after shutdown().
+	 * 
+	 * @param timeout - The longest time to wait.
+	 * @param unit - The unit of the timeout.
+	 * 
+	 * @return True if the workers finished, or false if the timeout passed.
+	 * 
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return workers.awaitTermination(timeout, unit);
+	}
+	
+	/**
+	 * The lines of one socket handler, which are processed in order by at
+	 * most one worker at a time. A strand which runs dry is retired and
+	 * removed, and a new one is made for the next line from that handler.
+	 */
+	private final class Strand implements Runnable {
+		
+		private final long fromId;
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Queue<String> lines = new ArrayDeque<String>();
+		private boolean isScheduled;
+		private boolean isRetired;
+		
+		Strand(long fromId) {
+			this.fromId = fromId;
+		}
+		
+		/**
+		 * Add a line, scheduling the strand if it is not already.
+		 * 
+		 * @return False if the strand has been retired, in which case the line
+		 *  was not added.
+		 */
+		boolean add(String data) {
+			lock.lock();
+			try {
+				if (isRetired) {
+					return false;
+				}
+				lines.add(data);
+				if (isScheduled) {
+					return true;
+				}
+				isScheduled = true;
+			}
+			finally {
+				lock.unlock();
+			}
+			schedule();
+			return true;
+		}
+		
+		private void schedule() {
+			try {
+				workers.execute(this);
+			}
+			catch (RejectedExecutionException e) {
+				// The pool has shut down; drop what is queued.
+				lock.lock();
+				try {
+					rejectedCount.addAndGet(lines.size());
+					room.release(lines.size());
+					lines.clear();
+					isScheduled = false;
+					retire();
+				}
+				finally {
+					lock.unlock();
+				}
+			}
+		}
+		
+		private void retire() {
+			isRetired = true;
+			strands.remove(fromId, this);
+		}
+		
+		@Override
+		public void run() {
+			for (;;) {
+				if (!processTurn()) {
+					return;
+				}
+				// Let other connections' strands have a turn.
+				try {
+					workers.execute(this);
+					return;
+				}
+				catch (RejectedExecutionException e) {
+					// Shutting down; finish the strand on this thread.
+				}
+			}
+		}
+		
+		/**
+		 * Process up to MAX_LINES_PER_TURN lines.
+		 * 
+		 * @return False if the strand ran dry and has been retired.
+		 */
+		private boolean processTurn() {
+			for (int i = 0; i < MAX_LINES_PER_TURN; i++) {
+				String data;
+				lock.lock();
+				try {
+					data = lines.poll();
+					if (data == null) {
+						isScheduled = false;
+						retire();
+						return false;
+					}
+				}
+				finally {
+					lock.unlock();
+				}
+				try {
+					if (processor != null) {
+						processor.processDataFromSocket(data, fromId);
+					}
+				}
+				catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+				finally {
+					processedCount.incrementAndGet();
+					room.release();
+				}
+			}
+			return true;
+		}
+		
+	}
+	
+}
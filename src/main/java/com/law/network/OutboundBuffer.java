@@ -0,0 +1,335 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.law.network.SocketHandler.OverflowPolicy;
+
+/**
+ * A socket handler's out buffer: an {@link MpscQueue} with a count of the
+ * items in it, an optional capacity with an overflow policy, and high and low
+ * watermarks.
+ * 
+ * <p> offer() may be called by any thread, and poll() and clear() by the one
+ * consumer thread. With the DROP_OLDEST policy a full buffer makes the
+ * offering thread take the oldest item, so then poll() and the drop share a
+ * lock, which is only held for the moment of the poll.
+ * 
+ * <p> The watermarks are crossed under a lock of their own, which is only
+ * taken by a thread that may be crossing one, and the listener is called
+ * while it is held, so that calls alternate as the listener expects.
+ * 
+ * @author Lloyd
+ */
+final class OutboundBuffer<E> {
+	
+	private final MpscQueue<E> queue = new MpscQueue<E>();
+	private volatile SocketConnection owner;
+	private final int capacity;
+	private final OverflowPolicy policy;
+	private final int lowWatermark;
+	private final int highWatermark;
+	private final OutboundWatermarkListener listener;
+	private final AtomicInteger count = new AtomicInteger();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private volatile boolean isHigh;
+	private final ReentrantLock watermarkLock = new ReentrantLock();
+	private final ReentrantLock pollLock;
+	private final ReentrantLock roomLock = new ReentrantLock();
+	private final Condition roomAvailable = roomLock.newCondition();
+	private volatile int blockedProducers;
+	private volatile boolean isClosed;
+	
+	/**
+	 * Construct an out buffer with the capacity, policy and watermarks of the
+	 * given config.
+	 * 
+	 * @param owner - The socket handler, which is passed to the listener.
+	 * @param config - The settings.
+	 */
+	OutboundBuffer(SocketConnection owner, SocketHandlerConfig config) {
+		this.owner = owner;
+		this.capacity = config.getMaxOutboundLines();
+		this.policy = config.getOutboundOverflowPolicy();
+		this.lowWatermark = config.getOutboundLowWatermark();
+		this.highWatermark = config.getOutboundHighWatermark();
+		this.listener = config.getOutboundWatermarkListener();
+		this.pollLock = policy == OverflowPolicy.DROP_OLDEST ? new ReentrantLock() : null;
+	}
+	
+	/**
+	 * Set the socket handler which is passed to the listener, when a buffer
+	 * outlives the handler it was made for.
+	 * 
+	 * @param owner - The socket handler now taking from the buffer.
+	 */
+	void setOwner(SocketConnection owner) {
+		this.owner = owner;
+	}
+	
+	/**
+	 * Add an item, applying the overflow policy if the buffer is full.
+	 * 
+	 * @param item - The item to add.
+	 * 
+	 * @return True if the item was added, or false if it was dropped: by the
+	 *  DROP_NEWEST policy, or because the buffer was closed, or the thread
+	 *  interrupted, while waiting for room with the BLOCK policy.
+	 * 
+	 * @throws NullPointerException if the item is null.
+	 * @throws IllegalStateException if the buffer is full and the policy is
+	 *  FAIL.
+	 */
+	boolean offer(E item) {
+		if (item == null) {
+			throw new NullPointerException("Null queue item.");
+		}
+		int size;
+		switch (policy) {
+		case BLOCK:
+			size = reserveBlocking();
+			if (size < 0) {
+				droppedCount.incrementAndGet();
+				return false;
+			}
+			queue.offer(item);
+			break;
+			
+		case DROP_OLDEST:
+			// Counted before it is added, so that a poll() which takes it at
+			// once never drives the count below zero.
+			size = count.incrementAndGet();
+			queue.offer(item);
+			if (size > capacity) {
+				pollLock.lock();
+				try {
+					if (queue.poll() != null) {
+						size = count.decrementAndGet();
+						droppedCount.incrementAndGet();
+					}
+				}
+				finally {
+					pollLock.unlock();
+				}
+			}
+			break;
+			
+		default:
+			size = reserve();
+			if (size < 0) {
+				if (policy == OverflowPolicy.FAIL) {
+					throw new IllegalStateException("Out buffer full: " + capacity + " lines.");
+				}
+				droppedCount.incrementAndGet();
+				return false;
+			}
+			queue.offer(item);
+			break;
+		}
+		added(size);
+		return true;
+	}
+	
+	/**
+	 * Add an item without waiting or throwing: as {@link #offer(Object)}, but
+	 * with the BLOCK or FAIL policy an item offered to a full buffer is
+	 * dropped.
+	 * 
+	 * @param item - The item to add.
+	 * 
+	 * @return True if the item was added, or false if it was dropped.
+	 * 
+	 * @throws NullPointerException if the item is null.
+	 */
+	boolean offerNow(E item) {
+		if (policy != OverflowPolicy.BLOCK && policy != OverflowPolicy.FAIL) {
+			return offer(item);
+		}
+		if (item == null) {
+			throw new NullPointerException("Null queue item.");
+		}
+		int size = reserve();
+		if (size < 0) {
+			droppedCount.incrementAndGet();
+			return false;
+		}
+		queue.offer(item);
+		added(size);
+		return true;
+	}
+	
+	private void added(int size) {
+		if (size >= highWatermark && listener != null && !isHigh) {
+			crossWatermark();
+		}
+	}
+	
+	/**
+	 * Count one more item if there is room.
+	 * 
+	 * @return The new count, or -1 if the buffer is full.
+	 */
+	private int reserve() {
+		for (;;) {
+			int size = count.get();
+			if (size >= capacity) {
+				return -1;
+			}
+			if (count.compareAndSet(size, size + 1)) {
+				return size + 1;
+			}
+		}
+	}
+	
+	/**
+	 * Count one more item, waiting for room if need be.
+	 * 
+	 * @return The new count, or -1 if the buffer closed, or the thread was
+	 *  interrupted, first.
+	 */
+	private int reserveBlocking() {
+		int size = reserve();
+		if (size > 0) {
+			return size;
+		}
+		roomLock.lock();
+		try {
+			blockedProducers++;
+			try {
+				while ((size = reserve()) < 0) {
+					if (isClosed) {
+						return -1;
+					}
+					// close() signals under the room lock, so it cannot slip in
+					// between the check and the wait.
+					roomAvailable.await();
+				}
+				return size;
+			}
+			finally {
+				blockedProducers--;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		}
+		finally {
+			roomLock.unlock();
+		}
+	}
+	
+	/**
+	 * Take the oldest item. For the consumer thread only.
+	 * 
+	 * @return The item, or null if the buffer is empty.
+	 */
+	E poll() {
+		E item;
+		if (pollLock != null) {
+			pollLock.lock();
+			try {
+				item = queue.poll();
+			}
+			finally {
+				pollLock.unlock();
+			}
+		}
+		else {
+			item = queue.poll();
+		}
+		if (item != null) {
+			taken();
+		}
+		return item;
+	}
+	
+	private void taken() {
+		int size = count.decrementAndGet();
+		if (blockedProducers > 0) {
+			roomLock.lock();
+			try {
+				roomAvailable.signalAll();
+			}
+			finally {
+				roomLock.unlock();
+			}
+		}
+		if (size <= lowWatermark && listener != null && isHigh) {
+			crossWatermark();
+		}
+	}
+	
+	/**
+	 * Tell the listener of a watermark crossing, deciding which from the count
+	 * now rather than the count which prompted the call. A producer and the
+	 * consumer which each see a crossing, and then race, so end up agreeing;
+	 * otherwise a producer could report high after the consumer had already
+	 * drained the buffer, with no low ever to follow.
+	 */
+	private void crossWatermark() {
+		watermarkLock.lock();
+		try {
+			int size = count.get();
+			if (!isHigh && size >= highWatermark) {
+				isHigh = true;
+				listener.outboundHigh(owner);
+			}
+			else if (isHigh && size <= lowWatermark) {
+				isHigh = false;
+				listener.outboundLow(owner);
+			}
+		}
+		finally {
+			watermarkLock.unlock();
+		}
+	}
+	
+	/**
+	 * Remove every item. For the consumer thread only.
+	 */
+	void clear() {
+		while (poll() != null) {
+			// Drop it.
+		}
+	}
+	
+	/**
+	 * Close the buffer, so that producers waiting for room give up. Safe for
+	 * any thread.
+	 */
+	void close() {
+		isClosed = true;
+		roomLock.lock();
+		try {
+			roomAvailable.signalAll();
+		}
+		finally {
+			roomLock.unlock();
+		}
+	}
+	
+	/**
+	 * Get the count of items in the buffer.
+	 * 
+	 * @return The count.
+	 */
+	int size() {
+		return count.get();
+	}
+	
+	/**
+	 * Get the count of items which were dropped by the overflow policy.
+	 * 
+	 * @return The dropped count.
+	 */
+	long getDroppedCount() {
+		return droppedCount.get();
+	}
+	
+}
@@ -0,0 +1,38 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+/**
+ * OutboundWatermarkListener is told when a socket handler's out buffer fills
+ * past its high watermark, and when it drains back to its low watermark, so
+ * that producers can slow down before the buffer is full.
+ * 
+ * <p> Calls alternate, starting with outboundHigh(). Each is made on whichever
+ * thread crossed the watermark (a sending thread for outboundHigh(), and the
+ * handler's writing thread, or event loop, for outboundLow()), so
+ * implementations must be quick and must not block.
+ * 
+ * @see SocketHandlerConfig#setOutboundWatermarks(int, int)
+ * 
+ * @author Lloyd
+ */
+public interface OutboundWatermarkListener {
+	
+	/**
+	 * Called when the count of lines waiting in the out buffer reaches the
+	 * high watermark.
+	 * 
+	 * @param socketHandler - The socket handler whose out buffer is filling.
+	 */
+	void outboundHigh(SocketConnection socketHandler);
+	
+	/**
+	 * Called when the count of lines waiting in the out buffer falls back to
+	 * the low watermark after having reached the high watermark.
+	 * 
+	 * @param socketHandler - The socket handler whose out buffer has drained.
+	 */
+	void outboundLow(SocketConnection socketHandler);
+	
+}
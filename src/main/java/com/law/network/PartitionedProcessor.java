@@ -0,0 +1,394 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.law.network.OrderedProcessorPool.Overflow;
+
+/**
+ * Socket read processor which shards lines by a key over a fixed number of
+ * partitions, each with a thread and a processor of its own, so that state
+ * kept per key needs no lock.
+ * 
+ * <p> Every line with the same key (see {@link PartitionKey}) goes to the
+ * same partition, and each partition's processor is only ever called from
+ * that partition's thread, one line at a time, in the order the lines
+ * arrived. A processor which keeps its state per partition therefore needs
+ * no synchronization at all, and the partitions share nothing but the
+ * counters, so throughput grows with the count of partitions up to the
+ * count of cores. Unlike an {@link OrderedProcessorPool}, where one
+ * processor is called from any worker thread, a key never moves between
+ * threads.
+ * 
+ * <p> Lines are handed to a partition through a lock-free queue, whose
+ * length is bounded per partition, so that one hot key cannot fill the
+ * others' room. When a partition is full a new line either waits for room or
+ * is rejected and counted (see {@link Overflow}).
+ * 
+ * <p> As with an OrderedProcessorPool, the partitions' responses are
+ * ignored, so a partitioned processor is for MODE_READ (or MODE_WRITE_READ)
+ * socket handlers; a MODE_READ_WRITE socket handler refuses it.
+ * 
+ * <pre>
+ * List&lt;SocketReadProcessor&gt; processors = new ArrayList&lt;SocketReadProcessor&gt;();
+ * for (int i = 0; i &lt; Runtime.getRuntime().availableProcessors(); i++) {
+ *     processors.add(new OrderBook());
+ * }
+ * PartitionedProcessor processor = new PartitionedProcessor(processors, PartitionKey.INFO,
+ *         10000, Overflow.BLOCK).setInfoIndex(0);
+ * </pre>
+ * 
+ * @author Lloyd
+ */
+public class PartitionedProcessor implements DeferredReadProcessor {
+	
+	/**
+	 * What a line is partitioned by.
+	 */
+	static public enum PartitionKey {
+		/** The id of the socket handler which read the line, so that each
+		 *  connection is handled by one partition. */
+		CONNECTION,
+		
+		/** The line's name (see {@link DataLine#getName()}). */
+		NAME,
+		
+		/** One of the line's info strings (see
+		 *  {@link PartitionedProcessor#setInfoIndex(int)}). Lines without that
+		 *  info string all go to one partition. */
+		INFO
+	}
+	
+	static private final String DELIM = "::";
+	
+	static private final AtomicInteger processorCount = new AtomicInteger();
+	
+	private final Partition[] partitions;
+	private final PartitionKey key;
+	private final int capacity;
+	private final Overflow overflow;
+	private volatile int infoIndex = 0;
+	private volatile boolean isShutdown;
+	private final LongAdder processedCount = new LongAdder();
+	private final LongAdder rejectedCount = new LongAdder();
+	
+	/**
+	 * Construct a partitioned processor, and start its partition threads.
+	 * 
+	 * @param processors - The processors, one per partition. Each is called
+	 *  only from its own partition's thread.
+	 * @param key - What lines are partitioned by.
+	 * @param capacity - The most lines which may wait to be processed, per
+	 *  partition.
+	 * @param overflow - What to do with a line when its partition is full.
+	 * 
+	 * @throws IllegalArgumentException if there are no processors, or
+	 *  capacity is not positive.
+	 */
+	public PartitionedProcessor(List<? extends SocketReadProcessor> processors, PartitionKey key,
+			int capacity, Overflow overflow) {
+		if (processors.isEmpty()) {
+			throw new IllegalArgumentException("No processors.");
+		}
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		this.key = key;
+		this.capacity = capacity;
+		this.overflow = overflow;
+		int id = processorCount.incrementAndGet();
+		List<Partition> list = new ArrayList<Partition>(processors.size());
+		for (SocketReadProcessor processor : processors) {
+			list.add(new Partition(processor, capacity, "partitioned-processor-" + id + "-" + list.size()));
+		}
+		this.partitions = list.toArray(new Partition[list.size()]);
+		for (Partition partition : partitions) {
+			partition.thread.start();
+		}
+	}
+	
+	/**
+	 * Set which info string lines are partitioned by, when the key is INFO.
+	 * 
+	 * @param infoIndex - The index of the info string. Default is 0.
+	 * 
+	 * @return This processor.
+	 * 
+	 * @throws IllegalArgumentException if the index is negative.
+	 */
+	public PartitionedProcessor setInfoIndex(int infoIndex) {
+		if (infoIndex < 0) {
+			throw new IllegalArgumentException("Info index must not be negative: " + infoIndex);
+		}
+		this.infoIndex = infoIndex;
+		return this;
+	}
+	
+	/**
+	 * Queue the data on its partition, after any data already queued there.
+	 * 
+	 * @param data - The data that was read from the socket.
+	 * @param fromId - The unique id of the socket handler.
+	 * 
+	 * @return Null; the partitions' responses are ignored.
+	 */
+	@Override
+	public String processDataFromSocket(String data, long fromId) {
+		Partition partition = partitions[partitionOf(data, fromId)];
+		// Counted before the shutdown check, so that the partition's thread
+		// does not finish while this line may still be added.
+		partition.adding.incrementAndGet();
+		try {
+			if (isShutdown || !takeRoom(partition)) {
+				rejectedCount.increment();
+				return null;
+			}
+			partition.add(new Line(data, fromId));
+			return null;
+		}
+		finally {
+			if (partition.adding.decrementAndGet() == 0 && isShutdown) {
+				LockSupport.unpark(partition.thread);
+			}
+		}
+	}
+	
+	/**
+	 * Get the partition which a line goes to.
+	 * 
+	 * @param data - The line.
+	 * @param fromId - The unique id of the socket handler which read it.
+	 * 
+	 * @return The partition's index, which is also the index of its processor.
+	 */
+	public int partitionOf(String data, long fromId) {
+		int hash;
+		switch (key) {
+		case CONNECTION:
+			hash = (int) (fromId ^ (fromId >>> 32));
+			break;
+			
+		case NAME:
+			hash = fieldHash(data, 0);
+			break;
+			
+		default:
+			hash = fieldHash(data, infoIndex + 1);
+			break;
+		}
+		// Spread the high bits, as few partitions only look at the low ones.
+		return Math.floorMod(hash ^ (hash >>> 16), partitions.length);
+	}
+	
+	/**
+	 * Hash a field of a line in place, as String.hashCode() would hash the
+	 * field. A field's text is the same wherever its value is, as the
+	 * delimiter is escaped within fields.
+	 * 
+	 * @return The hash, or 0 if the line has no such field.
+	 */
+	static private int fieldHash(String data, int field) {
+		int start = 0;
+		for (int i = 0; i < field; i++) {
+			int delim = data.indexOf(DELIM, start);
+			if (delim < 0) {
+				return 0;
+			}
+			start = delim + DELIM.length();
+		}
+		int end = data.indexOf(DELIM, start);
+		if (end < 0) {
+			end = data.length();
+		}
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + data.charAt(i);
+		}
+		return hash;
+	}
+	
+	private boolean takeRoom(Partition partition) {
+		if (overflow == Overflow.REJECT) {
+			return partition.room.tryAcquire();
+		}
+		try {
+			partition.room.acquire();
+			return true;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+	
+	/**
+	 * Get the count of partitions.
+	 * 
+	 * @return The partition count.
+	 */
+	public int getPartitionCount() {
+		return partitions.length;
+	}
+	
+	/**
+	 * Get the count of lines waiting to be processed, or being processed, in
+	 * all partitions.
+	 * 
+	 * @return The queue depth.
+	 */
+	public int getQueueDepth() {
+		int depth = 0;
+		for (Partition partition : partitions) {
+			depth += capacity - partition.room.availablePermits();
+		}
+		return depth;
+	}
+	
+	/**
+	 * Get the count of lines which have been processed.
+	 * 
+	 * @return The processed count.
+	 */
+	public long getProcessedCount() {
+		return processedCount.sum();
+	}
+	
+	/**
+	 * Get the count of lines which were dropped, because their partition was
+	 * full (with {@link Overflow#REJECT}), because the socket handler was
+	 * interrupted while waiting for room, or because the processor was shut
+	 * down.
+	 * 
+	 * @return The rejected count.
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+	
+	/**
+	 * Stop the partition threads once the lines already queued have been
+	 * processed. Lines which arrive after this are rejected.
+	 */
+	public void shutdown() {
+		isShutdown = true;
+		for (Partition partition : partitions) {
+			LockSupport.unpark(partition.thread);
+		}
+	}
+	
+	/**
+	 * Wait for the partition threads to finish after shutdown().
+	 * 
+	 * @param timeout - The longest time to wait.
+	 * @param unit - The unit of the timeout.
+	 * 
+	 * @return True if the threads finished, or false if the timeout passed.
+	 * 
+	 * @throws InterruptedException if interrupted while waiting.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Partition partition : partitions) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining > 0) {
+				TimeUnit.NANOSECONDS.timedJoin(partition.thread, remaining);
+			}
+			if (partition.thread.isAlive()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * A line waiting in a partition.
+	 */
+	static private final class Line {
+		final String data;
+		final long fromId;
+		
+		Line(String data, long fromId) {
+			this.data = data;
+			this.fromId = fromId;
+		}
+	}
+	
+	/**
+	 * One partition: a processor, the queue of lines for it, and the thread
+	 * which takes from the queue.
+	 * 
+	 * <p> Only the partition's thread polls the queue. When the queue is
+	 * empty the thread marks itself parked, checks the queue once more, and
+	 * parks until a new line unparks it. After shutdown it finishes once the
+	 * queue is empty and no line is still being added.
+	 */
+	private final class Partition implements Runnable {
+		
+		final SocketReadProcessor processor;
+		final MpscQueue<Line> lines = new MpscQueue<Line>();
+		final Semaphore room;
+		final AtomicInteger adding = new AtomicInteger();
+		final Thread thread;
+		private volatile boolean isParked;
+		
+		Partition(SocketReadProcessor processor, int capacity, String name) {
+			this.processor = processor;
+			this.room = new Semaphore(capacity);
+			this.thread = new Thread(this, name);
+			thread.setDaemon(true);
+		}
+		
+		void add(Line line) {
+			lines.offer(line);
+			if (isParked) {
+				LockSupport.unpark(thread);
+			}
+		}
+		
+		@Override
+		public void run() {
+			for (;;) {
+				Line line = lines.poll();
+				if (line == null) {
+					isParked = true;
+					line = lines.poll();
+					if (line == null && isShutdown && adding.get() == 0) {
+						// A line added before the count fell to zero is queued by now.
+						line = lines.poll();
+						if (line == null) {
+							return;
+						}
+					}
+					if (line == null) {
+						LockSupport.park(this);
+						isParked = false;
+						continue;
+					}
+					isParked = false;
+				}
+				try {
+					if (processor != null) {
+						processor.processDataFromSocket(line.data, line.fromId);
+					}
+				}
+				catch (RuntimeException e) {
+					e.printStackTrace();
+				}
+				finally {
+					processedCount.increment();
+					room.release();
+				}
+			}
+		}
+		
+	}
+	
+}
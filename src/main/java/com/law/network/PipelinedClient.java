@@ -0,0 +1,364 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import com.law.network.SocketHandler.Mode;
+
+/**
+ * Client which allows many queries to be in flight on one connection at once.
+ * 
+ * <p> Unlike a MODE_WRITE_READ socket handler, which writes one query and
+ * then waits for its response, a pipelined client keeps writing queries
+ * while earlier responses are still on their way back. Each call to
+ * {@link #send(DataLine)} returns a future which completes with the
+ * response to that query.
+ * 
+ * <p> Responses are matched to queries in one of two ways (see
+ * {@link Correlation}): in the order the queries were sent, which requires
+ * a server that answers strictly in order (for example a MODE_READ_WRITE
+ * socket handler), or by a correlation id which the client appends to each
+ * query as its last info string, and which the server echoes as the last
+ * info string of the response (see {@link #correlate(DataLine, DataLine)}).
+ * 
+ * <p> A pipelined client runs two socket handlers on the one socket: a
+ * MODE_WRITE handler which sends the queries, and a MODE_READ handler which
+ * receives the responses.
+ * 
+ * @author Lloyd
+ */
+public class PipelinedClient {
+	
+	/**
+	 * Ways of matching responses to queries.
+	 */
+	static public enum Correlation {
+		/** Responses arrive in the order the queries were sent. */
+		FIFO,
+		
+		/** The client appends a correlation id to each query as its last info
+		 *  string, and the server returns the id as the last info string of the
+		 *  response. Responses may then arrive in any order. The id is removed
+		 *  from the response before the response is returned. */
+		CORRELATION_ID
+	}
+	
+	static private final String DELIM = "::";
+	
+	static private final ScheduledThreadPoolExecutor TIMEOUTS = newTimeoutExecutor();
+	
+	private final Correlation correlation;
+	private final int maxInFlight;
+	private final long timeoutNanos;
+	private final Semaphore window;
+	private final SocketHandler writer;
+	private final SocketHandler reader;
+	private final Queue<Request> fifoRequests = new ConcurrentLinkedQueue<Request>();
+	private final Map<Long, Request> idRequests = new ConcurrentHashMap<Long, Request>();
+	private final ReentrantLock sendLock = new ReentrantLock();
+	private final AtomicLong nextId = new AtomicLong();
+	private final AtomicBoolean isClosed = new AtomicBoolean();
+	
+	/**
+	 * Construct a pipelined client with default socket handler settings.
+	 * 
+	 * @param socket - The connected socket.
+	 * @param correlation - How responses are matched to queries.
+	 * @param maxInFlight - The most queries which may await a response at once.
+	 * @param timeout - How long each query waits for its response.
+	 * @param unit - The unit of the timeout.
+	 * 
+	 * @throws IOException if the socket's streams cannot be created.
+	 */
+	public PipelinedClient(Socket socket, Correlation correlation, int maxInFlight,
+			long timeout, TimeUnit unit)
+	throws IOException {
+		this(socket, correlation, maxInFlight, timeout, unit, new SocketHandlerConfig());
+	}
+	
+	/**
+	 * Construct a pipelined client.
+	 * 
+	 * @param socket - The connected socket.
+	 * @param correlation - How responses are matched to queries.
+	 * @param maxInFlight - The most queries which may await a response at once.
+	 * @param timeout - How long each query waits for its response.
+	 * @param unit - The unit of the timeout.
+	 * @param config - Settings for the client's socket handlers.
+	 * 
+	 * @throws IOException if the socket's streams cannot be created.
+	 * @throws IllegalArgumentException if maxInFlight or timeout is not
+	 *  positive.
+	 */
+	public PipelinedClient(Socket socket, Correlation correlation, int maxInFlight,
+			long timeout, TimeUnit unit, SocketHandlerConfig config)
+	throws IOException {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("Max in flight must be positive: " + maxInFlight);
+		}
+		if (timeout <= 0) {
+			throw new IllegalArgumentException("Timeout must be positive: " + timeout);
+		}
+		this.correlation = correlation;
+		this.maxInFlight = maxInFlight;
+		this.timeoutNanos = unit.toNanos(timeout);
+		this.window = new Semaphore(maxInFlight);
+		
+		SocketShutdownListener shutdownListener = new SocketShutdownListener() {
+			@Override
+			public void socketClosing(SocketHandler socketHandler) {
+				close();
+			}
+		};
+		SocketReadProcessor responseProcessor = new SocketReadProcessor() {
+			@Override
+			public String processDataFromSocket(String data, long fromId) {
+				responseRead(new DataLine(data));
+				return null;
+			}
+		};
+		this.writer = new SocketHandler(socket, Mode.MODE_WRITE, null, shutdownListener, config);
+		this.reader = new SocketHandler(socket, Mode.MODE_READ, responseProcessor, shutdownListener, config);
+	}
+	
+	/**
+	 * Start the client's socket handlers.
+	 */
+	public void start() {
+		reader.start();
+		writer.start();
+	}
+	
+	/**
+	 * Send a query.
+	 * 
+	 * <p> If the max in flight count of queries are already awaiting
+	 * responses then this method blocks until one of them completes, or until
+	 * the query's timeout passes.
+	 * 
+	 * <p> The returned future completes with the response, or completes
+	 * exceptionally with a TimeoutException if no response arrives within the
+	 * timeout, or with an IOException if the connection closes first.
+	 * 
+	 * <p> With {@link Correlation#CORRELATION_ID} a query gives back its place
+	 * in the in flight window when its future completes, or is cancelled.
+	 * With {@link Correlation#FIFO} responses are matched by position, so a
+	 * query which timed out, or was cancelled, keeps its place until the
+	 * response to it arrives, or the connection closes. A server which stops
+	 * answering then fills the window, and later queries time out waiting
+	 * for room rather than piling up.
+	 * 
+	 * <p> The query is not changed by this method.
+	 * 
+	 * @param query - The query to send.
+	 * 
+	 * @return A future for the response.
+	 */
+	public CompletableFuture<DataLine> send(DataLine query) {
+		final Request request = new Request(correlation == Correlation.FIFO ? 0L : nextId.incrementAndGet());
+		try {
+			if (!window.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
+				request.future.completeExceptionally(
+						new TimeoutException("No room in the in flight window."));
+				return request.future;
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			request.future.completeExceptionally(e);
+			return request.future;
+		}
+		if (request.id != 0) {
+			// In the map before anything can complete the request, so that
+			// requestDone() always finds it to remove.
+			idRequests.put(request.id, request);
+		}
+		request.future.whenComplete(new BiConsumer<DataLine, Throwable>() {
+			@Override
+			public void accept(DataLine response, Throwable failure) {
+				requestDone(request);
+			}
+		});
+		request.timeout = TIMEOUTS.schedule(new Runnable() {
+			@Override
+			public void run() {
+				request.future.completeExceptionally(new TimeoutException("No response within timeout."));
+			}
+		}, timeoutNanos, TimeUnit.NANOSECONDS);
+		if (request.future.isDone()) {
+			// Completed before the timeout was set, so requestDone() missed it.
+			request.timeout.cancel(false);
+		}
+		
+		if (correlation == Correlation.FIFO) {
+			String line = query.toString();
+			sendLock.lock();
+			try {
+				fifoRequests.add(request);
+				writer.send(line);
+			}
+			finally {
+				sendLock.unlock();
+			}
+		}
+		else {
+			// The id is appended to the text rather than added to the query, so
+			// that a query shared between threads is left as it is.
+			writer.send(query.toString() + DELIM + request.id);
+		}
+		
+		if (isClosed.get()) {
+			if (correlation == Correlation.FIFO && fifoRequests.remove(request)) {
+				// Queued after close() emptied the queue, so give back its place here.
+				window.release();
+			}
+			request.future.completeExceptionally(new IOException("Connection closed."));
+		}
+		return request.future;
+	}
+	
+	/**
+	 * Get the count of queries which are awaiting responses.
+	 * 
+	 * @return The in flight count.
+	 */
+	public int getInFlightCount() {
+		return maxInFlight - window.availablePermits();
+	}
+	
+	/**
+	 * Determine whether the client has been closed, either by calling close()
+	 * or because the connection closed.
+	 * 
+	 * @return True if closed.
+	 */
+	public boolean isClosed() {
+		return isClosed.get();
+	}
+	
+	/**
+	 * Close the connection. Every query still awaiting a response completes
+	 * exceptionally with an IOException.
+	 */
+	public void close() {
+		if (!isClosed.compareAndSet(false, true)) {
+			return;
+		}
+		writer.stopHandler();
+		reader.stopHandler();
+		writer.close();
+		IOException closed = new IOException("Connection closed.");
+		Request request;
+		while ((request = fifoRequests.poll()) != null) {
+			window.release();
+			request.future.completeExceptionally(closed);
+		}
+		for (Request r : idRequests.values()) {
+			r.future.completeExceptionally(closed);
+		}
+	}
+	
+	/**
+	 * Copy the correlation id of a query to its response. For use by servers
+	 * which answer {@link Correlation#CORRELATION_ID} clients; the id must be
+	 * the last info string of the response.
+	 * 
+	 * @param query - The query, as read from the socket.
+	 * @param response - The response to the query.
+	 * 
+	 * @return The response.
+	 * 
+	 * @throws IndexOutOfBoundsException if the query has no info strings.
+	 */
+	static public DataLine correlate(DataLine query, DataLine response) {
+		return response.addInfo(query.getInfo(query.getInfoCount() - 1));
+	}
+	
+	private void responseRead(DataLine response) {
+		Request request;
+		if (correlation == Correlation.FIFO) {
+			// The response uses up the request's slot, whether or not the
+			// request has already timed out, so only now is its place freed.
+			request = fifoRequests.poll();
+			if (request != null) {
+				window.release();
+			}
+		}
+		else {
+			int count = response.getInfoCount();
+			if (count == 0) {
+				return;
+			}
+			long id;
+			try {
+				id = response.getLongInfo(count - 1);
+			}
+			catch (NumberFormatException e) {
+				return;
+			}
+			response.removeLastInfo();
+			request = idRequests.get(id);
+		}
+		if (request != null) {
+			request.future.complete(response);
+		}
+	}
+	
+	private void requestDone(Request request) {
+		if (request.timeout != null) {
+			request.timeout.cancel(false);
+		}
+		if (request.id != 0) {
+			idRequests.remove(request.id);
+			window.release();
+		}
+	}
+	
+	static private ScheduledThreadPoolExecutor newTimeoutExecutor() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "pipelined-client-timeouts");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
+	}
+	
+	/**
+	 * A query which is awaiting its response.
+	 */
+	static private final class Request {
+		final CompletableFuture<DataLine> future = new CompletableFuture<DataLine>();
+		final long id;
+		volatile ScheduledFuture<?> timeout;
+		
+		/**
+		 * @param id - The correlation id, or 0 for a FIFO request.
+		 */
+		Request(long id) {
+			this.id = id;
+		}
+	}
+	
+}
@@ -0,0 +1,387 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.law.network.SocketHandler.Mode;
+import com.law.network.domain.HostMachine;
+
+/**
+ * Client socket handler which dials a host and port, and dials again
+ * whenever the connection fails, so that a flaky link causes a brief stall
+ * rather than the loss of the handler and everything queued on it.
+ * 
+ * <p> Each connection is run by a socket handler of its own, but lines are
+ * sent to one out buffer which every connection's handler takes from in
+ * turn. Lines sent while the link is down wait there (subject to the
+ * buffer's capacity and {@link SocketHandler.OverflowPolicy}), and are
+ * written once the next connection is made. Lines a handler had already
+ * taken for writing when its connection failed are lost, as a broken
+ * connection gives no way of knowing whether the peer received them.
+ * 
+ * <p> After a failed connection, or a failed attempt to connect, the next
+ * attempt waits for an exponential backoff: the initial delay, doubled
+ * after each failure up to the maximum delay, with random jitter of up to
+ * half the delay, so that many clients of one server do not all dial again
+ * at the same moment. The backoff starts again from the initial delay once
+ * a connection has stayed up for the maximum delay.
+ * 
+ * <p> The connections use the TEXT wire format. A
+ * {@link ConnectionStateListener} is told of each change of state, and an
+ * {@link OutboundWatermarkListener} in the config is passed the handler of
+ * the latest connection (or null before the first).
+ * 
+ * <pre>
+ * ReconnectingSocketHandler client = new ReconnectingSocketHandler(hostMachine, 4444,
+ *         Mode.MODE_WRITE, null, new SocketHandlerConfig().setMaxOutboundLines(10000))
+ *         .setBackoff(100, 30000, TimeUnit.MILLISECONDS);
+ * client.start();
+ * client.send(line);
+ * </pre>
+ * 
+ * @author Lloyd
+ */
+public class ReconnectingSocketHandler {
+	
+	/**
+	 * States of a reconnecting socket handler's connection.
+	 */
+	static public enum ConnectionState {
+		/** Not yet started, or waiting to dial again after a failure. */
+		DISCONNECTED,
+		
+		/** Dialing the host. */
+		CONNECTING,
+		
+		/** Connected, with a running socket handler. */
+		CONNECTED,
+		
+		/** Closed for good. */
+		CLOSED
+	}
+	
+	private final String host;
+	private final int port;
+	private final Mode mode;
+	private final SocketReadProcessor readProcessor;
+	private final SocketHandlerConfig config;
+	private final OutboundBuffer<Object> outBuffer;
+	private final SocketShutdownListener closingListener = new SocketShutdownListener() {
+		@Override
+		public void socketClosing(SocketHandler socketHandler) {
+			CountDownLatch closed = connectionClosed;
+			if (closed != null) {
+				closed.countDown();
+			}
+		}
+	};
+	private final AtomicBoolean isStarted = new AtomicBoolean();
+	private final AtomicBoolean isClosed = new AtomicBoolean();
+	private final AtomicLong connectCount = new AtomicLong();
+	private volatile long initialDelayNanos = TimeUnit.MILLISECONDS.toNanos(100);
+	private volatile long maxDelayNanos = TimeUnit.SECONDS.toNanos(30);
+	private volatile int connectTimeoutMillis = 10000;
+	private volatile ConnectionStateListener connectionStateListener;
+	private volatile ConnectionState state = ConnectionState.DISCONNECTED;
+	private volatile SocketHandler socketHandler;
+	private volatile CountDownLatch connectionClosed;
+	private volatile Thread connector;
+	
+	/**
+	 * Construct a reconnecting socket handler. It dials nothing until
+	 * started.
+	 * 
+	 * @param hostMachine - The host machine. Its address is used if set, or
+	 *  else its name.
+	 * @param port - The port.
+	 * @param mode - The mode of each connection's socket handler; normally
+	 *  MODE_WRITE or MODE_WRITE_READ.
+	 * @param readProcessor - Socket read processor for each connection's
+	 *  socket handler; can be null.
+	 * @param config - Settings for each connection's socket handler, and for
+	 *  the out buffer they share.
+	 * 
+	 * @throws IllegalArgumentException if the host has neither an address nor
+	 *  a name.
+	 */
+	public ReconnectingSocketHandler(HostMachine hostMachine, int port, Mode mode,
+			SocketReadProcessor readProcessor, SocketHandlerConfig config) {
+		this.host = HostMachine.getAddressOrName(hostMachine);
+		this.port = port;
+		this.mode = mode;
+		this.readProcessor = readProcessor;
+		this.config = config;
+		this.outBuffer = new OutboundBuffer<Object>(null, config);
+	}
+	
+	/**
+	 * Set the delays between attempts to connect. The defaults are 100
+	 * milliseconds, doubling up to 30 seconds.
+	 * 
+	 * @param initialDelay - The delay after the first failure.
+	 * @param maxDelay - The most the delay grows to.
+	 * @param unit - The unit of the delays.
+	 * 
+	 * @return This handler.
+	 * 
+	 * @throws IllegalArgumentException if initialDelay is not positive, or
+	 *  maxDelay is less than initialDelay.
+	 */
+	public ReconnectingSocketHandler setBackoff(long initialDelay, long maxDelay, TimeUnit unit) {
+		if (initialDelay <= 0 || maxDelay < initialDelay) {
+			throw new IllegalArgumentException("Backoff delays must be positive, and max at least initial: "
+					+ initialDelay + ", " + maxDelay);
+		}
+		this.initialDelayNanos = unit.toNanos(initialDelay);
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+		return this;
+	}
+	
+	/**
+	 * Set the timeout for each attempt to connect. The default is 10 seconds.
+	 * 
+	 * @param connectTimeoutMillis - The timeout in milliseconds, or 0 to wait
+	 *  without limit.
+	 * 
+	 * @return This handler.
+	 * 
+	 * @throws IllegalArgumentException if the timeout is negative.
+	 */
+	public ReconnectingSocketHandler setConnectTimeoutMillis(int connectTimeoutMillis) {
+		if (connectTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Connect timeout must not be negative: " + connectTimeoutMillis);
+		}
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		return this;
+	}
+	
+	/**
+	 * Set the listener which is told of each change of connection state.
+	 * 
+	 * @param connectionStateListener - The listener, or null for none.
+	 * 
+	 * @return This handler.
+	 */
+	public ReconnectingSocketHandler setConnectionStateListener(ConnectionStateListener connectionStateListener) {
+		this.connectionStateListener = connectionStateListener;
+		return this;
+	}
+	
+	/**
+	 * Start dialing, on a daemon thread of the handler's own which makes each
+	 * connection and waits for it to fail.
+	 * 
+	 * @throws IllegalStateException if the handler was already started, or
+	 *  has been closed.
+	 */
+	public void start() {
+		if (isClosed.get() || !isStarted.compareAndSet(false, true)) {
+			throw new IllegalStateException("Handler already started or closed.");
+		}
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				connectLoop();
+			}
+		}, "reconnecting-socket-handler-" + host + ":" + port);
+		thread.setDaemon(true);
+		connector = thread;
+		thread.start();
+	}
+	
+	/**
+	 * Send data to the socket of the current connection, or of the next one
+	 * if the link is down. See {@link SocketHandler#send(String)}.
+	 * 
+	 * @param data - The data to send.
+	 * 
+	 * @throws NullPointerException if the data is null.
+	 * @throws IllegalStateException if the buffer is full and the overflow
+	 *  policy is FAIL.
+	 */
+	public void send(String data) {
+		if (isClosed.get() || !outBuffer.offer(data)) {
+			return;
+		}
+		SocketHandler current = socketHandler;
+		if (current != null) {
+			current.wakeWriter();
+		}
+	}
+	
+	/**
+	 * Send a data line. See {@link #send(String)}.
+	 * 
+	 * @param line - The data line to send.
+	 */
+	public void send(DataLine line) {
+		send(line.toString());
+	}
+	
+	/**
+	 * Get the state of the connection.
+	 * 
+	 * @return The connection state.
+	 */
+	public ConnectionState getState() {
+		return state;
+	}
+	
+	/**
+	 * Get the socket handler of the current connection.
+	 * 
+	 * @return The socket handler, or null if not connected.
+	 */
+	public SocketHandler getSocketHandler() {
+		return socketHandler;
+	}
+	
+	/**
+	 * Get the count of lines waiting to be written, across reconnects.
+	 * 
+	 * @return The outbound line count.
+	 */
+	public int getOutboundCount() {
+		return outBuffer.size();
+	}
+	
+	/**
+	 * Get the count of connections made, including the first.
+	 * 
+	 * @return The connect count.
+	 */
+	public long getConnectCount() {
+		return connectCount.get();
+	}
+	
+	/**
+	 * Stop dialing, and stop and close the current connection. Lines not yet
+	 * written are dropped.
+	 */
+	public void close() {
+		if (!isClosed.compareAndSet(false, true)) {
+			return;
+		}
+		outBuffer.close();
+		SocketHandler current = socketHandler;
+		if (current != null) {
+			current.abort();
+		}
+		Thread thread = connector;
+		if (thread != null) {
+			thread.interrupt();
+		}
+		else {
+			setState(ConnectionState.CLOSED);
+		}
+	}
+	
+	/**
+	 * Connect, run the connection until it fails, and wait to dial again,
+	 * until closed.
+	 */
+	private void connectLoop() {
+		int failures = 0;
+		try {
+			while (!isClosed.get()) {
+				setState(ConnectionState.CONNECTING);
+				SocketHandler connected = connect();
+				if (connected != null) {
+					long connectedNanos = System.nanoTime();
+					runConnection(connected);
+					if (System.nanoTime() - connectedNanos >= maxDelayNanos) {
+						failures = 0;
+					}
+				}
+				if (isClosed.get()) {
+					break;
+				}
+				setState(ConnectionState.DISCONNECTED);
+				TimeUnit.NANOSECONDS.sleep(backoffNanos(failures++));
+			}
+		}
+		catch (InterruptedException e) {
+			// Closed.
+		}
+		finally {
+			socketHandler = null;
+			setState(ConnectionState.CLOSED);
+		}
+	}
+	
+	/**
+	 * Dial the host.
+	 * 
+	 * @return A socket handler for the new connection, not yet started, or
+	 *  null if the host could not be reached.
+	 */
+	private SocketHandler connect() {
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+			return new SocketHandler(socket, mode, readProcessor, closingListener, config, outBuffer);
+		}
+		catch (IOException e) {
+			try { socket.close(); }
+			catch (IOException ce) {}
+			return null;
+		}
+	}
+	
+	/**
+	 * Start the connection's socket handler, and wait until it closes.
+	 */
+	private void runConnection(SocketHandler connected) throws InterruptedException {
+		CountDownLatch closed = new CountDownLatch(1);
+		connectionClosed = closed;
+		outBuffer.setOwner(connected);
+		socketHandler = connected;
+		connectCount.incrementAndGet();
+		setState(ConnectionState.CONNECTED);
+		connected.start();
+		// Checked after publishing the handler, so that a racing close() stops it.
+		if (isClosed.get()) {
+			connected.abort();
+		}
+		try {
+			closed.await();
+		}
+		finally {
+			socketHandler = null;
+		}
+	}
+	
+	/**
+	 * Get the delay before the next attempt to connect: the initial delay
+	 * doubled once per failure, up to the max delay, less up to half of it
+	 * at random.
+	 */
+	private long backoffNanos(int failures) {
+		long delay = maxDelayNanos;
+		if (failures < 62 && initialDelayNanos <= maxDelayNanos >> failures) {
+			delay = initialDelayNanos << failures;
+		}
+		return delay - ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+	}
+	
+	private void setState(ConnectionState newState) {
+		state = newState;
+		ConnectionStateListener listener = connectionStateListener;
+		if (listener != null) {
+			try { listener.connectionStateChanged(this, newState); }
+			catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,146 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.law.network.SocketHandler.WireFormat;
+
+/**
+ * A connection which lines of data are sent to and read from, whether it is
+ * handled by a {@link SocketHandler} on a thread of its own, or by an
+ * {@link NioSocketHandler} on a shared event loop.
+ * 
+ * <p> Only those two classes implement this interface; it is not meant to be
+ * implemented elsewhere. {@link SocketHandler#shutdownGracefully(java.util.Collection, long, TimeUnit)}
+ * and {@link BroadcastGroup#add(SocketConnection)} reject any other
+ * implementation with an IllegalArgumentException.
+ * 
+ * @author Lloyd
+ */
+public interface SocketConnection {
+	
+	/**
+	 * Get the connection's id, which is passed to its processors as the
+	 * fromId, and is unique among the connections of this JVM.
+	 * 
+	 * @return The id.
+	 */
+	long getId();
+	
+	/**
+	 * Get the connection's name, for logging.
+	 * 
+	 * @return The name.
+	 */
+	String getName();
+	
+	/**
+	 * Begin following the rules of the connection's mode.
+	 * 
+	 * @throws IllegalThreadStateException if the connection was already
+	 *  started.
+	 */
+	void start();
+	
+	/**
+	 * Send data to the socket, once the connection has been started, in the
+	 * order it was sent.
+	 * 
+	 * @param data - The data to send.
+	 */
+	void send(String data);
+	
+	/**
+	 * Send a data line to the socket, as for {@link #send(String)}.
+	 * 
+	 * @param line - The data line to send.
+	 */
+	void send(DataLine line);
+	
+	/**
+	 * Set a data line processor, which is then called for each line read in
+	 * place of the socket read processor.
+	 * 
+	 * @param processor - The data line processor, or null to use the socket
+	 *  read processor.
+	 * 
+	 * @throws IllegalStateException if the connection has been started.
+	 */
+	void setDataLineProcessor(DataLineProcessor processor);
+	
+	/**
+	 * Get the data line processor.
+	 * 
+	 * @return The data line processor, or null if none.
+	 */
+	DataLineProcessor getDataLineProcessor();
+	
+	/**
+	 * Get the wire format in use.
+	 * 
+	 * @return The wire format.
+	 */
+	WireFormat getWireFormat();
+	
+	/**
+	 * Get the charset lines are encoded in on the TEXT wire format.
+	 * 
+	 * @return The charset.
+	 */
+	Charset getCharset();
+	
+	/**
+	 * Get the count of lines waiting in the out buffer to be written.
+	 * 
+	 * @return The outbound line count.
+	 */
+	int getOutboundCount();
+	
+	/**
+	 * Get the count of lines sent to a full out buffer which were dropped.
+	 * 
+	 * @return The dropped line count.
+	 */
+	long getDroppedCount();
+	
+	/**
+	 * Test whether the connection has not been stopped or closed.
+	 * 
+	 * @return True if the connection appears usable.
+	 */
+	boolean isOpen();
+	
+	/**
+	 * Get the connection's metrics.
+	 * 
+	 * @return The metrics.
+	 */
+	SocketHandlerMetrics getMetrics();
+	
+	/**
+	 * Shut the connection down without losing the lines already sent to it.
+	 * See {@link SocketHandler#shutdownGracefully(long, TimeUnit)}.
+	 * 
+	 * @param timeout - How long to allow.
+	 * @param unit - The unit of the timeout.
+	 * 
+	 * @return A future which completes when the connection has closed: with
+	 *  true if every line was written, or false if not.
+	 */
+	CompletableFuture<Boolean> shutdownGracefully(long timeout, TimeUnit unit);
+	
+	/**
+	 * Stop the connection from any further processing, and close it.
+	 */
+	void stopHandler();
+	
+	/**
+	 * Close the connection's socket.
+	 */
+	void close();
+	
+}
@@ -4,14 +4,25 @@
  */
 package com.law.network;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.InputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 
 /**
  * Class to handle communication to and/or from a socket.
@@ -21,9 +32,20 @@ import java.util.List;
  * handler's writeLine() and readLine() methods can be used for synchronous
  * communication, such as initial handshakes.
  * 
+ * <p> By default the handler runs on its own platform thread. It can instead
+ * be configured to run on a virtual thread (see {@link ExecutionMode}), in
+ * which case the same blocking read/write loop is used, and the handler's id
+ * is still used as the connection id. Thread methods which are final, such as
+ * join() and isAlive(), only apply to a platform thread handler.
+ * 
+ * <p> Lines are sent as text by default. Both ends may instead agree, before
+ * starting, to send length-prefixed binary frames (see {@link WireFormat},
+ * {@link #requestWireFormat(WireFormat, int)} and
+ * {@link #acceptWireFormat(WireFormat...)}).
+ * 
  * @author Lloyd
  */
-public class SocketHandler extends Thread {
+public class SocketHandler extends Thread implements SocketConnection {
 	
 	/**
 	 * Modes that a SocketHandler can operate in.
@@ -54,14 +76,105 @@ public class SocketHandler extends Thread {
 		MODE_WRITE_READ
 	}
 	
+	/**
+	 * Kinds of thread that a SocketHandler's read/write loop can run on.
+	 */
+	static public enum ExecutionMode {
+		/** Run on this handler's own platform thread, as started by start(). */
+		PLATFORM_THREAD,
+		
+		/** Run on a new virtual thread when start() is called. Requires a Java
+		 *  runtime with virtual thread support (Java 21 or later). Blocking
+		 *  socket I/O then parks the virtual thread rather than holding a
+		 *  platform thread, so many more handlers can run at once. */
+		VIRTUAL_THREAD
+	}
+	
+	/**
+	 * What send() does with a line when the handler's out buffer is full.
+	 * 
+	 * @see SocketHandlerConfig#setMaxOutboundLines(int)
+	 */
+	static public enum OverflowPolicy {
+		/** Wait until the handler has written enough lines to make room. The
+		 *  line is dropped if the handler closes, or the sending thread is
+		 *  interrupted, while waiting. */
+		BLOCK,
+		
+		/** Drop the line being sent. */
+		DROP_NEWEST,
+		
+		/** Add the line being sent, and drop the oldest line waiting. */
+		DROP_OLDEST,
+		
+		/** Throw an IllegalStateException from send(). */
+		FAIL
+	}
+	
+	/**
+	 * Formats in which lines of data can be sent on the wire.
+	 */
+	static public enum WireFormat {
+		/** Newline terminated text, with "::" between fields. Understood by
+		 *  every peer, and used unless both ends agree otherwise. */
+		TEXT,
+		
+		/** Length-prefixed binary frames, with native encodings of int, long,
+		 *  boolean and byte array info (see {@link DataLine#addInfo(int)} and
+		 *  friends). Fields are not scanned or escaped. */
+		BINARY,
+		
+		/** As BINARY, but frames at least as long as the compression threshold
+		 *  are deflated, with a Deflater and Inflater kept per connection. For
+		 *  large info payloads on bandwidth bound links. See
+		 *  {@link SocketHandlerConfig#setCompressionThreshold(int)}. */
+		BINARY_DEFLATE
+	}
+	
+	/** Name of the handshake line which offers, and accepts, a wire format. */
+	static private final String WIRE_FORMAT_HANDSHAKE = "[:]wireFormat[:]";
+	
+	/** Name of the line which comes before a streamed field; its first info
+	 *  is the field's length, and the rest is the line it was sent with. */
+	static private final String STREAM_HEADER = "[:]stream[:]";
+	
+	static private final int STREAM_CHUNK_SIZE = 64 * 1024;
+	
+	/** Runs the deadlines of graceful shutdowns. */
+	static private final ScheduledThreadPoolExecutor SHUTDOWN_DEADLINES = newDeadlineExecutor();
+	
 	private final Socket socket;
 	private final Mode mode;
 	private final SocketReadProcessor readProcessor;
 	private final SocketShutdownListener shutdownListener;
-	private final BufferedWriter out;
-	private final BufferedReader in;
-	private boolean isStopped = false;
-	private List<String> outBuffer = new ArrayList<String>();
+	private final LineWriter out;
+	private final LineReader in;
+	private final Charset charset;
+	private final ExecutionMode executionMode;
+	private final int maxWriteBatchSize;
+	private final long maxWriteLingerNanos;
+	private volatile boolean isStopped = false;
+	private volatile Thread runner;
+	private final AtomicBoolean isStarted = new AtomicBoolean();
+	private final AtomicBoolean isShuttingDown = new AtomicBoolean();
+	private final CompletableFuture<Boolean> terminated = new CompletableFuture<Boolean>();
+	private final OutboundBuffer<Object> outBuffer;
+	private final boolean isOutBufferShared;
+	private final SocketHandlerMetrics metrics;
+	private volatile Thread waitingWriter;
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile WireFormat wireFormat = WireFormat.TEXT;
+	private final int compressionThreshold;
+	private FrameCompressor compressor;
+	private final TrafficJournal journal;
+	private final int maxLineLength;
+	private StreamProcessor streamProcessor;
+	private String pendingLine;
+	private boolean isFirstLineRead;
+	private final byte[] frameHeader = new byte[BinaryFrameCodec.HEADER_LENGTH];
+	private byte[] frameBody = new byte[256];
+	private DataLineProcessor dataLineProcessor;
+	private DataLine receivedLine;
 	
 	/**
 	 * Construct a socket handler thread.
@@ -78,7 +191,9 @@ public class SocketHandler extends Thread {
 	 *          essentially "write and forget" mode, where the handler just sends data.
 	 *  <li> MODE_READ_WRITE - Read from the socket, obtain a response from the
 	 *          socket read processor and write the response back to the socket.
-	 *          If the socket read processor is null then send "" as the response.
+	 *          If the socket read processor is null, or returns null, then send
+	 *          "" as the response. A processor which only queues lines, such as
+	 *          an {@link OrderedProcessorPool}, cannot be used in this mode.
 	 *          This mode is essentially "server" mode, where the handler waits
 	 *          for a query and then supplies a response.
 	 *  <li> MODE_WRITE_READ - Write to the socket when send() is called, and
@@ -96,67 +211,179 @@ public class SocketHandler extends Thread {
 	 *  stream, or if an I/O error occurs when creating the input stream,
 	 *  or the socket is closed, or the socket is not connected, or the socket
 	 *  input has been shut down using shutdownInput().
+	 * @throws IllegalArgumentException if the mode is MODE_READ_WRITE and the
+	 *  read processor gives no responses.
 	 */
 	public SocketHandler(Socket socket, Mode mode, SocketReadProcessor readProcessor,
 			SocketShutdownListener shutdownListener)
 	throws IOException {
+		this(socket, mode, readProcessor, shutdownListener, new SocketHandlerConfig());
+	}
+	
+	/**
+	 * Construct a socket handler thread with the given settings.
+	 * 
+	 * @param socket - the socket to handle.
+	 * @param mode - the mode in which the socket will be handled while the
+	 *  handler thread is running. See
+	 *  {@link #SocketHandler(Socket, Mode, SocketReadProcessor, SocketShutdownListener)}.
+	 * @param readProcessor - Socket read processor to call when data is read
+	 *  from the socket; can be null. Not used when mode is MODE_WRITE.
+	 * @param shutdownListener - Listener for socket close event, or null for
+	 *  none.
+	 * @param config - Settings for the handler.
+	 * 
+	 * @throws IOException if an I/O error occurs when creating the output
+	 *  stream, or if an I/O error occurs when creating the input stream,
+	 *  or the socket is closed, or the socket is not connected, or the socket
+	 *  input has been shut down using shutdownInput().
+	 * @throws IllegalArgumentException if the mode is MODE_READ_WRITE and the
+	 *  read processor gives no responses.
+	 */
+	public SocketHandler(Socket socket, Mode mode, SocketReadProcessor readProcessor,
+			SocketShutdownListener shutdownListener, SocketHandlerConfig config)
+	throws IOException {
+		this(socket, mode, readProcessor, shutdownListener, config, null);
+	}
+	
+	/**
+	 * Construct a socket handler thread which takes its lines from an out
+	 * buffer that outlives it, for {@link ReconnectingSocketHandler}. Lines
+	 * left in the buffer when the handler closes stay there for the next
+	 * handler, and the buffer is not closed. The other parameters are as for
+	 * {@link #SocketHandler(Socket, Mode, SocketReadProcessor, SocketShutdownListener, SocketHandlerConfig)}.
+	 * 
+	 * @param outBuffer - The shared out buffer, or null for a buffer of the
+	 *  handler's own. Only one handler at a time may be running on it.
+	 */
+	SocketHandler(Socket socket, Mode mode, SocketReadProcessor readProcessor,
+			SocketShutdownListener shutdownListener, SocketHandlerConfig config,
+			OutboundBuffer<Object> outBuffer)
+	throws IOException {
+		if (mode == Mode.MODE_READ_WRITE && readProcessor instanceof DeferredReadProcessor) {
+			throw new IllegalArgumentException(readProcessor.getClass().getSimpleName()
+					+ " gives no responses, so cannot be used in MODE_READ_WRITE.");
+		}
 		this.socket = socket;
 		this.mode = mode;
 		this.readProcessor = readProcessor;
 		this.shutdownListener = shutdownListener;
+		this.charset = config.getCharset();
+		this.executionMode = config.getExecutionMode();
+		this.maxWriteBatchSize = config.getMaxWriteBatchSize();
+		this.maxWriteLingerNanos = config.getMaxWriteLingerNanos();
+		this.compressionThreshold = config.getCompressionThreshold();
+		this.journal = config.getJournal();
+		this.maxLineLength = config.getMaxLineLength();
+		this.isOutBufferShared = outBuffer != null;
+		this.outBuffer = isOutBufferShared ? outBuffer : new OutboundBuffer<Object>(this, config);
+		this.metrics = new SocketHandlerMetrics(this, config.isMBeanRegistered());
 		this.out = getOutputStreamWriter();
 		this.in = getInputStreamReader();
 	}
 	
+	/**
+	 * Start the handler's read/write loop on the thread given by the handler's
+	 * execution mode.
+	 * 
+	 * @throws IllegalThreadStateException if the handler was already started.
+	 * @throws UnsupportedOperationException if the execution mode is
+	 *  VIRTUAL_THREAD and the Java runtime does not support virtual threads.
+	 */
+	@Override
+	public void start() {
+		if (executionMode == ExecutionMode.PLATFORM_THREAD) {
+			runner = this;
+			metrics.open();
+			super.start();
+			return;
+		}
+		Thread virtualThread = VirtualThreads.newThread(this, "socket-handler-" + getId());
+		if (!isStarted.compareAndSet(false, true)) {
+			throw new IllegalThreadStateException("Handler already started.");
+		}
+		runner = virtualThread;
+		metrics.open();
+		virtualThread.start();
+	}
+	
+	/**
+	 * Interrupt the thread which is running this handler's read/write loop.
+	 */
+	@Override
+	public void interrupt() {
+		Thread t = runner;
+		if (t != null && t != this) {
+			t.interrupt();
+		}
+		else {
+			super.interrupt();
+		}
+	}
+	
 	@Override
 	public void run() {
+		boolean isDrained = false;
 		try {
 			infiniteLoop:
 			do {
 				switch (mode) {
 				case MODE_READ:
-					String inData = readLine();
-					if (inData == null) {
+					if (!readAndProcess(false)) {
+						isDrained = true;
 						break infiniteLoop;
 					}
-					processDataFromSocket(inData);
 					break;
 					
 				case MODE_WRITE:
-					String outData = waitForDataToWrite();
-					writeLine(outData);
+					Object outData = waitForDataToWrite();
+					if (outData == null) {
+						isDrained = true;
+						break infiniteLoop;
+					}
+					writeBatch(outData);
 					break;
 					
 				case MODE_READ_WRITE:
-					String inQuery = readLine();
-					if (inQuery == null) {
+					if (!readAndProcess(true)) {
+						isDrained = true;
 						break infiniteLoop;
 					}
-					String outResponse = processDataFromSocket(inQuery);
-					writeLine(outResponse);
 					break;
 					
 				case MODE_WRITE_READ:
-					String outQuery = waitForDataToWrite();
-					writeLine(outQuery);
-					String response = readLine();
-					if (response == null) {
+					Object outQuery = waitForDataToWrite();
+					if (outQuery == null) {
+						isDrained = true;
+						break infiniteLoop;
+					}
+					writeItem(outQuery);
+					if (!readAndProcess(false)) {
+						isDrained = outBuffer.size() == 0;
 						break infiniteLoop;
 					}
-					processDataFromSocket(response);
 					break;
 				}
 			}
 			while (!isStopped);
 		}
 		catch (IOException e) {
-			// TODO Perhaps don't want to return from run after IOException without retrying.
+			// Not retried here, as the socket is gone; ReconnectingSocketHandler dials again.
 			e.printStackTrace();
 		}
 		catch (InterruptedException e) {
 			System.out.println("Socket handler " + Thread.currentThread().getName() + " interrupt stop. shutdownListener = " + shutdownListener);
 		}
 		finally {
+			if (isDrained && !isOutBufferShared) {
+				// A line sent while the handler was stopping may still be waiting.
+				isDrained = outBuffer.size() == 0;
+			}
+			if (isDrained && isShuttingDown.get()) {
+				// Tell the peer everything has been sent.
+				try { socket.shutdownOutput(); }
+				catch (IOException e) {}
+			}
 			if (shutdownListener != null) {
 				try { shutdownListener.socketClosing(this); }
 				catch (Exception e) {
@@ -164,7 +391,77 @@ public class SocketHandler extends Thread {
 				}
 			}
 			close();
+			terminated.complete(isDrained);
+		}
+	}
+	
+	/**
+	 * Read a line and pass it to the data line processor if there is one, or
+	 * else to the socket read processor, and write the response if asked.
+	 * 
+	 * @param isResponseWritten - True to write the processor's response.
+	 * 
+	 * @return False if the end of the stream has been reached.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	private boolean readAndProcess(boolean isResponseWritten) throws IOException {
+		if (dataLineProcessor != null) {
+			if (receivedLine == null) {
+				receivedLine = new DataLine((String) null);
+			}
+			if (!readLine(receivedLine)) {
+				return false;
+			}
+			if (isFirstLine() && isWireFormatOffer(receivedLine)) {
+				writeItem(wireFormatRefusal());
+				return true;
+			}
+			long startNanos = System.nanoTime();
+			if (isStreamHeader(receivedLine)) {
+				String response = receiveStream(receivedLine.toString());
+				metrics.processed(startNanos);
+				if (isResponseWritten) {
+					writeItem(response != null ? response : "");
+				}
+				return true;
+			}
+			DataLine response = dataLineProcessor.processDataLine(receivedLine, getId());
+			metrics.processed(startNanos);
+			if (isResponseWritten) {
+				writeItem(response != null ? response.parser() : "");
+			}
+			return true;
+		}
+		String data = readLine();
+		if (data == null) {
+			return false;
+		}
+		if (isFirstLine() && isWireFormatOffer(data)) {
+			writeItem(wireFormatRefusal());
+			return true;
+		}
+		long startNanos = System.nanoTime();
+		String response = isStreamHeader(data)
+				? receiveStream(data)
+				: processDataFromSocket(data);
+		metrics.processed(startNanos);
+		if (isResponseWritten) {
+			writeItem(response != null ? response : "");
 		}
+		return true;
+	}
+	
+	/**
+	 * Determine whether the line just read is the first one read since the
+	 * handler started. Called once per line, by the handler's thread only.
+	 */
+	private boolean isFirstLine() {
+		if (isFirstLineRead) {
+			return false;
+		}
+		isFirstLineRead = true;
+		return wireFormat == WireFormat.TEXT;
 	}
 	
 	/**
@@ -185,21 +482,145 @@ public class SocketHandler extends Thread {
 				: "";
 	}
 	
+	/**
+	 * Read the field which follows a stream header, giving it to the stream
+	 * processor if there is one, and skipping whatever is not read.
+	 * 
+	 * @param header - The header line.
+	 * 
+	 * @return The stream processor's response, or "" if there is none.
+	 * 
+	 * @throws IOException If an I/O error occurs, or the header is not valid.
+	 */
+	private String receiveStream(String header) throws IOException {
+		long length = streamLength(header);
+		int end = header.indexOf("::", STREAM_HEADER.length() + 2);
+		DataLine line = new DataLine(end < 0 ? "" : header.substring(end + 2));
+		FieldInputStream data = new FieldInputStream(in, length);
+		try {
+			return streamProcessor != null
+					? streamProcessor.processStream(line, data, length, getId())
+					: "";
+		}
+		finally {
+			data.close();
+		}
+	}
+	
 	/**
 	 * Wait for the out buffer to contian something.
 	 * 
-	 * @return The oldest item in the out buffer.
+	 * @return The oldest item in the out buffer, or null if the buffer is
+	 *  empty and the handler is shutting down.
+	 * 
+	 * @throws InterruptedException If the wait is interrupted.
+	 */
+	private Object waitForDataToWrite() throws InterruptedException {
+		return waitForDataToWrite(false, 0L);
+	}
+	
+	/**
+	 * Wait for the out buffer to contian something, optionally giving up at a
+	 * deadline.
+	 * 
+	 * <p> Only the handler's own thread takes from the out buffer. When the
+	 * buffer is empty the thread publishes itself as the waiting writer,
+	 * checks the buffer once more, and parks until send() unparks it.
+	 * 
+	 * @param isTimed - True to give up at the deadline.
+	 * @param deadline - The System.nanoTime() at which to give up.
+	 * 
+	 * @return The oldest item in the out buffer, or null if the deadline
+	 *  passed first, or the buffer is empty and the handler is shutting down.
 	 * 
 	 * @throws InterruptedException If the wait is interrupted.
 	 */
-	synchronized private String waitForDataToWrite() throws InterruptedException {
-		while (out != null && outBuffer.isEmpty()) {
-			wait();
+	private Object waitForDataToWrite(boolean isTimed, long deadline) throws InterruptedException {
+		Object data = outBuffer.poll();
+		while (data == null) {
+			waitingWriter = Thread.currentThread();
+			data = outBuffer.poll();
+			if (data == null) {
+				if (isShuttingDown.get()) {
+					waitingWriter = null;
+					// A send() which saw the handler still running may have added
+					// a line just before the flag was set.
+					return outBuffer.poll();
+				}
+				if (isTimed) {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						waitingWriter = null;
+						return null;
+					}
+					LockSupport.parkNanos(this, remaining);
+				}
+				else {
+					LockSupport.park(this);
+				}
+				data = outBuffer.poll();
+			}
+			waitingWriter = null;
+			if (data == null && Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+		}
+		return data;
+	}
+	
+	/**
+	 * Write the given data, followed by as much further data from the out
+	 * buffer as the batch settings allow, and then flush once.
+	 * 
+	 * <p> Data already waiting in the out buffer is always taken, up to the
+	 * max write batch size. If the buffer runs dry before the batch is full,
+	 * and a linger time is configured, the handler waits up to that long
+	 * (measured from the first line of the batch) for more data before
+	 * flushing. The write lock is let go during that wait, so that
+	 * writeLine() is not held up by the linger time; a line written then
+	 * goes out after the lines already batched, and flushes them with it.
+	 * 
+	 * @param first - The first line of the batch.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 * @throws InterruptedException If a linger wait is interrupted. Data
+	 *  already batched is flushed first.
+	 */
+	private void writeBatch(Object first) throws IOException, InterruptedException {
+		writeLock.lock();
+		try {
+			Object data = first;
+			int count = 0;
+			long deadline = maxWriteLingerNanos > 0 ? System.nanoTime() + maxWriteLingerNanos : 0L;
+			try {
+				for (;;) {
+					write(data);
+					if (++count >= maxWriteBatchSize) {
+						break;
+					}
+					data = outBuffer.poll();
+					if (data == null && maxWriteLingerNanos > 0) {
+						writeLock.unlock();
+						try {
+							data = waitForDataToWrite(true, deadline);
+						}
+						finally {
+							writeLock.lock();
+						}
+					}
+					if (data == null) {
+						break;
+					}
+				}
+			}
+			finally {
+				out.flush();
+				metrics.flushed();
+			}
 		}
-		if (out != null && !outBuffer.isEmpty()) {
-			return outBuffer.remove(0);
+		finally {
+			writeLock.unlock();
 		}
-		return out == null ? null : "";
 	}
 	
 	/**
@@ -215,37 +636,252 @@ public class SocketHandler extends Thread {
 	 * <p> Another purpose of the buffer is to transfer control away from
 	 * the caller thread, to this socket handler thread.
 	 * 
+	 * <p> The buffer is a lock-free queue, so any number of threads may call
+	 * this method at once without blocking each other or the handler thread.
+	 * 
+	 * <p> In MODE_WRITE the handler drains the buffer in batches, flushing
+	 * once per batch rather than once per line. See
+	 * {@link SocketHandlerConfig#setMaxWriteBatchSize(int)}.
+	 * 
+	 * <p> The buffer may be given a capacity, in which case a line sent to a
+	 * full buffer is handled by the buffer's {@link OverflowPolicy}. See
+	 * {@link SocketHandlerConfig#setMaxOutboundLines(int)}.
+	 * 
 	 * @param data - The data to send.
+	 * 
+	 * @throws NullPointerException if the data is null.
+	 * @throws IllegalStateException if the buffer is full and the overflow
+	 *  policy is FAIL.
 	 */
-	synchronized public void send(String data) {
-		if (out != null) {
-			outBuffer.add(data);
+	public void send(String data) {
+		enqueue(data);
+	}
+	
+	/**
+	 * Send a data line to the socket.
+	 * 
+	 * <p> As {@link #send(String)}, but on a binary wire format the line is
+	 * encoded as a frame on the calling thread, keeping the native encoding
+	 * of its typed info.
+	 * 
+	 * @param line - The data line to send.
+	 */
+	public void send(DataLine line) {
+		if (wireFormat != WireFormat.TEXT) {
+			enqueue(BinaryFrameCodec.encode(line.parser()));
+		}
+		else {
+			send(line.toString());
+		}
+	}
+	
+	/**
+	 * Queue a line which is already encoded for this handler's wire format
+	 * and charset, without ever waiting for room: a full out buffer drops the
+	 * line, whatever its overflow policy. For {@link BroadcastGroup}.
+	 * 
+	 * @param line - The encoded line.
+	 * 
+	 * @return True if the line was queued, false if it was dropped.
+	 */
+	boolean sendEncoded(EncodedLine line) {
+		if (isShuttingDown.get() || !outBuffer.offerNow(line)) {
+			return false;
+		}
+		wakeWriter();
+		return true;
+	}
+	
+	private void enqueue(Object data) {
+		if (isShuttingDown.get() || !outBuffer.offer(data)) {
+			return;
+		}
+		wakeWriter();
+	}
+	
+	void wakeWriter() {
+		Thread writer = waitingWriter;
+		if (writer != null) {
+			LockSupport.unpark(writer);
 		}
-		notifyAll();
 	}
 	
 	/**
 	 * Write a line of data to the socket.
 	 * 
-	 * <p> The data is sent directly to the socket's out stream writer,
-	 * followed by a newline and a flush.
+	 * <p> The data is sent directly to the socket's out stream, followed by a
+	 * newline and a flush. On a binary wire format it is sent as a frame.
 	 * 
 	 * @param data - The data to write.
 	 * 
 	 * @throws IOException If an I/O error occurs.
 	 */
-	synchronized public void writeLine(String data) throws IOException {
-		out.write(data);
-		out.newLine();
-		out.flush();
+	public void writeLine(String data) throws IOException {
+		writeItem(data);
+	}
+	
+	/**
+	 * Write a data line to the socket, followed by a flush.
+	 * 
+	 * <p> As {@link #writeLine(String)}, but on a binary wire format the
+	 * native encoding of the line's typed info is kept.
+	 * 
+	 * @param line - The data line to write.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 */
+	public void writeLine(DataLine line) throws IOException {
+		writeItem(line.parser());
+	}
+	
+	/**
+	 * Write a data line with a large field which is streamed from the given
+	 * input, rather than held in memory as part of the line, followed by a
+	 * flush. The field may be longer than the peer's max line length.
+	 * 
+	 * <p> The peer's socket handler gives the field to its
+	 * {@link StreamProcessor} as an input stream while it arrives, along with
+	 * the line; without a stream processor it skips the field, as does an
+	 * NIO socket handler. The line is sent in the handler's wire format (as a
+	 * frame on the binary formats), and the field as raw bytes, which are not
+	 * compressed.
+	 * 
+	 * <p> As with {@link #writeLine(DataLine)} the data is written directly,
+	 * ahead of any lines waiting in the out buffer.
+	 * 
+	 * @param line - The line to send along with the field.
+	 * @param data - The field's bytes.
+	 * @param length - The count of bytes to send from the input.
+	 * 
+	 * @throws IOException If an I/O error occurs, or the input ends before
+	 *  the given length; the connection cannot be used after either.
+	 */
+	public void writeStream(DataLine line, InputStream data, long length) throws IOException {
+		if (length < 0) {
+			throw new IllegalArgumentException("Stream length must not be negative: " + length);
+		}
+		writeLock.lock();
+		try {
+			write(STREAM_HEADER + "::" + length + "::" + line.toString());
+			byte[] chunk = new byte[(int) Math.min(STREAM_CHUNK_SIZE, Math.max(length, 1))];
+			long remaining = length;
+			while (remaining > 0) {
+				int count = data.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+				if (count < 0) {
+					throw new EOFException("Stream input ended with " + remaining + " of " + length + " bytes to send.");
+				}
+				out.write(chunk, 0, count);
+				remaining -= count;
+			}
+			out.flush();
+			metrics.flushed();
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Write one item from the out buffer, and flush.
+	 */
+	private void writeItem(Object data) throws IOException {
+		writeLock.lock();
+		try {
+			write(data);
+			out.flush();
+			metrics.flushed();
+		}
+		finally {
+			writeLock.unlock();
+		}
+	}
+	
+	/**
+	 * Write one item without flushing: a line, an already encoded frame, or
+	 * a data line parser which is written directly from its buffer. The write
+	 * lock must be held.
+	 */
+	private void write(Object data) throws IOException {
+		if (data instanceof byte[]) {
+			writeFrame((byte[]) data);
+		}
+		else if (data instanceof EncodedLine) {
+			EncodedLine encoded = (EncodedLine) data;
+			if (encoded.isFrame()) {
+				writeFrame(encoded);
+			}
+			else {
+				out.write(encoded.bytes);
+				if (journal != null) {
+					journal.append(getId(), true, encoded.text);
+				}
+			}
+		}
+		else if (data instanceof DataLineParser) {
+			DataLineParser parser = (DataLineParser) data;
+			if (wireFormat != WireFormat.TEXT) {
+				writeFrame(BinaryFrameCodec.encode(parser));
+			}
+			else {
+				parser.writeLine(out);
+				if (journal != null) {
+					parser.journalTo(journal, getId(), true);
+				}
+			}
+		}
+		else if (wireFormat != WireFormat.TEXT) {
+			writeFrame(BinaryFrameCodec.encode(new DataLineParser((String) data)));
+		}
+		else {
+			out.writeLine((String) data);
+			if (journal != null) {
+				journal.append(getId(), true, (String) data);
+			}
+		}
+		metrics.lineWritten();
+	}
+	
+	private void writeFrame(byte[] frame) throws IOException {
+		if (compressor != null) {
+			compressor.writeFrame(frame, out);
+		}
+		else {
+			out.write(frame);
+		}
+		journalFrame(frame);
+	}
+	
+	/**
+	 * Write a frame shared with other handlers, with its compressed form
+	 * shared too.
+	 */
+	private void writeFrame(EncodedLine encoded) throws IOException {
+		if (compressor != null) {
+			compressor.writeFrame(encoded, out);
+		}
+		else {
+			out.write(encoded.bytes);
+		}
+		journalFrame(encoded.bytes);
+	}
+	
+	private void journalFrame(byte[] frame) {
+		if (journal != null) {
+			journal.append(getId(), (byte) (TrafficJournal.FLAG_OUTBOUND | TrafficJournal.FLAG_FRAME),
+					frame, BinaryFrameCodec.HEADER_LENGTH, frame.length - BinaryFrameCodec.HEADER_LENGTH);
+		}
 	}
 	
 	/**
 	 * Read a line of data from the socket.
 	 * 
 	 * <p> This method blocks until the data is ready.
+	 * <p> A line ends with "\n" (or "\r\n"), and is decoded with the
+	 * handler's charset.
 	 * <p> The result will not include any line-termination characters.
 	 * <p> Null will be returned if the end of the stream has been reached.
+	 * <p> On a binary wire format a frame is read, and its text form is
+	 * returned.
 	 * 
 	 * @return A String containing the contents of the line, not including any
 	 *  line-termination characters, or null if the end of the stream has been
@@ -254,8 +890,31 @@ public class SocketHandler extends Thread {
 	 * @throws IOException If an I/O error occurs
 	 */
 	public String readLine() throws IOException {
+		if (pendingLine != null) {
+			String line = pendingLine;
+			pendingLine = null;
+			metrics.lineRead();
+			if (journal != null) {
+				journal.append(getId(), false, line);
+			}
+			return line;
+		}
 		try {
-			return in.readLine();
+			String line;
+			if (wireFormat != WireFormat.TEXT) {
+				DataLineParser parser = new DataLineParser(null);
+				line = readFrame(parser) ? parser.toString() : null;
+			}
+			else {
+				line = in.readLine();
+				if (line != null && journal != null) {
+					journal.append(getId(), false, line);
+				}
+			}
+			if (line != null) {
+				metrics.lineRead();
+			}
+			return line;
 		}
 		catch (IOException e) {
 			if (isStopped) {
@@ -267,27 +926,609 @@ public class SocketHandler extends Thread {
 		}
 	}
 	
+	/**
+	 * Read a line of data from the socket into the given data line, replacing
+	 * its contents, as for {@link #readLine()}. A line of ASCII text is copied
+	 * straight into the data line, and no string is made for it, so a caller
+	 * which reuses one data line for every read makes little or no garbage.
+	 * 
+	 * @param line - The data line to read into.
+	 * 
+	 * @return True if a line was read, or false if the end of the stream has
+	 *  been reached.
+	 * 
+	 * @throws IOException If an I/O error occurs
+	 */
+	public boolean readLine(DataLine line) throws IOException {
+		DataLineParser target = line.parser();
+		if (pendingLine != null) {
+			target.reset(pendingLine);
+			pendingLine = null;
+			metrics.lineRead();
+			if (journal != null) {
+				target.journalTo(journal, getId(), false);
+			}
+			return true;
+		}
+		try {
+			if (wireFormat != WireFormat.TEXT) {
+				if (!readFrame(target)) {
+					return false;
+				}
+			}
+			else if (!in.readLine(target)) {
+				return false;
+			}
+			else if (journal != null) {
+				target.journalTo(journal, getId(), false);
+			}
+			metrics.lineRead();
+			return true;
+		}
+		catch (IOException e) {
+			if (isStopped) {
+				return false;
+			}
+			else {
+				throw e;
+			}
+		}
+	}
+	
+	/**
+	 * Read a data line from the socket, as for {@link #readLine()}, but
+	 * without turning a binary frame into text first.
+	 * 
+	 * @return The fields of the line; empty if the end of the stream has been
+	 *  reached.
+	 * 
+	 * @throws IOException If an I/O error occurs
+	 */
+	DataLineParser readParser() throws IOException {
+		DataLine line = new DataLine((String) null);
+		readLine(line);
+		return line.parser();
+	}
+	
+	private boolean readFrame(DataLineParser target) throws IOException {
+		if (!in.readFully(frameHeader, 0, frameHeader.length)) {
+			return false;
+		}
+		boolean isCompressed = compressor != null && FrameCompressor.isCompressed(frameHeader);
+		int length = isCompressed
+				? FrameCompressor.compressedLength(frameHeader)
+				: BinaryFrameCodec.frameLength(frameHeader);
+		if (length > maxLineLength) {
+			throw new IOException("Frame longer than " + maxLineLength + " bytes.");
+		}
+		if (length > frameBody.length) {
+			frameBody = new byte[Math.max(frameBody.length * 2, length)];
+		}
+		if (!in.readFully(frameBody, 0, length)) {
+			throw new EOFException("End of stream within a frame.");
+		}
+		byte[] body = frameBody;
+		if (isCompressed) {
+			length = compressor.inflate(frameBody, length);
+			body = compressor.inflated();
+		}
+		BinaryFrameCodec.decode(body, length, target);
+		if (journal != null) {
+			journal.append(getId(), TrafficJournal.FLAG_FRAME, body, 0, length);
+		}
+		return true;
+	}
+	
+	/**
+	 * Set a data line processor, which is then called for each line read in
+	 * place of the socket read processor. Lines are read into one reused data
+	 * line, so see {@link DataLineProcessor} for how long each line may be
+	 * kept.
+	 * 
+	 * @param processor - The data line processor, or null to use the socket
+	 *  read processor.
+	 * 
+	 * @throws IllegalStateException if the handler has been started.
+	 */
+	public void setDataLineProcessor(DataLineProcessor processor) {
+		checkNotStarted();
+		this.dataLineProcessor = processor;
+	}
+	
+	/**
+	 * Set a stream processor, which is called for each field a peer sends
+	 * with {@link #writeStream(DataLine, InputStream, long)}. Without one
+	 * streamed fields are skipped.
+	 * 
+	 * @param processor - The stream processor, or null for none.
+	 * 
+	 * @throws IllegalStateException if the handler has been started.
+	 */
+	public void setStreamProcessor(StreamProcessor processor) {
+		checkNotStarted();
+		this.streamProcessor = processor;
+	}
+	
+	/**
+	 * Get the stream processor.
+	 * 
+	 * @return The stream processor, or null if none.
+	 */
+	public StreamProcessor getStreamProcessor() {
+		return streamProcessor;
+	}
+	
+	/**
+	 * Get the data line processor.
+	 * 
+	 * @return The data line processor, or null if none.
+	 */
+	public DataLineProcessor getDataLineProcessor() {
+		return dataLineProcessor;
+	}
+	
+	/**
+	 * Offer the peer a wire format, and switch to it if the peer accepts. For
+	 * the connecting end; the peer calls {@link #acceptWireFormat(WireFormat...)}.
+	 * 
+	 * <p> Must be called before start(), and before any other data is sent
+	 * or read. A handshake line is written, and a reply is awaited for up to
+	 * the given timeout. A peer which does not understand the handshake
+	 * (one that speaks text only) either returns a response which is not an
+	 * acceptance, or does not answer; either way the handler stays on TEXT.
+	 * A late answer is read as ordinary data, so the timeout should be well
+	 * above the peer's usual response time.
+	 * 
+	 * <p> A started handler which did not call acceptWireFormat() answers an
+	 * offer made as its first line with TEXT, in any mode which reads, and
+	 * does not pass the offer to its processor; the fallback is then as quick
+	 * as a round trip. A peer which predates the handshake cannot do so: it
+	 * takes the offer as an ordinary line, passing it to its processor, and
+	 * if it does not answer (a MODE_READ peer, for one) this call blocks for
+	 * the whole timeout. Only offer a wire format to peers known to
+	 * understand the handshake, or give a short timeout.
+	 * 
+	 * @param format - The wire format to offer.
+	 * @param timeoutMillis - How long to wait for the reply.
+	 * 
+	 * @return The wire format now in use.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 * @throws IllegalStateException if the handler has been started.
+	 */
+	public WireFormat requestWireFormat(WireFormat format, int timeoutMillis) throws IOException {
+		checkNotStarted();
+		if (format == WireFormat.TEXT) {
+			return wireFormat;
+		}
+		writeLine(handshakeLine(format));
+		String reply;
+		int oldTimeout = socket.getSoTimeout();
+		socket.setSoTimeout(timeoutMillis);
+		try {
+			reply = in.readLine();
+		}
+		catch (SocketTimeoutException e) {
+			return wireFormat;
+		}
+		finally {
+			socket.setSoTimeout(oldTimeout);
+		}
+		if (reply != null && reply.equals(handshakeLine(format))) {
+			setWireFormat(format);
+		}
+		return wireFormat;
+	}
+	
+	/**
+	 * Answer a wire format offer from the peer, if one is made. For the
+	 * accepting end; the peer calls {@link #requestWireFormat(WireFormat, int)}.
+	 * 
+	 * <p> Must be called before start(). Blocks until the first line arrives.
+	 * If it is an offer of one of the given formats then the offer is
+	 * accepted and the handler switches to that format. An offer of any
+	 * other format is answered with TEXT. Any other line comes from a peer
+	 * which speaks text only; it is kept, and is the first line read once
+	 * the handler is started.
+	 * 
+	 * @param supported - The wire formats which may be accepted.
+	 * 
+	 * @return The wire format now in use.
+	 * 
+	 * @throws IOException If an I/O error occurs.
+	 * @throws IllegalStateException if the handler has been started.
+	 */
+	public WireFormat acceptWireFormat(WireFormat... supported) throws IOException {
+		checkNotStarted();
+		String line = in.readLine();
+		if (line == null) {
+			return wireFormat;
+		}
+		DataLine offer = new DataLine(line);
+		if (!WIRE_FORMAT_HANDSHAKE.equals(offer.getName()) || offer.getInfoCount() != 1) {
+			pendingLine = line;
+			return wireFormat;
+		}
+		WireFormat accepted = WireFormat.TEXT;
+		for (WireFormat format : supported) {
+			if (format.name().equals(offer.getInfo(0))) {
+				accepted = format;
+			}
+		}
+		writeLine(handshakeLine(accepted));
+		setWireFormat(accepted);
+		return wireFormat;
+	}
+	
+	private void setWireFormat(WireFormat format) {
+		if (format == WireFormat.BINARY_DEFLATE) {
+			compressor = new FrameCompressor(compressionThreshold, maxLineLength, metrics);
+		}
+		wireFormat = format;
+	}
+	
+	static private String handshakeLine(WireFormat format) {
+		return WIRE_FORMAT_HANDSHAKE + "::" + format.name();
+	}
+	
+	/**
+	 * Determine whether a line is a wire format offer from the peer.
+	 * 
+	 * @param line - The line read.
+	 * 
+	 * @return True if it is an offer.
+	 */
+	static boolean isWireFormatOffer(String line) {
+		return line.startsWith(WIRE_FORMAT_HANDSHAKE + "::");
+	}
+	
+	/**
+	 * Determine whether a data line is a wire format offer from the peer.
+	 * 
+	 * @param line - The line read.
+	 * 
+	 * @return True if it is an offer.
+	 */
+	static boolean isWireFormatOffer(DataLine line) {
+		return line.parser().hasName(WIRE_FORMAT_HANDSHAKE);
+	}
+	
+	/**
+	 * Determine whether a line is the header of a streamed field.
+	 * 
+	 * @param line - The line read.
+	 * 
+	 * @return True if it is a stream header.
+	 */
+	static boolean isStreamHeader(String line) {
+		return line.startsWith(STREAM_HEADER + "::");
+	}
+	
+	/**
+	 * Determine whether a data line is the header of a streamed field.
+	 * 
+	 * @param line - The line read.
+	 * 
+	 * @return True if it is a stream header.
+	 */
+	static boolean isStreamHeader(DataLine line) {
+		return line.parser().hasName(STREAM_HEADER);
+	}
+	
+	/**
+	 * Get the length of the field which follows a stream header.
+	 * 
+	 * @param header - The header line.
+	 * 
+	 * @return The count of the field's bytes.
+	 * 
+	 * @throws IOException if the header is not valid.
+	 */
+	static long streamLength(String header) throws IOException {
+		int start = STREAM_HEADER.length() + 2;
+		int end = header.indexOf("::", start);
+		long length;
+		try {
+			length = Long.parseLong(end < 0 ? header.substring(start) : header.substring(start, end));
+		}
+		catch (NumberFormatException e) {
+			length = -1L;
+		}
+		if (length < 0) {
+			throw new IOException("Bad stream header: " + header);
+		}
+		return length;
+	}
+	
+	/**
+	 * Get the answer to a wire format offer which is not taken up.
+	 * 
+	 * @return The answer line.
+	 */
+	static String wireFormatRefusal() {
+		return handshakeLine(WireFormat.TEXT);
+	}
+	
+	private void checkNotStarted() {
+		if (runner != null || isStarted.get()) {
+			throw new IllegalStateException("Handler already started.");
+		}
+	}
+	
+	/**
+	 * Get the wire format in use.
+	 * 
+	 * @return The wire format.
+	 */
+	public WireFormat getWireFormat() {
+		return wireFormat;
+	}
+	
+	/**
+	 * Get the charset lines are encoded in on the TEXT wire format.
+	 * 
+	 * @return The charset.
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+	
+	/**
+	 * Get the count of lines waiting in the out buffer to be written.
+	 * 
+	 * @return The outbound line count.
+	 */
+	public int getOutboundCount() {
+		return outBuffer.size();
+	}
+	
+	/**
+	 * Get the count of lines sent to a full out buffer which were dropped,
+	 * by the DROP_NEWEST or DROP_OLDEST overflow policy, or by the BLOCK
+	 * policy when the wait was cut short.
+	 * 
+	 * @return The dropped line count.
+	 */
+	public long getDroppedCount() {
+		return outBuffer.getDroppedCount();
+	}
+	
+	/**
+	 * Test whether this socket handler has not been stopped or closed, and
+	 * its socket is still connected with output open.
+	 * 
+	 * <p> A true result does not prove that the other end is still there;
+	 * a connection the peer has dropped is only noticed on the next read or
+	 * write.
+	 * 
+	 * @return True if the handler appears usable.
+	 */
+	public boolean isOpen() {
+		return !isStopped && socket.isConnected() && !socket.isClosed() && !socket.isOutputShutdown();
+	}
+	
+	/**
+	 * Get this socket handler's metrics. They stop changing once the handler
+	 * closes.
+	 * 
+	 * @return The metrics.
+	 */
+	public SocketHandlerMetrics getMetrics() {
+		return metrics;
+	}
+	
+	/**
+	 * Shut this socket handler down without losing the lines already sent to
+	 * it: it stops taking new lines, writes everything in its out buffer,
+	 * half-closes the socket's output so that the peer sees the end of the
+	 * stream, and then closes as it would when stopped.
+	 * 
+	 * <p> Lines sent once the shutdown has begun are dropped. A line sent by
+	 * a thread racing with the shutdown is either written or, if it lands
+	 * after the writer has finished, left unwritten and reported as such by
+	 * the returned future. In MODE_READ and MODE_READ_WRITE the socket's
+	 * input is shut down instead: a line being processed is finished, and its
+	 * response written, and lines already buffered are processed, but no more
+	 * are read. A handler which was never started is closed at once.
+	 * 
+	 * <p> If the handler has not finished by the deadline it is stopped and
+	 * closed, as by {@link #stopHandler()} and {@link #close()}.
+	 * 
+	 * @param timeout - How long to allow.
+	 * @param unit - The unit of the timeout.
+	 * 
+	 * @return A future which completes when the handler has closed: with
+	 *  true if every line was written (or, in the read modes, the handler
+	 *  ended cleanly), or false if the deadline passed, an error ended the
+	 *  handler, or it ended with lines unwritten.
+	 */
+	public CompletableFuture<Boolean> shutdownGracefully(long timeout, TimeUnit unit) {
+		return shutdownGracefully(Collections.singletonList(this), timeout, unit);
+	}
+	
+	/**
+	 * Shut down many socket handlers gracefully within one deadline, as by
+	 * {@link #shutdownGracefully(long, TimeUnit)}. Every handler begins its
+	 * shutdown at once and drains on its own thread (or, for an
+	 * {@link NioSocketHandler}, its event loop), so the handlers drain in
+	 * parallel, and those still open at the deadline are stopped and closed.
+	 * 
+	 * @param handlers - The socket handlers, of either kind.
+	 * @param timeout - How long to allow.
+	 * @param unit - The unit of the timeout.
+	 * 
+	 * @return A future which completes when every handler has closed: with
+	 *  true if all of them drained, or false if any did not.
+	 * 
+	 * @throws IllegalArgumentException if any handler is neither a socket
+	 *  handler nor an NIO socket handler, in which case none is shut down.
+	 */
+	static public CompletableFuture<Boolean> shutdownGracefully(Collection<? extends SocketConnection> handlers,
+			long timeout, TimeUnit unit) {
+		final List<SocketConnection> shuttingDown = new ArrayList<SocketConnection>(handlers);
+		for (SocketConnection handler : shuttingDown) {
+			checkSupported(handler);
+		}
+		final List<CompletableFuture<Boolean>> futures = new ArrayList<CompletableFuture<Boolean>>(shuttingDown.size());
+		for (SocketConnection handler : shuttingDown) {
+			futures.add(handler instanceof NioSocketHandler
+					? ((NioSocketHandler) handler).beginShutdown()
+					: ((SocketHandler) handler).beginShutdown());
+		}
+		final ScheduledFuture<?> deadline = SHUTDOWN_DEADLINES.schedule(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < shuttingDown.size(); i++) {
+					if (futures.get(i).isDone()) {
+						continue;
+					}
+					SocketConnection handler = shuttingDown.get(i);
+					if (handler instanceof NioSocketHandler) {
+						((NioSocketHandler) handler).forceShutdown();
+					}
+					else {
+						((SocketHandler) handler).forceShutdown();
+					}
+				}
+			}
+		}, timeout, unit);
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[futures.size()]))
+				.thenApply(new Function<Void, Boolean>() {
+					@Override
+					public Boolean apply(Void ignored) {
+						deadline.cancel(false);
+						for (CompletableFuture<Boolean> future : futures) {
+							if (!future.join()) {
+								return false;
+							}
+						}
+						return true;
+					}
+				});
+	}
+	
+	/**
+	 * Begin a graceful shutdown, if one has not already begun.
+	 * 
+	 * @return The future which completes when the handler has closed.
+	 */
+	private CompletableFuture<Boolean> beginShutdown() {
+		if (isShuttingDown.compareAndSet(false, true)) {
+			drain();
+		}
+		return terminated;
+	}
+	
+	/**
+	 * Start writing out what is left, once shutting down has begun. The
+	 * handler completes its shutdown future with {@link #drained(boolean)}
+	 * when it has closed.
+	 */
+	private void drain() {
+		if (runner == null && !isStarted.get()) {
+			close();
+			drained(outBuffer.size() == 0);
+			return;
+		}
+		if (mode == Mode.MODE_READ || mode == Mode.MODE_READ_WRITE) {
+			try { socket.shutdownInput(); }
+			catch (IOException e) {}
+		}
+		// A writer waiting for data sees the shutdown once the buffer is empty.
+		wakeWriter();
+	}
+	
+	/**
+	 * Test whether a graceful shutdown has begun.
+	 * 
+	 * @return True if shutting down.
+	 */
+	boolean isShuttingDown() {
+		return isShuttingDown.get();
+	}
+	
+	/**
+	 * Complete the shutdown future, if it is not already complete.
+	 * 
+	 * @param isDrained - True if nothing was left unwritten.
+	 */
+	private void drained(boolean isDrained) {
+		terminated.complete(isDrained);
+	}
+	
+	private void forceShutdown() {
+		abort();
+		drained(false);
+	}
+	
+	/**
+	 * Stop the handler and close it at once, even while its thread is blocked
+	 * reading, or writing to a peer which has stopped reading.
+	 */
+	void abort() {
+		stopHandler();
+		// Close the socket first: it wakes a handler blocked reading or writing,
+		// which holds the socket's write lock that flushing the writer needs.
+		if (socket != null) {
+			try { socket.close(); }
+			catch (IOException e) {}
+		}
+		close();
+	}
+	
+	/**
+	 * Check that a connection is one of the two kinds whose internals can be
+	 * reached: a socket handler or an NIO socket handler.
+	 * 
+	 * @param connection - The connection.
+	 * 
+	 * @throws IllegalArgumentException if it is of any other kind.
+	 */
+	static void checkSupported(SocketConnection connection) {
+		if (!(connection instanceof SocketHandler) && !(connection instanceof NioSocketHandler)) {
+			throw new IllegalArgumentException("Not a socket handler or NIO socket handler: "
+					+ connection.getClass().getName());
+		}
+	}
+	
+	static private ScheduledThreadPoolExecutor newDeadlineExecutor() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "socket-handler-shutdown-deadlines");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
+	}
+	
 	/**
 	 * Stop this socket handler from any further processing and close the I/O
 	 * buffers and socket.
 	 */
-	synchronized public void stopHandler() {
+	public void stopHandler() {
 		isStopped = true;
 		interrupt();
 	}
 	
-	private BufferedWriter getOutputStreamWriter() throws IOException {
-		return new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+	private LineWriter getOutputStreamWriter() throws IOException {
+		return new LineWriter(socket.getOutputStream(), charset, metrics.bytesOut);
 	}
 	
-	private BufferedReader getInputStreamReader() throws IOException {
-		return new BufferedReader(new InputStreamReader(socket.getInputStream()));
+	private LineReader getInputStreamReader() throws IOException {
+		return new LineReader(socket.getInputStream(), charset, metrics.bytesIn, maxLineLength);
 	}
 	
 	/**
 	 * Close the I/O streams and the socket.
 	 */
 	public void close() {
+		if (!isOutBufferShared) {
+			outBuffer.close();
+		}
+		metrics.close();
 		if (out != null) {
 			try { out.close(); }
 			catch (IOException e) {}
@@ -0,0 +1,387 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.law.network.SocketHandler.ExecutionMode;
+import com.law.network.SocketHandler.OverflowPolicy;
+
+/**
+ * Optional settings for a socket handler.
+ * 
+ * <p> A socket handler copies the settings it needs when it is constructed,
+ * so changing a config afterwards has no effect on that handler. One config
+ * may be shared by any number of handlers.
+ * 
+ * @author Lloyd
+ */
+public class SocketHandlerConfig {
+	
+	private ExecutionMode executionMode = ExecutionMode.PLATFORM_THREAD;
+	private Charset charset = StandardCharsets.UTF_8;
+	private int maxWriteBatchSize = 256;
+	private long maxWriteLingerNanos = 0L;
+	private int maxOutboundLines = Integer.MAX_VALUE;
+	private OverflowPolicy outboundOverflowPolicy = OverflowPolicy.BLOCK;
+	private int outboundLowWatermark = 0;
+	private int outboundHighWatermark = Integer.MAX_VALUE;
+	private OutboundWatermarkListener outboundWatermarkListener;
+	private boolean isMBeanRegistered = false;
+	private int compressionThreshold = 1024;
+	private TrafficJournal journal;
+	private int maxLineLength = BinaryFrameCodec.MAX_FRAME_LENGTH;
+	
+	/**
+	 * Get the kind of thread the handler's read/write loop runs on.
+	 * 
+	 * @return The execution mode. Default is PLATFORM_THREAD.
+	 */
+	public ExecutionMode getExecutionMode() {
+		return executionMode;
+	}
+	
+	/**
+	 * Set the kind of thread the handler's read/write loop runs on.
+	 * 
+	 * @param executionMode - The execution mode.
+	 * 
+	 * @return This config.
+	 * 
+	 * @throws NullPointerException if the execution mode is null.
+	 */
+	public SocketHandlerConfig setExecutionMode(ExecutionMode executionMode) {
+		if (executionMode == null) {
+			throw new NullPointerException("Null execution mode.");
+		}
+		this.executionMode = executionMode;
+		return this;
+	}
+	
+	/**
+	 * Get the charset used to encode and decode lines.
+	 * 
+	 * @return The charset. Default is UTF-8.
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+	
+	/**
+	 * Set the charset used to encode and decode lines. Both ends of a
+	 * connection must use the same charset.
+	 * 
+	 * @param charset - The charset, which must encode ASCII characters as
+	 *  single ASCII bytes (for example UTF-8, US-ASCII or ISO-8859-1).
+	 * 
+	 * @return This config.
+	 * 
+	 * @throws NullPointerException if the charset is null.
+	 * @throws IllegalArgumentException if the charset is not ASCII compatible.
+	 */
+	public SocketHandlerConfig setCharset(Charset charset) {
+		if (charset == null) {
+			throw new NullPointerException("Null charset.");
+		}
+		LineReader.checkAsciiCompatible(charset);
+		this.charset = charset;
+		return this;
+	}
+	
+	/**
+	 * Get the most lines a MODE_WRITE handler writes before flushing.
+	 * 
+	 * @return The max write batch size. Default is 256.
+	 */
+	public int getMaxWriteBatchSize() {
+		return maxWriteBatchSize;
+	}
+	
+	/**
+	 * Set the most lines a MODE_WRITE handler writes before flushing.
+	 * 
+	 * <p> The handler writes everything already waiting in its out buffer, up
+	 * to this many lines, and then flushes once. A size of 1 flushes after
+	 * every line, for the lowest latency per message.
+	 * 
+	 * @param maxWriteBatchSize - The max write batch size.
+	 * 
+	 * @return This config.
+	 * 
+	 * @throws IllegalArgumentException if the size is less than one.
+	 */
+	public SocketHandlerConfig setMaxWriteBatchSize(int maxWriteBatchSize) {
+		if (maxWriteBatchSize < 1) {
+			throw new IllegalArgumentException("Max write batch size must be positive: " + maxWriteBatchSize);
+		}
+		this.maxWriteBatchSize = maxWriteBatchSize;
+		return this;
+	}
+	
+	/**
+	 * Get the longest a MODE_WRITE handler waits for more lines before
+	 * flushing a batch which is not yet full.
+	 * 
+	 * @return The max write linger time in nanoseconds. Default is zero.
+	 */
+	public long getMaxWriteLingerNanos() {
+		return maxWriteLingerNanos;
+	}
+	
+	/**
+	 * Set the longest a MODE_WRITE handler waits for more lines before
+	 * flushing a batch which is not yet full.
+	 * 
+	 * <p> With a linger time of zero a batch is flushed as soon as the out
+	 * buffer is empty, so batching never delays a line. A small linger time
+	 * lets a high rate sender fill larger batches, and so send fewer packets,
+	 * at the cost of up to that much added latency.
+	 * 
+	 * @param time - The max write linger time, or zero for none.
+	 * @param unit - The unit of the time.
+	 * 
+	 * @return This config.
+	 * 
+	 * @throws IllegalArgumentException if the time is negative.
+	 */
+	public SocketHandlerConfig setMaxWriteLinger(long time, TimeUnit unit) {
+		if (time < 0) {
+			throw new IllegalArgumentException("Max write linger must not be negative: " + time);
+		}
+		this.maxWriteLingerNanos = unit.toNanos(time);
+		return this;
+	}
+	
+	/**
+	 * Get the most lines which may wait in the handler's out buffer.
+	 * 
+	 * @return The max outbound line count. Default is Integer.MAX_VALUE,
+	 *  which is in effect unbounded.
+	 */
+	public int getMaxOutboundLines() {
+		return maxOutboundLines;
+	}
+	
+	/**
+	 * Set the most lines which may wait in the handler's out buffer, to be
+	 * written by the handler's thread. When a peer stops reading, send()
+	 * would otherwise keep buffering lines until memory runs out. What
+	 * happens to a line sent to a full buffer is set by
+	 * {@link #setOutboundOverflowPolicy(OverflowPolicy)}.
+	 * 
+	 * @param maxOutboundLines - The max outbound line count.
+	 * 
+	 * @return This config.
+	 * 
+	 * @throws IllegalArgumentException if the count is less than one.
+	 */
+	public SocketHandlerConfig setMaxOutboundLines(int maxOutboundLines) {
+		if (maxOutboundLines < 1) {
+			throw new IllegalArgumentException("Max outbound lines must be positive: " + maxOutboundLines);
+		}
+		this.maxOutboundLines = maxOutboundLines;
+		return this;
+	}
+	
+	/**
+	 * Get what happens to a line sent to a full out buffer.
+	 * 
+	 * @return The overflow policy. Default is BLOCK.
+	 */
+	public OverflowPolicy getOutboundOverflowPolicy() {
+		return outboundOverflowPolicy;
+	}
+	
+	/**
+	 * Set what happens to a line sent to a full out buffer.
+	 * 
+	 * @param outboundOverflowPolicy - The overflow policy.
+	 * 
+	 * @return This config.
+	 * 
+	 * @throws NullPointerException if the policy is null.
+	 */
+	public SocketHandlerConfig setOutboundOverflowPolicy(OverflowPolicy outboundOverflowPolicy) {
+		if (outboundOverflowPolicy == null) {
+			throw new NullPointerException("Null overflow policy.");
+		}
+		this.outboundOverflowPolicy = outboundOverflowPolicy;
+		return this;
+	}
+	
+	/**
+	 * Get the out buffer line count at which the watermark listener is told
+	 * the buffer has drained.
+	 * 
+	 * @return The low watermark. Default is zero.
+	 */
+	public int getOutboundLowWatermark() {
+		return outboundLowWatermark;
+	}
+	
+	/**
+	 * Get the out buffer line count at which the watermark listener is told
+	 * the buffer is filling.
+	 * 
+	 * @return The high watermark. Default is Integer.MAX_VALUE, which is never
+	 *  reached.
+	 */
+	public int getOutboundHighWatermark() {
+		return outboundHighWatermark;
+	}
+	
+	/**
+	 * Set the out buffer line counts at which the watermark listener is
+	 * called: outboundHigh() once the count reaches the high watermark, and
+	 * then outboundLow() once it falls back to the low watermark.
+	 * 
+	 * @param low - The low watermark.
+	 * @param high - The high watermark.
+	 * 
+	 * @return This config.
+	 * 
+	 * @throws IllegalArgumentException if low is negative, or high is not
+	 *  greater than low.
+	 */
+	public SocketHandlerConfig setOutboundWatermarks(int low, int high) {
+		if (low < 0 || high <= low) {
+			throw new IllegalArgumentException("Bad outbound watermarks: low = " + low + ", high = " + high);
+		}
+		this.outboundLowWatermark = low;
+		this.outboundHighWatermark = high;
+		return this;
+	}
+	
+	/**
+	 * Get the listener for the out buffer's watermarks.
+	 * 
+	 * @return The listener, or null if none.
+	 */
+	public OutboundWatermarkListener getOutboundWatermarkListener() {
+		return outboundWatermarkListener;
+	}
+	
+	/**
+	 * Set the listener for the out buffer's watermarks.
+	 * 
+	 * @param outboundWatermarkListener - The listener, or null for none.
+	 * 
+	 * @return This config.
+	 */
+	public SocketHandlerConfig setOutboundWatermarkListener(OutboundWatermarkListener outboundWatermarkListener) {
+		this.outboundWatermarkListener = outboundWatermarkListener;
+		return this;
+	}
+	
+	/**
+	 * Get whether the handler's metrics are registered as an MBean.
+	 * 
+	 * @return True to register. Default is false.
+	 */
+	public boolean isMBeanRegistered() {
+		return isMBeanRegistered;
+	}
+	
+	/**
+	 * Set whether the handler's metrics are registered as an MBean with the
+	 * platform MBean server from when the handler starts until it closes. The
+	 * global metrics of all handlers are registered along with the first. See
+	 * {@link SocketHandlerMetrics}.
+	 * 
+	 * @param isMBeanRegistered - True to register.
+	 * 
+	 * @return This config.
+	 */
+	public SocketHandlerConfig setMBeanRegistered(boolean isMBeanRegistered) {
+		this.isMBeanRegistered = isMBeanRegistered;
+		return this;
+	}
+	
+	/**
+	 * Get the shortest frame body which is compressed on the BINARY_DEFLATE
+	 * wire format.
+	 * 
+	 * @return The threshold in bytes. Default is 1024.
+	 */
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+	
+	/**
+	 * Set the shortest frame body which is compressed on the BINARY_DEFLATE
+	 * wire format. Shorter frames are sent as they are, since deflate costs
+	 * more than it saves on them. Only the sending end's threshold matters.
+	 * 
+	 * @param compressionThreshold - The threshold in bytes.
+	 * 
+	 * @return This config.
+	 * 
+	 * @throws IllegalArgumentException if the threshold is negative.
+	 */
+	public SocketHandlerConfig setCompressionThreshold(int compressionThreshold) {
+		if (compressionThreshold < 0) {
+			throw new IllegalArgumentException("Compression threshold must not be negative: " + compressionThreshold);
+		}
+		this.compressionThreshold = compressionThreshold;
+		return this;
+	}
+	
+	/**
+	 * Get the journal which lines read and written are captured to.
+	 * 
+	 * @return The journal, or null for none. Default is null.
+	 */
+	public TrafficJournal getJournal() {
+		return journal;
+	}
+	
+	/**
+	 * Set a journal to capture every line the handler reads and writes to,
+	 * for replaying later with a {@link TrafficReplayer}. One journal may be
+	 * shared by many handlers; its records carry each handler's id. The
+	 * journal is not closed when the handler is.
+	 * 
+	 * @param journal - The journal, or null for none.
+	 * 
+	 * @return This config.
+	 */
+	public SocketHandlerConfig setJournal(TrafficJournal journal) {
+		this.journal = journal;
+		return this;
+	}
+	
+	/**
+	 * Get the most bytes a line read from the socket may have.
+	 * 
+	 * @return The max line length. Default is 64MB, the longest binary frame.
+	 */
+	public int getMaxLineLength() {
+		return maxLineLength;
+	}
+	
+	/**
+	 * Set the most bytes a line (or binary frame body) read from the socket
+	 * may have, not counting its terminator. A longer line is an error which
+	 * stops the handler, found as soon as that many bytes have arrived, so a
+	 * peer cannot make the handler buffer an unbounded line. Larger data can
+	 * be sent as a stream; see
+	 * {@link SocketHandler#writeStream(DataLine, java.io.InputStream, long)}.
+	 * 
+	 * @param maxLineLength - The max line length in bytes.
+	 * 
+	 * @return This config.
+	 * 
+	 * @throws IllegalArgumentException if the length is less than 1.
+	 */
+	public SocketHandlerConfig setMaxLineLength(int maxLineLength) {
+		if (maxLineLength < 1) {
+			throw new IllegalArgumentException("Max line length must be at least 1: " + maxLineLength);
+		}
+		this.maxLineLength = maxLineLength;
+		return this;
+	}
+	
+}
@@ -0,0 +1,414 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Counters and gauges for one socket handler: lines and bytes in and out,
+ * flushes, the depth of the out buffer, how long the read processor takes
+ * for each line, and how well and how cheaply frames compress.
+ * 
+ * <p> Every socket handler keeps metrics (see
+ * {@link SocketHandler#getMetrics()}), and they are cheap enough to leave on:
+ * counters are LongAdders, processor times go into a lock free
+ * {@link LatencyHistogram}, and bytes are counted once per socket read or
+ * write rather than per line. Nothing is added up until the metrics are
+ * read.
+ * 
+ * <p> {@link #getGlobal()} adds up the metrics of every handler, including
+ * those which have closed. A handler's metrics can be registered as an MBean
+ * named com.law.network:type=SocketHandler,id=&lt;handler id&gt; (see
+ * {@link SocketHandlerConfig#setMBeanRegistered(boolean)}), and the global
+ * metrics as com.law.network:type=SocketHandlers.
+ * 
+ * @author Lloyd
+ */
+public final class SocketHandlerMetrics implements SocketHandlerMetricsMBean {
+	
+	static private final String DOMAIN = "com.law.network";
+	
+	/** Metrics of handlers which have not yet closed. */
+	static private final Set<SocketHandlerMetrics> open =
+			Collections.newSetFromMap(new ConcurrentHashMap<SocketHandlerMetrics, Boolean>());
+	
+	/** Totals of handlers which have closed. */
+	static private final SocketHandlerMetrics closed = new SocketHandlerMetrics(null, false);
+	
+	static private final SocketHandlerMetricsMBean global = new Global();
+	static private final AtomicBoolean isGlobalRegistered = new AtomicBoolean();
+	
+	private final SocketConnection socketHandler;
+	private final boolean isMBeanRegistered;
+	final LongAdder linesIn = new LongAdder();
+	final LongAdder linesOut = new LongAdder();
+	final LongAdder bytesIn = new LongAdder();
+	final LongAdder bytesOut = new LongAdder();
+	final LongAdder flushes = new LongAdder();
+	private final LongAdder uncompressedBytes = new LongAdder();
+	private final LongAdder compressedBytes = new LongAdder();
+	private final LongAdder compressionNanos = new LongAdder();
+	private final LongAdder decompressionNanos = new LongAdder();
+	private final LatencyHistogram processorLatency = new LatencyHistogram();
+	private final AtomicBoolean isOpened = new AtomicBoolean();
+	private final AtomicBoolean isClosed = new AtomicBoolean();
+	private volatile ObjectName objectName;
+	
+	/**
+	 * Make the metrics of a new socket handler. They count towards the global
+	 * metrics, and are registered as an MBean, only from {@link #open()} until
+	 * {@link #close()}, so a handler which is never started holds nothing in
+	 * the static registry.
+	 * 
+	 * @param socketHandler - The handler, or null for the closed totals.
+	 * @param isMBeanRegistered - Whether to register an MBean on open.
+	 */
+	SocketHandlerMetrics(SocketConnection socketHandler, boolean isMBeanRegistered) {
+		this.socketHandler = socketHandler;
+		this.isMBeanRegistered = isMBeanRegistered;
+	}
+	
+	/**
+	 * Start counting these metrics towards the global metrics, and register
+	 * the MBean if asked to. Called when the handler starts; later calls, and
+	 * calls after {@link #close()}, do nothing.
+	 */
+	void open() {
+		if (isClosed.get() || !isOpened.compareAndSet(false, true)) {
+			return;
+		}
+		open.add(this);
+		if (isMBeanRegistered) {
+			registerMBean();
+		}
+	}
+	
+	/**
+	 * Get the metrics of every socket handler added together.
+	 * 
+	 * @return The global metrics.
+	 */
+	static public SocketHandlerMetricsMBean getGlobal() {
+		return global;
+	}
+	
+	/**
+	 * Register the global metrics as an MBean with the platform MBean server,
+	 * if they are not already.
+	 */
+	static public void registerGlobalMBean() {
+		if (!isGlobalRegistered.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(new StandardMBean(global, SocketHandlerMetricsMBean.class),
+					new ObjectName(DOMAIN + ":type=SocketHandlers"));
+		}
+		catch (InstanceAlreadyExistsException e) {
+			// Registered by another copy of this class.
+		}
+		catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Register these metrics as an MBean with the platform MBean server, and
+	 * the global metrics too. They are unregistered when the handler closes.
+	 */
+	private void registerMBean() {
+		registerGlobalMBean();
+		try {
+			ObjectName name = new ObjectName(DOMAIN + ":type=SocketHandler,id=" + socketHandler.getId());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+			objectName = name;
+		}
+		catch (JMException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	void lineRead() {
+		linesIn.increment();
+	}
+	
+	void lineWritten() {
+		linesOut.increment();
+	}
+	
+	void flushed() {
+		flushes.increment();
+	}
+	
+	/**
+	 * Count a frame offered for compression.
+	 * 
+	 * @param before - The length of the frame body.
+	 * @param after - The length sent, compressed or not.
+	 * @param cpuNanos - The CPU time spent compressing.
+	 */
+	void compressed(int before, int after, long cpuNanos) {
+		uncompressedBytes.add(before);
+		compressedBytes.add(after);
+		compressionNanos.add(cpuNanos);
+	}
+	
+	/**
+	 * Count a frame decompressed.
+	 * 
+	 * @param cpuNanos - The CPU time spent decompressing.
+	 */
+	void decompressed(long cpuNanos) {
+		decompressionNanos.add(cpuNanos);
+	}
+	
+	/**
+	 * Count a read processor call.
+	 * 
+	 * @param startNanos - The System.nanoTime() at which the call started.
+	 */
+	void processed(long startNanos) {
+		processorLatency.record(System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * Move these metrics into the global totals of closed handlers, and
+	 * unregister the MBean. Called when the handler closes; later calls do
+	 * nothing.
+	 */
+	void close() {
+		if (!isClosed.compareAndSet(false, true)) {
+			return;
+		}
+		closed.linesIn.add(linesIn.sum());
+		closed.linesOut.add(linesOut.sum());
+		closed.bytesIn.add(bytesIn.sum());
+		closed.bytesOut.add(bytesOut.sum());
+		closed.flushes.add(flushes.sum());
+		closed.uncompressedBytes.add(uncompressedBytes.sum());
+		closed.compressedBytes.add(compressedBytes.sum());
+		closed.compressionNanos.add(compressionNanos.sum());
+		closed.decompressionNanos.add(decompressionNanos.sum());
+		closed.processorLatency.add(processorLatency);
+		open.remove(this);
+		ObjectName name = objectName;
+		if (name != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+			}
+			catch (JMException e) {
+				// Already gone.
+			}
+		}
+	}
+	
+	@Override
+	public long getLinesIn() {
+		return linesIn.sum();
+	}
+	
+	@Override
+	public long getLinesOut() {
+		return linesOut.sum();
+	}
+	
+	@Override
+	public long getBytesIn() {
+		return bytesIn.sum();
+	}
+	
+	@Override
+	public long getBytesOut() {
+		return bytesOut.sum();
+	}
+	
+	@Override
+	public long getFlushCount() {
+		return flushes.sum();
+	}
+	
+	@Override
+	public double getCompressionRatio() {
+		return ratio(uncompressedBytes.sum(), compressedBytes.sum());
+	}
+	
+	@Override
+	public long getCompressionCpuNanos() {
+		return compressionNanos.sum();
+	}
+	
+	@Override
+	public long getDecompressionCpuNanos() {
+		return decompressionNanos.sum();
+	}
+	
+	static private double ratio(long before, long after) {
+		return after > 0 ? (double) before / after : 1.0;
+	}
+	
+	@Override
+	public int getOutboundDepth() {
+		return socketHandler != null && !isClosed.get() ? socketHandler.getOutboundCount() : 0;
+	}
+	
+	@Override
+	public long getProcessorCallCount() {
+		return LatencyHistogram.count(latencyCounts());
+	}
+	
+	@Override
+	public long getProcessorLatencyP50Nanos() {
+		return LatencyHistogram.percentile(latencyCounts(), 50.0);
+	}
+	
+	@Override
+	public long getProcessorLatencyP99Nanos() {
+		return LatencyHistogram.percentile(latencyCounts(), 99.0);
+	}
+	
+	@Override
+	public long getProcessorLatencyP999Nanos() {
+		return LatencyHistogram.percentile(latencyCounts(), 99.9);
+	}
+	
+	private long[] latencyCounts() {
+		long[] totals = new long[LatencyHistogram.BUCKET_COUNT];
+		processorLatency.addTo(totals);
+		return totals;
+	}
+	
+	/**
+	 * The metrics of all handlers, added up when read. A handler which
+	 * closes while they are being added up may be counted twice or not at
+	 * all for that one read.
+	 */
+	static private final class Global implements SocketHandlerMetricsMBean {
+		
+		@Override
+		public long getLinesIn() {
+			long sum = closed.getLinesIn();
+			for (SocketHandlerMetrics metrics : open) {
+				sum += metrics.getLinesIn();
+			}
+			return sum;
+		}
+		
+		@Override
+		public long getLinesOut() {
+			long sum = closed.getLinesOut();
+			for (SocketHandlerMetrics metrics : open) {
+				sum += metrics.getLinesOut();
+			}
+			return sum;
+		}
+		
+		@Override
+		public long getBytesIn() {
+			long sum = closed.getBytesIn();
+			for (SocketHandlerMetrics metrics : open) {
+				sum += metrics.getBytesIn();
+			}
+			return sum;
+		}
+		
+		@Override
+		public long getBytesOut() {
+			long sum = closed.getBytesOut();
+			for (SocketHandlerMetrics metrics : open) {
+				sum += metrics.getBytesOut();
+			}
+			return sum;
+		}
+		
+		@Override
+		public long getFlushCount() {
+			long sum = closed.getFlushCount();
+			for (SocketHandlerMetrics metrics : open) {
+				sum += metrics.getFlushCount();
+			}
+			return sum;
+		}
+		
+		@Override
+		public double getCompressionRatio() {
+			long before = closed.uncompressedBytes.sum();
+			long after = closed.compressedBytes.sum();
+			for (SocketHandlerMetrics metrics : open) {
+				before += metrics.uncompressedBytes.sum();
+				after += metrics.compressedBytes.sum();
+			}
+			return ratio(before, after);
+		}
+		
+		@Override
+		public long getCompressionCpuNanos() {
+			long sum = closed.getCompressionCpuNanos();
+			for (SocketHandlerMetrics metrics : open) {
+				sum += metrics.getCompressionCpuNanos();
+			}
+			return sum;
+		}
+		
+		@Override
+		public long getDecompressionCpuNanos() {
+			long sum = closed.getDecompressionCpuNanos();
+			for (SocketHandlerMetrics metrics : open) {
+				sum += metrics.getDecompressionCpuNanos();
+			}
+			return sum;
+		}
+		
+		@Override
+		public int getOutboundDepth() {
+			int sum = 0;
+			for (SocketHandlerMetrics metrics : open) {
+				sum += metrics.getOutboundDepth();
+			}
+			return sum;
+		}
+		
+		@Override
+		public long getProcessorCallCount() {
+			return LatencyHistogram.count(latencyCounts());
+		}
+		
+		@Override
+		public long getProcessorLatencyP50Nanos() {
+			return LatencyHistogram.percentile(latencyCounts(), 50.0);
+		}
+		
+		@Override
+		public long getProcessorLatencyP99Nanos() {
+			return LatencyHistogram.percentile(latencyCounts(), 99.0);
+		}
+		
+		@Override
+		public long getProcessorLatencyP999Nanos() {
+			return LatencyHistogram.percentile(latencyCounts(), 99.9);
+		}
+		
+		private long[] latencyCounts() {
+			long[] totals = new long[LatencyHistogram.BUCKET_COUNT];
+			closed.processorLatency.addTo(totals);
+			for (SocketHandlerMetrics metrics : open) {
+				metrics.processorLatency.addTo(totals);
+			}
+			return totals;
+		}
+		
+	}
+	
+}
@@ -0,0 +1,82 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+/**
+ * Management interface of {@link SocketHandlerMetrics}, for one socket
+ * handler or for all of them together.
+ * 
+ * @author Lloyd
+ */
+public interface SocketHandlerMetricsMBean {
+	
+	/**
+	 * @return The count of lines (or frames) read.
+	 */
+	long getLinesIn();
+	
+	/**
+	 * @return The count of lines (or frames) written.
+	 */
+	long getLinesOut();
+	
+	/**
+	 * @return The count of bytes read from the socket.
+	 */
+	long getBytesIn();
+	
+	/**
+	 * @return The count of bytes written to the socket.
+	 */
+	long getBytesOut();
+	
+	/**
+	 * @return The count of times the socket was flushed.
+	 */
+	long getFlushCount();
+	
+	/**
+	 * @return Bytes of frame body offered for compression, divided by bytes
+	 *  sent for them; 1.0 if none were offered.
+	 */
+	double getCompressionRatio();
+	
+	/**
+	 * @return The CPU time spent compressing frames, in nanoseconds.
+	 */
+	long getCompressionCpuNanos();
+	
+	/**
+	 * @return The CPU time spent decompressing frames, in nanoseconds.
+	 */
+	long getDecompressionCpuNanos();
+	
+	/**
+	 * @return The count of lines waiting in the out buffer, of open handlers.
+	 */
+	int getOutboundDepth();
+	
+	/**
+	 * @return The count of calls to the read processor.
+	 */
+	long getProcessorCallCount();
+	
+	/**
+	 * @return The median time a read processor call took, in nanoseconds.
+	 */
+	long getProcessorLatencyP50Nanos();
+	
+	/**
+	 * @return The 99th percentile time a read processor call took, in
+	 *  nanoseconds.
+	 */
+	long getProcessorLatencyP99Nanos();
+	
+	/**
+	 * @return The 99.9th percentile time a read processor call took, in
+	 *  nanoseconds.
+	 */
+	long getProcessorLatencyP999Nanos();
+	
+}
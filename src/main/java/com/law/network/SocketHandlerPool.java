@@ -0,0 +1,652 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.law.network.SocketHandler.Mode;
+import com.law.network.domain.HostMachine;
+
+/**
+ * Pool of started client socket handlers, kept open between uses so that a
+ * burst of requests to the same host and port does not pay for a new
+ * connection and a new thread each time.
+ * 
+ * <p> Handlers are borrowed for a host machine and port, and released back
+ * to the pool when the caller is done with them. A borrowed handler is
+ * checked before it is handed out: one which has been stopped or closed,
+ * whose socket is no longer connected, or which has passed the pool's
+ * maximum lifetime is closed and another is tried. Handlers whose shutdown
+ * listener has fired (for example because a read failed) are removed from
+ * the pool straight away.
+ * 
+ * <p> Up to maxIdle handlers are kept per host and port; a handler released
+ * to a full pool is closed. {@link #fill(HostMachine, int)} opens handlers
+ * until minIdle are idle, and {@link #evictIdle()} closes idle handlers which
+ * have expired, so either can be called from a timer to keep the pool warm.
+ * 
+ * <p> A handler which the pool retires when it is released, or found idle
+ * past its lifetime, is shut down gracefully: it writes the lines already
+ * sent to it, for up to the drain timeout, before closing (see
+ * {@link #setDrainTimeout(long, TimeUnit)}). {@link #invalidate(SocketHandler)}
+ * and {@link #close()} stop a handler at once instead, so lines sent to it
+ * which it has not yet written are dropped. Use MODE_WRITE or
+ * MODE_WRITE_READ handlers, as the pool is for client connections. To close
+ * the whole pool without losing lines, use
+ * {@link #shutdownGracefully(long, TimeUnit)}.
+ * 
+ * <pre>
+ * SocketHandlerPool pool = new SocketHandlerPool(Mode.MODE_WRITE, null, null, new SocketHandlerConfig())
+ *         .setMaxIdle(4)
+ *         .setMaxLifetime(10, TimeUnit.MINUTES);
+ * line.sendTo(pool, hostMachine, 4444);
+ * </pre>
+ * 
+ * @author Lloyd
+ */
+public class SocketHandlerPool {
+	
+	private final Mode mode;
+	private final SocketReadProcessor readProcessor;
+	private final SocketShutdownListener shutdownListener;
+	private final SocketHandlerConfig config;
+	private final SocketShutdownListener evictor = new SocketShutdownListener() {
+		@Override
+		public void socketClosing(SocketHandler socketHandler) {
+			evicted(socketHandler);
+		}
+	};
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Map<Key, ArrayDeque<Entry>> idle = new HashMap<Key, ArrayDeque<Entry>>();
+	/** Every handler the pool holds idle or has lent out; a borrowed handler
+	 *  stays here, even once it has left the pool, until it is given back. */
+	private final Map<SocketHandler, Entry> entries = new ConcurrentHashMap<SocketHandler, Entry>();
+	private volatile boolean isClosed;
+	private volatile int minIdle = 0;
+	private volatile int maxIdle = 8;
+	private volatile long maxLifetimeNanos = 0;
+	private volatile int connectTimeoutMillis = 0;
+	private volatile long drainTimeoutNanos = TimeUnit.SECONDS.toNanos(5);
+	
+	/**
+	 * Construct an empty pool.
+	 * 
+	 * @param mode - The mode of the pooled socket handlers.
+	 * @param readProcessor - Socket read processor for the pooled handlers;
+	 *  can be null.
+	 * @param shutdownListener - Listener for the pooled handlers' socket close
+	 *  events, or null for none. It is called after the handler has been
+	 *  removed from the pool.
+	 * @param config - Settings for the pooled handlers.
+	 */
+	public SocketHandlerPool(Mode mode, SocketReadProcessor readProcessor,
+			SocketShutdownListener shutdownListener, SocketHandlerConfig config) {
+		this.mode = mode;
+		this.readProcessor = readProcessor;
+		this.shutdownListener = shutdownListener;
+		this.config = config;
+	}
+	
+	/**
+	 * Set the count of idle handlers which {@link #fill(HostMachine, int)}
+	 * keeps open per host and port. The default is 0.
+	 * 
+	 * @param minIdle - The minimum idle count.
+	 * 
+	 * @return This pool.
+	 * 
+	 * @throws IllegalArgumentException if minIdle is negative or more than
+	 *  maxIdle.
+	 */
+	public SocketHandlerPool setMinIdle(int minIdle) {
+		if (minIdle < 0 || minIdle > maxIdle) {
+			throw new IllegalArgumentException("Min idle must be 0 to " + maxIdle + ": " + minIdle);
+		}
+		this.minIdle = minIdle;
+		return this;
+	}
+	
+	/**
+	 * Set the most idle handlers kept per host and port. A handler released
+	 * when this many are idle is closed. The default is 8.
+	 * 
+	 * @param maxIdle - The maximum idle count.
+	 * 
+	 * @return This pool.
+	 * 
+	 * @throws IllegalArgumentException if maxIdle is negative or less than
+	 *  minIdle.
+	 */
+	public SocketHandlerPool setMaxIdle(int maxIdle) {
+		if (maxIdle < 0 || maxIdle < minIdle) {
+			throw new IllegalArgumentException("Max idle must be at least " + minIdle + ": " + maxIdle);
+		}
+		this.maxIdle = maxIdle;
+		return this;
+	}
+	
+	/**
+	 * Set how long a handler may be used for after it connects. A handler
+	 * older than this is closed rather than borrowed or released, which
+	 * spreads connections over hosts that have been added behind the same
+	 * address. The default, 0, is no limit.
+	 * 
+	 * @param maxLifetime - The maximum lifetime, or 0 for no limit.
+	 * @param unit - The unit of the lifetime.
+	 * 
+	 * @return This pool.
+	 * 
+	 * @throws IllegalArgumentException if maxLifetime is negative.
+	 */
+	public SocketHandlerPool setMaxLifetime(long maxLifetime, TimeUnit unit) {
+		if (maxLifetime < 0) {
+			throw new IllegalArgumentException("Max lifetime must not be negative: " + maxLifetime);
+		}
+		this.maxLifetimeNanos = unit.toNanos(maxLifetime);
+		return this;
+	}
+	
+	/**
+	 * Set the timeout for opening a new connection. The default, 0, waits
+	 * without limit.
+	 * 
+	 * @param connectTimeoutMillis - The timeout in milliseconds, or 0.
+	 * 
+	 * @return This pool.
+	 * 
+	 * @throws IllegalArgumentException if the timeout is negative.
+	 */
+	public SocketHandlerPool setConnectTimeoutMillis(int connectTimeoutMillis) {
+		if (connectTimeoutMillis < 0) {
+			throw new IllegalArgumentException("Connect timeout must not be negative: " + connectTimeoutMillis);
+		}
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		return this;
+	}
+	
+	/**
+	 * Set how long a handler which the pool retires may take to write the
+	 * lines already sent to it before it is closed regardless. The default is
+	 * 5 seconds.
+	 * 
+	 * @param drainTimeout - The drain timeout.
+	 * @param unit - The unit of the timeout.
+	 * 
+	 * @return This pool.
+	 * 
+	 * @throws IllegalArgumentException if the timeout is negative.
+	 */
+	public SocketHandlerPool setDrainTimeout(long drainTimeout, TimeUnit unit) {
+		if (drainTimeout < 0) {
+			throw new IllegalArgumentException("Drain timeout must not be negative: " + drainTimeout);
+		}
+		this.drainTimeoutNanos = unit.toNanos(drainTimeout);
+		return this;
+	}
+	
+	/**
+	 * Borrow a started socket handler connected to the given host and port,
+	 * opening a new one if none is idle. The handler must be given back with
+	 * {@link #release(SocketHandler)}, or with
+	 * {@link #invalidate(SocketHandler)} if it failed.
+	 * 
+	 * @param host - The host machine. Its address is used if set, or else its
+	 *  name.
+	 * @param port - The port.
+	 * 
+	 * @return The socket handler.
+	 * 
+	 * @throws IOException if a new connection could not be opened.
+	 * @throws IllegalArgumentException if the host has neither an address nor
+	 *  a name.
+	 * @throws IllegalStateException if the pool has been closed.
+	 */
+	public SocketHandler borrow(HostMachine host, int port) throws IOException {
+		Key key = new Key(host, port);
+		for (;;) {
+			checkNotClosed();
+			Entry entry;
+			lock.lock();
+			try {
+				ArrayDeque<Entry> handlers = idle.get(key);
+				// Most recently used first, so that surplus handlers age out.
+				entry = handlers != null ? handlers.pollLast() : null;
+				if (entry != null) {
+					entry.isBorrowed = true;
+				}
+			}
+			finally {
+				lock.unlock();
+			}
+			if (entry == null) {
+				return open(key).handler;
+			}
+			if (isUsable(entry)) {
+				return entry.handler;
+			}
+			giveBack(entry);
+			retire(entry);
+		}
+	}
+	
+	/**
+	 * Give a borrowed handler back to the pool. It is shut down gracefully
+	 * instead if it is no longer usable, if the pool already has maxIdle idle
+	 * handlers for its host and port, or if the pool has been closed. A
+	 * handler which closed, or was closed by the pool, while borrowed has
+	 * already left the pool, and releasing it does nothing.
+	 * 
+	 * @param socketHandler - The handler, which must have been borrowed from
+	 *  this pool.
+	 * 
+	 * @throws IllegalArgumentException if the handler does not belong to this
+	 *  pool (or was invalidated).
+	 * @throws IllegalStateException if the handler is not borrowed, as when
+	 *  it is released twice.
+	 */
+	public void release(SocketHandler socketHandler) {
+		Entry entry = entries.get(socketHandler);
+		if (entry == null) {
+			throw new IllegalArgumentException("Handler is not in this pool: " + socketHandler);
+		}
+		lock.lock();
+		try {
+			if (!entry.isBorrowed) {
+				throw new IllegalStateException("Handler is not borrowed: " + socketHandler);
+			}
+			if (giveBack(entry)) {
+				return;
+			}
+			if (socketHandler.isShuttingDown()) {
+				// Draining; it leaves the pool when it closes.
+				return;
+			}
+			if (!isClosed && isUsable(entry)) {
+				ArrayDeque<Entry> handlers = idleFor(entry.key);
+				if (handlers.size() < maxIdle) {
+					handlers.addLast(entry);
+					return;
+				}
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+		retire(entry);
+	}
+	
+	/**
+	 * Close a borrowed handler and remove it from the pool, for example after
+	 * a write to it failed.
+	 * 
+	 * @param socketHandler - The handler.
+	 */
+	public void invalidate(SocketHandler socketHandler) {
+		Entry entry = entries.get(socketHandler);
+		if (entry != null) {
+			giveBack(entry);
+			discard(entry);
+		}
+	}
+	
+	/**
+	 * Send a data line through a pooled handler for the given host and port.
+	 * 
+	 * @param host - The host machine.
+	 * @param port - The port.
+	 * @param line - The data line to send.
+	 * 
+	 * @throws IOException if a new connection could not be opened.
+	 * 
+	 * @see SocketHandler#send(DataLine)
+	 */
+	public void send(HostMachine host, int port, DataLine line) throws IOException {
+		SocketHandler socketHandler = borrow(host, port);
+		try {
+			socketHandler.send(line);
+		}
+		finally {
+			release(socketHandler);
+		}
+	}
+	
+	/**
+	 * Write a data line through a pooled handler for the given host and port.
+	 * If the write fails the handler is removed from the pool.
+	 * 
+	 * @param host - The host machine.
+	 * @param port - The port.
+	 * @param line - The data line to write.
+	 * 
+	 * @throws IOException if a new connection could not be opened, or the
+	 *  write failed.
+	 * 
+	 * @see SocketHandler#writeLine(DataLine)
+	 */
+	public void writeLine(HostMachine host, int port, DataLine line) throws IOException {
+		SocketHandler socketHandler = borrow(host, port);
+		try {
+			socketHandler.writeLine(line);
+		}
+		catch (IOException e) {
+			invalidate(socketHandler);
+			throw e;
+		}
+		release(socketHandler);
+	}
+	
+	/**
+	 * Open handlers for the given host and port until minIdle are idle.
+	 * 
+	 * @param host - The host machine.
+	 * @param port - The port.
+	 * 
+	 * @throws IOException if a new connection could not be opened.
+	 */
+	public void fill(HostMachine host, int port) throws IOException {
+		Key key = new Key(host, port);
+		while (getIdleCount(key) < minIdle) {
+			release(open(key).handler);
+		}
+	}
+	
+	/**
+	 * Shut down idle handlers which are no longer usable, such as those which
+	 * have passed the maximum lifetime.
+	 * 
+	 * @return The count of handlers shut down.
+	 */
+	public int evictIdle() {
+		List<Entry> expired = new ArrayList<Entry>();
+		lock.lock();
+		try {
+			for (ArrayDeque<Entry> handlers : idle.values()) {
+				for (Iterator<Entry> i = handlers.iterator(); i.hasNext(); ) {
+					Entry entry = i.next();
+					if (!isUsable(entry)) {
+						i.remove();
+						expired.add(entry);
+					}
+				}
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+		for (Entry entry : expired) {
+			retire(entry);
+		}
+		return expired.size();
+	}
+	
+	/**
+	 * Get the count of idle handlers for the given host and port.
+	 * 
+	 * @param host - The host machine.
+	 * @param port - The port.
+	 * 
+	 * @return The idle count.
+	 */
+	public int getIdleCount(HostMachine host, int port) {
+		return getIdleCount(new Key(host, port));
+	}
+	
+	private int getIdleCount(Key key) {
+		lock.lock();
+		try {
+			ArrayDeque<Entry> handlers = idle.get(key);
+			return handlers != null ? handlers.size() : 0;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Get the count of open handlers, both idle and borrowed.
+	 * 
+	 * @return The open count.
+	 */
+	public int getOpenCount() {
+		int count = 0;
+		for (Entry entry : entries.values()) {
+			if (!entry.isRemoved) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+	/**
+	 * Close every handler, idle or borrowed. Handlers borrowed later fail
+	 * with an IllegalStateException, and released ones are closed.
+	 */
+	public void close() {
+		isClosed = true;
+		for (Entry entry : new ArrayList<Entry>(entries.values())) {
+			discard(entry);
+		}
+	}
+	
+	/**
+	 * Close the pool, first letting every handler, idle or borrowed, write
+	 * the lines already sent to it, all within one deadline. See
+	 * {@link SocketHandler#shutdownGracefully(java.util.Collection, long, TimeUnit)}.
+	 * Borrowing from the pool then fails with an IllegalStateException.
+	 * 
+	 * @param timeout - How long to allow.
+	 * @param unit - The unit of the timeout.
+	 * 
+	 * @return A future which completes when every handler has closed: with
+	 *  true if all of them drained, or false if any did not.
+	 */
+	public CompletableFuture<Boolean> shutdownGracefully(long timeout, TimeUnit unit) {
+		isClosed = true;
+		lock.lock();
+		try {
+			idle.clear();
+		}
+		finally {
+			lock.unlock();
+		}
+		return SocketHandler.shutdownGracefully(entries.keySet(), timeout, unit);
+	}
+	
+	private void checkNotClosed() {
+		if (isClosed) {
+			throw new IllegalStateException("Pool is closed.");
+		}
+	}
+	
+	private Entry open(Key key) throws IOException {
+		Socket socket = new Socket();
+		try {
+			socket.connect(new InetSocketAddress(key.host, key.port), connectTimeoutMillis);
+			SocketHandler socketHandler = new SocketHandler(socket, mode, readProcessor, evictor, config);
+			Entry entry = new Entry(socketHandler, key);
+			entry.isBorrowed = true;
+			entries.put(socketHandler, entry);
+			socketHandler.start();
+			return entry;
+		}
+		catch (IOException e) {
+			try { socket.close(); }
+			catch (IOException ce) {}
+			throw e;
+		}
+	}
+	
+	private boolean isUsable(Entry entry) {
+		if (entry.isEvicted || !entry.handler.isOpen()) {
+			return false;
+		}
+		long maxLifetime = maxLifetimeNanos;
+		return maxLifetime == 0 || System.nanoTime() - entry.createdNanos < maxLifetime;
+	}
+	
+	private ArrayDeque<Entry> idleFor(Key key) {
+		ArrayDeque<Entry> handlers = idle.get(key);
+		if (handlers == null) {
+			handlers = new ArrayDeque<Entry>();
+			idle.put(key, handlers);
+		}
+		return handlers;
+	}
+	
+	/**
+	 * Remove an entry from the pool and shut its handler down gracefully, so
+	 * that lines sent just before it was released are still written. A
+	 * handler which is no longer open is simply closed.
+	 */
+	private void retire(Entry entry) {
+		if (remove(entry)) {
+			if (entry.handler.isOpen()) {
+				entry.handler.shutdownGracefully(drainTimeoutNanos, TimeUnit.NANOSECONDS);
+			}
+			else {
+				entry.handler.stopHandler();
+				entry.handler.close();
+			}
+		}
+	}
+	
+	/**
+	 * Remove an entry from the pool and stop its handler at once.
+	 */
+	private void discard(Entry entry) {
+		if (remove(entry)) {
+			entry.handler.stopHandler();
+			// Also close here, as stopping does not wake a handler blocked reading.
+			entry.handler.close();
+		}
+	}
+	
+	/**
+	 * Take an entry out of the pool, if it is still in it. A borrowed entry
+	 * stays in the entries map until it is given back.
+	 * 
+	 * @return True if the entry was in the pool, and the caller must now
+	 *  close its handler.
+	 */
+	private boolean remove(Entry entry) {
+		lock.lock();
+		try {
+			if (entry.isRemoved) {
+				return false;
+			}
+			entry.isRemoved = true;
+			ArrayDeque<Entry> handlers = idle.get(entry.key);
+			if (handlers != null) {
+				handlers.remove(entry);
+			}
+			if (!entry.isBorrowed) {
+				entries.remove(entry.handler);
+			}
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Mark a borrowed entry as given back, and forget it if it has already
+	 * left the pool.
+	 * 
+	 * @return True if the entry had left the pool.
+	 */
+	private boolean giveBack(Entry entry) {
+		lock.lock();
+		try {
+			entry.isBorrowed = false;
+			if (entry.isRemoved) {
+				entries.remove(entry.handler);
+				return true;
+			}
+			return false;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Called when a pooled handler is closing, whether the pool closed it or
+	 * it stopped on its own.
+	 */
+	private void evicted(SocketHandler socketHandler) {
+		Entry entry = entries.get(socketHandler);
+		if (entry != null) {
+			entry.isEvicted = true;
+			remove(entry);
+		}
+		if (shutdownListener != null) {
+			shutdownListener.socketClosing(socketHandler);
+		}
+	}
+	
+	/**
+	 * Host address (or name) and port of a pooled connection.
+	 */
+	static private final class Key {
+		
+		private final String host;
+		private final int port;
+		
+		Key(HostMachine hostMachine, int port) {
+			this.host = HostMachine.getAddressOrName(hostMachine);
+			this.port = port;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return port == other.port && host.equals(other.host);
+		}
+		
+		@Override
+		public int hashCode() {
+			return host.hashCode() * 31 + port;
+		}
+		
+	}
+	
+	/**
+	 * A pooled handler, with what the pool knows about it.
+	 */
+	static private final class Entry {
+		
+		private final SocketHandler handler;
+		private final Key key;
+		private final long createdNanos = System.nanoTime();
+		private volatile boolean isEvicted;
+		/** Lent out by the pool; guarded by the pool's lock. */
+		private boolean isBorrowed;
+		/** Taken out of the pool, and closed or closing; set under the pool's
+		 *  lock. */
+		private volatile boolean isRemoved;
+		
+		Entry(SocketHandler handler, Key key) {
+			this.handler = handler;
+			this.key = key;
+		}
+		
+	}
+	
+}
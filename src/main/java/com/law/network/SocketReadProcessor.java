@@ -22,7 +22,10 @@ public interface SocketReadProcessor {
 	 * <p> The data will not be null.
 	 * 
 	 * <p> The implementation of this method may need to be synchronized if
-	 * multiple socket handler threads will be calling it.
+	 * multiple socket handler threads will be calling it. A processor which
+	 * is slow, or shared by many socket handlers, can instead be wrapped in an
+	 * {@link OrderedProcessorPool}, or have its state partitioned by key over
+	 * the single threaded processors of a {@link PartitionedProcessor}.
 	 * 
 	 * @param data - The data that was read from the socket.
 	 * @param fromId - The unique id of the socket handler thread.
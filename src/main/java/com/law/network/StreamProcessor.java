@@ -0,0 +1,45 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * StreamProcessor processes a large field which a peer sends with
+ * {@link SocketHandler#writeStream(DataLine, InputStream, long)}, reading it
+ * from the socket as it arrives rather than waiting for it to be buffered
+ * whole.
+ * 
+ * <p> A socket handler given a stream processor (see
+ * {@link SocketHandler#setStreamProcessor(StreamProcessor)}) calls it on its
+ * own thread for each streamed field, in the same cases that its read
+ * processor would be called for a line. The stream reads straight from the
+ * socket, so the handler reads nothing else until this method returns.
+ * Whatever the processor leaves unread is then skipped.
+ * 
+ * @author Lloyd
+ */
+public interface StreamProcessor {
+	
+	/**
+	 * Process a streamed field and return a response.
+	 * 
+	 * @param line - The line the field was sent with. The field itself is
+	 *  not among its info.
+	 * @param data - The field's bytes, which end after the given length.
+	 *  Valid only until this method returns.
+	 * @param length - The count of bytes in the field.
+	 * @param fromId - The unique id of the socket handler.
+	 * 
+	 * @return A response which will be written back to the socket if the socket
+	 *  handler is using MODE_READ_WRITE, otherwise ignored. Null is written as
+	 *  an empty line.
+	 * 
+	 * @throws IOException If an I/O error occurs reading the stream, in
+	 *  which case the handler stops.
+	 */
+	String processStream(DataLine line, InputStream data, long length, long fromId) throws IOException;
+	
+}
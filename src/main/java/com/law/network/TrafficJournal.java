@@ -0,0 +1,418 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Capture journal of the lines socket handlers read and write, for
+ * reproducing production traffic with a {@link TrafficReplayer}.
+ * 
+ * <p> Give a journal to any number of socket handlers with
+ * {@link SocketHandlerConfig#setJournal(TrafficJournal)}. Each line is
+ * appended as a record holding its wall clock time in nanoseconds, the id
+ * of the socket handler, and whether it was read or written.
+ * 
+ * <p> Records are copied straight into a memory mapped segment file. An
+ * append claims its space with one atomic add and then copies the record
+ * in, so handlers do not wait on each other, and there is no system call
+ * and, for an ASCII line, no allocation. The operating system writes the
+ * pages out in the background, and keeps them even if the JVM dies. The
+ * next segment is mapped in the background while the current one fills, so
+ * the handler which fills it does not stall; segments are named
+ * traffic-NNNNNNNN.journal, in order.
+ * 
+ * <p> Each record is an int32 payload length, an int64 time, an int64
+ * connection id, a flags byte, and then the payload: a text line in UTF-8,
+ * or the body of a binary frame. The unwritten end of a segment is zeros,
+ * which a reader knows by the time of 0. The time is written last, so a
+ * record cut short by the JVM dying reads as the end of its segment.
+ * 
+ * @author Lloyd
+ */
+public class TrafficJournal implements Closeable {
+	
+	/** Flag of a record which was written to the socket, not read. */
+	static final byte FLAG_OUTBOUND = 1;
+	
+	/** Flag of a record which holds a binary frame body, not a text line. */
+	static final byte FLAG_FRAME = 2;
+	
+	/** Bytes before each record's payload. */
+	static final int RECORD_HEADER_LENGTH = 4 + 8 + 8 + 1;
+	
+	static final String SEGMENT_PREFIX = "traffic-";
+	static final String SEGMENT_SUFFIX = ".journal";
+	
+	static private final ExecutorService SEGMENT_MAPPER = newMapperExecutor();
+	
+	private final File directory;
+	private final int segmentSize;
+	private final long epochOffsetNanos;
+	/** Held to move to the next segment, and to close. */
+	private final ReentrantLock rollLock = new ReentrantLock();
+	private volatile Segment segment;
+	/** The segment after the current one, being mapped in the background. */
+	private Future<Segment> nextSegment;
+	private volatile boolean isClosed;
+	
+	/**
+	 * Open a journal in the given directory, with 64MB segments. Records are
+	 * appended after any segments already in the directory.
+	 * 
+	 * @param directory - The directory, which is made if it does not exist.
+	 * 
+	 * @throws IOException if the directory cannot be made, or the first
+	 *  segment cannot be mapped.
+	 */
+	public TrafficJournal(File directory) throws IOException {
+		this(directory, 64 * 1024 * 1024);
+	}
+	
+	/**
+	 * Open a journal in the given directory. Records are appended after any
+	 * segments already in the directory.
+	 * 
+	 * @param directory - The directory, which is made if it does not exist.
+	 * @param segmentSize - The size of each segment file in bytes. A record
+	 *  too large for a segment gets a segment of its own.
+	 * 
+	 * @throws IOException if the directory cannot be made, or the first
+	 *  segment cannot be mapped.
+	 * @throws IllegalArgumentException if the segment size is too small to
+	 *  hold a record header.
+	 */
+	public TrafficJournal(File directory, int segmentSize) throws IOException {
+		if (segmentSize <= RECORD_HEADER_LENGTH) {
+			throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot make journal directory: " + directory);
+		}
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		this.epochOffsetNanos = System.currentTimeMillis() * 1000000L - System.nanoTime();
+		int segmentNumber = 0;
+		File[] existing = TrafficJournalReader.segments(directory);
+		if (existing.length > 0) {
+			segmentNumber = TrafficJournalReader.segmentNumber(existing[existing.length - 1]) + 1;
+		}
+		segment = map(segmentNumber, segmentSize);
+		nextSegment = prepare(segmentNumber + 1);
+	}
+	
+	/**
+	 * Append a text line.
+	 * 
+	 * @param connectionId - The id of the socket handler.
+	 * @param isOutbound - True if the line was written, false if read.
+	 * @param line - The line.
+	 */
+	void append(long connectionId, boolean isOutbound, String line) {
+		int length = line.length();
+		for (int i = 0; i < length; i++) {
+			if (line.charAt(i) >= 0x80) {
+				byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+				append(connectionId, isOutbound ? FLAG_OUTBOUND : 0, bytes, 0, bytes.length);
+				return;
+			}
+		}
+		long nanos = now();
+		int needed = RECORD_HEADER_LENGTH + length;
+		for (Segment s = current(); s != null; s = next(s, needed)) {
+			int at = s.claim(needed);
+			if (at >= 0) {
+				MappedByteBuffer out = s.buffer;
+				int payloadAt = at + RECORD_HEADER_LENGTH;
+				for (int i = 0; i < length; i++) {
+					out.put(payloadAt + i, (byte) line.charAt(i));
+				}
+				putHeader(out, at, length, nanos, connectionId, isOutbound ? FLAG_OUTBOUND : 0);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Append a text line held in a char array.
+	 * 
+	 * @param connectionId - The id of the socket handler.
+	 * @param isOutbound - True if the line was written, false if read.
+	 * @param chars - The chars of the line.
+	 * @param offset - The offset of the line's first char.
+	 * @param length - The count of chars in the line.
+	 */
+	void append(long connectionId, boolean isOutbound, char[] chars, int offset, int length) {
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			if (chars[i] >= 0x80) {
+				append(connectionId, isOutbound, new String(chars, offset, length));
+				return;
+			}
+		}
+		long nanos = now();
+		int needed = RECORD_HEADER_LENGTH + length;
+		for (Segment s = current(); s != null; s = next(s, needed)) {
+			int at = s.claim(needed);
+			if (at >= 0) {
+				MappedByteBuffer out = s.buffer;
+				int payloadAt = at + RECORD_HEADER_LENGTH - offset;
+				for (int i = offset; i < end; i++) {
+					out.put(payloadAt + i, (byte) chars[i]);
+				}
+				putHeader(out, at, length, nanos, connectionId, isOutbound ? FLAG_OUTBOUND : 0);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Append a record whose payload is already encoded: a UTF-8 text line,
+	 * or (with FLAG_FRAME) the body of a binary frame.
+	 * 
+	 * @param connectionId - The id of the socket handler.
+	 * @param flags - FLAG_OUTBOUND and FLAG_FRAME, or 0.
+	 * @param bytes - The payload.
+	 * @param offset - The offset of the payload's first byte.
+	 * @param length - The count of bytes in the payload.
+	 */
+	void append(long connectionId, byte flags, byte[] bytes, int offset, int length) {
+		long nanos = now();
+		int needed = RECORD_HEADER_LENGTH + length;
+		for (Segment s = current(); s != null; s = next(s, needed)) {
+			int at = s.claim(needed);
+			if (at >= 0) {
+				// A duplicate has its own position, for the bulk copy.
+				ByteBuffer out = s.buffer.duplicate();
+				out.position(at + RECORD_HEADER_LENGTH);
+				out.put(bytes, offset, length);
+				putHeader(s.buffer, at, length, nanos, connectionId, flags);
+				return;
+			}
+		}
+	}
+	
+	private long now() {
+		return epochOffsetNanos + System.nanoTime();
+	}
+	
+	/**
+	 * Put a record's header, after its payload. The time goes in last, since
+	 * a reader takes a time of 0 for the end of the segment.
+	 */
+	static private void putHeader(MappedByteBuffer out, int at, int length, long nanos, long connectionId, byte flags) {
+		out.putInt(at, length);
+		out.putLong(at + 12, connectionId);
+		out.put(at + 20, flags);
+		out.putLong(at + 4, nanos);
+	}
+	
+	/**
+	 * @return The current segment, or null if the journal is closed.
+	 */
+	private Segment current() {
+		return isClosed ? null : segment;
+	}
+	
+	/**
+	 * Move on from a segment which had no room for a record, unless another
+	 * thread already has.
+	 * 
+	 * @param full - The segment which had no room.
+	 * @param needed - The size of the record.
+	 * 
+	 * @return The segment to try next, or null if the journal is closed or a
+	 *  new segment could not be mapped.
+	 */
+	private Segment next(Segment full, int needed) {
+		rollLock.lock();
+		try {
+			if (isClosed) {
+				return null;
+			}
+			if (segment == full) {
+				try {
+					segment = roll(needed);
+				}
+				catch (IOException e) {
+					e.printStackTrace();
+					isClosed = true;
+					return null;
+				}
+			}
+			return segment;
+		}
+		finally {
+			rollLock.unlock();
+		}
+	}
+	
+	/**
+	 * Take the segment mapped in the background, remapping it larger if the
+	 * record does not fit in a segment, and start mapping the one after it.
+	 * The roll lock must be held.
+	 */
+	private Segment roll(int minimumSize) throws IOException {
+		Segment next = await(nextSegment);
+		if (next.buffer.capacity() < minimumSize) {
+			next = map(next.number, minimumSize);
+		}
+		nextSegment = prepare(next.number + 1);
+		return next;
+	}
+	
+	private Future<Segment> prepare(final int number) {
+		return SEGMENT_MAPPER.submit(new Callable<Segment>() {
+			@Override
+			public Segment call() throws IOException {
+				return map(number, segmentSize);
+			}
+		});
+	}
+	
+	/**
+	 * Wait for a segment being mapped, without giving up when interrupted:
+	 * a socket handler is interrupted to stop it, and may still be appending.
+	 */
+	static private Segment await(Future<Segment> future) throws IOException {
+		boolean isInterrupted = false;
+		try {
+			for (;;) {
+				try {
+					return future.get();
+				}
+				catch (InterruptedException e) {
+					isInterrupted = true;
+				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						throw (IOException) e.getCause();
+					}
+					throw new IOException(e.getCause());
+				}
+			}
+		}
+		finally {
+			if (isInterrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Map a segment, of the given size.
+	 */
+	private Segment map(int number, int size) throws IOException {
+		File file = new File(directory, TrafficJournalReader.segmentName(number));
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			// The mapping stays valid after the channel is closed.
+			return new Segment(number, file, raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+		}
+		finally {
+			raf.close();
+		}
+	}
+	
+	static private ExecutorService newMapperExecutor() {
+		return Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "traffic-journal-segment-mapper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	/**
+	 * Ask the operating system to write the current segment to disk now,
+	 * rather than in its own time.
+	 */
+	public void flush() {
+		Segment s = current();
+		if (s != null) {
+			s.buffer.force();
+		}
+	}
+	
+	/**
+	 * Flush the current segment and stop appending. Lines handed to a closed
+	 * journal are dropped. A line being appended as the journal closes may be
+	 * copied in after the flush, which the operating system still writes out
+	 * in its own time.
+	 */
+	@Override
+	public void close() {
+		rollLock.lock();
+		try {
+			if (!isClosed) {
+				isClosed = true;
+				segment.buffer.force();
+				// The segment mapped ahead was never used.
+				if (!nextSegment.cancel(false)) {
+					try { await(nextSegment).file.delete(); }
+					catch (IOException e) {}
+				}
+			}
+		}
+		finally {
+			rollLock.unlock();
+		}
+	}
+	
+	/**
+	 * Get the journal's directory.
+	 * 
+	 * @return The directory.
+	 */
+	public File getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * A mapped segment file, and how much of it has been claimed by records.
+	 */
+	static private final class Segment {
+		
+		final int number;
+		final File file;
+		final MappedByteBuffer buffer;
+		/** May run past the capacity, once records stop fitting. */
+		final AtomicLong claimed = new AtomicLong();
+		
+		Segment(int number, File file, MappedByteBuffer buffer) {
+			this.number = number;
+			this.file = file;
+			this.buffer = buffer;
+		}
+		
+		/**
+		 * Claim room for a record.
+		 * 
+		 * @return The offset of the room, or -1 if there is not enough left.
+		 */
+		int claim(int needed) {
+			long at = claimed.getAndAdd(needed);
+			return at + needed <= buffer.capacity() ? (int) at : -1;
+		}
+		
+	}
+	
+}
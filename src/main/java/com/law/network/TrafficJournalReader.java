@@ -0,0 +1,190 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the records of a {@link TrafficJournal}, segment by segment, in the
+ * order they were appended.
+ * 
+ * <pre>
+ * TrafficJournalReader reader = new TrafficJournalReader(directory);
+ * while (reader.next()) {
+ *     System.out.println(reader.getConnectionId() + " " + reader.getLine());
+ * }
+ * </pre>
+ * 
+ * @author Lloyd
+ */
+public class TrafficJournalReader {
+	
+	private final File[] segments;
+	private int segmentIndex = -1;
+	private MappedByteBuffer segment;
+	private int length;
+	private long timeNanos;
+	private long connectionId;
+	private byte flags;
+	private byte[] payload = new byte[256];
+	
+	/**
+	 * Construct a reader of the journal in the given directory.
+	 * 
+	 * @param directory - The journal's directory.
+	 * 
+	 * @throws IOException if the directory does not exist.
+	 */
+	public TrafficJournalReader(File directory) throws IOException {
+		if (!directory.isDirectory()) {
+			throw new IOException("No journal directory: " + directory);
+		}
+		this.segments = segments(directory);
+	}
+	
+	/**
+	 * Move to the next record.
+	 * 
+	 * @return True if there is a record, or false if the journal has been
+	 *  read to its end.
+	 * 
+	 * @throws IOException if a segment cannot be read, or is malformed.
+	 */
+	public boolean next() throws IOException {
+		for (;;) {
+			// The unwritten end of a segment is zeros, and a record's time is never 0.
+			if (segment != null && segment.remaining() >= TrafficJournal.RECORD_HEADER_LENGTH
+					&& segment.getLong(segment.position() + 4) != 0) {
+				readRecord(segment.getInt());
+				return true;
+			}
+			if (++segmentIndex >= segments.length) {
+				segment = null;
+				return false;
+			}
+			segment = map(segments[segmentIndex]);
+		}
+	}
+	
+	private void readRecord(int recordLength) throws IOException {
+		if (recordLength < 0 || recordLength > segment.remaining() - (TrafficJournal.RECORD_HEADER_LENGTH - 4)) {
+			throw new IOException("Bad journal record length " + recordLength + " in " + segments[segmentIndex]);
+		}
+		timeNanos = segment.getLong();
+		connectionId = segment.getLong();
+		flags = segment.get();
+		if (recordLength > payload.length) {
+			payload = new byte[Math.max(payload.length * 2, recordLength)];
+		}
+		segment.get(payload, 0, recordLength);
+		length = recordLength;
+	}
+	
+	static private MappedByteBuffer map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+		}
+		finally {
+			raf.close();
+		}
+	}
+	
+	/**
+	 * Get the wall clock time at which the line was read or written.
+	 * 
+	 * @return The time in nanoseconds since the epoch.
+	 */
+	public long getTimeNanos() {
+		return timeNanos;
+	}
+	
+	/**
+	 * Get the id of the socket handler which read or wrote the line.
+	 * 
+	 * @return The connection id.
+	 */
+	public long getConnectionId() {
+		return connectionId;
+	}
+	
+	/**
+	 * Get whether the line was written by the socket handler, rather than
+	 * read.
+	 * 
+	 * @return True if outbound.
+	 */
+	public boolean isOutbound() {
+		return (flags & TrafficJournal.FLAG_OUTBOUND) != 0;
+	}
+	
+	/**
+	 * Get the line, in its text form.
+	 * 
+	 * @return The line.
+	 * 
+	 * @throws IOException if the record holds a malformed binary frame.
+	 */
+	public String getLine() throws IOException {
+		if ((flags & TrafficJournal.FLAG_FRAME) != 0) {
+			return getDataLine().toString();
+		}
+		return new String(payload, 0, length, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Get the line as a new data line. A line which was sent as a binary
+	 * frame keeps the native encoding of its typed info.
+	 * 
+	 * @return The data line.
+	 * 
+	 * @throws IOException if the record holds a malformed binary frame.
+	 */
+	public DataLine getDataLine() throws IOException {
+		if ((flags & TrafficJournal.FLAG_FRAME) != 0) {
+			DataLineParser parser = new DataLineParser(null);
+			BinaryFrameCodec.decode(payload, length, parser);
+			return new DataLine(parser);
+		}
+		return new DataLine(getLine());
+	}
+	
+	/**
+	 * Get the segment files of a journal, in order.
+	 */
+	static File[] segments(File directory) {
+		File[] files = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				String name = file.getName();
+				return file.isFile() && name.startsWith(TrafficJournal.SEGMENT_PREFIX)
+						&& name.endsWith(TrafficJournal.SEGMENT_SUFFIX);
+			}
+		});
+		if (files == null) {
+			return new File[0];
+		}
+		// Names are zero padded, so they sort in segment order.
+		Arrays.sort(files);
+		return files;
+	}
+	
+	static String segmentName(int segmentNumber) {
+		return TrafficJournal.SEGMENT_PREFIX + String.format("%08d", segmentNumber) + TrafficJournal.SEGMENT_SUFFIX;
+	}
+	
+	static int segmentNumber(File segment) {
+		String name = segment.getName();
+		return Integer.parseInt(name.substring(TrafficJournal.SEGMENT_PREFIX.length(),
+				name.length() - TrafficJournal.SEGMENT_SUFFIX.length()));
+	}
+	
+}
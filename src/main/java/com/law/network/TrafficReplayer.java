@@ -0,0 +1,180 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays the lines captured in a {@link TrafficJournal}, into a socket read
+ * processor or out through a socket handler, keeping their original spacing
+ * in time, or a multiple of it, or as fast as possible.
+ * 
+ * <pre>
+ * new TrafficReplayer(directory).setSpeed(10.0).replayTo(processor);
+ * </pre>
+ * 
+ * <p> By default the lines which were read are replayed, which is the
+ * traffic that arrived at the captured process. Lines are replayed in the
+ * order they were captured, from all connections; each is given to a
+ * processor with the id of the handler which read it.
+ * 
+ * @author Lloyd
+ */
+public class TrafficReplayer {
+	
+	private final File directory;
+	private double speed = 1.0;
+	private boolean isOutbound = false;
+	
+	/**
+	 * Construct a replayer of the journal in the given directory.
+	 * 
+	 * @param directory - The journal's directory.
+	 */
+	public TrafficReplayer(File directory) {
+		if (directory == null) {
+			throw new NullPointerException("Journal directory must not be null.");
+		}
+		this.directory = directory;
+	}
+	
+	/**
+	 * Set the speed of replay, relative to the speed of capture.
+	 * 
+	 * @param speed - 1.0 for the original timing, 10.0 for ten times faster,
+	 *  and so on; Double.POSITIVE_INFINITY for as fast as possible. Default
+	 *  is 1.0.
+	 * 
+	 * @return This replayer.
+	 * 
+	 * @throws IllegalArgumentException if the speed is not positive.
+	 */
+	public TrafficReplayer setSpeed(double speed) {
+		if (!(speed > 0)) {
+			throw new IllegalArgumentException("Speed must be positive: " + speed);
+		}
+		this.speed = speed;
+		return this;
+	}
+	
+	/**
+	 * Get the speed of replay.
+	 * 
+	 * @return The speed relative to capture.
+	 */
+	public double getSpeed() {
+		return speed;
+	}
+	
+	/**
+	 * Set whether the lines which were written are replayed, rather than
+	 * those which were read.
+	 * 
+	 * @param isOutbound - True to replay written lines. Default is false.
+	 * 
+	 * @return This replayer.
+	 */
+	public TrafficReplayer setOutbound(boolean isOutbound) {
+		this.isOutbound = isOutbound;
+		return this;
+	}
+	
+	/**
+	 * Get whether the lines which were written are replayed.
+	 * 
+	 * @return True if written lines are replayed, false if read lines are.
+	 */
+	public boolean isOutbound() {
+		return isOutbound;
+	}
+	
+	/**
+	 * Replay the lines into a socket read processor, on the calling thread.
+	 * Responses are ignored.
+	 * 
+	 * @param processor - The processor.
+	 * 
+	 * @return The count of lines replayed.
+	 * 
+	 * @throws IOException if the journal cannot be read.
+	 */
+	public long replayTo(SocketReadProcessor processor) throws IOException {
+		TrafficJournalReader reader = new TrafficJournalReader(directory);
+		Clock clock = new Clock();
+		long count = 0;
+		while (nextLine(reader, clock)) {
+			processor.processDataFromSocket(reader.getLine(), reader.getConnectionId());
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Replay the lines through a socket handler, which sends them to its
+	 * socket. The handler should be started, and in MODE_WRITE or
+	 * MODE_WRITE_READ; lines are handed to {@link SocketHandler#send(DataLine)},
+	 * so a slow peer is met with the handler's out buffer policy.
+	 * 
+	 * @param handler - The handler.
+	 * 
+	 * @return The count of lines replayed.
+	 * 
+	 * @throws IOException if the journal cannot be read.
+	 */
+	public long replayTo(SocketHandler handler) throws IOException {
+		TrafficJournalReader reader = new TrafficJournalReader(directory);
+		Clock clock = new Clock();
+		long count = 0;
+		while (nextLine(reader, clock)) {
+			handler.send(reader.getDataLine());
+			count++;
+		}
+		return count;
+	}
+	
+	/**
+	 * Move to the next line in the replayed direction, and wait until it is
+	 * due.
+	 */
+	private boolean nextLine(TrafficJournalReader reader, Clock clock) throws IOException {
+		while (reader.next()) {
+			if (reader.isOutbound() == isOutbound) {
+				clock.awaitCaptureTime(reader.getTimeNanos());
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Maps capture times onto replay times, from the first line replayed.
+	 */
+	private class Clock {
+		
+		private boolean isStarted;
+		private long firstCaptureNanos;
+		private long startNanos;
+		
+		void awaitCaptureTime(long captureNanos) {
+			if (!isStarted) {
+				isStarted = true;
+				firstCaptureNanos = captureNanos;
+				startNanos = System.nanoTime();
+				return;
+			}
+			if (Double.isInfinite(speed)) {
+				return;
+			}
+			long dueNanos = startNanos + (long) ((captureNanos - firstCaptureNanos) / speed);
+			long waitNanos;
+			while ((waitNanos = dueNanos - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(waitNanos);
+			}
+		}
+		
+	}
+	
+}
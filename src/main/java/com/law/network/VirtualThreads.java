@@ -0,0 +1,64 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads on runtimes which provide them.
+ * 
+ * <p> The project is compiled for older runtimes, so the virtual thread
+ * factory is looked up reflectively, once.
+ * 
+ * @author Lloyd
+ */
+final class VirtualThreads {
+	
+	static private final ThreadFactory FACTORY = lookupFactory();
+	
+	private VirtualThreads() {
+	}
+	
+	/**
+	 * Determine whether the running JVM supports virtual threads.
+	 * 
+	 * @return True if virtual threads are supported.
+	 */
+	static boolean isSupported() {
+		return FACTORY != null;
+	}
+	
+	/**
+	 * Create an unstarted virtual thread.
+	 * 
+	 * @param task - The task for the thread to run.
+	 * @param name - The thread name.
+	 * 
+	 * @return The new thread.
+	 * 
+	 * @throws UnsupportedOperationException if the running JVM does not
+	 *  support virtual threads.
+	 */
+	static Thread newThread(Runnable task, String name) {
+		if (FACTORY == null) {
+			throw new UnsupportedOperationException(
+					"Virtual threads are not supported by this JVM (Java 21 or later is required).");
+		}
+		Thread thread = FACTORY.newThread(task);
+		thread.setName(name);
+		return thread;
+	}
+	
+	static private ThreadFactory lookupFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+	
+}
@@ -32,6 +32,27 @@ public class HostMachine {
 		this.hostAddress = hostAddress;
 	}
 	
+	/**
+	 * Get the host to connect to for a machine: its address if it has one,
+	 * or else its name.
+	 * 
+	 * @param hostMachine - The machine.
+	 * 
+	 * @return The address or name.
+	 * 
+	 * @throws IllegalArgumentException if the machine has neither.
+	 */
+	static public String getAddressOrName(HostMachine hostMachine) {
+		String host = hostMachine.getHostAddress();
+		if (host == null) {
+			host = hostMachine.getHostName();
+		}
+		if (host == null) {
+			throw new IllegalArgumentException("Host has no address or name: " + hostMachine);
+		}
+		return host;
+	}
+	
 	@Override
 	public String toString() {
 		return hostAddress + " (\"" + hostName + "\")";
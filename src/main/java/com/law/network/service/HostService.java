@@ -3,6 +3,16 @@
  */
 package com.law.network.service;
 
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import com.law.network.domain.HostMachine;
 
 /**
@@ -22,4 +32,60 @@ public interface HostService {
 	 */
 	HostMachine getLocalHost();
 	
+	/**
+	 * Look up a host machine by name or address.
+	 * 
+	 * <p> This default looks the host up on the calling thread, and returns a
+	 * future which is already complete. {@link HostServiceImpl} looks hosts up
+	 * in the background, and caches them.
+	 * 
+	 * @param host - A host name, or an IP address literal.
+	 * 
+	 * @return A future which completes with a host machine holding both the
+	 *  name and the address, or completes exceptionally with an
+	 *  UnknownHostException if the host cannot be resolved.
+	 * 
+	 * @throws IllegalArgumentException if the host is null or empty.
+	 */
+	default CompletableFuture<HostMachine> resolve(String host) {
+		if (host == null || host.isEmpty()) {
+			throw new IllegalArgumentException("Host must not be null or empty.");
+		}
+		CompletableFuture<HostMachine> future = new CompletableFuture<HostMachine>();
+		try {
+			InetAddress addr = InetAddress.getByName(host);
+			future.complete(new HostMachine(addr.getHostName(), addr.getHostAddress()));
+		}
+		catch (UnknownHostException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+	
+	/**
+	 * Get the addresses of the local network interfaces which are up, for
+	 * example to choose an address to bind to.
+	 * 
+	 * <p> The list will be empty if an exception is thrown while retrieving
+	 * the information. This default reads the interfaces on every call.
+	 * 
+	 * @return The local addresses.
+	 */
+	default List<InetAddress> getLocalAddresses() {
+		List<InetAddress> addresses = new ArrayList<InetAddress>();
+		try {
+			Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+			while (interfaces != null && interfaces.hasMoreElements()) {
+				NetworkInterface networkInterface = interfaces.nextElement();
+				if (networkInterface.isUp()) {
+					addresses.addAll(Collections.list(networkInterface.getInetAddresses()));
+				}
+			}
+		}
+		catch (SocketException e) {
+			e.printStackTrace();
+		}
+		return Collections.unmodifiableList(addresses);
+	}
+	
 }
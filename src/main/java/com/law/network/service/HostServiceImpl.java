@@ -5,30 +5,307 @@ package com.law.network.service;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 import com.law.network.domain.HostMachine;
 
 /**
  * Services for host machines.
  * 
+ * <p> Lookups are cached, as a reverse lookup of the local host can block
+ * for seconds on a misconfigured machine. The local host is looked up as
+ * soon as the service is constructed. A host which resolves is looked up
+ * again in the background when it is asked for after three quarters of the
+ * time to live, and the cached machine is returned meanwhile. Past its time
+ * to live it is still returned while being looked up again, for a grace
+ * period of one more time to live; after that it has expired, and the next
+ * caller waits on a new lookup. If a lookup in the background fails, the
+ * cached machine is kept until it expires, and the host is looked up again
+ * after the negative time to live. A host which does not resolve is kept
+ * for the negative time to live, so that a bad name is not looked up on
+ * every call.
+ * 
+ * <p> Expired hosts are removed from the cache at most once per time to
+ * live, by whichever call comes after that, so the cache only holds the
+ * hosts asked for recently.
+ * 
+ * <p> Lookups run on a small pool of daemon threads shared by all host
+ * services, and concurrent lookups of the same host share one lookup.
+ * 
  * @author Lloyd
  */
 public class HostServiceImpl implements HostService {
 	
+	/** Cache key of the local host, which no host name can be. */
+	static private final String LOCAL_HOST = "";
+	
+	static private final ExecutorService RESOLVERS = newResolverExecutor();
+	
+	static private final Function<HostMachine, HostMachine> COPY = new Function<HostMachine, HostMachine>() {
+		@Override
+		public HostMachine apply(HostMachine host) {
+			return copy(host);
+		}
+	};
+	
+	private final long ttlNanos;
+	private final long negativeTtlNanos;
+	/** How long a host which resolved is kept: the time to live, and the
+	 *  grace period after it. */
+	private final long keepNanos;
+	private final ConcurrentHashMap<String, Entry> cache = new ConcurrentHashMap<String, Entry>();
+	private final AtomicLong nextSweepNanos = new AtomicLong(System.nanoTime());
+	private volatile List<InetAddress> localAddresses;
+	private volatile long localAddressesExpiryNanos;
+	
+	/**
+	 * Construct a host service which caches hosts for 60 seconds, and hosts
+	 * which cannot be resolved for 10 seconds.
+	 */
+	public HostServiceImpl() {
+		this(60, 10, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Construct a host service.
+	 * 
+	 * @param ttl - How long to cache a host which resolves.
+	 * @param negativeTtl - How long to cache a host which does not resolve.
+	 * @param unit - The unit of the times to live.
+	 * 
+	 * @throws IllegalArgumentException if either time to live is negative.
+	 */
+	public HostServiceImpl(long ttl, long negativeTtl, TimeUnit unit) {
+		if (ttl < 0 || negativeTtl < 0) {
+			throw new IllegalArgumentException("Times to live must not be negative: " + ttl + ", " + negativeTtl);
+		}
+		this.ttlNanos = unit.toNanos(ttl);
+		this.negativeTtlNanos = unit.toNanos(negativeTtl);
+		this.keepNanos = ttlNanos > Long.MAX_VALUE / 4 ? Long.MAX_VALUE / 2 : ttlNanos * 2;
+		// Warm the cache, so the first getLocalHost() need not wait.
+		lookUp(LOCAL_HOST);
+	}
+	
 	public HostMachine getLocalHost() {
-		
-		String hostName = null;
-		String hostAddress = null;
 		try {
-			InetAddress addr = InetAddress.getLocalHost();
-			hostName = addr.getHostName();
-			hostAddress = addr.getHostAddress();
+			return lookUp(LOCAL_HOST).join();
+		}
+		catch (CompletionException e) {
+			return new HostMachine(null, null);
+		}
+	}
+	
+	public CompletableFuture<HostMachine> resolve(String host) {
+		if (host == null || host.isEmpty()) {
+			throw new IllegalArgumentException("Host must not be null or empty.");
+		}
+		return lookUp(host);
+	}
+	
+	/**
+	 * Test whether a host is in the cache, for testing.
+	 */
+	boolean isCached(String host) {
+		return cache.containsKey(host);
+	}
+	
+	public List<InetAddress> getLocalAddresses() {
+		List<InetAddress> addresses = localAddresses;
+		long now = System.nanoTime();
+		if (addresses != null && now - localAddressesExpiryNanos < 0) {
+			return addresses;
+		}
+		addresses = HostService.super.getLocalAddresses();
+		localAddresses = addresses;
+		localAddressesExpiryNanos = now + ttlNanos;
+		return addresses;
+	}
+	
+	/**
+	 * Get a host from the cache, looking it up if it is not there or has
+	 * expired, and refreshing it in the background if it is due.
+	 * 
+	 * @return A future of a copy of the cached host machine.
+	 */
+	private CompletableFuture<HostMachine> lookUp(String host) {
+		sweep();
+		for (;;) {
+			Entry entry = cache.get(host);
+			long now = System.nanoTime();
+			if (entry != null && !entry.isExpired(now)) {
+				if (entry.isRefreshDue(now) && entry.isRefreshing.compareAndSet(false, true)) {
+					refresh(host, entry);
+				}
+				return entry.future.thenApply(COPY);
+			}
+			Entry fresh = new Entry();
+			if (entry == null ? cache.putIfAbsent(host, fresh) == null : cache.replace(host, entry, fresh)) {
+				load(host, fresh);
+				return fresh.future.thenApply(COPY);
+			}
 		}
-		catch (UnknownHostException e) {
-			e.printStackTrace();
+	}
+	
+	/**
+	 * Remove the expired entries, if the time to live has passed since this
+	 * was last done.
+	 */
+	private void sweep() {
+		long now = System.nanoTime();
+		long next = nextSweepNanos.get();
+		if (now - next < 0 || !nextSweepNanos.compareAndSet(next, now + ttlNanos)) {
+			return;
+		}
+		for (Map.Entry<String, Entry> cached : cache.entrySet()) {
+			if (cached.getValue().isExpired(now)) {
+				cache.remove(cached.getKey(), cached.getValue());
+			}
+		}
+	}
+	
+	/**
+	 * Look up a host on a resolver thread, and complete its entry.
+	 */
+	private void load(final String host, final Entry entry) {
+		RESOLVERS.execute(new Runnable() {
+			@Override
+			public void run() {
+				HostMachine machine;
+				try {
+					machine = resolveNow(host);
+				}
+				catch (UnknownHostException e) {
+					if (LOCAL_HOST.equals(host)) {
+						e.printStackTrace();
+					}
+					entry.expireAfter(negativeTtlNanos);
+					entry.future.completeExceptionally(e);
+					return;
+				}
+				catch (RuntimeException e) {
+					// Not a lookup failure worth caching, so the next caller tries again.
+					cache.remove(host, entry);
+					entry.future.completeExceptionally(e);
+					return;
+				}
+				entry.refreshAfter(ttlNanos - ttlNanos / 4);
+				entry.expireAfter(keepNanos);
+				entry.future.complete(machine);
+			}
+		});
+	}
+	
+	/**
+	 * Look up a host again on a resolver thread, and replace its entry if it
+	 * still resolves. If it no longer does, the entry is kept until it
+	 * expires, and refreshed again after the negative time to live.
+	 */
+	private void refresh(final String host, final Entry entry) {
+		RESOLVERS.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					Entry fresh = new Entry();
+					fresh.refreshAfter(ttlNanos - ttlNanos / 4);
+					fresh.expireAfter(keepNanos);
+					fresh.future.complete(resolveNow(host));
+					cache.replace(host, entry, fresh);
+				}
+				catch (UnknownHostException e) {
+					retryLater(entry);
+				}
+				catch (RuntimeException e) {
+					retryLater(entry);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Keep serving an entry whose refresh failed until it expires, and
+	 * refresh it again after the negative time to live.
+	 */
+	private void retryLater(Entry entry) {
+		entry.refreshAfter(negativeTtlNanos);
+		entry.isRefreshing.set(false);
+	}
+	
+	static private HostMachine resolveNow(String host) throws UnknownHostException {
+		InetAddress addr = LOCAL_HOST.equals(host) ? InetAddress.getLocalHost() : InetAddress.getByName(host);
+		return new HostMachine(addr.getHostName(), addr.getHostAddress());
+	}
+	
+	static private HostMachine copy(HostMachine host) {
+		return new HostMachine(host.getHostName(), host.getHostAddress());
+	}
+	
+	static private ExecutorService newResolverExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(4, 4, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "host-service-resolver");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+	
+	/**
+	 * A cached lookup, which may still be in progress.
+	 */
+	static private final class Entry {
+		
+		final CompletableFuture<HostMachine> future = new CompletableFuture<HostMachine>();
+		final AtomicBoolean isRefreshing = new AtomicBoolean();
+		private volatile long expiryNanos = Long.MAX_VALUE;
+		private volatile long refreshNanos = Long.MAX_VALUE;
+		
+		/**
+		 * Set when the entry expires, from now. Called before the future is
+		 * completed.
+		 * 
+		 * @param ttlNanos - The negative time to live of a failed lookup, or
+		 *  the time to live and grace period of a host which resolved.
+		 */
+		void expireAfter(long ttlNanos) {
+			expiryNanos = System.nanoTime() + ttlNanos;
+		}
+		
+		/**
+		 * Set when the entry of a host which resolved is due to be refreshed,
+		 * from now; a failed lookup is never refreshed. Called before the
+		 * future is completed, or before a failed refresh is allowed to be
+		 * retried.
+		 * 
+		 * @param delayNanos - How long until it is due.
+		 */
+		void refreshAfter(long delayNanos) {
+			refreshNanos = System.nanoTime() + delayNanos;
+		}
+		
+		boolean isExpired(long now) {
+			return expiryNanos != Long.MAX_VALUE && future.isDone() && now - expiryNanos >= 0;
+		}
+		
+		boolean isRefreshDue(long now) {
+			return refreshNanos != Long.MAX_VALUE && future.isDone() && now - refreshNanos >= 0;
 		}
 		
-		return new HostMachine(hostName, hostAddress);
 	}
 	
 }
@@ -0,0 +1,264 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.law.network.BalancedClient.Selection;
+import com.law.network.PipelinedClient.Correlation;
+import com.law.network.SocketHandler.Mode;
+import com.law.network.domain.HostMachine;
+
+/**
+ * @author Lloyd
+ */
+public class BalancedClientTest {
+	
+	private final List<Server> servers = new ArrayList<Server>();
+	private BalancedClient client;
+	
+	@After
+	public void tearDown() throws IOException {
+		if (client != null) {
+			client.close();
+		}
+		for (Server server : servers) {
+			server.close();
+		}
+	}
+	
+	/**
+	 * Start a server on its own loopback address, so that each target has a
+	 * host of its own but all share the port of the first.
+	 */
+	private Server startServer(SocketReadProcessor processor) throws IOException {
+		Server server = new Server(servers.size() + 1, servers.isEmpty() ? 0 : servers.get(0).getPort(), processor);
+		servers.add(server);
+		return server;
+	}
+	
+	private BalancedClient newClient() {
+		List<HostMachine> hosts = new ArrayList<HostMachine>();
+		for (Server server : servers) {
+			hosts.add(new HostMachine(null, server.getAddress()));
+		}
+		return new BalancedClient(hosts, servers.get(0).getPort(), Correlation.FIFO, 16, 5, TimeUnit.SECONDS,
+				new SocketHandlerConfig());
+	}
+	
+	@Test
+	public void testLeastInFlight() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger countA = new AtomicInteger();
+		final AtomicInteger countB = new AtomicInteger();
+		startServer(new BlockingEcho(release, countA));
+		startServer(new BlockingEcho(release, countB));
+		client = newClient();
+		client.start();
+		List<CompletableFuture<DataLine>> futures = new ArrayList<CompletableFuture<DataLine>>();
+		for (int i = 0; i < 6; i++) {
+			futures.add(client.send(new DataLine("query").addInfo(i)));
+		}
+		assertEquals(6, client.getInFlightCount());
+		release.countDown();
+		for (int i = 0; i < 6; i++) {
+			assertEquals("query::" + i, futures.get(i).get(5, TimeUnit.SECONDS).toString());
+		}
+		assertEquals(3, countA.get());
+		assertEquals(3, countB.get());
+		assertEquals(0, client.getEjectedCount());
+	}
+	
+	@Test
+	public void testPowerOfTwoChoices() throws Exception {
+		CountDownLatch release = new CountDownLatch(0);
+		AtomicInteger[] counts = new AtomicInteger[3];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new AtomicInteger();
+			startServer(new BlockingEcho(release, counts[i]));
+		}
+		client = newClient().setSelection(Selection.POWER_OF_TWO_CHOICES);
+		client.start();
+		for (int i = 0; i < 30; i++) {
+			assertEquals("query::" + i, client.send(new DataLine("query").addInfo(i)).get(5, TimeUnit.SECONDS).toString());
+		}
+		assertEquals(30, counts[0].get() + counts[1].get() + counts[2].get());
+	}
+	
+	@Test
+	public void testEjectSlowTarget() throws Exception {
+		final AtomicInteger countFast = new AtomicInteger();
+		final AtomicInteger countSlow = new AtomicInteger();
+		startServer(new BlockingEcho(new CountDownLatch(0), countFast));
+		startServer(new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				countSlow.incrementAndGet();
+				try {
+					Thread.sleep(100);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return data;
+			}
+		});
+		client = newClient()
+				.setEjection(1, 300, TimeUnit.MILLISECONDS)
+				.setSlowThreshold(50, TimeUnit.MILLISECONDS);
+		client.start();
+		// Ties are taken in turn, so one of the first two goes to the slow target.
+		client.send(new DataLine("first")).get(5, TimeUnit.SECONDS);
+		client.send(new DataLine("second")).get(5, TimeUnit.SECONDS);
+		assertEquals(1, countSlow.get());
+		awaitEjectedCount(1);
+		for (int i = 0; i < 10; i++) {
+			client.send(new DataLine("query")).get(5, TimeUnit.SECONDS);
+		}
+		assertEquals(1, countSlow.get());
+		assertEquals(11, countFast.get());
+		
+		awaitEjectedCount(0);
+	}
+	
+	@Test
+	public void testFailedTarget() throws Exception {
+		AtomicInteger countUp = new AtomicInteger();
+		startServer(new BlockingEcho(new CountDownLatch(0), countUp));
+		Server down = startServer(new BlockingEcho(new CountDownLatch(0), new AtomicInteger()));
+		client = newClient().setEjection(1, 10, TimeUnit.SECONDS);
+		client.start();
+		down.close();
+		int failures = 0;
+		for (int i = 0; i < 10; i++) {
+			try {
+				client.send(new DataLine("query")).get(5, TimeUnit.SECONDS);
+			}
+			catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof IOException);
+				failures++;
+			}
+		}
+		assertTrue(failures <= 1);
+		assertTrue(countUp.get() >= 9);
+		awaitEjectedCount(1);
+	}
+	
+	@Test
+	public void testNoTarget() throws Exception {
+		servers.add(new Server(1, 0, null));
+		client = newClient();
+		servers.get(0).close();
+		client.start();
+		try {
+			client.send(new DataLine("query")).get(5, TimeUnit.SECONDS);
+			fail("Sent with no target.");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+	}
+	
+	/**
+	 * Wait for the ejected count, which changes just after a response is
+	 * given to the caller.
+	 */
+	private void awaitEjectedCount(int count) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (client.getEjectedCount() != count && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(count, client.getEjectedCount());
+	}
+	
+	/**
+	 * Echoes each query once released, counting them.
+	 */
+	static private class BlockingEcho implements SocketReadProcessor {
+		
+		private final CountDownLatch release;
+		private final AtomicInteger count;
+		
+		BlockingEcho(CountDownLatch release, AtomicInteger count) {
+			this.release = release;
+			this.count = count;
+		}
+		
+		public String processDataFromSocket(String data, long fromId) {
+			count.incrementAndGet();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return data;
+		}
+		
+	}
+	
+	/**
+	 * Accepts connections, answering each with a MODE_READ_WRITE handler.
+	 */
+	static private class Server extends Thread {
+		
+		private final ServerSocket serverSocket;
+		private final SocketReadProcessor processor;
+		private final List<SocketHandler> handlers = new CopyOnWriteArrayList<SocketHandler>();
+		
+		Server(int hostByte, int port, SocketReadProcessor processor) throws IOException {
+			this.serverSocket = new ServerSocket(port, 50, InetAddress.getByAddress(new byte[] {127, 0, 0, (byte) hostByte}));
+			this.processor = processor;
+			setDaemon(true);
+			start();
+		}
+		
+		String getAddress() {
+			return serverSocket.getInetAddress().getHostAddress();
+		}
+		
+		int getPort() {
+			return serverSocket.getLocalPort();
+		}
+		
+		@Override
+		public void run() {
+			try {
+				for (;;) {
+					Socket socket = serverSocket.accept();
+					SocketHandler handler = new SocketHandler(socket, Mode.MODE_READ_WRITE, processor, null);
+					handlers.add(handler);
+					handler.start();
+				}
+			}
+			catch (IOException e) {
+				// Closed.
+			}
+		}
+		
+		void close() throws IOException {
+			serverSocket.close();
+			for (SocketHandler handler : handlers) {
+				handler.abort();
+			}
+		}
+		
+	}
+	
+}
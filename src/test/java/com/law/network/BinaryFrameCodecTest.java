@@ -0,0 +1,67 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * @author Lloyd
+ */
+public class BinaryFrameCodecTest {
+	
+	private static DataLineParser roundTrip(DataLine line) throws IOException {
+		byte[] frame = BinaryFrameCodec.encode(line.parser());
+		assertEquals(frame.length - BinaryFrameCodec.HEADER_LENGTH, BinaryFrameCodec.frameLength(frame));
+		return BinaryFrameCodec.decode(Arrays.copyOfRange(frame, BinaryFrameCodec.HEADER_LENGTH, frame.length));
+	}
+	
+	@Test
+	public void testRoundTrip() throws IOException {
+		DataLine line = new DataLine("name").addInfo("text").addInfo(Integer.MIN_VALUE)
+				.addInfo(Long.MAX_VALUE).addInfo(false).addInfo("x::y").addInfo("é");
+		DataLineParser decoded = roundTrip(line);
+		assertEquals(line.toString(), decoded.toString());
+		assertEquals(DataLineParser.FIELD_INT, decoded.getInfoType(1));
+		assertEquals(DataLineParser.FIELD_LONG, decoded.getInfoType(2));
+		assertEquals(DataLineParser.FIELD_BOOLEAN, decoded.getInfoType(3));
+		assertEquals(DataLineParser.FIELD_STRING, decoded.getInfoType(4));
+		assertEquals("x::y", decoded.getInfo(4));
+	}
+	
+	@Test
+	public void testRoundTrip_NameOnly() throws IOException {
+		assertEquals("", roundTrip(new DataLine((String) null)).toString());
+		assertEquals("name", roundTrip(new DataLine("name")).toString());
+	}
+	
+	@Test
+	public void testRoundTrip_Bytes() throws IOException {
+		byte[] bytes = {0, (byte) 0x80, (byte) 0xff, ':', ':'};
+		DataLine decoded = new DataLine(roundTrip(new DataLine("name").addInfo(bytes)));
+		assertTrue(Arrays.equals(bytes, decoded.getByteArrayInfo(0)));
+	}
+	
+	@Test
+	public void testTypesDroppedByRemove() throws IOException {
+		DataLine line = new DataLine("name").addInfo(1).removeLastInfo().addInfo("1.5");
+		assertEquals("name::1.5", roundTrip(line).toString());
+	}
+	
+	@Test (expected=IOException.class)
+	public void testDecode_Truncated() throws IOException {
+		byte[] frame = BinaryFrameCodec.encode(new DataLine("name").addInfo(5L).parser());
+		BinaryFrameCodec.decode(Arrays.copyOfRange(frame, BinaryFrameCodec.HEADER_LENGTH, frame.length - 1));
+	}
+	
+	@Test (expected=IOException.class)
+	public void testFrameLength_Negative() throws IOException {
+		BinaryFrameCodec.frameLength(new byte[] {(byte) 0xff, 0, 0, 0});
+	}
+	
+}
@@ -0,0 +1,206 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.law.network.BroadcastGroup.SlowMemberPolicy;
+import com.law.network.SocketHandler.Mode;
+import com.law.network.SocketHandler.OverflowPolicy;
+import com.law.network.SocketHandler.WireFormat;
+import com.law.network.SocketHandlerTest.CollectingProcessor;
+
+/**
+ * @author Lloyd
+ */
+public class BroadcastGroupTest {
+	
+	private ServerSocket serverSocket;
+	private final List<SocketHandler> handlers = new ArrayList<SocketHandler>();
+	
+	@Before
+	public void setUp() throws IOException {
+		serverSocket = new ServerSocket(0);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		for (SocketHandler handler : handlers) {
+			handler.stopHandler();
+			handler.close();
+		}
+		serverSocket.close();
+	}
+	
+	/**
+	 * Connect a subscriber, whose reading end adds each line it reads to the
+	 * given queue, and return the publishing end.
+	 */
+	private SocketHandler subscribe(BlockingQueue<String> received, SocketHandlerConfig config)
+	throws IOException {
+		SocketHandler publisher = new SocketHandler(new Socket("localhost", serverSocket.getLocalPort()),
+				Mode.MODE_WRITE, null, null, config);
+		SocketHandler subscriber = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), null);
+		handlers.add(publisher);
+		handlers.add(subscriber);
+		subscriber.start();
+		return publisher;
+	}
+	
+	@Test
+	public void testBroadcast() throws Exception {
+		BroadcastGroup group = new BroadcastGroup();
+		List<BlockingQueue<String>> queues = new ArrayList<BlockingQueue<String>>();
+		for (int i = 0; i < 3; i++) {
+			BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+			queues.add(received);
+			SocketHandler publisher = subscribe(received, new SocketHandlerConfig());
+			publisher.start();
+			assertTrue(group.add(publisher));
+			assertFalse(group.add(publisher));
+		}
+		assertEquals(3, group.size());
+		for (int i = 0; i < 50; i++) {
+			assertEquals(3, new DataLine("tick").addInfo(i).broadcastTo(group));
+		}
+		assertEquals(3, group.broadcast("done"));
+		for (BlockingQueue<String> received : queues) {
+			for (int i = 0; i < 50; i++) {
+				assertEquals("tick::" + i, received.poll(5, TimeUnit.SECONDS));
+			}
+			assertEquals("done", received.poll(5, TimeUnit.SECONDS));
+		}
+		assertEquals(0, group.getDroppedCount());
+	}
+	
+	/**
+	 * Connect a publisher to a subscriber on the given binary wire format,
+	 * and return the pair, with the publisher started.
+	 */
+	private SocketHandler[] connect(final WireFormat format) throws Exception {
+		final SocketHandler publisher = new SocketHandler(new Socket("localhost", serverSocket.getLocalPort()),
+				Mode.MODE_WRITE, null, null);
+		SocketHandler subscriber = new SocketHandler(serverSocket.accept(), Mode.MODE_READ, null, null);
+		handlers.add(publisher);
+		handlers.add(subscriber);
+		FutureTask<WireFormat> request = new FutureTask<WireFormat>(new Callable<WireFormat>() {
+			public WireFormat call() throws Exception {
+				return publisher.requestWireFormat(format, 5000);
+			}
+		});
+		new Thread(request).start();
+		assertEquals(format, subscriber.acceptWireFormat(format));
+		assertEquals(format, request.get(5, TimeUnit.SECONDS));
+		publisher.start();
+		return new SocketHandler[] {publisher, subscriber};
+	}
+	
+	@Test
+	public void testBroadcast_BinaryMember() throws Exception {
+		SocketHandler[] pair = connect(WireFormat.BINARY);
+		SocketHandler publisher = pair[0];
+		SocketHandler subscriber = pair[1];
+		
+		BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		BroadcastGroup group = new BroadcastGroup();
+		group.add(publisher);
+		SocketHandler textPublisher = subscribe(received, new SocketHandlerConfig());
+		textPublisher.start();
+		group.add(textPublisher);
+		
+		assertEquals(2, new DataLine("typed").addInfo(42).broadcastTo(group));
+		DataLine line = new DataLine(subscriber);
+		assertEquals("typed", line.getName());
+		assertEquals(42, line.getIntInfo(0));
+		assertEquals("typed::42", received.poll(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testBroadcast_DeflateMembers() throws Exception {
+		BroadcastGroup group = new BroadcastGroup();
+		SocketHandler[][] pairs = {connect(WireFormat.BINARY_DEFLATE), connect(WireFormat.BINARY_DEFLATE)};
+		for (SocketHandler[] pair : pairs) {
+			group.add(pair[0]);
+		}
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			text.append("repeated");
+		}
+		
+		assertEquals(2, new DataLine("long").addInfo(text.toString()).broadcastTo(group));
+		boolean isShared = false;
+		for (SocketHandler[] pair : pairs) {
+			DataLine line = new DataLine(pair[1]);
+			assertEquals(text.toString(), line.getInfo(0));
+			assertTrue(pair[0].getMetrics().getCompressionRatio() > 2);
+			// The frame is deflated once, by whichever member writes it first.
+			isShared |= pair[0].getMetrics().getCompressionCpuNanos() == 0;
+		}
+		assertTrue(isShared);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testAdd_OtherConnection() {
+		new BroadcastGroup().add(SocketHandlerTest.otherConnection());
+	}
+	
+	@Test
+	public void testSlowMember_Drop() throws Exception {
+		BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		// Not started, so nothing leaves the out buffer; BLOCK must not hold up the group.
+		SocketHandler slow = subscribe(received, new SocketHandlerConfig()
+				.setMaxOutboundLines(2).setOutboundOverflowPolicy(OverflowPolicy.BLOCK));
+		BroadcastGroup group = new BroadcastGroup();
+		group.add(slow);
+		for (int i = 0; i < 5; i++) {
+			group.broadcast("line::" + i);
+		}
+		assertEquals(3, group.getDroppedCount());
+		assertEquals(2, slow.getOutboundCount());
+		assertEquals(1, group.size());
+		group.setMaxBacklog(1);
+		assertEquals(0, group.broadcast("line::5"));
+		assertEquals(4, group.getDroppedCount());
+		slow.start();
+		assertEquals("line::0", received.poll(5, TimeUnit.SECONDS));
+		assertEquals("line::1", received.poll(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testSlowMember_Disconnect() throws Exception {
+		BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		SocketHandler slow = subscribe(received, new SocketHandlerConfig().setMaxOutboundLines(3));
+		SocketHandler fast = subscribe(received, new SocketHandlerConfig());
+		fast.start();
+		BroadcastGroup group = new BroadcastGroup(SlowMemberPolicy.DISCONNECT);
+		group.add(slow);
+		group.add(fast);
+		for (int i = 0; i < 5; i++) {
+			group.broadcast("line::" + i);
+		}
+		assertEquals(1, group.size());
+		assertEquals(1, group.getDisconnectedCount());
+		assertFalse(slow.isOpen());
+		for (int i = 0; i < 5; i++) {
+			assertEquals("line::" + i, received.poll(5, TimeUnit.SECONDS));
+		}
+	}
+	
+}
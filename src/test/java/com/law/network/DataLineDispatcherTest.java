@@ -0,0 +1,67 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author Lloyd
+ */
+public class DataLineDispatcherTest {
+	
+	private enum Command {
+		QUOTE, TRADE, CANCEL
+	}
+	
+	static class NamedProcessor implements DataLineProcessor {
+		
+		private final String name;
+		
+		NamedProcessor(String name) {
+			this.name = name;
+		}
+		
+		public DataLine processDataLine(DataLine line, long fromId) {
+			return new DataLine(name).addInfo(line.getName()).addInfo(fromId);
+		}
+		
+	}
+	
+	@Test
+	public void testDispatch() {
+		DataLineDispatcher<Command> dispatcher = new DataLineDispatcher<Command>(Command.class)
+				.register(Command.QUOTE, new NamedProcessor("q"))
+				.register(Command.TRADE, new NamedProcessor("t"));
+		assertEquals("q::QUOTE::3", dispatcher.processDataLine(new DataLine("QUOTE::x"), 3).toString());
+		assertEquals("t::TRADE::4", dispatcher.processDataLine(new DataLine("TRADE"), 4).toString());
+		assertNull(dispatcher.processDataLine(new DataLine("CANCEL"), 5));
+		assertNull(dispatcher.processDataLine(new DataLine("quote"), 5));
+	}
+	
+	@Test
+	public void testDefaultProcessor() {
+		DataLineDispatcher<Command> dispatcher = new DataLineDispatcher<Command>(Command.class)
+				.register(Command.QUOTE, new NamedProcessor("q"))
+				.setDefaultProcessor(new NamedProcessor("d"));
+		assertEquals("d::CANCEL::1", dispatcher.processDataLine(new DataLine("CANCEL"), 1).toString());
+		assertEquals("d::OTHER::1", dispatcher.processDataLine(new DataLine("OTHER"), 1).toString());
+		assertEquals("d::::1", dispatcher.processDataLine(new DataLine(""), 1).toString());
+	}
+	
+	@Test
+	public void testProcessDataFromSocket() {
+		DataLineDispatcher<Command> dispatcher = new DataLineDispatcher<Command>(Command.class)
+				.register(Command.TRADE, new NamedProcessor("t"));
+		assertEquals("t::TRADE::9", dispatcher.processDataFromSocket("TRADE::1::2", 9));
+		assertEquals("", dispatcher.processDataFromSocket("QUOTE", 9));
+	}
+	
+	@Test (expected=NullPointerException.class)
+	public void testRegister_Null() {
+		new DataLineDispatcher<Command>(Command.class).register(Command.QUOTE, null);
+	}
+	
+}
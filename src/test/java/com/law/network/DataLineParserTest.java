@@ -5,6 +5,9 @@ package com.law.network;
 
 import static org.junit.Assert.*;
 
+import java.util.Random;
+import java.util.regex.Pattern;
+
 import org.junit.Test;
 
 /**
@@ -76,4 +79,146 @@ public class DataLineParserTest {
 		assertEquals("MyName::one", parser.toString());
 	}
 	
+	/**
+	 * Test method for {@link com.law.network.DataLineParser#getInfo(int)}.
+	 */
+	@Test
+	public void testGetInfo_Escaped() {
+		DataLineParser parser = new DataLineParser("MyName");
+		parser.addInfo("a::b");
+		assertEquals("MyName::a[:]dR[:]b", parser.toString());
+		assertEquals("a::b", parser.getInfo(0));
+		assertEquals("a::b", new DataLineParser(parser.toString()).getInfo(0));
+	}
+	
+	/**
+	 * Test method for {@link com.law.network.DataLineParser#getInfo(int)}.
+	 */
+	@Test
+	public void testGetInfo_Cached() {
+		DataLineParser parser = new DataLineParser("MyName::one::two");
+		assertSame(parser.getInfo(1), parser.getInfo(1));
+	}
+	
+	/**
+	 * Test method for {@link com.law.network.DataLineParser#getInfo(int)}.
+	 */
+	@Test (expected=IndexOutOfBoundsException.class)
+	public void testGetInfo_Negative() {
+		new DataLineParser("MyName::one").getInfo(-1);
+	}
+	
+	/**
+	 * Test method for {@link com.law.network.DataLineParser#addInfo(long, byte)}.
+	 */
+	@Test
+	public void testAddInfo_Digits() {
+		long[] values = {0, 7, -7, 10, -10, 99, Integer.MAX_VALUE, Integer.MIN_VALUE,
+				Long.MAX_VALUE, Long.MIN_VALUE, 1000000000000L};
+		for (long value : values) {
+			DataLineParser parser = new DataLineParser("MyName");
+			parser.addInfo(value, DataLineParser.FIELD_LONG);
+			assertEquals("MyName::" + value, parser.toString());
+			assertEquals(Long.toString(value), parser.getInfo(0));
+			assertEquals(value, parser.getLongInfo(0));
+		}
+	}
+	
+	/**
+	 * Test methods for {@link com.law.network.DataLineParser#getIntInfo(int)}
+	 * and {@link com.law.network.DataLineParser#getLongInfo(int)}, against
+	 * Integer.parseInt() and Long.parseLong().
+	 */
+	@Test
+	public void testGetIntInfo_MatchesParse() {
+		String[] infos = {"0", "-0", "+5", "-", "+", "", "12a", " 1", "2147483647",
+				"2147483648", "-2147483648", "-2147483649", "9223372036854775807",
+				"9223372036854775808", "-9223372036854775808", "-9223372036854775809",
+				"\u0661\u0662", "1[:]dR[:]2", "007"};
+		for (String info : infos) {
+			DataLineParser parser = new DataLineParser("MyName");
+			parser.addInfo(info);
+			assertEquals(info, parseResult(Integer.class, parser.getInfo(0)), intResult(parser));
+			assertEquals(info, parseResult(Long.class, parser.getInfo(0)), longResult(parser));
+		}
+	}
+	
+	private static Object parseResult(Class<?> type, String s) {
+		try {
+			return type == Integer.class ? (Object) Integer.parseInt(s) : (Object) Long.parseLong(s);
+		}
+		catch (NumberFormatException e) {
+			return e.getMessage();
+		}
+	}
+	
+	private static Object intResult(DataLineParser parser) {
+		try {
+			return parser.getIntInfo(0);
+		}
+		catch (NumberFormatException e) {
+			return e.getMessage();
+		}
+	}
+	
+	private static Object longResult(DataLineParser parser) {
+		try {
+			return parser.getLongInfo(0);
+		}
+		catch (NumberFormatException e) {
+			return e.getMessage();
+		}
+	}
+	
+	/**
+	 * Test method for {@link com.law.network.DataLineParser#removeLastInfo()}.
+	 */
+	@Test
+	public void testRemoveLastInfo() {
+		DataLineParser parser = new DataLineParser("MyName::one::two");
+		assertEquals("two", parser.getInfo(1));
+		assertEquals("two", parser.removeLastInfo());
+		assertEquals(1, parser.getInfoCount());
+		assertEquals("MyName::one", parser.toString());
+		parser.addInfo("three");
+		assertEquals("three", parser.getInfo(1));
+		assertEquals("MyName::one::three", parser.toString());
+		parser.removeLastInfo();
+		parser.removeLastInfo();
+		assertNull(parser.removeLastInfo());
+		assertEquals("MyName", parser.toString());
+	}
+	
+	/**
+	 * The fields found must be exactly those found by splitting on "::".
+	 */
+	@Test
+	public void testMatchesSplit() {
+		Pattern delim = Pattern.compile("::");
+		String[] samples = {"", ":", "::", ":::", "::::", "a::", "::a", "a:::b", "a::::b", "a:b::c"};
+		Random random = new Random(42);
+		for (int n = 0; n < 2000; n++) {
+			String s;
+			if (n < samples.length) {
+				s = samples[n];
+			}
+			else {
+				StringBuilder sb = new StringBuilder();
+				int len = random.nextInt(12);
+				for (int i = 0; i < len; i++) {
+					sb.append("ab:".charAt(random.nextInt(3)));
+				}
+				s = sb.toString();
+			}
+			String[] expected = delim.split(s, -1);
+			DataLineParser parser = new DataLineParser(s);
+			assertEquals(s, expected[0], parser.getName());
+			assertEquals(s, expected.length - 1, parser.getInfoCount());
+			for (int i = 1; i < expected.length; i++) {
+				assertEquals(s, expected[i], parser.getInfo(i - 1));
+			}
+			assertEquals(s, parser.toString());
+		}
+	}
+	
 }
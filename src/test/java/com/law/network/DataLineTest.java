@@ -270,4 +270,66 @@ public class DataLineTest {
 		assertFalse(dl.isType(TestEnum.B));
 	}
 	
+	private enum BodyEnum {
+		X {
+			@Override
+			public String toString() {
+				return "x";
+			}
+		},
+		Y
+	}
+	
+	/**
+	 * Test method for {@link com.law.network.DataLine#isType(java.lang.Enum)}
+	 * and {@link com.law.network.DataLine#toType(java.lang.Class)}, with
+	 * an enum constant which has a class body.
+	 */
+	@Test
+	public void testIsType_ConstantBody() {
+		DataLine dl = new DataLine(BodyEnum.X);
+		assertTrue(dl.isType(BodyEnum.X));
+		assertFalse(dl.isType(BodyEnum.Y));
+		assertEquals(BodyEnum.X, dl.toType(BodyEnum.class));
+	}
+	
+	/**
+	 * Test method for {@link com.law.network.DataLine#toType(java.lang.Class)}.
+	 */
+	@Test
+	public void testToType_NullType() {
+		assertNull(new DataLine("A").toType(null));
+	}
+	
+	/**
+	 * Test method for {@link com.law.network.DataLine#reset(java.lang.String)}.
+	 */
+	@Test
+	public void testReset() {
+		DataLine dl = new DataLine("a::b::c::d::e").addInfo(5).addInfo(new byte[] {1, 2});
+		assertEquals("b", dl.getInfo(0));
+		assertSame(dl, dl.reset("x::y[:]dR[:]z"));
+		assertEquals("x", dl.getName());
+		assertEquals(1, dl.getInfoCount());
+		assertEquals("y::z", dl.getInfo(0));
+		assertEquals("x::y[:]dR[:]z", dl.toString());
+		dl.reset(null);
+		assertEquals("", dl.toString());
+		assertEquals(0, dl.getInfoCount());
+	}
+	
+	/**
+	 * Test method for {@link com.law.network.DataLine#copy()}.
+	 */
+	@Test
+	public void testCopy() {
+		DataLine dl = new DataLine("a::b").addInfo(7);
+		DataLine copy = dl.copy();
+		dl.reset("c");
+		assertEquals("a::b::7", copy.toString());
+		assertEquals(7, copy.getIntInfo(1));
+		copy.addInfo("d");
+		assertEquals("c", dl.toString());
+	}
+	
 }
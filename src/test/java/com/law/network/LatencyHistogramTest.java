@@ -0,0 +1,66 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author Lloyd
+ */
+public class LatencyHistogramTest {
+	
+	@Test
+	public void testBuckets() {
+		int last = -1;
+		for (long value = 0; value < 100000; value++) {
+			int bucket = LatencyHistogram.bucketOf(value);
+			assertTrue(bucket == last || bucket == last + 1);
+			assertTrue(value <= LatencyHistogram.highestValueOf(bucket));
+			last = bucket;
+		}
+		assertTrue(LatencyHistogram.bucketOf(Long.MAX_VALUE) < LatencyHistogram.BUCKET_COUNT);
+		assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(Long.MAX_VALUE)));
+	}
+	
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+		histogram.addTo(counts);
+		assertEquals(1000, LatencyHistogram.count(counts));
+		assertWithin(500000, LatencyHistogram.percentile(counts, 50.0));
+		assertWithin(990000, LatencyHistogram.percentile(counts, 99.0));
+		assertWithin(999000, LatencyHistogram.percentile(counts, 99.9));
+	}
+	
+	@Test
+	public void testPercentile_Empty() {
+		assertEquals(0, LatencyHistogram.percentile(new long[LatencyHistogram.BUCKET_COUNT], 99.0));
+	}
+	
+	@Test
+	public void testAdd() {
+		LatencyHistogram a = new LatencyHistogram();
+		LatencyHistogram b = new LatencyHistogram();
+		a.record(5);
+		b.record(5);
+		b.record(-1);
+		a.add(b);
+		long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+		a.addTo(counts);
+		assertEquals(2, counts[5]);
+		assertEquals(1, counts[0]);
+	}
+	
+	static private void assertWithin(long expected, long actual) {
+		assertTrue(actual + " not within 12.5% of " + expected,
+				actual >= expected && actual <= expected + expected / 8);
+	}
+	
+}
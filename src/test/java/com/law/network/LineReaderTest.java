@@ -0,0 +1,148 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Test;
+
+/**
+ * @author Lloyd
+ */
+public class LineReaderTest {
+	
+	private static LineReader reader(String s) {
+		return new LineReader(new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8)),
+				StandardCharsets.UTF_8);
+	}
+	
+	@Test
+	public void testReadLine() throws IOException {
+		LineReader reader = reader("one\ntwo\r\n\nthree");
+		assertEquals("one", reader.readLine());
+		assertEquals("two", reader.readLine());
+		assertEquals("", reader.readLine());
+		assertEquals("three", reader.readLine());
+		assertNull(reader.readLine());
+	}
+	
+	@Test
+	public void testReadLine_Empty() throws IOException {
+		assertNull(reader("").readLine());
+	}
+	
+	@Test
+	public void testReadLine_NonAscii() throws IOException {
+		LineReader reader = reader("café::€\nplain\n");
+		assertEquals("café::€", reader.readLine());
+		assertEquals("plain", reader.readLine());
+		assertNull(reader.readLine());
+	}
+	
+	@Test
+	public void testReadLine_LongerThanBuffer() throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 50000; i++) {
+			sb.append((char) ('a' + i % 26));
+		}
+		String longLine = sb.toString();
+		LineReader reader = reader("x\n" + longLine + "\né" + longLine + "\ny\n");
+		assertEquals("x", reader.readLine());
+		assertEquals(longLine, reader.readLine());
+		assertEquals("é" + longLine, reader.readLine());
+		assertEquals("y", reader.readLine());
+		assertNull(reader.readLine());
+	}
+	
+	/**
+	 * Lines split across many small reads must be put back together.
+	 */
+	@Test
+	public void testReadLine_Trickle() throws IOException {
+		final byte[] bytes = "first::line\r\nsecond é\n".getBytes(StandardCharsets.UTF_8);
+		InputStream trickle = new InputStream() {
+			private int pos;
+			
+			@Override
+			public int read() {
+				return pos < bytes.length ? bytes[pos++] & 0xff : -1;
+			}
+			
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if (pos == bytes.length) {
+					return -1;
+				}
+				b[off] = bytes[pos++];
+				return 1;
+			}
+		};
+		LineReader reader = new LineReader(trickle, StandardCharsets.UTF_8);
+		assertEquals("first::line", reader.readLine());
+		assertEquals("second é", reader.readLine());
+		assertNull(reader.readLine());
+	}
+	
+	@Test
+	public void testReadLine_MaxLineLength() throws IOException {
+		StringBuilder sb = new StringBuilder("12345\r\n123456\n");
+		for (int i = 0; i < 100000; i++) {
+			sb.append('x');
+		}
+		byte[] bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+		LineReader reader = new LineReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8,
+				new LongAdder(), 5);
+		assertEquals("12345", reader.readLine());
+		try {
+			reader.readLine();
+			fail("Line longer than the max was read.");
+		}
+		catch (IOException e) {
+			// Expected.
+		}
+		
+		// Found without reading the whole of an endless line.
+		InputStream endless = new InputStream() {
+			@Override
+			public int read() {
+				return 'x';
+			}
+		};
+		reader = new LineReader(endless, StandardCharsets.UTF_8, new LongAdder(), 1000);
+		try {
+			reader.readLine();
+			fail("Line longer than the max was read.");
+		}
+		catch (IOException e) {
+			// Expected.
+		}
+	}
+	
+	@Test
+	public void testRead() throws IOException {
+		LineReader reader = reader("head\nbody bytes\ntail\n");
+		assertEquals("head", reader.readLine());
+		byte[] b = new byte[10];
+		int done = 0;
+		while (done < b.length) {
+			done += reader.read(b, done, b.length - done);
+		}
+		assertEquals("body bytes", new String(b, StandardCharsets.UTF_8));
+		assertEquals("", reader.readLine());
+		assertEquals("tail", reader.readLine());
+		assertEquals(-1, reader.read(b, 0, b.length));
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testNotAsciiCompatible() {
+		new LineReader(new ByteArrayInputStream(new byte[0]), StandardCharsets.UTF_16);
+	}
+	
+}
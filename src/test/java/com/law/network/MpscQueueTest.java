@@ -0,0 +1,98 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+/**
+ * @author Lloyd
+ */
+public class MpscQueueTest {
+	
+	@Test
+	public void testEmpty() {
+		MpscQueue<String> queue = new MpscQueue<String>();
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+		assertNull(queue.peek());
+	}
+	
+	@Test
+	public void testFifo() {
+		MpscQueue<String> queue = new MpscQueue<String>();
+		queue.offer("a");
+		queue.offer("b");
+		queue.offer("c");
+		assertFalse(queue.isEmpty());
+		assertEquals("a", queue.peek());
+		assertEquals("a", queue.poll());
+		assertEquals("b", queue.poll());
+		assertEquals("c", queue.poll());
+		assertNull(queue.poll());
+		assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testClear() {
+		MpscQueue<String> queue = new MpscQueue<String>();
+		queue.offer("a");
+		queue.offer("b");
+		queue.clear();
+		assertTrue(queue.isEmpty());
+	}
+	
+	@Test (expected=NullPointerException.class)
+	public void testOfferNull() {
+		new MpscQueue<String>().offer(null);
+	}
+	
+	/**
+	 * Every producer's items must come out in the order that producer
+	 * offered them, and nothing may be lost.
+	 */
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		final int producers = 8;
+		final int perProducer = 100000;
+		final MpscQueue<long[]> queue = new MpscQueue<long[]>();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[producers];
+		for (int p = 0; p < producers; p++) {
+			final int producer = p;
+			threads[p] = new Thread() {
+				@Override
+				public void run() {
+					try { start.await(); }
+					catch (InterruptedException e) { return; }
+					for (int i = 0; i < perProducer; i++) {
+						queue.offer(new long[] {producer, i});
+					}
+				}
+			};
+			threads[p].start();
+		}
+		start.countDown();
+		
+		long[] expected = new long[producers];
+		int received = 0;
+		while (received < producers * perProducer) {
+			long[] item = queue.poll();
+			if (item == null) {
+				Thread.yield();
+				continue;
+			}
+			assertEquals(expected[(int) item[0]]++, item[1]);
+			received++;
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(queue.isEmpty());
+	}
+	
+}
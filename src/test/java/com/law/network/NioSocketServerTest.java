@@ -0,0 +1,202 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.law.network.SocketHandler.Mode;
+
+/**
+ * @author Lloyd
+ */
+public class NioSocketServerTest {
+	
+	private NioEventLoopGroup group;
+	private NioSocketServer server;
+	
+	@Before
+	public void setUp() throws Exception {
+		group = new NioEventLoopGroup(2);
+	}
+	
+	@After
+	public void tearDown() {
+		if (server != null) {
+			server.stop();
+		}
+		group.shutdown();
+	}
+	
+	@Test
+	public void testReadWrite() throws Exception {
+		server = new NioSocketServer(group, 0, Mode.MODE_READ_WRITE, new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				return "echo::" + data;
+			}
+		}, null);
+		server.start();
+		
+		SocketHandler client = new SocketHandler(new Socket("localhost", server.getLocalPort()),
+				Mode.MODE_WRITE, null, null);
+		try {
+			client.writeLine("one");
+			client.writeLine("two");
+			assertEquals("echo::one", client.readLine());
+			assertEquals("echo::two", client.readLine());
+		}
+		finally {
+			client.close();
+		}
+	}
+	
+	@Test
+	public void testStreamSkipped() throws Exception {
+		server = new NioSocketServer(group, 0, Mode.MODE_READ_WRITE, new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				return "echo::" + data;
+			}
+		}, null);
+		server.start();
+		
+		// A field of many lines, longer than the loop's read buffer.
+		StringBuilder field = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			field.append("not a line ").append(i).append('\n');
+		}
+		byte[] bytes = field.toString().getBytes("US-ASCII");
+		SocketHandler client = new SocketHandler(new Socket("localhost", server.getLocalPort()),
+				Mode.MODE_WRITE, null, null);
+		try {
+			client.writeLine("before");
+			client.writeStream(new DataLine("upload"), new ByteArrayInputStream(bytes), bytes.length);
+			client.writeLine("after");
+			assertEquals("echo::before", client.readLine());
+			assertEquals("", client.readLine());
+			assertEquals("echo::after", client.readLine());
+			
+			// A bad header closes the connection, as the field cannot be found.
+			client.writeLine("[:]stream[:]::bad");
+			assertNull(client.readLine());
+		}
+		finally {
+			client.close();
+		}
+	}
+	
+	@Test
+	public void testReadAndShutdownListener() throws Exception {
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		final CountDownLatch closed = new CountDownLatch(1);
+		server = new NioSocketServer(group, 0, Mode.MODE_READ, new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				received.add(data);
+				return null;
+			}
+		}, new NioShutdownListener() {
+			public void channelClosing(NioSocketHandler nioHandler) {
+				closed.countDown();
+			}
+		});
+		server.start();
+		
+		SocketHandler client = new SocketHandler(new Socket("localhost", server.getLocalPort()),
+				Mode.MODE_WRITE, null, null);
+		client.start();
+		for (int i = 0; i < 1000; i++) {
+			new DataLine("line").addInfo(i).sendTo(client);
+		}
+		for (int i = 0; i < 1000; i++) {
+			String line = received.poll(5, TimeUnit.SECONDS);
+			assertEquals(i, new DataLine(line).getIntInfo(0));
+		}
+		client.stopHandler();
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testWriteRead() throws Exception {
+		server = new NioSocketServer(group, 0, Mode.MODE_READ_WRITE, new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				return data.toUpperCase();
+			}
+		}, null);
+		server.start();
+		
+		final BlockingQueue<String> responses = new LinkedBlockingQueue<String>();
+		SocketChannel channel = SocketChannel.open(
+				new InetSocketAddress("localhost", server.getLocalPort()));
+		NioSocketHandler client = group.newHandler(channel, Mode.MODE_WRITE_READ,
+				new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				responses.add(data);
+				return null;
+			}
+		}, null);
+		client.start();
+		client.send("a");
+		client.send("b");
+		assertEquals("A", responses.poll(5, TimeUnit.SECONDS));
+		assertEquals("B", responses.poll(5, TimeUnit.SECONDS));
+		client.stopHandler();
+	}
+	
+	@Test
+	public void testSharedBuffersAndShutdown() throws Exception {
+		NioEventLoopGroup oneLoop = new NioEventLoopGroup(1);
+		ServerSocket serverSocket = new ServerSocket(0);
+		try {
+			// Two handlers on the one loop, each with lines longer than the loop's write buffer.
+			SocketChannel[] channels = new SocketChannel[2];
+			SocketHandler[] readers = new SocketHandler[2];
+			NioSocketHandler[] writers = new NioSocketHandler[2];
+			for (int i = 0; i < 2; i++) {
+				channels[i] = SocketChannel.open(new InetSocketAddress("localhost", serverSocket.getLocalPort()));
+				readers[i] = new SocketHandler(serverSocket.accept(), Mode.MODE_READ, null, null);
+				writers[i] = oneLoop.newHandler(channels[i], Mode.MODE_WRITE, null, null);
+				assertTrue(writers[i].getId() < 0);
+				writers[i].start();
+			}
+			char[] fill = new char[100 * 1024];
+			Arrays.fill(fill, 'x');
+			String big = new String(fill);
+			for (int n = 0; n < 20; n++) {
+				for (int i = 0; i < 2; i++) {
+					writers[i].send(n % 5 == 0 ? big + i + n : "line::" + i + "::" + n);
+				}
+			}
+			CompletableFuture<Boolean> drained = SocketHandler.shutdownGracefully(
+					Arrays.<SocketConnection>asList(writers[0], writers[1]), 10, TimeUnit.SECONDS);
+			for (int i = 0; i < 2; i++) {
+				for (int n = 0; n < 20; n++) {
+					assertEquals(n % 5 == 0 ? big + i + n : "line::" + i + "::" + n, readers[i].readLine());
+				}
+				assertNull(readers[i].readLine());
+				readers[i].close();
+			}
+			assertTrue(drained.get(10, TimeUnit.SECONDS));
+			assertFalse(writers[0].isOpen());
+		}
+		finally {
+			serverSocket.close();
+			oneLoop.shutdown();
+		}
+	}
+	
+}
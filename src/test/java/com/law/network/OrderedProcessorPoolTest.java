@@ -0,0 +1,132 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.law.network.OrderedProcessorPool.Overflow;
+
+/**
+ * @author Lloyd
+ */
+public class OrderedProcessorPoolTest {
+	
+	@Test
+	public void testOrderPerConnection() throws Exception {
+		final Map<Long, List<Integer>> seen = new ConcurrentHashMap<Long, List<Integer>>();
+		OrderedProcessorPool pool = new OrderedProcessorPool(new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				List<Integer> list = seen.get(fromId);
+				if (list == null) {
+					list = new ArrayList<Integer>();
+					seen.put(fromId, list);
+				}
+				list.add(Integer.parseInt(data));
+				return "ignored";
+			}
+		}, 4, 100000, Overflow.BLOCK);
+		for (int i = 0; i < 1000; i++) {
+			for (long id = 1; id <= 8; id++) {
+				assertNull(pool.processDataFromSocket(Integer.toString(i), id));
+			}
+		}
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(8, seen.size());
+		for (List<Integer> list : seen.values()) {
+			assertEquals(1000, list.size());
+			for (int i = 0; i < 1000; i++) {
+				assertEquals(Integer.valueOf(i), list.get(i));
+			}
+		}
+		assertEquals(8000, pool.getProcessedCount());
+		assertEquals(0, pool.getQueueDepth());
+	}
+	
+	@Test
+	public void testSlowConnectionDoesNotBlockOthers() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch fastDone = new CountDownLatch(1);
+		OrderedProcessorPool pool = new OrderedProcessorPool(new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				try {
+					if (fromId == 1) {
+						release.await(5, TimeUnit.SECONDS);
+					}
+					else {
+						fastDone.countDown();
+					}
+				}
+				catch (InterruptedException e) {}
+				return null;
+			}
+		}, 2, 10, Overflow.BLOCK);
+		pool.processDataFromSocket("slow", 1);
+		pool.processDataFromSocket("fast", 2);
+		assertTrue(fastDone.await(5, TimeUnit.SECONDS));
+		release.countDown();
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testReject() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		OrderedProcessorPool pool = new OrderedProcessorPool(new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				try { release.await(5, TimeUnit.SECONDS); }
+				catch (InterruptedException e) {}
+				return null;
+			}
+		}, 1, 2, Overflow.REJECT);
+		pool.processDataFromSocket("a", 1);
+		pool.processDataFromSocket("b", 1);
+		pool.processDataFromSocket("c", 1);
+		assertEquals(2, pool.getQueueDepth());
+		assertEquals(1, pool.getRejectedCount());
+		release.countDown();
+		pool.shutdown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(2, pool.getProcessedCount());
+		pool.processDataFromSocket("d", 1);
+		assertEquals(2, pool.getRejectedCount());
+		assertEquals(0, pool.getQueueDepth());
+	}
+	
+	@Test
+	public void testShutdown_StrandRunning() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		OrderedProcessorPool pool = new OrderedProcessorPool(new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				try { release.await(5, TimeUnit.SECONDS); }
+				catch (InterruptedException e) {}
+				return null;
+			}
+		}, 1, 10, Overflow.BLOCK);
+		pool.processDataFromSocket("a", 1);
+		pool.shutdown();
+		// Rejected, though the connection's strand is still running.
+		pool.processDataFromSocket("b", 1);
+		assertEquals(1, pool.getRejectedCount());
+		release.countDown();
+		assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(1, pool.getProcessedCount());
+		assertEquals(0, pool.getQueueDepth());
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testCapacity_Zero() {
+		new OrderedProcessorPool(null, 1, 0, Overflow.BLOCK);
+	}
+	
+}
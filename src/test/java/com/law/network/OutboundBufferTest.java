@@ -0,0 +1,118 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import com.law.network.SocketHandler.OverflowPolicy;
+
+/**
+ * @author Lloyd
+ */
+public class OutboundBufferTest {
+	
+	@Test
+	public void testWatermarks_Concurrent() throws Exception {
+		final List<String> events = new ArrayList<String>();
+		SocketHandlerConfig config = new SocketHandlerConfig().setOutboundWatermarks(1, 2)
+				.setOutboundWatermarkListener(new OutboundWatermarkListener() {
+			public void outboundHigh(SocketConnection socketHandler) {
+				synchronized (events) {
+					events.add("high");
+				}
+			}
+			
+			public void outboundLow(SocketConnection socketHandler) {
+				synchronized (events) {
+					events.add("low");
+				}
+			}
+		});
+		final OutboundBuffer<String> buffer = new OutboundBuffer<String>(null, config);
+		Thread[] producers = new Thread[4];
+		for (int p = 0; p < producers.length; p++) {
+			producers[p] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 20000; i++) {
+						buffer.offer("line");
+					}
+				}
+			};
+			producers[p].start();
+		}
+		int taken = 0;
+		while (taken < 4 * 20000) {
+			if (buffer.poll() != null) {
+				taken++;
+			}
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		assertEquals(0, buffer.size());
+		synchronized (events) {
+			assertFalse(events.isEmpty());
+			for (int i = 0; i < events.size(); i++) {
+				assertEquals(i % 2 == 0 ? "high" : "low", events.get(i));
+			}
+			// Drained, so the last word must be low, or producers would stay throttled.
+			assertEquals("low", events.get(events.size() - 1));
+		}
+	}
+	
+	@Test
+	public void testBlock_Close() throws Exception {
+		SocketHandlerConfig config = new SocketHandlerConfig().setMaxOutboundLines(1)
+				.setOutboundOverflowPolicy(OverflowPolicy.BLOCK);
+		final OutboundBuffer<String> buffer = new OutboundBuffer<String>(null, config);
+		assertTrue(buffer.offer("first"));
+		final AtomicBoolean isAdded = new AtomicBoolean(true);
+		final CountDownLatch done = new CountDownLatch(1);
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				isAdded.set(buffer.offer("second"));
+				done.countDown();
+			}
+		};
+		producer.start();
+		assertFalse(done.await(50, TimeUnit.MILLISECONDS));
+		buffer.close();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertFalse(isAdded.get());
+		assertEquals(1, buffer.getDroppedCount());
+	}
+	
+	@Test
+	public void testDropOldest_CountNeverNegative() throws Exception {
+		SocketHandlerConfig config = new SocketHandlerConfig().setMaxOutboundLines(4)
+				.setOutboundOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+		final OutboundBuffer<String> buffer = new OutboundBuffer<String>(null, config);
+		Thread producer = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 100000; i++) {
+					buffer.offer("line");
+				}
+			}
+		};
+		producer.start();
+		while (producer.isAlive()) {
+			buffer.poll();
+			assertTrue(buffer.size() >= 0);
+		}
+		buffer.clear();
+		assertEquals(0, buffer.size());
+	}
+	
+}
@@ -0,0 +1,183 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.law.network.OrderedProcessorPool.Overflow;
+import com.law.network.PartitionedProcessor.PartitionKey;
+
+/**
+ * @author Lloyd
+ */
+public class PartitionedProcessorTest {
+	
+	@Test
+	public void testPartitionByName() throws Exception {
+		List<RecordingProcessor> processors = newProcessors(4);
+		final PartitionedProcessor processor = new PartitionedProcessor(processors, PartitionKey.NAME,
+				100, Overflow.BLOCK);
+		Thread[] producers = new Thread[3];
+		for (int p = 0; p < producers.length; p++) {
+			final long fromId = p;
+			producers[p] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						processor.processDataFromSocket("key" + (i % 10) + "::" + fromId + "::" + i, fromId);
+					}
+				}
+			};
+			producers[p].start();
+		}
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		processor.shutdown();
+		assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(3000, processor.getProcessedCount());
+		assertEquals(0, processor.getQueueDepth());
+		
+		// Each name is in one partition only, in the order each producer sent it.
+		Map<String, Integer> partitionOfName = new HashMap<String, Integer>();
+		for (int partition = 0; partition < processors.size(); partition++) {
+			Map<String, Integer> lastSeen = new HashMap<String, Integer>();
+			for (String line : processors.get(partition).lines) {
+				DataLine dataLine = new DataLine(line);
+				Integer previous = partitionOfName.put(dataLine.getName(), partition);
+				assertTrue(previous == null || previous == partition);
+				assertEquals(partition, processor.partitionOf(dataLine.getName(), 99));
+				String producerKey = dataLine.getName() + dataLine.getInfo(0);
+				Integer last = lastSeen.put(producerKey, dataLine.getIntInfo(1));
+				assertTrue(last == null || last < dataLine.getIntInfo(1));
+			}
+		}
+		assertEquals(10, partitionOfName.size());
+		processor.processDataFromSocket("late", 0);
+		assertEquals(1, processor.getRejectedCount());
+	}
+	
+	@Test
+	public void testPartitionKeys() {
+		PartitionedProcessor processor = new PartitionedProcessor(newProcessors(8), PartitionKey.INFO,
+				10, Overflow.BLOCK).setInfoIndex(1);
+		DataLine line = new DataLine("buy").addInfo("acct").addInfo("sym::a");
+		DataLine other = new DataLine("sell").addInfo("other").addInfo("sym::a");
+		assertEquals(processor.partitionOf(line.toString(), 1), processor.partitionOf(other.toString(), 2));
+		assertEquals(processor.partitionOf("buy", 1), processor.partitionOf("sell::x", 2));
+		processor.shutdown();
+		
+		processor = new PartitionedProcessor(newProcessors(8), PartitionKey.CONNECTION, 10, Overflow.BLOCK);
+		assertEquals(processor.partitionOf("a", 42), processor.partitionOf("b", 42));
+		boolean isSpread = false;
+		for (long fromId = 1; fromId < 8; fromId++) {
+			isSpread |= processor.partitionOf("a", fromId) != processor.partitionOf("a", 0);
+		}
+		assertTrue(isSpread);
+		processor.shutdown();
+	}
+	
+	@Test
+	public void testReject() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		List<SocketReadProcessor> processors = new ArrayList<SocketReadProcessor>();
+		processors.add(new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return null;
+			}
+		});
+		PartitionedProcessor processor = new PartitionedProcessor(processors, PartitionKey.CONNECTION,
+				2, Overflow.REJECT);
+		for (int i = 0; i < 5; i++) {
+			assertNull(processor.processDataFromSocket("line", 1));
+		}
+		assertEquals(3, processor.getRejectedCount());
+		assertEquals(2, processor.getQueueDepth());
+		release.countDown();
+		processor.shutdown();
+		assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+		assertEquals(2, processor.getProcessedCount());
+	}
+	
+	@Test
+	public void testShutdown_WhileAdding() throws Exception {
+		for (int round = 0; round < 20; round++) {
+			final PartitionedProcessor processor = new PartitionedProcessor(newProcessors(2),
+					PartitionKey.CONNECTION, 1000, Overflow.BLOCK);
+			final CountDownLatch started = new CountDownLatch(4);
+			Thread[] producers = new Thread[4];
+			for (int p = 0; p < producers.length; p++) {
+				final long fromId = p;
+				producers[p] = new Thread() {
+					@Override
+					public void run() {
+						started.countDown();
+						for (int i = 0; i < 500; i++) {
+							processor.processDataFromSocket("line", fromId);
+						}
+					}
+				};
+				producers[p].start();
+			}
+			started.await();
+			processor.shutdown();
+			for (Thread producer : producers) {
+				producer.join();
+			}
+			// Every line was either processed or rejected; none was stranded.
+			assertTrue(processor.awaitTermination(5, TimeUnit.SECONDS));
+			assertEquals(2000, processor.getProcessedCount() + processor.getRejectedCount());
+			assertEquals(0, processor.getQueueDepth());
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testNoProcessors() {
+		new PartitionedProcessor(new ArrayList<SocketReadProcessor>(), PartitionKey.NAME, 10, Overflow.BLOCK);
+	}
+	
+	static private List<RecordingProcessor> newProcessors(int count) {
+		List<RecordingProcessor> processors = new ArrayList<RecordingProcessor>();
+		for (int i = 0; i < count; i++) {
+			processors.add(new RecordingProcessor());
+		}
+		return processors;
+	}
+	
+	/**
+	 * Records its lines in an unsynchronized list, checking that it is only
+	 * ever called from one thread.
+	 */
+	static private class RecordingProcessor implements SocketReadProcessor {
+		
+		final List<String> lines = new ArrayList<String>();
+		private Thread thread;
+		
+		public String processDataFromSocket(String data, long fromId) {
+			if (thread == null) {
+				thread = Thread.currentThread();
+			}
+			assertSame(thread, Thread.currentThread());
+			lines.add(data);
+			return null;
+		}
+		
+	}
+	
+}
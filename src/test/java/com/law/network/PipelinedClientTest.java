@@ -0,0 +1,215 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.law.network.PipelinedClient.Correlation;
+import com.law.network.SocketHandler.Mode;
+
+/**
+ * @author Lloyd
+ */
+public class PipelinedClientTest {
+	
+	private ServerSocket serverSocket;
+	
+	@Before
+	public void setUp() throws IOException {
+		serverSocket = new ServerSocket(0);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		serverSocket.close();
+	}
+	
+	private static void assertInFlight(int expected, PipelinedClient client) throws InterruptedException {
+		// The window is released just after each future completes.
+		for (int i = 0; i < 500 && client.getInFlightCount() != expected; i++) {
+			Thread.sleep(10);
+		}
+		assertEquals(expected, client.getInFlightCount());
+	}
+	
+	@Test
+	public void testFifo() throws Exception {
+		Socket clientSocket = new Socket("localhost", serverSocket.getLocalPort());
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ_WRITE,
+				new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				DataLine query = new DataLine(data);
+				return new DataLine("answer").addInfo(query.getIntInfo(0) * 2).toString();
+			}
+		}, null);
+		server.start();
+		
+		PipelinedClient client = new PipelinedClient(clientSocket, Correlation.FIFO, 16, 5, TimeUnit.SECONDS);
+		client.start();
+		List<CompletableFuture<DataLine>> futures = new ArrayList<CompletableFuture<DataLine>>();
+		for (int i = 0; i < 200; i++) {
+			futures.add(client.send(new DataLine("query").addInfo(i)));
+		}
+		for (int i = 0; i < 200; i++) {
+			assertEquals(i * 2, futures.get(i).get(5, TimeUnit.SECONDS).getIntInfo(0));
+		}
+		assertInFlight(0, client);
+		client.close();
+		server.stopHandler();
+	}
+	
+	@Test
+	public void testCorrelationId_OutOfOrder() throws Exception {
+		Socket clientSocket = new Socket("localhost", serverSocket.getLocalPort());
+		final SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_WRITE, null, null);
+		
+		PipelinedClient client = new PipelinedClient(clientSocket, Correlation.CORRELATION_ID, 16, 5, TimeUnit.SECONDS);
+		client.start();
+		DataLine query = new DataLine("query").addInfo("x");
+		List<CompletableFuture<DataLine>> futures = new ArrayList<CompletableFuture<DataLine>>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(client.send(query));
+		}
+		assertEquals("query::x", query.toString());
+		
+		// Answer in reverse order.
+		List<DataLine> queries = new ArrayList<DataLine>();
+		for (int i = 0; i < 10; i++) {
+			queries.add(new DataLine(server));
+		}
+		for (int i = 9; i >= 0; i--) {
+			DataLine response = new DataLine("answer").addInfo(i);
+			PipelinedClient.correlate(queries.get(i), response).writeTo(server);
+		}
+		for (int i = 0; i < 10; i++) {
+			DataLine response = futures.get(i).get(5, TimeUnit.SECONDS);
+			assertEquals(1, response.getInfoCount());
+			assertEquals(i, response.getIntInfo(0));
+		}
+		client.close();
+		server.close();
+	}
+	
+	@Test
+	public void testCorrelationId_SharedQuery() throws Exception {
+		Socket clientSocket = new Socket("localhost", serverSocket.getLocalPort());
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ_WRITE,
+				new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				return data;
+			}
+		}, null);
+		server.start();
+		
+		final PipelinedClient client = new PipelinedClient(clientSocket, Correlation.CORRELATION_ID, 64, 5, TimeUnit.SECONDS);
+		client.start();
+		final DataLine query = new DataLine("query").addInfo("x");
+		final List<CompletableFuture<DataLine>> futures = new CopyOnWriteArrayList<CompletableFuture<DataLine>>();
+		Thread[] senders = new Thread[4];
+		for (int t = 0; t < senders.length; t++) {
+			senders[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 100; i++) {
+						futures.add(client.send(query));
+					}
+				}
+			};
+			senders[t].start();
+		}
+		for (Thread sender : senders) {
+			sender.join();
+		}
+		assertEquals("query::x", query.toString());
+		for (CompletableFuture<DataLine> future : futures) {
+			assertEquals("query::x", future.get(5, TimeUnit.SECONDS).toString());
+		}
+		assertInFlight(0, client);
+		client.close();
+		server.stopHandler();
+	}
+	
+	@Test
+	public void testTimeout() throws Exception {
+		Socket clientSocket = new Socket("localhost", serverSocket.getLocalPort());
+		Socket serverSide = serverSocket.accept();
+		
+		PipelinedClient client = new PipelinedClient(clientSocket, Correlation.FIFO, 1, 100, TimeUnit.MILLISECONDS);
+		client.start();
+		CompletableFuture<DataLine> first = client.send(new DataLine("query"));
+		assertEquals(1, client.getInFlightCount());
+		try {
+			first.get(5, TimeUnit.SECONDS);
+			fail("Expected timeout.");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		
+		// The late response still has the first query's slot, so its place is kept.
+		assertEquals(1, client.getInFlightCount());
+		try {
+			client.send(new DataLine("query")).get(5, TimeUnit.SECONDS);
+			fail("Expected no room.");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		assertEquals(1, client.getInFlightCount());
+		
+		SocketHandler server = new SocketHandler(serverSide, Mode.MODE_WRITE, null, null);
+		server.writeLine("late");
+		assertInFlight(0, client);
+		CompletableFuture<DataLine> next = client.send(new DataLine("query"));
+		server.writeLine("answer");
+		assertEquals("answer", next.get(5, TimeUnit.SECONDS).toString());
+		client.close();
+		server.close();
+	}
+	
+	@Test
+	public void testClose() throws Exception {
+		Socket clientSocket = new Socket("localhost", serverSocket.getLocalPort());
+		Socket serverSide = serverSocket.accept();
+		
+		PipelinedClient client = new PipelinedClient(clientSocket, Correlation.CORRELATION_ID, 4, 5, TimeUnit.SECONDS);
+		client.start();
+		CompletableFuture<DataLine> future = client.send(new DataLine("query"));
+		serverSide.close();
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("Expected failure.");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertTrue(client.isClosed());
+		
+		// A query sent once closed fails at once, and gives back its place.
+		try {
+			client.send(new DataLine("query")).get(5, TimeUnit.SECONDS);
+			fail("Sent after close.");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertInFlight(0, client);
+	}
+	
+}
@@ -0,0 +1,112 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.law.network.ReconnectingSocketHandler.ConnectionState;
+import com.law.network.SocketHandler.Mode;
+import com.law.network.SocketHandlerTest.CollectingProcessor;
+import com.law.network.domain.HostMachine;
+
+/**
+ * @author Lloyd
+ */
+public class ReconnectingSocketHandlerTest {
+	
+	@Test
+	public void testReconnect() throws Exception {
+		ServerSocket serverSocket = new ServerSocket(0);
+		int port = serverSocket.getLocalPort();
+		final BlockingQueue<ConnectionState> states = new LinkedBlockingQueue<ConnectionState>();
+		ReconnectingSocketHandler client = new ReconnectingSocketHandler(new HostMachine("localhost", "127.0.0.1"),
+				port, Mode.MODE_WRITE, null, new SocketHandlerConfig())
+				.setBackoff(10, 50, TimeUnit.MILLISECONDS)
+				.setConnectionStateListener(new ConnectionStateListener() {
+					public void connectionStateChanged(ReconnectingSocketHandler reconnectingHandler,
+							ConnectionState state) {
+						states.add(state);
+					}
+				});
+		// Sent before the first connection, so it waits in the buffer.
+		client.send("line::0");
+		client.start();
+		BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		SocketHandler reader = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), null);
+		reader.start();
+		assertEquals(ConnectionState.CONNECTING, states.poll(5, TimeUnit.SECONDS));
+		assertEquals(ConnectionState.CONNECTED, states.poll(5, TimeUnit.SECONDS));
+		client.send(new DataLine("line").addInfo(1));
+		assertEquals("line::0", received.poll(5, TimeUnit.SECONDS));
+		assertEquals("line::1", received.poll(5, TimeUnit.SECONDS));
+		
+		// Take the server down, and break the connection.
+		serverSocket.close();
+		client.getSocketHandler().abort();
+		reader.stopHandler();
+		reader.close();
+		assertEquals(ConnectionState.DISCONNECTED, states.poll(5, TimeUnit.SECONDS));
+		for (int i = 2; i < 10; i++) {
+			client.send("line::" + i);
+		}
+		// Fails at least once while the server is down.
+		assertEquals(ConnectionState.CONNECTING, states.poll(5, TimeUnit.SECONDS));
+		assertEquals(ConnectionState.DISCONNECTED, states.poll(5, TimeUnit.SECONDS));
+		assertEquals(8, client.getOutboundCount());
+		
+		serverSocket = new ServerSocket();
+		serverSocket.setReuseAddress(true);
+		serverSocket.bind(new InetSocketAddress(port));
+		reader = new SocketHandler(serverSocket.accept(), Mode.MODE_READ, new CollectingProcessor(received), null);
+		reader.start();
+		for (int i = 2; i < 10; i++) {
+			assertEquals("line::" + i, received.poll(5, TimeUnit.SECONDS));
+		}
+		assertEquals(2, client.getConnectCount());
+		assertEquals(ConnectionState.CONNECTED, client.getState());
+		
+		client.close();
+		ConnectionState state;
+		while ((state = states.poll(5, TimeUnit.SECONDS)) != ConnectionState.CLOSED) {
+			assertNotNull(state);
+		}
+		assertNull(client.getSocketHandler());
+		client.send("dropped");
+		assertEquals(0, client.getOutboundCount());
+		reader.stopHandler();
+		reader.close();
+		serverSocket.close();
+	}
+	
+	@Test
+	public void testCloseUnstarted() {
+		ReconnectingSocketHandler client = new ReconnectingSocketHandler(new HostMachine("localhost", null),
+				1, Mode.MODE_WRITE, null, new SocketHandlerConfig());
+		client.close();
+		assertEquals(ConnectionState.CLOSED, client.getState());
+		try {
+			client.start();
+			fail("Started after close.");
+		}
+		catch (IllegalStateException e) {
+			// Expected.
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadBackoff() {
+		new ReconnectingSocketHandler(new HostMachine("localhost", null), 1, Mode.MODE_WRITE, null,
+				new SocketHandlerConfig()).setBackoff(100, 10, TimeUnit.MILLISECONDS);
+	}
+	
+}
@@ -0,0 +1,223 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.law.network.SocketHandler.Mode;
+import com.law.network.SocketHandlerTest.CollectingProcessor;
+import com.law.network.domain.HostMachine;
+
+/**
+ * @author Lloyd
+ */
+public class SocketHandlerPoolTest {
+	
+	private ServerSocket serverSocket;
+	private HostMachine host;
+	private int port;
+	private final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+	private final List<SocketHandler> accepted = new CopyOnWriteArrayList<SocketHandler>();
+	private SocketHandlerPool pool;
+	
+	@Before
+	public void setUp() throws IOException {
+		serverSocket = new ServerSocket(0);
+		host = new HostMachine("localhost", "127.0.0.1");
+		port = serverSocket.getLocalPort();
+		Thread acceptor = new Thread() {
+			@Override
+			public void run() {
+				try {
+					for (;;) {
+						Socket socket = serverSocket.accept();
+						SocketHandler reader = new SocketHandler(socket, Mode.MODE_READ,
+								new CollectingProcessor(received), null);
+						accepted.add(reader);
+						reader.start();
+					}
+				}
+				catch (IOException e) {
+					// Server socket closed.
+				}
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+		pool = new SocketHandlerPool(Mode.MODE_WRITE, null, null, new SocketHandlerConfig());
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		pool.close();
+		serverSocket.close();
+		for (SocketHandler reader : accepted) {
+			reader.stopHandler();
+			reader.close();
+		}
+	}
+	
+	@Test
+	public void testBorrowReuses() throws Exception {
+		SocketHandler first = pool.borrow(host, port);
+		pool.release(first);
+		assertEquals(1, pool.getIdleCount(host, port));
+		assertSame(first, pool.borrow(host, port));
+		assertEquals(0, pool.getIdleCount(host, port));
+		assertEquals(1, pool.getOpenCount());
+	}
+	
+	@Test
+	public void testSendTo() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			new DataLine("line").addInfo(i).sendTo(pool, host, port);
+		}
+		for (int i = 0; i < 10; i++) {
+			assertEquals("line::" + i, received.poll(5, TimeUnit.SECONDS));
+		}
+		new DataLine("last").writeTo(pool, host, port);
+		assertEquals("last", received.poll(5, TimeUnit.SECONDS));
+		assertEquals(1, pool.getOpenCount());
+	}
+	
+	@Test
+	public void testMaxIdle() throws Exception {
+		pool.setMaxIdle(1);
+		SocketHandler first = pool.borrow(host, port);
+		SocketHandler second = pool.borrow(host, port);
+		assertNotSame(first, second);
+		pool.release(first);
+		pool.release(second);
+		assertEquals(1, pool.getIdleCount(host, port));
+		assertEquals(1, pool.getOpenCount());
+		// Shut down gracefully, so closed once it has drained.
+		assertTrue(second.shutdownGracefully(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+		assertFalse(second.isOpen());
+	}
+	
+	@Test
+	public void testMaxIdle_Zero() throws Exception {
+		pool.setMaxIdle(0);
+		for (int i = 0; i < 10; i++) {
+			new DataLine("line").addInfo(i).sendTo(pool, host, port);
+		}
+		// Every handler is retired on release, but still writes its line.
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < 10; i++) {
+			String line = received.poll(5, TimeUnit.SECONDS);
+			assertNotNull(line);
+			lines.add(line);
+		}
+		for (int i = 0; i < 10; i++) {
+			assertTrue(lines.contains("line::" + i));
+		}
+		assertEquals(0, pool.getOpenCount());
+	}
+	
+	@Test
+	public void testMaxLifetime() throws Exception {
+		pool.setMaxLifetime(20, TimeUnit.MILLISECONDS);
+		SocketHandler first = pool.borrow(host, port);
+		pool.release(first);
+		Thread.sleep(50);
+		assertEquals(1, pool.evictIdle());
+		// The evicted handler is shut down gracefully, so it closes on its own thread.
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (first.isOpen() && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertFalse(first.isOpen());
+		assertNotSame(first, pool.borrow(host, port));
+	}
+	
+	@Test
+	public void testShutdownListenerEvicts() throws Exception {
+		final AtomicInteger closing = new AtomicInteger();
+		pool = new SocketHandlerPool(Mode.MODE_WRITE, null, new SocketShutdownListener() {
+			public void socketClosing(SocketHandler socketHandler) {
+				closing.incrementAndGet();
+			}
+		}, new SocketHandlerConfig());
+		SocketHandler first = pool.borrow(host, port);
+		pool.release(first);
+		first.stopHandler();
+		long deadline = System.currentTimeMillis() + 5000;
+		while (pool.getOpenCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(5);
+		}
+		assertEquals(0, pool.getIdleCount(host, port));
+		assertEquals(1, closing.get());
+		assertNotSame(first, pool.borrow(host, port));
+	}
+	
+	@Test
+	public void testFill() throws Exception {
+		pool.setMinIdle(3);
+		pool.fill(host, port);
+		assertEquals(3, pool.getIdleCount(host, port));
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testRelease_NotPooled() throws Exception {
+		Socket socket = new Socket("localhost", port);
+		SocketHandler other = new SocketHandler(socket, Mode.MODE_WRITE, null, null);
+		try {
+			pool.release(other);
+		}
+		finally {
+			other.close();
+		}
+	}
+	
+	@Test
+	public void testRelease_Evicted() throws Exception {
+		SocketHandler first = pool.borrow(host, port);
+		first.stopHandler();
+		first.join(5000);
+		assertEquals(0, pool.getOpenCount());
+		// The connection closed while borrowed, so giving it back does nothing.
+		pool.release(first);
+		assertEquals(0, pool.getIdleCount(host, port));
+		assertNotSame(first, pool.borrow(host, port));
+	}
+	
+	@Test
+	public void testRelease_Twice() throws Exception {
+		SocketHandler first = pool.borrow(host, port);
+		pool.release(first);
+		try {
+			pool.release(first);
+			fail("Released twice.");
+		}
+		catch (IllegalStateException e) {
+			// Expected.
+		}
+		assertEquals(1, pool.getIdleCount(host, port));
+		SocketHandler second = pool.borrow(host, port);
+		assertSame(first, second);
+		assertNotSame(second, pool.borrow(host, port));
+	}
+	
+	@Test (expected=IllegalStateException.class)
+	public void testBorrow_Closed() throws Exception {
+		pool.close();
+		pool.borrow(host, port);
+	}
+	
+}
@@ -0,0 +1,735 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.law.network.SocketHandler.ExecutionMode;
+import com.law.network.SocketHandler.Mode;
+import com.law.network.SocketHandler.OverflowPolicy;
+import com.law.network.SocketHandler.WireFormat;
+
+/**
+ * @author Lloyd
+ */
+public class SocketHandlerTest {
+	
+	private ServerSocket serverSocket;
+	
+	@Before
+	public void setUp() throws IOException {
+		serverSocket = new ServerSocket(0);
+	}
+	
+	@After
+	public void tearDown() throws IOException {
+		serverSocket.close();
+	}
+	
+	private Socket connect() throws IOException {
+		return new Socket("localhost", serverSocket.getLocalPort());
+	}
+	
+	@Test
+	public void testWriteAndRead() throws Exception {
+		Socket clientSocket = connect();
+		Socket serverSide = serverSocket.accept();
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		SocketHandler reader = new SocketHandler(serverSide, Mode.MODE_READ,
+				new CollectingProcessor(received), null);
+		SocketHandler writer = new SocketHandler(clientSocket, Mode.MODE_WRITE, null, null);
+		reader.start();
+		writer.start();
+		for (int i = 0; i < 100; i++) {
+			writer.send("line::" + i);
+		}
+		for (int i = 0; i < 100; i++) {
+			assertEquals("line::" + i, received.poll(5, TimeUnit.SECONDS));
+		}
+		writer.stopHandler();
+		reader.stopHandler();
+	}
+	
+	@Test
+	public void testVirtualThread() throws Exception {
+		assumeTrue(VirtualThreads.isSupported());
+		
+		Socket clientSocket = connect();
+		Socket serverSide = serverSocket.accept();
+		final BlockingQueue<Long> ids = new LinkedBlockingQueue<Long>();
+		final CountDownLatch closed = new CountDownLatch(1);
+		SocketHandlerConfig config = new SocketHandlerConfig()
+				.setExecutionMode(ExecutionMode.VIRTUAL_THREAD);
+		SocketHandler reader = new SocketHandler(serverSide, Mode.MODE_READ,
+				new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				ids.add(fromId);
+				return null;
+			}
+		}, new SocketShutdownListener() {
+			public void socketClosing(SocketHandler socketHandler) {
+				closed.countDown();
+			}
+		}, config);
+		SocketHandler writer = new SocketHandler(clientSocket, Mode.MODE_WRITE, null, null, config);
+		reader.start();
+		writer.start();
+		writer.send("a");
+		writer.send("b");
+		assertEquals(Long.valueOf(reader.getId()), ids.poll(5, TimeUnit.SECONDS));
+		assertEquals(Long.valueOf(reader.getId()), ids.poll(5, TimeUnit.SECONDS));
+		writer.stopHandler();
+		reader.stopHandler();
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testWriteBatchSettings() throws Exception {
+		SocketHandlerConfig[] configs = {
+				new SocketHandlerConfig().setMaxWriteBatchSize(1),
+				new SocketHandlerConfig().setMaxWriteBatchSize(16),
+				new SocketHandlerConfig().setMaxWriteBatchSize(1000)
+						.setMaxWriteLinger(2, TimeUnit.MILLISECONDS)
+		};
+		// Every line is queued before the writer starts, so each batch is full.
+		long[] flushCounts = {500, 32, 1};
+		for (int c = 0; c < configs.length; c++) {
+			Socket clientSocket = connect();
+			Socket serverSide = serverSocket.accept();
+			final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+			SocketHandler reader = new SocketHandler(serverSide, Mode.MODE_READ,
+					new CollectingProcessor(received), null);
+			SocketHandler writer = new SocketHandler(clientSocket, Mode.MODE_WRITE, null, null, configs[c]);
+			for (int i = 0; i < 500; i++) {
+				writer.send("line::" + i);
+			}
+			reader.start();
+			writer.start();
+			for (int i = 0; i < 500; i++) {
+				assertEquals("line::" + i, received.poll(5, TimeUnit.SECONDS));
+			}
+			// The flush is counted just after the lines go out.
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (writer.getMetrics().getFlushCount() < flushCounts[c] && System.nanoTime() < deadline) {
+				Thread.sleep(10);
+			}
+			assertEquals(flushCounts[c], writer.getMetrics().getFlushCount());
+			writer.stopHandler();
+			reader.stopHandler();
+		}
+	}
+	
+	@Test
+	public void testWriteBatchLinger_WriteLine() throws Exception {
+		Socket clientSocket = connect();
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		SocketHandler reader = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), null);
+		SocketHandler writer = new SocketHandler(clientSocket, Mode.MODE_WRITE, null, null,
+				new SocketHandlerConfig().setMaxWriteBatchSize(1000).setMaxWriteLinger(5, TimeUnit.SECONDS));
+		reader.start();
+		writer.start();
+		writer.send("queued");
+		Thread.sleep(100);
+		// The writer is lingering for more lines, which must not hold up a direct write.
+		long start = System.nanoTime();
+		writer.writeLine("direct");
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+		assertEquals("queued", received.poll(2, TimeUnit.SECONDS));
+		assertEquals("direct", received.poll(2, TimeUnit.SECONDS));
+		writer.stopHandler();
+		reader.stopHandler();
+	}
+	
+	@Test
+	public void testReadWrite_NullResponse() throws Exception {
+		SocketHandler client = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ_WRITE,
+				new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				return data.equals("answer") ? "yes" : null;
+			}
+		}, null);
+		server.start();
+		client.writeLine("nothing");
+		assertEquals("", client.readLine());
+		client.writeLine("answer");
+		assertEquals("yes", client.readLine());
+		client.close();
+		server.stopHandler();
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testReadWrite_DeferredProcessor() throws Exception {
+		Socket clientSocket = connect();
+		OrderedProcessorPool pool = new OrderedProcessorPool(null, 1, 10, OrderedProcessorPool.Overflow.BLOCK);
+		try {
+			new SocketHandler(serverSocket.accept(), Mode.MODE_READ_WRITE, pool, null);
+		}
+		finally {
+			pool.shutdown();
+			clientSocket.close();
+		}
+	}
+	
+	@Test (expected=IllegalArgumentException.class)
+	public void testWriteBatchSize_Zero() {
+		new SocketHandlerConfig().setMaxWriteBatchSize(0);
+	}
+	
+	@Test (expected=IllegalThreadStateException.class)
+	public void testStartTwice() throws Exception {
+		SocketHandler handler = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		try {
+			handler.start();
+			handler.start();
+		}
+		finally {
+			handler.stopHandler();
+		}
+	}
+	
+	@Test
+	public void testBinaryWireFormat() throws Exception {
+		final SocketHandler client = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ, null, null);
+		FutureTask<WireFormat> request = new FutureTask<WireFormat>(new Callable<WireFormat>() {
+			public WireFormat call() throws Exception {
+				return client.requestWireFormat(WireFormat.BINARY, 5000);
+			}
+		});
+		new Thread(request).start();
+		assertEquals(WireFormat.BINARY, server.acceptWireFormat(WireFormat.BINARY));
+		assertEquals(WireFormat.BINARY, request.get(5, TimeUnit.SECONDS));
+		
+		byte[] bytes = {(byte) 0xff, 0, '\n', ':'};
+		new DataLine("query").addInfo(-7).addInfo(1L << 40).addInfo(true)
+				.addInfo(bytes).addInfo("a::b").writeTo(client);
+		client.writeLine("plain::text");
+		DataLine line = new DataLine(server);
+		assertEquals("query", line.getName());
+		assertEquals(5, line.getInfoCount());
+		assertEquals(-7, line.getIntInfo(0));
+		assertEquals(1L << 40, line.getLongInfo(1));
+		assertTrue(line.getBooleanInfo(2));
+		assertTrue(Arrays.equals(bytes, line.getByteArrayInfo(3)));
+		assertEquals("a::b", line.getInfo(4));
+		assertEquals("plain::text", server.readLine());
+		client.close();
+		server.close();
+	}
+	
+	@Test
+	public void testDeflateWireFormat() throws Exception {
+		final SocketHandler client = new SocketHandler(connect(), Mode.MODE_WRITE, null, null,
+				new SocketHandlerConfig().setCompressionThreshold(256));
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ, null, null);
+		FutureTask<WireFormat> request = new FutureTask<WireFormat>(new Callable<WireFormat>() {
+			public WireFormat call() throws Exception {
+				return client.requestWireFormat(WireFormat.BINARY_DEFLATE, 5000);
+			}
+		});
+		new Thread(request).start();
+		assertEquals(WireFormat.BINARY_DEFLATE, server.acceptWireFormat(WireFormat.BINARY, WireFormat.BINARY_DEFLATE));
+		assertEquals(WireFormat.BINARY_DEFLATE, request.get(5, TimeUnit.SECONDS));
+		
+		StringBuilder report = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			report.append("row ").append(i % 100).append(" of the report\n");
+		}
+		long bytesInBefore = server.getMetrics().getBytesIn();
+		for (int i = 0; i < 3; i++) {
+			new DataLine("report").addInfo(report.toString()).addInfo(i).writeTo(client);
+			client.writeLine("small::" + i);
+		}
+		for (int i = 0; i < 3; i++) {
+			DataLine line = new DataLine(server);
+			assertEquals("report", line.getName());
+			assertEquals(report.toString(), line.getInfo(0));
+			assertEquals(i, line.getIntInfo(1));
+			assertEquals("small::" + i, server.readLine());
+		}
+		assertTrue(server.getMetrics().getBytesIn() - bytesInBefore < report.length() / 5);
+		assertTrue(client.getMetrics().getCompressionRatio() > 5.0);
+		assertTrue(client.getMetrics().getCompressionCpuNanos() > 0);
+		assertTrue(server.getMetrics().getDecompressionCpuNanos() > 0);
+		client.close();
+		server.close();
+	}
+	
+	@Test(timeout = 10000)
+	public void testDeflateWireFormat_MalformedFrame() throws Exception {
+		Socket clientSocket = connect();
+		final SocketHandler client = new SocketHandler(clientSocket, Mode.MODE_WRITE, null, null);
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ, null, null);
+		FutureTask<WireFormat> request = new FutureTask<WireFormat>(new Callable<WireFormat>() {
+			public WireFormat call() throws Exception {
+				return client.requestWireFormat(WireFormat.BINARY_DEFLATE, 5000);
+			}
+		});
+		new Thread(request).start();
+		assertEquals(WireFormat.BINARY_DEFLATE, server.acceptWireFormat(WireFormat.BINARY_DEFLATE));
+		assertEquals(WireFormat.BINARY_DEFLATE, request.get(5, TimeUnit.SECONDS));
+		
+		// 100 zeros deflated, claiming a 5000 byte body, with input left over
+		// after the deflate stream ends.
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		deflater.setInput(new byte[100]);
+		deflater.finish();
+		byte[] deflated = new byte[256];
+		int length = deflater.deflate(deflated);
+		deflater.end();
+		ByteBuffer frame = ByteBuffer.allocate(8 + length + 10)
+				.putInt(FrameCompressor.COMPRESSED_FLAG | (4 + length + 10))
+				.putInt(5000);
+		frame.put(deflated, 0, length).put(new byte[10]);
+		clientSocket.getOutputStream().write(frame.array());
+		clientSocket.getOutputStream().flush();
+		try {
+			server.readLine();
+			fail("Read a malformed frame.");
+		}
+		catch (IOException e) {
+			// Expected.
+		}
+		client.close();
+		server.close();
+	}
+	
+	@Test
+	public void testRequestWireFormat_TextPeer() throws Exception {
+		SocketHandler client = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ_WRITE,
+				new SocketReadProcessor() {
+			public String processDataFromSocket(String data, long fromId) {
+				return "echo::" + data;
+			}
+		}, null);
+		server.start();
+		assertEquals(WireFormat.TEXT, client.requestWireFormat(WireFormat.BINARY, 5000));
+		client.writeLine("ping");
+		assertEquals("echo::ping", client.readLine());
+		client.close();
+		server.stopHandler();
+	}
+	
+	@Test
+	public void testRequestWireFormat_ReadPeer() throws Exception {
+		SocketHandler client = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), null);
+		server.start();
+		// Answered at once, though the peer never calls acceptWireFormat().
+		long start = System.nanoTime();
+		assertEquals(WireFormat.TEXT, client.requestWireFormat(WireFormat.BINARY, 5000));
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+		client.writeLine("ping");
+		assertEquals("ping", received.poll(5, TimeUnit.SECONDS));
+		client.close();
+		server.stopHandler();
+	}
+	
+	@Test
+	public void testRequestWireFormat_Timeout() throws Exception {
+		SocketHandler client = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		Socket serverSide = serverSocket.accept();
+		assertEquals(WireFormat.TEXT, client.requestWireFormat(WireFormat.BINARY, 100));
+		assertEquals(WireFormat.TEXT, client.getWireFormat());
+		client.close();
+		serverSide.close();
+	}
+	
+	@Test
+	public void testAcceptWireFormat_TextPeer() throws Exception {
+		SocketHandler client = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), null);
+		client.writeLine("first");
+		client.writeLine("second");
+		assertEquals(WireFormat.TEXT, server.acceptWireFormat(WireFormat.BINARY));
+		server.start();
+		assertEquals("first", received.poll(5, TimeUnit.SECONDS));
+		assertEquals("second", received.poll(5, TimeUnit.SECONDS));
+		client.close();
+		server.stopHandler();
+	}
+	
+	@Test
+	public void testDataLineProcessor() throws Exception {
+		SocketHandler client = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ_WRITE, null, null);
+		final DataLine response = new DataLine((String) null);
+		final List<DataLine> seen = new ArrayList<DataLine>();
+		server.setDataLineProcessor(new DataLineProcessor() {
+			public DataLine processDataLine(DataLine line, long fromId) {
+				seen.add(line);
+				return response.reset("answer").addInfo(line.getInfo(0));
+			}
+		});
+		server.start();
+		DataLine answer = new DataLine((String) null);
+		for (int i = 0; i < 3; i++) {
+			client.writeLine(new DataLine("query").addInfo(i));
+			assertTrue(client.readLine(answer));
+			assertEquals("answer::" + i, answer.toString());
+		}
+		client.writeLine("query::\u00e9");
+		assertTrue(client.readLine(answer));
+		assertEquals("\u00e9", answer.getInfo(0));
+		assertEquals(4, seen.size());
+		assertSame(seen.get(0), seen.get(3));
+		client.close();
+		server.stopHandler();
+	}
+	
+	/**
+	 * Send five lines to an unstarted handler whose out buffer holds three,
+	 * then start it and return what arrives.
+	 */
+	private List<String> sendFiveToThree(OverflowPolicy policy, SocketHandler[] writerOut) throws Exception {
+		Socket clientSocket = connect();
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		SocketHandler reader = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), null);
+		reader.start();
+		SocketHandler writer = new SocketHandler(clientSocket, Mode.MODE_WRITE, null, null,
+				new SocketHandlerConfig().setMaxOutboundLines(3).setOutboundOverflowPolicy(policy));
+		writerOut[0] = writer;
+		for (int i = 0; i < 5; i++) {
+			writer.send(Integer.toString(i));
+		}
+		assertEquals(3, writer.getOutboundCount());
+		assertEquals(2, writer.getDroppedCount());
+		writer.start();
+		List<String> lines = new ArrayList<String>();
+		for (int i = 0; i < 3; i++) {
+			lines.add(received.poll(5, TimeUnit.SECONDS));
+		}
+		writer.stopHandler();
+		reader.stopHandler();
+		return lines;
+	}
+	
+	@Test
+	public void testOutbound_DropNewest() throws Exception {
+		assertEquals(Arrays.asList("0", "1", "2"), sendFiveToThree(OverflowPolicy.DROP_NEWEST, new SocketHandler[1]));
+	}
+	
+	@Test
+	public void testOutbound_DropOldest() throws Exception {
+		assertEquals(Arrays.asList("2", "3", "4"), sendFiveToThree(OverflowPolicy.DROP_OLDEST, new SocketHandler[1]));
+	}
+	
+	@Test
+	public void testOutbound_Fail() throws Exception {
+		SocketHandler writer = new SocketHandler(connect(), Mode.MODE_WRITE, null, null,
+				new SocketHandlerConfig().setMaxOutboundLines(2).setOutboundOverflowPolicy(OverflowPolicy.FAIL));
+		writer.send("a");
+		writer.send("b");
+		try {
+			writer.send("c");
+			fail("Expected full buffer.");
+		}
+		catch (IllegalStateException e) {
+			// Expected.
+		}
+		assertEquals(2, writer.getOutboundCount());
+		writer.close();
+	}
+	
+	@Test
+	public void testOutbound_BlockAndWatermarks() throws Exception {
+		Socket clientSocket = connect();
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		SocketHandler reader = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), null);
+		reader.start();
+		final BlockingQueue<String> events = new LinkedBlockingQueue<String>();
+		final SocketHandler writer = new SocketHandler(clientSocket, Mode.MODE_WRITE, null, null,
+				new SocketHandlerConfig().setMaxOutboundLines(3).setOutboundWatermarks(0, 2)
+				.setOutboundWatermarkListener(new OutboundWatermarkListener() {
+			public void outboundHigh(SocketConnection socketHandler) {
+				events.add("high");
+			}
+			
+			public void outboundLow(SocketConnection socketHandler) {
+				events.add("low");
+			}
+		}));
+		Thread sender = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < 10; i++) {
+					writer.send(Integer.toString(i));
+				}
+			}
+		};
+		sender.start();
+		assertEquals("high", events.poll(5, TimeUnit.SECONDS));
+		sender.join(100);
+		assertTrue(sender.isAlive());
+		assertEquals(3, writer.getOutboundCount());
+		writer.start();
+		for (int i = 0; i < 10; i++) {
+			assertEquals(Integer.toString(i), received.poll(5, TimeUnit.SECONDS));
+		}
+		sender.join(5000);
+		assertEquals(0, writer.getDroppedCount());
+		assertEquals("low", events.poll(5, TimeUnit.SECONDS));
+		writer.stopHandler();
+		reader.stopHandler();
+	}
+	
+	@Test
+	public void testMetrics() throws Exception {
+		Socket clientSocket = connect();
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		SocketHandler reader = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), null, new SocketHandlerConfig().setMBeanRegistered(true));
+		SocketHandler writer = new SocketHandler(clientSocket, Mode.MODE_WRITE, null, null);
+		long globalLinesIn = SocketHandlerMetrics.getGlobal().getLinesIn();
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("com.law.network:type=SocketHandler,id=" + reader.getId());
+		// Nothing is registered until the handler starts.
+		assertFalse(server.isRegistered(name));
+		reader.start();
+		writer.start();
+		for (int i = 0; i < 10; i++) {
+			writer.send("line");
+		}
+		for (int i = 0; i < 10; i++) {
+			assertNotNull(received.poll(5, TimeUnit.SECONDS));
+		}
+		SocketHandlerMetrics in = reader.getMetrics();
+		SocketHandlerMetrics out = writer.getMetrics();
+		// Counts are recorded after the line is handed on, so let both sides settle.
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while ((in.getProcessorCallCount() < 10 || out.getFlushCount() < 1) && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(10, out.getLinesOut());
+		assertEquals(10, in.getLinesIn());
+		assertEquals(10, in.getProcessorCallCount());
+		assertEquals(out.getBytesOut(), in.getBytesIn());
+		assertEquals(10 * ("line" + System.getProperty("line.separator")).length(), in.getBytesIn());
+		assertTrue(out.getFlushCount() >= 1 && out.getFlushCount() <= 10);
+		assertEquals(0, out.getOutboundDepth());
+		assertTrue(SocketHandlerMetrics.getGlobal().getLinesIn() >= globalLinesIn + 10);
+		
+		assertEquals(10L, server.getAttribute(name, "LinesIn"));
+		assertTrue(server.isRegistered(new ObjectName("com.law.network:type=SocketHandlers")));
+		reader.stopHandler();
+		writer.stopHandler();
+		reader.close();
+		assertFalse(server.isRegistered(name));
+		assertTrue(SocketHandlerMetrics.getGlobal().getLinesIn() >= globalLinesIn + 10);
+	}
+	
+	@Test
+	public void testMaxLineLength() throws Exception {
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		final CountDownLatch closed = new CountDownLatch(1);
+		SocketHandler client = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), new SocketShutdownListener() {
+					public void socketClosing(SocketHandler socketHandler) {
+						closed.countDown();
+					}
+				}, new SocketHandlerConfig().setMaxLineLength(1000));
+		server.start();
+		char[] tooLong = new char[1001];
+		Arrays.fill(tooLong, 'x');
+		client.writeLine("short");
+		client.writeLine(new String(tooLong));
+		assertEquals("short", received.poll(5, TimeUnit.SECONDS));
+		assertTrue(closed.await(5, TimeUnit.SECONDS));
+		assertTrue(received.isEmpty());
+		client.close();
+	}
+	
+	@Test
+	public void testWriteStream() throws Exception {
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		final List<String> streams = new ArrayList<String>();
+		SocketHandler client = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		SocketHandler server = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), null, new SocketHandlerConfig().setMaxLineLength(1000));
+		server.setStreamProcessor(new StreamProcessor() {
+			public String processStream(DataLine line, InputStream data, long length, long fromId)
+			throws IOException {
+				long sum = 0;
+				long count = 0;
+				byte[] chunk = new byte[4096];
+				int n;
+				// Read only half of the second stream; the rest must be skipped.
+				long toRead = line.getInfo(0).equals("half") ? length / 2 : length;
+				while (count < toRead && (n = data.read(chunk, 0, (int) Math.min(chunk.length, toRead - count))) > 0) {
+					for (int i = 0; i < n; i++) {
+						sum += chunk[i];
+					}
+					count += n;
+				}
+				streams.add(line.getName() + " " + line.getInfo(0) + " " + length + " " + count + " " + sum);
+				return "";
+			}
+		});
+		server.start();
+		
+		byte[] field = new byte[3 * 1000 * 1000];
+		long sum = 0;
+		for (int i = 0; i < field.length; i++) {
+			field[i] = (byte) i;
+			sum += field[i];
+		}
+		client.writeLine("before");
+		client.writeStream(new DataLine("upload").addInfo("whole"), new ByteArrayInputStream(field), field.length);
+		client.writeStream(new DataLine("upload").addInfo("half"), new ByteArrayInputStream(field), 10000);
+		client.writeLine("after");
+		assertEquals("before", received.poll(5, TimeUnit.SECONDS));
+		assertEquals("after", received.poll(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("upload whole " + field.length + " " + field.length + " " + sum,
+				"upload half 10000 5000 " + partialSum(field, 5000)), streams);
+		client.close();
+		server.stopHandler();
+	}
+	
+	@Test
+	public void testShutdownGracefully() throws Exception {
+		final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		final CountDownLatch readerClosed = new CountDownLatch(1);
+		SocketHandler writer = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		SocketHandler reader = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), new SocketShutdownListener() {
+					public void socketClosing(SocketHandler socketHandler) {
+						readerClosed.countDown();
+					}
+				});
+		for (int i = 0; i < 1000; i++) {
+			writer.send("line::" + i);
+		}
+		reader.start();
+		writer.start();
+		CompletableFuture<Boolean> shutdown = writer.shutdownGracefully(5, TimeUnit.SECONDS);
+		writer.send("too late");
+		assertTrue(shutdown.get(5, TimeUnit.SECONDS));
+		assertFalse(writer.isOpen());
+		// The reader sees the end of the stream once every line is written.
+		assertTrue(readerClosed.await(5, TimeUnit.SECONDS));
+		assertEquals(1000, received.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("line::" + i, received.poll());
+		}
+		assertTrue(reader.shutdownGracefully(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+	}
+	
+	@Test
+	public void testShutdownGracefully_Deadline() throws Exception {
+		SocketHandler writer = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		SocketHandler reader = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(new LinkedBlockingQueue<String>()), null);
+		SocketHandler unstarted = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		serverSocket.accept().close();
+		// The reader is never started, so the writer cannot drain.
+		char[] chars = new char[64 * 1024];
+		Arrays.fill(chars, 'x');
+		String line = new String(chars);
+		writer.start();
+		for (int i = 0; i < 200; i++) {
+			writer.send(line);
+		}
+		long startNanos = System.nanoTime();
+		CompletableFuture<Boolean> shutdown = SocketHandler.shutdownGracefully(
+				Arrays.asList(writer, unstarted), 200, TimeUnit.MILLISECONDS);
+		assertFalse(shutdown.get(5, TimeUnit.SECONDS));
+		assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(200));
+		assertFalse(writer.isOpen());
+		assertFalse(unstarted.isOpen());
+		reader.close();
+	}
+	
+	@Test
+	public void testShutdownGracefully_OtherConnection() throws Exception {
+		SocketHandler writer = new SocketHandler(connect(), Mode.MODE_WRITE, null, null);
+		serverSocket.accept().close();
+		writer.start();
+		try {
+			SocketHandler.shutdownGracefully(Arrays.asList(writer, otherConnection()), 1, TimeUnit.SECONDS);
+			fail("Shut down another kind of connection.");
+		}
+		catch (IllegalArgumentException e) {
+			// Expected.
+		}
+		// Nothing was shut down.
+		assertTrue(writer.isOpen());
+		writer.close();
+	}
+	
+	/**
+	 * Make a connection which is neither kind of socket handler.
+	 */
+	static SocketConnection otherConnection() {
+		return (SocketConnection) Proxy.newProxyInstance(SocketConnection.class.getClassLoader(),
+				new Class<?>[] {SocketConnection.class}, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						return null;
+					}
+				});
+	}
+	
+	static private long partialSum(byte[] bytes, int count) {
+		long sum = 0;
+		for (int i = 0; i < count; i++) {
+			sum += bytes[i];
+		}
+		return sum;
+	}
+	
+	static class CollectingProcessor implements SocketReadProcessor {
+		
+		private final BlockingQueue<String> received;
+		
+		CollectingProcessor(BlockingQueue<String> received) {
+			this.received = received;
+		}
+		
+		public String processDataFromSocket(String data, long fromId) {
+			received.add(data);
+			return "";
+		}
+		
+	}
+	
+}
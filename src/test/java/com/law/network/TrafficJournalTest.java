@@ -0,0 +1,193 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.law.network.SocketHandler.Mode;
+import com.law.network.SocketHandlerTest.CollectingProcessor;
+
+/**
+ * @author Lloyd
+ */
+public class TrafficJournalTest {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testAppendAndRead() throws Exception {
+		File dir = new File(folder.getRoot(), "journal");
+		TrafficJournal journal = new TrafficJournal(dir, 128);
+		for (int i = 0; i < 20; i++) {
+			journal.append(7, i % 2 == 0, "line::" + i);
+		}
+		journal.append(8, false, "café::€");
+		char[] chars = "xxname::infoxx".toCharArray();
+		journal.append(9, true, chars, 2, 10);
+		journal.append(9, false, "");
+		byte[] frame = BinaryFrameCodec.encode(new DataLineParser("framed::1::2"));
+		journal.append(10, TrafficJournal.FLAG_FRAME, frame, BinaryFrameCodec.HEADER_LENGTH,
+				frame.length - BinaryFrameCodec.HEADER_LENGTH);
+		journal.close();
+		journal.append(11, false, "after close");
+		assertTrue(TrafficJournalReader.segments(dir).length > 1);
+		
+		TrafficJournalReader reader = new TrafficJournalReader(dir);
+		long lastTime = 0;
+		for (int i = 0; i < 20; i++) {
+			assertTrue(reader.next());
+			assertEquals("line::" + i, reader.getLine());
+			assertEquals(7, reader.getConnectionId());
+			assertEquals(i % 2 == 0, reader.isOutbound());
+			assertTrue(reader.getTimeNanos() >= lastTime);
+			lastTime = reader.getTimeNanos();
+		}
+		assertTrue(reader.next());
+		assertEquals("café::€", reader.getLine());
+		assertTrue(reader.next());
+		assertEquals("name::info", reader.getLine());
+		assertTrue(reader.isOutbound());
+		assertTrue(reader.next());
+		assertEquals("", reader.getLine());
+		assertTrue(reader.next());
+		assertEquals("framed::1::2", reader.getLine());
+		assertEquals("framed", reader.getDataLine().getName());
+		assertFalse(reader.next());
+	}
+	
+	@Test
+	public void testReopen() throws Exception {
+		File dir = folder.getRoot();
+		TrafficJournal journal = new TrafficJournal(dir, 1024);
+		journal.append(1, false, "first");
+		journal.close();
+		journal = new TrafficJournal(dir, 1024);
+		journal.append(1, false, "second");
+		journal.close();
+		
+		TrafficJournalReader reader = new TrafficJournalReader(dir);
+		assertTrue(reader.next());
+		assertEquals("first", reader.getLine());
+		assertTrue(reader.next());
+		assertEquals("second", reader.getLine());
+		assertFalse(reader.next());
+	}
+	
+	@Test
+	public void testConcurrentAppend() throws Exception {
+		File dir = folder.getRoot();
+		final TrafficJournal journal = new TrafficJournal(dir, 256);
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final int id = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < 500; i++) {
+						journal.append(id, false, "line::" + i);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		journal.append(9, true, new String(new char[300]).replace('\0', 'x'));
+		journal.close();
+		
+		TrafficJournalReader reader = new TrafficJournalReader(dir);
+		int[] nextLine = new int[threads.length];
+		while (reader.next() && reader.getConnectionId() != 9) {
+			int id = (int) reader.getConnectionId();
+			assertEquals("line::" + nextLine[id]++, reader.getLine());
+		}
+		for (int count : nextLine) {
+			assertEquals(500, count);
+		}
+		assertEquals(300, reader.getLine().length());
+		assertFalse(reader.next());
+	}
+	
+	@Test
+	public void testHandlerCapture() throws Exception {
+		File dir = folder.getRoot();
+		TrafficJournal journal = new TrafficJournal(dir, 4096);
+		SocketHandlerConfig config = new SocketHandlerConfig().setJournal(journal);
+		ServerSocket serverSocket = new ServerSocket(0);
+		Socket clientSocket = new Socket("localhost", serverSocket.getLocalPort());
+		BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		SocketHandler reader = new SocketHandler(serverSocket.accept(), Mode.MODE_READ,
+				new CollectingProcessor(received), null, config);
+		SocketHandler writer = new SocketHandler(clientSocket, Mode.MODE_WRITE, null, null, config);
+		serverSocket.close();
+		reader.start();
+		writer.start();
+		for (int i = 0; i < 10; i++) {
+			writer.send("line::" + i);
+		}
+		for (int i = 0; i < 10; i++) {
+			assertNotNull(received.poll(5, TimeUnit.SECONDS));
+		}
+		writer.stopHandler();
+		reader.stopHandler();
+		journal.close();
+		
+		TrafficJournalReader journalReader = new TrafficJournalReader(dir);
+		int outbound = 0;
+		int inbound = 0;
+		while (journalReader.next()) {
+			if (journalReader.isOutbound()) {
+				assertEquals(writer.getId(), journalReader.getConnectionId());
+				assertEquals("line::" + outbound++, journalReader.getLine());
+			}
+			else {
+				assertEquals(reader.getId(), journalReader.getConnectionId());
+				assertEquals("line::" + inbound++, journalReader.getLine());
+			}
+		}
+		assertEquals(10, outbound);
+		assertEquals(10, inbound);
+	}
+	
+	@Test
+	public void testReplay() throws Exception {
+		File dir = folder.getRoot();
+		TrafficJournal journal = new TrafficJournal(dir, 4096);
+		journal.append(3, false, "first");
+		journal.append(3, true, "response");
+		Thread.sleep(100);
+		journal.append(4, false, "second");
+		journal.close();
+		
+		BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+		long startNanos = System.nanoTime();
+		assertEquals(2, new TrafficReplayer(dir).setSpeed(2.0).replayTo(new CollectingProcessor(received)));
+		assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(50));
+		assertEquals("first", received.poll());
+		assertEquals("second", received.poll());
+		
+		assertEquals(1, new TrafficReplayer(dir).setSpeed(Double.POSITIVE_INFINITY).setOutbound(true)
+				.replayTo(new CollectingProcessor(received)));
+		assertEquals("response", received.poll());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testReplay_BadSpeed() {
+		new TrafficReplayer(folder.getRoot()).setSpeed(0);
+	}
+	
+}
@@ -0,0 +1,117 @@
+/*
+ * Created on Oct 16, 2026
+ */
+package com.law.network.service;
+
+import static org.junit.Assert.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.law.network.domain.HostMachine;
+
+/**
+ * @author Lloyd
+ */
+public class HostServiceImplTest {
+	
+	@Test
+	public void testResolve() throws Exception {
+		HostService hostService = new HostServiceImpl();
+		HostMachine host = hostService.resolve("127.0.0.1").get(5, TimeUnit.SECONDS);
+		assertEquals("127.0.0.1", host.getHostAddress());
+		assertNotNull(host.getHostName());
+		
+		// Cached, and each caller gets its own copy.
+		host.setHostAddress("changed");
+		CompletableFuture<HostMachine> cached = hostService.resolve("127.0.0.1");
+		assertTrue(cached.isDone());
+		assertEquals("127.0.0.1", cached.get().getHostAddress());
+	}
+	
+	@Test
+	public void testResolve_Stale() throws Exception {
+		HostService hostService = new HostServiceImpl(500, 10, TimeUnit.MILLISECONDS);
+		hostService.resolve("127.0.0.1").get(5, TimeUnit.SECONDS);
+		Thread.sleep(600);
+		
+		// Past its time to live, the host is served from the cache while it is looked up again.
+		for (int i = 0; i < 10; i++) {
+			CompletableFuture<HostMachine> stale = hostService.resolve("127.0.0.1");
+			assertTrue(stale.isDone());
+			assertEquals("127.0.0.1", stale.get().getHostAddress());
+			Thread.sleep(5);
+		}
+	}
+	
+	@Test
+	public void testResolve_Expired() throws Exception {
+		HostServiceImpl hostService = new HostServiceImpl(10, 10, TimeUnit.MILLISECONDS);
+		hostService.resolve("127.0.0.1").get(5, TimeUnit.SECONDS);
+		assertTrue(hostService.isCached("127.0.0.1"));
+		Thread.sleep(50);
+		
+		// Past its grace period the host is dropped, by any later lookup.
+		hostService.resolve("localhost");
+		assertFalse(hostService.isCached("127.0.0.1"));
+	}
+	
+	@Test
+	public void testResolve_Unknown() throws Exception {
+		HostService hostService = new HostServiceImpl();
+		try {
+			hostService.resolve("no-such-host.invalid").get(30, TimeUnit.SECONDS);
+			fail("Resolved an invalid host.");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof UnknownHostException);
+		}
+		// The failure is cached too.
+		assertTrue(hostService.resolve("no-such-host.invalid").isCompletedExceptionally());
+	}
+	
+	@Test
+	public void testLocalHost() {
+		HostService hostService = new HostServiceImpl();
+		HostMachine localHost = hostService.getLocalHost();
+		assertNotNull(localHost);
+		assertNotSame(localHost, hostService.getLocalHost());
+		
+		boolean hasLoopback = false;
+		for (InetAddress address : hostService.getLocalAddresses()) {
+			hasLoopback |= address.isLoopbackAddress();
+		}
+		assertTrue(hasLoopback);
+		assertSame(hostService.getLocalAddresses(), hostService.getLocalAddresses());
+	}
+	
+	@Test
+	public void testDefaults() throws Exception {
+		HostService hostService = new HostService() {
+			public HostMachine getLocalHost() {
+				return new HostMachine(null, null);
+			}
+		};
+		CompletableFuture<HostMachine> host = hostService.resolve("127.0.0.1");
+		assertTrue(host.isDone());
+		assertEquals("127.0.0.1", host.get().getHostAddress());
+		assertTrue(hostService.resolve("no-such-host.invalid").isCompletedExceptionally());
+		
+		boolean hasLoopback = false;
+		for (InetAddress address : hostService.getLocalAddresses()) {
+			hasLoopback |= address.isLoopbackAddress();
+		}
+		assertTrue(hasLoopback);
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadTtl() {
+		new HostServiceImpl(-1, 10, TimeUnit.SECONDS);
+	}
+	
+}